@@ -38,6 +38,7 @@ import org.opencms.file.CmsResource;
 import org.opencms.main.CmsEvent;
 import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
+import org.opencms.main.I_CmsAsyncEventListener;
 import org.opencms.main.I_CmsEventListener;
 import org.opencms.util.CmsCollectionsGenericWrapper;
 import org.opencms.util.CmsUUID;
@@ -60,7 +61,7 @@ import org.apache.commons.logging.Log;
  * If you need to cache e.g. a single configuration file with a known, fixed path, using {@link org.opencms.cache.CmsVfsMemoryObjectCache} is
  * easier.<p>
  */
-public class CmsGlobalConfigurationCacheEventHandler implements I_CmsEventListener {
+public class CmsGlobalConfigurationCacheEventHandler implements I_CmsAsyncEventListener {
 
     /**
      * A pair of cache instances, one for the offline mode and one for the online mode.<p>
@@ -251,6 +252,44 @@ public class CmsGlobalConfigurationCacheEventHandler implements I_CmsEventListen
         }
     }
 
+    /**
+     * The caches are updated before the other listeners process an event, since those may read the
+     * ADE configuration.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#getPriority()
+     */
+    public int getPriority() {
+
+        return PRIORITY_CACHE;
+    }
+
+    /**
+     * Only the online caches after a publish and cleared caches are updated asynchronously,
+     * the offline caches must reflect each change before the editing thread continues.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#isAsync(org.opencms.main.CmsEvent)
+     */
+    public boolean isAsync(CmsEvent event) {
+
+        switch (event.getType()) {
+            case I_CmsEventListener.EVENT_PUBLISH_PROJECT:
+            case I_CmsEventListener.EVENT_CLEAR_CACHES:
+            case I_CmsEventListener.EVENT_CLEAR_OFFLINE_CACHES:
+            case I_CmsEventListener.EVENT_CLEAR_ONLINE_CACHES:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @see org.opencms.main.I_CmsAsyncEventListener#isCoalescing(org.opencms.main.CmsEvent)
+     */
+    public boolean isCoalescing(CmsEvent event) {
+
+        return event.getType() != I_CmsEventListener.EVENT_PUBLISH_PROJECT;
+    }
+
     /**
      * Clears the offline caches.<p>
      */
@@ -0,0 +1,435 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.cache;
+
+import org.opencms.main.CmsLog;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Implements a cost bounded LRU cache with the same contract as {@link CmsLruCache},
+ * but without a global monitor.<p>
+ *
+ * The cached objects are distributed over a number of segments, each of which is guarded by its own lock
+ * and has its own share of the cache costs. The last-recently-used objects are evicted per segment.<p>
+ *
+ * Touching an object does not take any lock. The access is recorded in a lossy read buffer of the segment,
+ * which is applied to the LRU order of the segment the next time the segment is written to or the buffer is full.
+ * If the segment is busy, the buffered accesses are simply dropped, which only affects the LRU order, never
+ * the cached objects themselves.<p>
+ *
+ * The next / previous pointers of the {@link I_CmsLruCacheObject} are not used by this implementation.<p>
+ *
+ * @see org.opencms.cache.CmsLruCache
+ *
+ * @since 10.5.0
+ */
+public class CmsConcurrentLruCache extends CmsLruCache {
+
+    /**
+     * A segment of the cache.<p>
+     */
+    private class CmsLruSegment {
+
+        /** The cached objects of this segment in LRU order, the eldest object first. */
+        LinkedHashMap<I_CmsLruCacheObject, Boolean> m_entries = new LinkedHashMap<I_CmsLruCacheObject, Boolean>(
+            16,
+            0.75f,
+            true);
+
+        /** The lock for this segment. */
+        ReentrantLock m_lock = new ReentrantLock();
+
+        /** The costs of all objects in this segment. */
+        long m_objectCosts;
+
+        /** The buffer of recorded accesses. */
+        AtomicReferenceArray<I_CmsLruCacheObject> m_readBuffer = new AtomicReferenceArray<I_CmsLruCacheObject>(
+            READ_BUFFER_SIZE);
+
+        /** The number of recorded accesses. */
+        AtomicLong m_readCount = new AtomicLong();
+
+        /**
+         * Adds an object to this segment, or updates its LRU state if already contained.<p>
+         *
+         * @param theCacheObject the object to add
+         */
+        void add(I_CmsLruCacheObject theCacheObject) {
+
+            m_lock.lock();
+            try {
+                drainReadBuffer();
+                if (m_entries.get(theCacheObject) == null) {
+                    m_entries.put(theCacheObject, Boolean.TRUE);
+                    m_cachedObjects.put(theCacheObject, this);
+                    theCacheObject.addToLruCache();
+                    int costs = theCacheObject.getLruCacheCosts();
+                    m_objectCosts += costs;
+                    m_totalCosts.addAndGet(costs);
+                    m_totalCount.incrementAndGet();
+                }
+                if (m_objectCosts > m_segmentMaxCosts) {
+                    gc(theCacheObject);
+                }
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Removes all objects from this segment.<p>
+         */
+        void clear() {
+
+            m_lock.lock();
+            try {
+                Iterator<I_CmsLruCacheObject> it = m_entries.keySet().iterator();
+                while (it.hasNext()) {
+                    I_CmsLruCacheObject cacheObject = it.next();
+                    it.remove();
+                    removed(cacheObject);
+                }
+                for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                    m_readBuffer.set(i, null);
+                }
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Records an access to the given object without locking.<p>
+         *
+         * @param theCacheObject the accessed object
+         */
+        void recordAccess(I_CmsLruCacheObject theCacheObject) {
+
+            long count = m_readCount.getAndIncrement();
+            int index = (int)(count & READ_BUFFER_MASK);
+            m_readBuffer.lazySet(index, theCacheObject);
+            if ((index == READ_BUFFER_MASK) && m_lock.tryLock()) {
+                // the buffer is full, apply the accesses if nobody else is working on this segment
+                try {
+                    drainReadBuffer();
+                } finally {
+                    m_lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Removes the given object from this segment.<p>
+         *
+         * @param theCacheObject the object to remove
+         *
+         * @return <code>true</code> if the object was contained in this segment
+         */
+        boolean remove(I_CmsLruCacheObject theCacheObject) {
+
+            m_lock.lock();
+            try {
+                if (m_entries.remove(theCacheObject) != null) {
+                    removed(theCacheObject);
+                    return true;
+                }
+                return false;
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Applies the recorded accesses to the LRU order, the segment must be locked.<p>
+         */
+        private void drainReadBuffer() {
+
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                I_CmsLruCacheObject cacheObject = m_readBuffer.getAndSet(i, null);
+                if (cacheObject != null) {
+                    // moves the object to the end of the LRU order, no-op if it has been removed meanwhile
+                    m_entries.get(cacheObject);
+                }
+            }
+        }
+
+        /**
+         * Removes the last recently used objects of this segment as long as the costs of the segment are higher
+         * than the allowed avg. costs of the segment, the segment must be locked.<p>
+         *
+         * @param keep the object that was just added, it is never removed
+         */
+        private void gc(I_CmsLruCacheObject keep) {
+
+            Iterator<I_CmsLruCacheObject> it = m_entries.keySet().iterator();
+            while (it.hasNext() && (m_objectCosts >= m_segmentAvgCosts)) {
+                I_CmsLruCacheObject cacheObject = it.next();
+                if (cacheObject == keep) {
+                    continue;
+                }
+                it.remove();
+                removed(cacheObject);
+                fireEvicted(cacheObject);
+            }
+        }
+
+        /**
+         * Updates the statistics and notifies an object that was removed from this segment.<p>
+         *
+         * @param theCacheObject the removed object
+         */
+        private void removed(I_CmsLruCacheObject theCacheObject) {
+
+            m_cachedObjects.remove(theCacheObject);
+            int costs = theCacheObject.getLruCacheCosts();
+            m_objectCosts -= costs;
+            m_totalCosts.addAndGet(-costs);
+            m_totalCount.decrementAndGet();
+            theCacheObject.removeFromLruCache();
+        }
+    }
+
+    /** The default number of segments. */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    /** The size of the read buffer of each segment, must be a power of 2. */
+    static final int READ_BUFFER_SIZE = 64;
+
+    /** The mask to calculate the read buffer index. */
+    static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsConcurrentLruCache.class);
+
+    /** The segment of each cached object. */
+    private Map<I_CmsLruCacheObject, CmsLruSegment> m_cachedObjects;
+
+    /** The average costs of a segment. */
+    private long m_segmentAvgCosts;
+
+    /** The mask to calculate the segment index. */
+    private int m_segmentMask;
+
+    /** The maximum costs of a segment. */
+    private long m_segmentMaxCosts;
+
+    /** The segments. */
+    private CmsLruSegment[] m_segments;
+
+    /** The costs of all cached objects. */
+    private AtomicLong m_totalCosts = new AtomicLong();
+
+    /** The number of all cached objects. */
+    private AtomicInteger m_totalCount = new AtomicInteger();
+
+    /**
+     * The constructor with all options.<p>
+     *
+     * The number of segments is reduced if required, so that an object with the maximum allowed object costs
+     * still fits into a single segment. It is always a power of 2.<p>
+     *
+     * @param theMaxCacheCosts the maximum cache costs of all cached objects
+     * @param theAvgCacheCosts the average cache costs of all cached objects
+     * @param theMaxObjectCosts the maximum allowed cache costs per object. Set theMaxObjectCosts to -1 if you don't want to limit the max. allowed cache costs per object
+     * @param segments the number of segments to use
+     */
+    public CmsConcurrentLruCache(long theMaxCacheCosts, long theAvgCacheCosts, int theMaxObjectCosts, int segments) {
+
+        super(theMaxCacheCosts, theAvgCacheCosts, theMaxObjectCosts);
+        int count = 1;
+        while (((count * 2) <= segments)
+            && ((theMaxObjectCosts < 0) || ((theMaxCacheCosts / (count * 2)) >= theMaxObjectCosts))) {
+            count *= 2;
+        }
+        m_segments = new CmsLruSegment[count];
+        for (int i = 0; i < count; i++) {
+            m_segments[i] = new CmsLruSegment();
+        }
+        m_segmentMask = count - 1;
+        m_segmentMaxCosts = theMaxCacheCosts / count;
+        m_segmentAvgCosts = theAvgCacheCosts / count;
+        m_cachedObjects = new ConcurrentHashMap<I_CmsLruCacheObject, CmsLruSegment>(256, 0.75f, count);
+    }
+
+    /**
+     * @see org.opencms.cache.CmsLruCache#add(org.opencms.cache.I_CmsLruCacheObject)
+     */
+    @Override
+    public boolean add(I_CmsLruCacheObject theCacheObject) {
+
+        if (theCacheObject == null) {
+            // null can't be added or touched in the cache
+            return false;
+        }
+        if (isTooExpensive(theCacheObject)) {
+            return false;
+        }
+        getSegment(theCacheObject).add(theCacheObject);
+        return true;
+    }
+
+    /**
+     * @see org.opencms.cache.CmsLruCache#clear()
+     */
+    @Override
+    public void clear() {
+
+        for (CmsLruSegment segment : m_segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @see org.opencms.cache.CmsLruCache#getObjectCosts()
+     */
+    @Override
+    public int getObjectCosts() {
+
+        return (int)m_totalCosts.get();
+    }
+
+    /**
+     * Returns the number of segments used by this cache.<p>
+     *
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+
+        return m_segments.length;
+    }
+
+    /**
+     * @see org.opencms.cache.CmsLruCache#remove(org.opencms.cache.I_CmsLruCacheObject)
+     */
+    @Override
+    public I_CmsLruCacheObject remove(I_CmsLruCacheObject theCacheObject) {
+
+        if (theCacheObject == null) {
+            return null;
+        }
+        CmsLruSegment segment = m_cachedObjects.get(theCacheObject);
+        if ((segment == null) || !segment.remove(theCacheObject)) {
+            // not inside the cache
+            return null;
+        }
+        return theCacheObject;
+    }
+
+    /**
+     * @see org.opencms.cache.CmsLruCache#size()
+     */
+    @Override
+    public int size() {
+
+        return m_totalCount.get();
+    }
+
+    /**
+     * @see org.opencms.cache.CmsLruCache#toString()
+     */
+    @Override
+    public String toString() {
+
+        StringBuffer buf = new StringBuffer();
+        buf.append("max. costs: " + getMaxCacheCosts()).append(", ");
+        buf.append("avg. costs: " + getAvgCacheCosts()).append(", ");
+        buf.append("max. costs/object: " + getMaxObjectCosts()).append(", ");
+        buf.append("costs: " + getObjectCosts()).append(", ");
+        buf.append("count: " + size()).append(", ");
+        buf.append("segments: " + m_segments.length);
+        return buf.toString();
+    }
+
+    /**
+     * @see org.opencms.cache.CmsLruCache#touch(org.opencms.cache.I_CmsLruCacheObject)
+     */
+    @Override
+    public boolean touch(I_CmsLruCacheObject theCacheObject) {
+
+        if (theCacheObject == null) {
+            return false;
+        }
+        CmsLruSegment segment = m_cachedObjects.get(theCacheObject);
+        if (segment == null) {
+            return false;
+        }
+        if (isTooExpensive(theCacheObject)) {
+            remove(theCacheObject);
+            return false;
+        }
+        segment.recordAccess(theCacheObject);
+        return true;
+    }
+
+    /**
+     * Returns the segment responsible for the given object.<p>
+     *
+     * @param theCacheObject the object
+     *
+     * @return the segment for the object
+     */
+    private CmsLruSegment getSegment(I_CmsLruCacheObject theCacheObject) {
+
+        int hash = System.identityHashCode(theCacheObject);
+        // spread the bits, since identity hash codes are not well distributed in the lower bits
+        hash ^= (hash >>> 16);
+        return m_segments[hash & m_segmentMask];
+    }
+
+    /**
+     * Checks if the costs of the given object exceed the max. allowed object costs.<p>
+     *
+     * @param theCacheObject the object to check
+     *
+     * @return <code>true</code> if the object can not be cached
+     */
+    private boolean isTooExpensive(I_CmsLruCacheObject theCacheObject) {
+
+        // only objects with cache costs < the max. allowed object cache costs can be cached!
+        if ((getMaxObjectCosts() != -1) && (theCacheObject.getLruCacheCosts() > getMaxObjectCosts())) {
+            if (LOG.isInfoEnabled()) {
+                LOG.info(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_CACHE_COSTS_TOO_HIGH_2,
+                        new Integer(theCacheObject.getLruCacheCosts()),
+                        new Integer(getMaxObjectCosts())));
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.cache;
+
+import org.opencms.main.CmsLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Keeps track of the files in a RFS disk cache and removes the least recently used files
+ * if the total size of the files exceeds a configured limit.<p>
+ *
+ * The index is rebuilt from the files in the cache repository when it is created,
+ * using the RFS date of last modification as access order. If files are deleted from the
+ * repository by other means, e.g. by a cache cleanup, {@link #rebuild()} must be called.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsDiskCacheIndex {
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsDiskCacheIndex.class);
+
+    /** The sizes of the cached files by normalized file path, in access order. */
+    private LinkedHashMap<String, Long> m_files;
+
+    /** The maximum total size of the cached files in bytes. */
+    private long m_maxSize;
+
+    /** The cache repository folder in the RFS. */
+    private File m_repository;
+
+    /** The current total size of the cached files in bytes. */
+    private long m_size;
+
+    /**
+     * Creates a new disk cache index and reads the files currently in the given repository.<p>
+     *
+     * @param repository the cache repository folder in the RFS
+     * @param maxSize the maximum total size of the cached files in bytes
+     */
+    public CmsDiskCacheIndex(String repository, long maxSize) {
+
+        m_maxSize = maxSize;
+        m_files = new LinkedHashMap<String, Long>(1024, 0.75f, true);
+        m_repository = new File(repository);
+        rebuild();
+    }
+
+    /**
+     * Adds a file to the index, and removes the least recently used files if the maximum size is exceeded.<p>
+     *
+     * @param rfsName the RFS name of the file
+     * @param size the size of the file in bytes
+     */
+    public void add(String rfsName, long size) {
+
+        List<String> evicted = new ArrayList<String>();
+        synchronized (this) {
+            Long previous = m_files.put(getKey(rfsName), Long.valueOf(size));
+            if (previous != null) {
+                m_size -= previous.longValue();
+            }
+            m_size += size;
+            Iterator<Map.Entry<String, Long>> it = m_files.entrySet().iterator();
+            // the file just added is the last entry and is never removed
+            while ((m_size > m_maxSize) && (m_files.size() > 1)) {
+                Map.Entry<String, Long> eldest = it.next();
+                m_size -= eldest.getValue().longValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String name : evicted) {
+            if (!new File(name).delete() && LOG.isDebugEnabled()) {
+                LOG.debug("Unable to delete evicted disk cache file " + name);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of files in the index.<p>
+     *
+     * @return the number of files in the index
+     */
+    public synchronized int getCount() {
+
+        return m_files.size();
+    }
+
+    /**
+     * Returns the maximum total size of the cached files in bytes.<p>
+     *
+     * @return the maximum total size of the cached files in bytes
+     */
+    public long getMaxSize() {
+
+        return m_maxSize;
+    }
+
+    /**
+     * Returns the current total size of the cached files in bytes.<p>
+     *
+     * @return the current total size of the cached files in bytes
+     */
+    public synchronized long getSize() {
+
+        return m_size;
+    }
+
+    /**
+     * Rebuilds the index from the files currently in the cache repository.<p>
+     *
+     * This is required after files have been deleted from the repository without using this index,
+     * otherwise the index would still count them for the size limit.<p>
+     */
+    public void rebuild() {
+
+        List<File> files = new ArrayList<File>();
+        readFiles(m_repository, files);
+        final Map<File, Long> lastModified = new HashMap<File, Long>(files.size());
+        for (File file : files) {
+            lastModified.put(file, Long.valueOf(file.lastModified()));
+        }
+        Collections.sort(files, new Comparator<File>() {
+
+            public int compare(File f1, File f2) {
+
+                return lastModified.get(f1).compareTo(lastModified.get(f2));
+            }
+        });
+        synchronized (this) {
+            m_files.clear();
+            m_size = 0;
+        }
+        for (File file : files) {
+            add(file.getPath(), file.length());
+        }
+    }
+
+    /**
+     * Removes a file from the index, the file itself is not deleted.<p>
+     *
+     * @param rfsName the RFS name of the file
+     */
+    public synchronized void remove(String rfsName) {
+
+        Long size = m_files.remove(getKey(rfsName));
+        if (size != null) {
+            m_size -= size.longValue();
+        }
+    }
+
+    /**
+     * Marks a file as recently used.<p>
+     *
+     * @param rfsName the RFS name of the file
+     */
+    public synchronized void touch(String rfsName) {
+
+        m_files.get(getKey(rfsName));
+    }
+
+    /**
+     * Returns the key for the given RFS name, so that different spellings of the same path use the same key.<p>
+     *
+     * @param rfsName the RFS name
+     *
+     * @return the key for the RFS name
+     */
+    private String getKey(String rfsName) {
+
+        return new File(rfsName).getPath();
+    }
+
+    /**
+     * Adds all files in the given folder and its sub folders to the given list.<p>
+     *
+     * @param folder the folder
+     * @param files the list to add the files to
+     */
+    private void readFiles(File folder, List<File> files) {
+
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                readFiles(child, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+}
@@ -60,6 +60,9 @@ public class CmsLruCache extends java.lang.Object {
     /** The average sum of costs the cached objects. */
     private long m_avgCacheCosts;
 
+    /** The listener notified about evicted objects. */
+    private I_CmsLruCacheEvictionListener m_evictionListener;
+
     /** The head of the list of double linked LRU cache objects. */
     private I_CmsLruCacheObject m_listHead;
 
@@ -164,6 +167,16 @@ public class CmsLruCache extends java.lang.Object {
         return m_avgCacheCosts;
     }
 
+    /**
+     * Returns the listener notified about evicted objects.<p>
+     *
+     * @return the listener notified about evicted objects, or <code>null</code>
+     */
+    public I_CmsLruCacheEvictionListener getEvictionListener() {
+
+        return m_evictionListener;
+    }
+
     /**
      * Returns the max costs of all cached objects.<p>
      *
@@ -243,6 +256,16 @@ public class CmsLruCache extends java.lang.Object {
         return theCacheObject;
     }
 
+    /**
+     * Sets the listener notified about objects evicted from this cache.<p>
+     *
+     * @param listener the listener to set, or <code>null</code> to remove the listener
+     */
+    public void setEvictionListener(I_CmsLruCacheEvictionListener listener) {
+
+        m_evictionListener = listener;
+    }
+
     /**
      * Returns the count of all cached objects.<p>
      *
@@ -326,6 +349,19 @@ public class CmsLruCache extends java.lang.Object {
         return true;
     }
 
+    /**
+     * Notifies the eviction listener, if any, that the given object was evicted.<p>
+     *
+     * @param theCacheObject the evicted object
+     */
+    protected void fireEvicted(I_CmsLruCacheObject theCacheObject) {
+
+        I_CmsLruCacheEvictionListener listener = m_evictionListener;
+        if (listener != null) {
+            listener.evictedFromLruCache(theCacheObject);
+        }
+    }
+
     /**
      * Adds a cache object as the new haed to the list of all cached objects in this cache.<p>
      *
@@ -384,8 +420,10 @@ public class CmsLruCache extends java.lang.Object {
             if (m_objectCosts < m_avgCacheCosts) {
                 break;
             }
+            I_CmsLruCacheObject evictedObject = currentObject;
             currentObject = currentObject.getNextLruObject();
             removeTail();
+            fireEvicted(evictedObject);
         }
     }
 
@@ -29,6 +29,7 @@ package org.opencms.cache;
 
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceReadRecorder;
 import org.opencms.main.CmsLog;
 import org.opencms.main.OpenCms;
 import org.opencms.monitor.CmsMemoryMonitor;
@@ -89,6 +90,8 @@ public class CmsVfsMemoryObjectCache extends CmsVfsCache {
      */
     public Object getCachedObject(CmsObject cms, String rootPath) {
 
+        // the caller depends on the resource, also if the object is served from the cache
+        CmsResourceReadRecorder.recordRootPath(cms.getRequestContext(), rootPath);
         String key = getCacheKeyForCurrentProject(cms, rootPath);
         return OpenCms.getMemoryMonitor().getCachedVfsObject(key);
     }
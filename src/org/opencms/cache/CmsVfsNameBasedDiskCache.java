@@ -49,6 +49,9 @@ import org.apache.commons.logging.Log;
  * project will have a new hash code compared to the online project. If the resource is identical in the online and
  * the offline project, the generated hash codes will be the same.<p>
  *
+ * Optionally, the total size of the cache can be limited. In this case the least recently used files are removed
+ * from the cache if the limit is exceeded, see {@link CmsDiskCacheIndex}.<p>
+ *
  * @since 6.2.0
  */
 public class CmsVfsNameBasedDiskCache {
@@ -56,6 +59,9 @@ public class CmsVfsNameBasedDiskCache {
     /** Logger instance for this class. */
     private static final Log LOG = CmsLog.getLog(CmsVfsNameBasedDiskCache.class);
 
+    /** The index of the cached files, <code>null</code> if the size of the cache is not limited. */
+    private CmsDiskCacheIndex m_index;
+
     /** The name of the cache base repository folder in the RFS. */
     private String m_rfsRepository;
 
@@ -67,8 +73,25 @@ public class CmsVfsNameBasedDiskCache {
      */
     public CmsVfsNameBasedDiskCache(String basepath, String foldername) {
 
+        this(basepath, foldername, -1);
+    }
+
+    /**
+     * Creates a new disk cache with a limited size.<p>
+     *
+     * If the size is limited, the files currently in the cache repository are read to build the cache index.<p>
+     *
+     * @param basepath the base path for the cache in the RFS
+     * @param foldername the folder name for this cache, to be used a sub-folder for the base folder
+     * @param maxSize the maximum total size of the cached files in bytes, or a value &lt;= 0 for no limit
+     */
+    public CmsVfsNameBasedDiskCache(String basepath, String foldername, long maxSize) {
+
         // normalize the given folder name
         m_rfsRepository = CmsFileUtil.normalizePath(basepath + foldername + File.separatorChar);
+        if (maxSize > 0) {
+            m_index = new CmsDiskCacheIndex(m_rfsRepository, maxSize);
+        }
     }
 
     /**
@@ -82,22 +105,51 @@ public class CmsVfsNameBasedDiskCache {
     public byte[] getCacheContent(String rfsName) {
 
         try {
-            File f = new File(rfsName);
-            if (f.exists()) {
-                long age = f.lastModified();
-                if ((System.currentTimeMillis() - age) > 3600000) {
-                    // file has not been touched for 1 hour, touch the file with the current date
-                    f.setLastModified(System.currentTimeMillis());
-                }
+            File f = getCacheFile(rfsName);
+            if (f != null) {
                 return CmsFileUtil.readFile(f);
             }
         } catch (IOException e) {
             // unable to read content
             LOG.debug("Unable to read file " + rfsName, e);
+            if (m_index != null) {
+                m_index.remove(rfsName);
+            }
         }
         return null;
     }
 
+    /**
+     * Returns the requested file in the disk cache, or <code>null</code> if the file is not found in the cache.<p>
+     *
+     * This allows to send the file content without reading it into memory first.
+     * The file is marked as recently used.<p>
+     *
+     * @param rfsName the file RFS name to look up in the cache
+     *
+     * @return the requested file in the disk cache, or <code>null</code>
+     */
+    public File getCacheFile(String rfsName) {
+
+        File f = new File(rfsName);
+        long age = f.lastModified();
+        if (age == 0L) {
+            // the file does not exist
+            if (m_index != null) {
+                m_index.remove(rfsName);
+            }
+            return null;
+        }
+        if ((System.currentTimeMillis() - age) > 3600000) {
+            // file has not been touched for 1 hour, touch the file with the current date
+            f.setLastModified(System.currentTimeMillis());
+        }
+        if (m_index != null) {
+            m_index.touch(rfsName);
+        }
+        return f;
+    }
+
     /**
      * Returns the RFS name to use for caching the given VFS resource with parameters in the disk cache.<p>
      *
@@ -140,6 +192,16 @@ public class CmsVfsNameBasedDiskCache {
         return buf.toString();
     }
 
+    /**
+     * Returns the index of the cached files, or <code>null</code> if the size of the cache is not limited.<p>
+     *
+     * @return the index of the cached files
+     */
+    public CmsDiskCacheIndex getIndex() {
+
+        return m_index;
+    }
+
     /**
      * Returns the absolute path of the cache repository in the RFS.<p>
      *
@@ -177,5 +239,8 @@ public class CmsVfsNameBasedDiskCache {
     public void saveCacheFile(String rfsName, byte[] content) throws IOException {
 
         CmsVfsDiskCache.saveFile(rfsName, content);
+        if (m_index != null) {
+            m_index.add(rfsName, content.length);
+        }
     }
 }
\ No newline at end of file
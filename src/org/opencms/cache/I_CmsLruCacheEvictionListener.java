@@ -0,0 +1,48 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.cache;
+
+/**
+ * Listener that is notified when a {@link CmsLruCache} evicts an object to stay within its cache costs.<p>
+ *
+ * Objects which are removed explicitly or by clearing the cache are not reported.<p>
+ *
+ * @since 10.5.0
+ */
+public interface I_CmsLruCacheEvictionListener {
+
+    /**
+     * Invoked after the last recently used object was evicted from the cache.<p>
+     *
+     * The object has already been notified with {@link I_CmsLruCacheObject#removeFromLruCache()}.
+     * This method is called while the cache is locked, so it must not access the cache that evicted the object.<p>
+     *
+     * @param theCacheObject the evicted object
+     */
+    void evictedFromLruCache(I_CmsLruCacheObject theCacheObject);
+}
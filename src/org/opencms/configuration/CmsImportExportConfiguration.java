@@ -222,6 +222,9 @@ public class CmsImportExportConfiguration extends A_CmsXmlConfiguration {
     /**  The node name of the static export exportheaders node. */
     public static final String N_STATICEXPORT_EXPORTHEADERS = "exportheaders";
 
+    /**  The node name of the static export dependencytracking node. */
+    public static final String N_STATICEXPORT_DEPENDENCYTRACKING = "dependencytracking";
+
     /**  The node name of the static export exportpath node. */
     public static final String N_STATICEXPORT_EXPORTPATH = "exportpath";
 
@@ -231,6 +234,9 @@ public class CmsImportExportConfiguration extends A_CmsXmlConfiguration {
     /**  The node name of the static export export-rules node. */
     public static final String N_STATICEXPORT_EXPORTRULES = "export-rules";
 
+    /**  The node name of the static export exportthreads node. */
+    public static final String N_STATICEXPORT_EXPORTTHREADS = "exportthreads";
+
     /**  The node name of the static export exporturl node. */
     public static final String N_STATICEXPORT_EXPORTURL = "exporturl";
 
@@ -515,6 +521,16 @@ public class CmsImportExportConfiguration extends A_CmsXmlConfiguration {
             "*/" + N_STATICEXPORT + "/" + N_STATICEXPORT_RENDERSETTINGS + "/" + N_STATICEXPORT_PLAINOPTIMIZATION,
             "setPlainExportOptimization",
             0);
+        // dependency tracking rule
+        digester.addCallMethod(
+            "*/" + N_STATICEXPORT + "/" + N_STATICEXPORT_RENDERSETTINGS + "/" + N_STATICEXPORT_DEPENDENCYTRACKING,
+            "setDependencyTracking",
+            0);
+        // export threads rule
+        digester.addCallMethod(
+            "*/" + N_STATICEXPORT + "/" + N_STATICEXPORT_RENDERSETTINGS + "/" + N_STATICEXPORT_EXPORTTHREADS,
+            "setExportThreads",
+            0);
         // test resource rule
         digester.addCallMethod(
             "*/" + N_STATICEXPORT + "/" + N_STATICEXPORT_RENDERSETTINGS + "/" + N_STATICEXPORT_TESTRESOURCE,
@@ -901,6 +917,14 @@ public class CmsImportExportConfiguration extends A_CmsXmlConfiguration {
         rendersettingsElement.addElement(N_STATICEXPORT_PLAINOPTIMIZATION).addText(
             m_staticExportManager.getPlainExportOptimization());
 
+        // <dependencytracking> node
+        rendersettingsElement.addElement(N_STATICEXPORT_DEPENDENCYTRACKING).addText(
+            m_staticExportManager.getDependencyTracking());
+
+        // <exportthreads> node
+        rendersettingsElement.addElement(N_STATICEXPORT_EXPORTTHREADS).addText(
+            m_staticExportManager.getExportThreads());
+
         // <testresource> node
         Element testresourceElement = rendersettingsElement.addElement(N_STATICEXPORT_TESTRESOURCE);
         testresourceElement.addAttribute(A_URI, m_staticExportManager.getTestResource());
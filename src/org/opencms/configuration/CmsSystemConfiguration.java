@@ -305,6 +305,9 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
     /** The node name for the login message. */
     public static final String N_LOGINMESSAGE = "loginmessage";
 
+    /** The node name for the number of segments of the flex cache LRU. */
+    public static final String N_LRUSEGMENTS = "lru-segments";
+
     /** The node name for the mail configuration. */
     public static final String N_MAIL = "mail";
 
@@ -326,6 +329,9 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
     /** The node name for the maxkeys node. */
     public static final String N_MAXKEYS = "maxkeys";
 
+    /** The node name for the maximum off-heap bytes of the flex cache. */
+    public static final String N_MAXOFFHEAPBYTES = "maxoffheapbytes";
+
     /** The node name for the maxusagepercent node. */
     public static final String N_MAXUSAGE_PERCENT = "maxusagepercent";
 
@@ -341,6 +347,9 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
     /** The duration after which responsibles will be notified about out-dated content. */
     public static final String N_NOTIFICATION_TIME = "notification-time";
 
+    /** The node name for the number of publish jobs running in parallel. */
+    public static final String N_PARALLELJOBS = "parallel-jobs";
+
     /** The node name for the job parameters. */
     public static final String N_PARAMETERS = "parameters";
 
@@ -491,6 +500,12 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
     /** The size of the memory monitor's cache for users. */
     public static final String N_SIZE_USERS = "size-users";
 
+    /** The size of the memory monitor's cache for VFS objects. */
+    public static final String N_SIZE_VFSOBJECTS = "size-vfsobjects";
+
+    /** The node name for the snapshot interval of the flex cache. */
+    public static final String N_SNAPSHOT_INTERVAL = "snapshot-interval";
+
     /** The subscriptionmanager node name. */
     public static final String N_SUBSCRIPTIONMANAGER = "subscriptionmanager";
 
@@ -542,6 +557,9 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
     /** The node name for the workplace-server node. */
     public static final String N_WORKPLACE_SERVER = "workplace-server";
 
+    /** The node name for the online XML content cache settings. */
+    public static final String N_XMLCONTENTS = "xmlcontents";
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsSystemConfiguration.class);
 
@@ -1045,6 +1063,18 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
         digester.addCallParam("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_AVGCACHEBYTES, 3);
         digester.addCallParam("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_MAXENTRYBYTES, 4);
         digester.addCallParam("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_MAXKEYS, 5);
+        // add flexcache LRU segments
+        digester.addCallMethod("*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_LRUSEGMENTS, "setLruSegments", 0);
+        // add flexcache off-heap tier
+        digester.addCallMethod(
+            "*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_MAXOFFHEAPBYTES,
+            "setMaxOffHeapBytes",
+            0);
+        // add flexcache snapshot
+        digester.addCallMethod(
+            "*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_SNAPSHOT_INTERVAL,
+            "setSnapshotInterval",
+            0);
         // add flexcache device selector
         digester.addCallMethod(
             "*/" + N_SYSTEM + "/" + N_FLEXCACHE + "/" + N_DEVICESELECTOR,
@@ -1104,6 +1134,10 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
             "*/" + N_SYSTEM + "/" + N_RESULTCACHE + "/" + N_SIZE_PERMISSIONS,
             "setPermissionCacheSize",
             0);
+        digester.addCallMethod(
+            "*/" + N_SYSTEM + "/" + N_RESULTCACHE + "/" + N_SIZE_VFSOBJECTS,
+            "setVfsObjectCacheSize",
+            0);
         digester.addCallMethod(
             "*/" + N_SYSTEM + "/" + N_RESULTCACHE + "/" + N_SIZE_CONTAINERPAGE_OFFLINE,
             "setContainerPageOfflineSize",
@@ -1146,6 +1180,7 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
             "*/" + N_SYSTEM + "/" + N_PUBLISHMANAGER + "/" + N_QUEUESHUTDOWNTIME,
             "setPublishQueueShutdowntime",
             0);
+        digester.addCallMethod("*/" + N_SYSTEM + "/" + N_PUBLISHMANAGER + "/" + N_PARALLELJOBS, "setParallelJobs", 0);
         digester.addSetNext("*/" + N_SYSTEM + "/" + N_PUBLISHMANAGER, "setPublishManager");
 
         // add rule for session storage provider
@@ -1188,6 +1223,9 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
         digester.addCallParam(adeCachePath + "/" + N_GROUPCONTAINERS, 0, A_OFFLINE);
         digester.addCallMethod(adeCachePath + "/" + N_GROUPCONTAINERS, "setGroupContainerOnlineSize", 1);
         digester.addCallParam(adeCachePath + "/" + N_GROUPCONTAINERS, 0, A_ONLINE);
+        // XML content cache
+        digester.addCallMethod(adeCachePath + "/" + N_XMLCONTENTS, "setXmlContentOnlineSize", 1);
+        digester.addCallParam(adeCachePath + "/" + N_XMLCONTENTS, 0, A_ONLINE);
         // set the settings
         digester.addSetNext(adeCachePath, "setAdeCacheSettings");
 
@@ -1544,6 +1582,18 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
         flexcacheElement.addElement(N_MAXENTRYBYTES).addText(
             String.valueOf(m_cmsFlexCacheConfiguration.getMaxEntryBytes()));
         flexcacheElement.addElement(N_MAXKEYS).addText(String.valueOf(m_cmsFlexCacheConfiguration.getMaxKeys()));
+        if (m_cmsFlexCacheConfiguration.getLruSegments() > 0) {
+            flexcacheElement.addElement(N_LRUSEGMENTS).addText(
+                String.valueOf(m_cmsFlexCacheConfiguration.getLruSegments()));
+        }
+        if (m_cmsFlexCacheConfiguration.getMaxOffHeapBytes() > 0) {
+            flexcacheElement.addElement(N_MAXOFFHEAPBYTES).addText(
+                String.valueOf(m_cmsFlexCacheConfiguration.getMaxOffHeapBytes()));
+        }
+        if (m_cmsFlexCacheConfiguration.getSnapshotInterval() >= 0) {
+            flexcacheElement.addElement(N_SNAPSHOT_INTERVAL).addText(
+                String.valueOf(m_cmsFlexCacheConfiguration.getSnapshotInterval()));
+        }
         if (m_cmsFlexCacheConfiguration.getDeviceSelectorConfiguration() != null) {
             Element flexcacheDeviceSelectorElement = flexcacheElement.addElement(N_DEVICESELECTOR);
             flexcacheDeviceSelectorElement.addAttribute(
@@ -1589,6 +1639,10 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
         }
         cacheElement.addElement(N_SIZE_ACLS).setText(Integer.toString(m_cacheSettings.getAclCacheSize()));
         cacheElement.addElement(N_SIZE_PERMISSIONS).setText(Integer.toString(m_cacheSettings.getPermissionCacheSize()));
+        if (m_cacheSettings.getConfiguredVfsObjectCacheSize() > -1) {
+            cacheElement.addElement(N_SIZE_VFSOBJECTS).setText(
+                Integer.toString(m_cacheSettings.getConfiguredVfsObjectCacheSize()));
+        }
 
         // content notification settings
         if ((m_notificationTime != null) || (m_notificationProject != null)) {
@@ -1616,6 +1670,10 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
                 String.valueOf(m_publishManager.isPublishQueuePersistanceEnabled()));
             pubHistElement.addElement(N_QUEUESHUTDOWNTIME).setText(
                 String.valueOf(m_publishManager.getPublishQueueShutdowntime()));
+            if (m_publishManager.getParallelJobs() != CmsPublishManager.DEFAULT_PARALLEL_JOBS) {
+                pubHistElement.addElement(N_PARALLELJOBS).setText(
+                    String.valueOf(m_publishManager.getParallelJobs()));
+            }
         }
 
         // session storage provider
@@ -1678,6 +1736,9 @@ public class CmsSystemConfiguration extends A_CmsXmlConfiguration {
                 groupContainerCacheElem.addAttribute(
                     A_ONLINE,
                     "" + getAdeCacheSettings().getGroupContainerOnlineSize());
+                // XML content cache
+                Element xmlContentCacheElem = cacheElem.addElement(N_XMLCONTENTS);
+                xmlContentCacheElem.addAttribute(A_ONLINE, "" + getAdeCacheSettings().getXmlContentOnlineSize());
             }
         }
 
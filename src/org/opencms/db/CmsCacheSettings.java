@@ -76,6 +76,9 @@ public class CmsCacheSettings {
     /** The size of the memory monitor's cache for user/group relations. */
     private int m_userGroupsCacheSize;
 
+    /** The size of the memory monitor's cache for VFS objects. */
+    private int m_vfsObjectCacheSize = -1; // this configuration entry is optional
+
     /**
      * Default constructor.<p>
      */
@@ -152,6 +155,18 @@ public class CmsCacheSettings {
         return m_rolesCacheSize;
     }
 
+    /**
+     * Returns the size of the memory monitor's cache for VFS objects.<p>
+     *
+     * Might be <code>-1</code> if configuration entry is missing, in this case the cache is not limited.<p>
+     *
+     * @return the size of the memory monitor's cache for VFS objects
+     */
+    public int getConfiguredVfsObjectCacheSize() {
+
+        return m_vfsObjectCacheSize;
+    }
+
     /**
      * Returns the size of the memory monitor's cache for groups.<p>
      *
@@ -424,6 +439,16 @@ public class CmsCacheSettings {
         m_userGroupsCacheSize = getIntValue(size, 256);
     }
 
+    /**
+     * Sets the size of the memory monitor's cache for VFS objects.<p>
+     *
+     * @param size the size of the memory monitor's cache for VFS objects
+     */
+    public void setVfsObjectCacheSize(String size) {
+
+        m_vfsObjectCacheSize = getIntValue(size, -1);
+    }
+
     /**
      * Turns a string into an int.<p>
      *
@@ -123,6 +123,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
@@ -130,6 +132,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -338,6 +341,9 @@ public final class CmsDriverManager implements I_CmsEventListener {
     /** The class used for cache key generation. */
     private I_CmsCacheKey m_keyGenerator;
 
+    /** The last publish tag handed out, to keep the tags of concurrently running publish jobs unique. */
+    private int m_lastPublishTag;
+
     /** The lock manager. */
     private CmsLockManager m_lockManager;
 
@@ -4180,9 +4186,15 @@ public final class CmsDriverManager implements I_CmsEventListener {
      *
      * @return the next available publish tag
      */
-    public int getNextPublishTag(CmsDbContext dbc) {
+    public synchronized int getNextPublishTag(CmsDbContext dbc) {
 
-        return getHistoryDriver(dbc).readNextPublishTag(dbc);
+        int publishTag = getHistoryDriver(dbc).readNextPublishTag(dbc);
+        if (publishTag <= m_lastPublishTag) {
+            // a publish job running in parallel has not yet written its history
+            publishTag = m_lastPublishTag + 1;
+        }
+        m_lastPublishTag = publishTag;
+        return publishTag;
     }
 
     /**
@@ -7173,16 +7185,8 @@ public final class CmsDriverManager implements I_CmsEventListener {
         String cp = currentPath.toString();
         CmsUUID projectId = getProjectIdForContext(dbc);
 
-        // key to cache the resources
-        String cacheKey = getCacheKey(null, false, projectId, cp);
         // the current resource
-        CmsResource currentResource = m_monitor.getCachedResource(cacheKey);
-        if ((currentResource == null) || !dbc.getProjectId().isNullUUID()) {
-            currentResource = getVfsDriver(dbc).readFolder(dbc, projectId, cp);
-            if (dbc.getProjectId().isNullUUID()) {
-                m_monitor.cacheResource(cacheKey, currentResource);
-            }
-        }
+        CmsResource currentResource = readPathResource(dbc, projectId, cp, null);
 
         pathList.add(0, currentResource);
 
@@ -7201,14 +7205,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
             currentPath.append('/');
             // read the folder
             cp = currentPath.toString();
-            cacheKey = getCacheKey(null, false, projectId, cp);
-            currentResource = m_monitor.getCachedResource(cacheKey);
-            if ((currentResource == null) || !dbc.getProjectId().isNullUUID()) {
-                currentResource = getVfsDriver(dbc).readFolder(dbc, projectId, cp);
-                if (dbc.getProjectId().isNullUUID()) {
-                    m_monitor.cacheResource(cacheKey, currentResource);
-                }
-            }
+            currentResource = readPathResource(dbc, projectId, cp, null);
 
             pathList.add(i, currentResource);
 
@@ -7228,14 +7225,7 @@ public final class CmsDriverManager implements I_CmsEventListener {
 
             // read the file
             cp = currentPath.toString();
-            cacheKey = getCacheKey(null, false, projectId, cp);
-            currentResource = m_monitor.getCachedResource(cacheKey);
-            if ((currentResource == null) || !dbc.getProjectId().isNullUUID()) {
-                currentResource = getVfsDriver(dbc).readResource(dbc, projectId, cp, filter.includeDeleted());
-                if (dbc.getProjectId().isNullUUID()) {
-                    m_monitor.cacheResource(cacheKey, currentResource);
-                }
-            }
+            currentResource = readPathResource(dbc, projectId, cp, filter);
 
             pathList.add(i, currentResource);
         }
@@ -7461,63 +7451,121 @@ public final class CmsDriverManager implements I_CmsEventListener {
      *
      * @see CmsObject#readPropertyObjects(String, boolean)
      */
-    public List<CmsProperty> readPropertyObjects(CmsDbContext dbc, CmsResource resource, boolean search)
+    public List<CmsProperty> readPropertyObjects(
+        final CmsDbContext dbc,
+        final CmsResource resource,
+        final boolean search)
     throws CmsException {
 
         // check if we have the result already cached
         CmsUUID projectId = getProjectIdForContext(dbc);
         String cacheKey = getCacheKey(CACHE_ALL_PROPERTIES, search, projectId, resource.getRootPath());
 
-        List<CmsProperty> properties = m_monitor.getCachedPropertyList(cacheKey);
+        List<CmsProperty> properties;
+        if (dbc.getProjectId().isNullUUID()) {
+            // concurrent cache misses for the same key wait for a single read from the database
+            properties = m_monitor.getCachedPropertyList(cacheKey, new Callable<List<CmsProperty>>() {
 
-        if ((properties == null) || !dbc.getProjectId().isNullUUID()) {
-            // result not cached, let's look it up in the DB
-            if (search) {
-                boolean cont;
-                properties = new ArrayList<CmsProperty>();
-                List<CmsProperty> parentProperties = null;
+                public List<CmsProperty> call() throws CmsException {
 
-                do {
-                    try {
-                        parentProperties = readPropertyObjects(dbc, resource, false);
+                    return readPropertyObjectsFromDb(dbc, resource, search);
+                }
+            });
+        } else {
+            properties = readPropertyObjectsFromDb(dbc, resource, search);
+        }
+
+        return new ArrayList<CmsProperty>(properties);
+    }
 
+    /**
+     * Reads all property objects mapped to the given resources with as few database queries as possible.<p>
+     *
+     * If <code>search</code> is <code>true</code>, the result contains the properties of each resource
+     * merged with the properties inherited from its parent folders, the same as
+     * {@link #readPropertyObjects(CmsDbContext, CmsResource, boolean)} would return for the single resource.
+     * The properties of all resources and parent folders involved are read in one pass and put into the property cache.<p>
+     *
+     * All properties in the result lists will be in frozen (read only) state.<p>
+     *
+     * @param dbc the current database context
+     * @param resources the resources to read the properties for
+     * @param search <code>true</code>, if the properties should be searched on all parent folders if not found on the resource
+     *
+     * @return the properties of the resources, by structure id, in the order of the given resources
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see CmsObject#readPropertyObjects(List, boolean)
+     */
+    public Map<CmsUUID, List<CmsProperty>> readPropertyObjects(
+        CmsDbContext dbc,
+        List<CmsResource> resources,
+        boolean search)
+    throws CmsException {
+
+        CmsUUID projectId = getProjectIdForContext(dbc);
+        boolean useCache = dbc.getProjectId().isNullUUID();
+        Map<String, List<CmsProperty>> propertiesByPath = new HashMap<String, List<CmsProperty>>();
+
+        // collect the resources, and for a search also their parent folders, where the properties must be read
+        Map<String, CmsResource> levels = new HashMap<String, CmsResource>();
+        Set<String> parentPaths = new LinkedHashSet<String>();
+        for (CmsResource resource : resources) {
+            String rootPath = resource.getRootPath();
+            if (search && useCache) {
+                List<CmsProperty> cached = m_monitor.getCachedPropertyList(
+                    getCacheKey(CACHE_ALL_PROPERTIES, true, projectId, rootPath));
+                if (cached != null) {
+                    propertiesByPath.put(rootPath, cached);
+                    continue;
+                }
+            }
+            levels.put(rootPath, resource);
+            if (search) {
+                String parentPath = CmsResource.getParentFolder(rootPath);
+                while ((parentPath != null) && parentPaths.add(parentPath)) {
+                    parentPath = CmsResource.getParentFolder(parentPath);
+                }
+            }
+        }
+        parentPaths.removeAll(levels.keySet());
+        if (!parentPaths.isEmpty()) {
+            // no permission check on parent folders is required, like for a single resource
+            levels.putAll(readPathResources(dbc, projectId, parentPaths, true));
+        }
+        Map<String, List<CmsProperty>> ownProperties = readOwnPropertyObjects(dbc, projectId, levels.values());
+
+        Map<CmsUUID, List<CmsProperty>> result = new LinkedHashMap<CmsUUID, List<CmsProperty>>(resources.size());
+        for (CmsResource resource : resources) {
+            String rootPath = resource.getRootPath();
+            List<CmsProperty> properties = propertiesByPath.get(rootPath);
+            if (properties == null) {
+                if (search) {
+                    properties = new ArrayList<CmsProperty>();
+                    String path = rootPath;
+                    while ((path != null) && ownProperties.containsKey(path)) {
                         // make sure properties from lower folders "overwrite" properties from upper folders
+                        List<CmsProperty> parentProperties = new ArrayList<CmsProperty>(ownProperties.get(path));
                         parentProperties.removeAll(properties);
                         parentProperties.addAll(properties);
-
-                        properties.clear();
-                        properties.addAll(parentProperties);
-
-                        cont = resource.getRootPath().length() > 1;
-                    } catch (CmsSecurityException se) {
-                        // a security exception (probably no read permission) we return the current result
-                        cont = false;
+                        properties = parentProperties;
+                        path = CmsResource.getParentFolder(path);
                     }
-                    if (cont) {
-                        // no permission check on parent folder is required since we must have "read"
-                        // permissions to read the child resource anyway
-                        resource = readResource(
-                            dbc,
-                            CmsResource.getParentFolder(resource.getRootPath()),
-                            CmsResourceFilter.ALL);
+                    CmsProperty.setFrozen(properties);
+                    if (useCache) {
+                        m_monitor.cachePropertyList(
+                            getCacheKey(CACHE_ALL_PROPERTIES, true, projectId, rootPath),
+                            properties);
                     }
-                } while (cont);
-            } else {
-                properties = getVfsDriver(dbc).readPropertyObjects(dbc, dbc.currentProject(), resource);
-                //                for (CmsProperty prop : properties) {
-                //                    prop.setOrigin(resource.getRootPath());
-                //                }
-            }
-
-            // set all properties in the result list as frozen
-            CmsProperty.setFrozen(properties);
-            if (dbc.getProjectId().isNullUUID()) {
-                // store the result in the cache if needed
-                m_monitor.cachePropertyList(cacheKey, properties);
+                } else {
+                    properties = ownProperties.get(rootPath);
+                }
+                propertiesByPath.put(rootPath, properties);
             }
+            result.put(resource.getStructureId(), new ArrayList<CmsProperty>(properties));
         }
-
-        return new ArrayList<CmsProperty>(properties);
+        return result;
     }
 
     /**
@@ -7754,6 +7802,95 @@ public final class CmsDriverManager implements I_CmsEventListener {
         return updateContextDates(dbc, resourceList, filter);
     }
 
+    /**
+     * Reads the resources with the given structure ids, using the specified resource filter.<p>
+     *
+     * The resources are read with as few database queries as possible. Ids of resources that do not exist,
+     * do not match the filter or can not be read by the current user are skipped. The result keeps the order
+     * of the given ids.<p>
+     *
+     * @param dbc the current database context
+     * @param structureIds the structure ids of the resources to read
+     * @param filter the resource filter to use while reading
+     *
+     * @return the resources that were read
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see CmsObject#readResourcesById(Collection, CmsResourceFilter)
+     */
+    public List<CmsResource> readResourcesById(
+        CmsDbContext dbc,
+        Collection<CmsUUID> structureIds,
+        CmsResourceFilter filter)
+    throws CmsException {
+
+        CmsUUID projectId = getProjectIdForContext(dbc);
+        List<CmsResource> resources = getVfsDriver(dbc).readResourcesById(
+            dbc,
+            projectId,
+            structureIds,
+            filter.includeDeleted());
+        cacheResources(dbc, projectId, resources);
+
+        Map<CmsUUID, CmsResource> resourcesById = new HashMap<CmsUUID, CmsResource>(resources.size());
+        for (CmsResource resource : resources) {
+            resourcesById.put(resource.getStructureId(), resource);
+        }
+        List<CmsResource> result = new ArrayList<CmsResource>(resources.size());
+        for (CmsUUID structureId : new LinkedHashSet<CmsUUID>(structureIds)) {
+            CmsResource resource = resourcesById.get(structureId);
+            if (resource != null) {
+                result.add(resource);
+            }
+        }
+        result = filterPermissions(dbc, result, filter);
+        return updateContextDates(dbc, result, filter);
+    }
+
+    /**
+     * Reads the resources with the given root paths, using the specified resource filter.<p>
+     *
+     * Resources already in the resource cache are taken from there, all others are read with as few
+     * database queries as possible. Paths of resources that do not exist, do not match the filter or can
+     * not be read by the current user are skipped. The result keeps the order of the given paths.<p>
+     *
+     * @param dbc the current database context
+     * @param resourcePaths the root paths of the resources to read
+     * @param filter the resource filter to use while reading
+     *
+     * @return the resources that were read
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see CmsObject#readResourcesByPath(Collection, CmsResourceFilter)
+     */
+    public List<CmsResource> readResourcesByPath(
+        CmsDbContext dbc,
+        Collection<String> resourcePaths,
+        CmsResourceFilter filter)
+    throws CmsException {
+
+        Map<String, CmsResource> resourcesByPath = readPathResources(
+            dbc,
+            getProjectIdForContext(dbc),
+            resourcePaths,
+            filter.includeDeleted());
+
+        Set<CmsResource> ordered = new LinkedHashSet<CmsResource>(resourcesByPath.size());
+        for (String path : resourcePaths) {
+            CmsResource resource = resourcesByPath.get(path);
+            if ((resource == null) && !CmsResource.isFolder(path)) {
+                resource = resourcesByPath.get(CmsFileUtil.addTrailingSeparator(path));
+            }
+            if (resource != null) {
+                ordered.add(resource);
+            }
+        }
+        List<CmsResource> result = filterPermissions(dbc, new ArrayList<CmsResource>(ordered), filter);
+        return updateContextDates(dbc, result, filter);
+    }
+
     /**
      * Returns the resources that were visited by a user set in the filter.<p>
      *
@@ -10681,6 +10818,27 @@ public final class CmsDriverManager implements I_CmsEventListener {
         publishList.addAll(filterResources(dbc, publishList, fileList), true);
     }
 
+    /**
+     * Adds copies of the given resources to the resource cache, unless reading inside a publish context.<p>
+     *
+     * Deleted resources are not cached, since they must not be found by the cached path lookup.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the id of the project the resources were read from
+     * @param resources the resources to cache
+     */
+    private void cacheResources(CmsDbContext dbc, CmsUUID projectId, List<CmsResource> resources) {
+
+        if (!dbc.getProjectId().isNullUUID()) {
+            return;
+        }
+        for (CmsResource resource : resources) {
+            if (!resource.getState().isDeleted()) {
+                m_monitor.cacheResource(getCacheKey(null, false, projectId, resource.getRootPath()), resource.getCopy());
+            }
+        }
+    }
+
     /**
      * Helper method to check whether we should bother with reading the group for a given role in a given OU.<p>
      *
@@ -11490,6 +11648,235 @@ public final class CmsDriverManager implements I_CmsEventListener {
         return result;
     }
 
+    /**
+     * Reads the property objects directly mapped to the given resources, taking them from the
+     * property cache where possible and reading all others with a single driver call.<p>
+     *
+     * The properties read from the database are frozen and added to the property cache,
+     * unless reading inside a publish context.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the id of the project to read the properties from
+     * @param resources the resources to read the properties for
+     *
+     * @return the properties of the resources, by root path
+     *
+     * @throws CmsException if something goes wrong
+     */
+    private Map<String, List<CmsProperty>> readOwnPropertyObjects(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        Collection<CmsResource> resources)
+    throws CmsException {
+
+        boolean useCache = dbc.getProjectId().isNullUUID();
+        Map<String, List<CmsProperty>> result = new HashMap<String, List<CmsProperty>>(resources.size());
+        List<CmsResource> missing = new ArrayList<CmsResource>();
+        for (CmsResource resource : resources) {
+            List<CmsProperty> cached = null;
+            if (useCache) {
+                cached = m_monitor.getCachedPropertyList(
+                    getCacheKey(CACHE_ALL_PROPERTIES, false, projectId, resource.getRootPath()));
+            }
+            if (cached != null) {
+                result.put(resource.getRootPath(), cached);
+            } else {
+                missing.add(resource);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<CmsUUID, List<CmsProperty>> read = getVfsDriver(dbc).readPropertyObjects(
+                dbc,
+                dbc.currentProject(),
+                missing);
+            for (CmsResource resource : missing) {
+                List<CmsProperty> properties = read.get(resource.getStructureId());
+                if (properties == null) {
+                    properties = new ArrayList<CmsProperty>();
+                }
+                CmsProperty.setFrozen(properties);
+                if (useCache) {
+                    m_monitor.cachePropertyList(
+                        getCacheKey(CACHE_ALL_PROPERTIES, false, projectId, resource.getRootPath()),
+                        properties);
+                }
+                result.put(resource.getRootPath(), properties);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a single resource of a path, using the resource cache if possible.<p>
+     *
+     * Concurrent cache misses for the same path wait for a single read from the VFS driver.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the id of the project to read the resource from
+     * @param path the root path of the resource
+     * @param filter the filter for reading a file, or <code>null</code> to read a folder
+     *
+     * @return the resource read
+     *
+     * @throws CmsException if something goes wrong
+     */
+    private CmsResource readPathResource(
+        final CmsDbContext dbc,
+        final CmsUUID projectId,
+        final String path,
+        final CmsResourceFilter filter)
+    throws CmsException {
+
+        if (!dbc.getProjectId().isNullUUID()) {
+            // reading inside a publish context, the cache must not be used
+            return readPathResourceFromDb(dbc, projectId, path, filter);
+        }
+        return m_monitor.getCachedResource(getCacheKey(null, false, projectId, path), new Callable<CmsResource>() {
+
+            public CmsResource call() throws CmsException {
+
+                return readPathResourceFromDb(dbc, projectId, path, filter);
+            }
+        });
+    }
+
+    /**
+     * Reads a single resource of a path from the VFS driver, bypassing the resource cache.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the id of the project to read the resource from
+     * @param path the root path of the resource
+     * @param filter the filter for reading a file, or <code>null</code> to read a folder
+     *
+     * @return the resource read
+     *
+     * @throws CmsException if something goes wrong
+     */
+    private CmsResource readPathResourceFromDb(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        String path,
+        CmsResourceFilter filter)
+    throws CmsException {
+
+        if (filter == null) {
+            return getVfsDriver(dbc).readFolder(dbc, projectId, path);
+        }
+        return getVfsDriver(dbc).readResource(dbc, projectId, path, filter.includeDeleted());
+    }
+
+    /**
+     * Reads the resources with the given root paths without any permission check,
+     * taking them from the resource cache where possible.<p>
+     *
+     * The resources read from the database are added to the resource cache, unless reading
+     * inside a publish context.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the id of the project to read the resources from
+     * @param resourcePaths the root paths of the resources, folders may be given without trailing slash
+     * @param includeDeleted <code>true</code> to also read deleted resources
+     *
+     * @return the resources that were found, by their root path
+     *
+     * @throws CmsException if something goes wrong
+     */
+    private Map<String, CmsResource> readPathResources(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        Collection<String> resourcePaths,
+        boolean includeDeleted)
+    throws CmsException {
+
+        boolean useCache = dbc.getProjectId().isNullUUID();
+        Map<String, CmsResource> resourcesByPath = new HashMap<String, CmsResource>();
+        Set<String> missingPaths = new LinkedHashSet<String>();
+        for (String path : resourcePaths) {
+            CmsResource cached = null;
+            if (useCache) {
+                cached = m_monitor.getCachedResource(getCacheKey(null, false, projectId, path));
+                if ((cached == null) && !CmsResource.isFolder(path)) {
+                    // the path of a folder may have been given without the trailing slash
+                    cached = m_monitor.getCachedResource(
+                        getCacheKey(null, false, projectId, CmsFileUtil.addTrailingSeparator(path)));
+                }
+            }
+            if ((cached != null) && (includeDeleted || !cached.getState().isDeleted())) {
+                resourcesByPath.put(cached.getRootPath(), cached.getCopy());
+            } else {
+                missingPaths.add(path);
+            }
+        }
+        if (!missingPaths.isEmpty()) {
+            List<CmsResource> resources = getVfsDriver(dbc).readResourcesByPath(
+                dbc,
+                projectId,
+                missingPaths,
+                includeDeleted);
+            cacheResources(dbc, projectId, resources);
+            for (CmsResource resource : resources) {
+                resourcesByPath.put(resource.getRootPath(), resource);
+            }
+        }
+        return resourcesByPath;
+    }
+
+    /**
+     * Reads all property objects mapped to a specified resource from the database, bypassing the property list cache.<p>
+     *
+     * All properties in the result List will be in frozen (read only) state.<p>
+     *
+     * @param dbc the current database context
+     * @param resource the resource where the properties are read from
+     * @param search true, if the properties should be searched on all parent folders  if not found on the resource
+     *
+     * @return a list of CmsProperty objects containing the structure and/or resource value
+     *
+     * @throws CmsException if something goes wrong
+     */
+    private List<CmsProperty> readPropertyObjectsFromDb(CmsDbContext dbc, CmsResource resource, boolean search)
+    throws CmsException {
+
+        List<CmsProperty> properties;
+        if (search) {
+            boolean cont;
+            properties = new ArrayList<CmsProperty>();
+            List<CmsProperty> parentProperties = null;
+
+            do {
+                try {
+                    parentProperties = readPropertyObjects(dbc, resource, false);
+
+                    // make sure properties from lower folders "overwrite" properties from upper folders
+                    parentProperties.removeAll(properties);
+                    parentProperties.addAll(properties);
+
+                    properties.clear();
+                    properties.addAll(parentProperties);
+
+                    cont = resource.getRootPath().length() > 1;
+                } catch (CmsSecurityException se) {
+                    // a security exception (probably no read permission) we return the current result
+                    cont = false;
+                }
+                if (cont) {
+                    // no permission check on parent folder is required since we must have "read"
+                    // permissions to read the child resource anyway
+                    resource = readResource(
+                        dbc,
+                        CmsResource.getParentFolder(resource.getRootPath()),
+                        CmsResourceFilter.ALL);
+                }
+            } while (cont);
+        } else {
+            properties = getVfsDriver(dbc).readPropertyObjects(dbc, dbc.currentProject(), resource);
+        }
+
+        // set all properties in the result list as frozen
+        CmsProperty.setFrozen(properties);
+        return properties;
+    }
+
     /**
      * Sorts the given list of {@link CmsAccessControlEntry} objects.<p>
      *
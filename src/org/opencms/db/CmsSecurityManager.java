@@ -44,6 +44,7 @@ import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsRequestContext;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.CmsResourceReadRecorder;
 import org.opencms.file.CmsUser;
 import org.opencms.file.CmsUserSearchParameters;
 import org.opencms.file.CmsVfsException;
@@ -2607,6 +2608,12 @@ public final class CmsSecurityManager {
             if (resource != null) {
                 checkPermissions(dbc, resource, CmsPermissionSet.ACCESS_VIEW, false, CmsResourceFilter.ALL);
             }
+            if ((resource == null) || filter.isTarget() || filter.isIncludeSubresources()) {
+                // the relations pointing to a resource are stored with other resources
+                CmsResourceReadRecorder.markIncomplete(context);
+            } else {
+                CmsResourceReadRecorder.recordResource(context, resource, false);
+            }
             result = m_driverManager.getRelationsForResource(dbc, resource, filter);
         } catch (Exception e) {
             dbc.report(
@@ -4126,6 +4133,7 @@ public final class CmsSecurityManager {
         try {
             // check the access permissions
             checkPermissions(dbc, resource, CmsPermissionSet.ACCESS_READ, true, CmsResourceFilter.ALL);
+            CmsResourceReadRecorder.recordFolder(context, resource);
             result = m_driverManager.readChildResources(dbc, resource, filter, getFolders, getFiles, true);
         } catch (Exception e) {
             dbc.report(
@@ -4246,6 +4254,7 @@ public final class CmsSecurityManager {
         CmsFile result = null;
         CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
         try {
+            CmsResourceReadRecorder.recordResource(context, resource, false);
             result = m_driverManager.readFile(dbc, resource);
         } catch (Exception e) {
             if (resource instanceof I_CmsHistoryResource) {
@@ -4846,6 +4855,7 @@ public final class CmsSecurityManager {
         CmsProperty result = null;
         CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
         try {
+            CmsResourceReadRecorder.recordResource(context, resource, search);
             if (null == locale) {
                 result = m_driverManager.readPropertyObject(dbc, resource, key, search);
             } else {
@@ -4889,6 +4899,7 @@ public final class CmsSecurityManager {
         List<CmsProperty> result = null;
         CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
         try {
+            CmsResourceReadRecorder.recordResource(context, resource, search);
             result = m_driverManager.readPropertyObjects(dbc, resource, search);
         } catch (Exception e) {
             dbc.report(
@@ -4901,6 +4912,45 @@ public final class CmsSecurityManager {
         return result;
     }
 
+    /**
+     * Reads all property objects mapped to the given resources.<p>
+     *
+     * @param context the context of the current request
+     * @param resources the resources to read the properties for
+     * @param search <code>true</code>, if the properties should be searched on all parent folders  if not found on the resource
+     *
+     * @return a map from the structure id of each resource to its list of <code>{@link CmsProperty}</code> objects
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see CmsObject#readPropertyObjects(List, boolean)
+     */
+    public Map<CmsUUID, List<CmsProperty>> readPropertyObjects(
+        CmsRequestContext context,
+        List<CmsResource> resources,
+        boolean search)
+    throws CmsException {
+
+        Map<CmsUUID, List<CmsProperty>> result = null;
+        CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
+        try {
+            if (CmsResourceReadRecorder.get(context) != null) {
+                for (CmsResource resource : resources) {
+                    CmsResourceReadRecorder.recordResource(context, resource, search);
+                }
+            }
+            result = m_driverManager.readPropertyObjects(dbc, resources, search);
+        } catch (Exception e) {
+            dbc.report(
+                null,
+                Messages.get().container(Messages.ERR_READ_PROPS_FOR_RESOURCES_1, new Integer(resources.size())),
+                e);
+        } finally {
+            dbc.clear();
+        }
+        return result;
+    }
+
     /**
      * Reads the resources that were published in a publish task for a given publish history ID.<p>
      *
@@ -5002,6 +5052,7 @@ public final class CmsSecurityManager {
         CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
         try {
             result = readResource(dbc, structureID, filter);
+            CmsResourceReadRecorder.recordResource(context, result, false);
         } catch (Exception e) {
             dbc.report(null, Messages.get().container(Messages.ERR_READ_RESOURCE_FOR_ID_1, structureID), e);
         } finally {
@@ -5046,6 +5097,8 @@ public final class CmsSecurityManager {
         CmsResource result = null;
         CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
         try {
+            // record the path before reading, the result also depends on a resource that does not exist
+            CmsResourceReadRecorder.recordRootPath(context, resourcePath);
             result = readResource(dbc, resourcePath, filter);
         } catch (Exception e) {
             dbc.report(
@@ -5086,6 +5139,7 @@ public final class CmsSecurityManager {
         try {
             // check the access permissions
             checkPermissions(dbc, parent, CmsPermissionSet.ACCESS_READ, true, CmsResourceFilter.ALL);
+            CmsResourceReadRecorder.recordFolder(context, parent);
             result = m_driverManager.readResources(dbc, parent, filter, readTree);
         } catch (Exception e) {
             dbc.report(
@@ -5098,6 +5152,86 @@ public final class CmsSecurityManager {
         return result;
     }
 
+    /**
+     * Reads the resources with the given structure ids, using the specified resource filter.<p>
+     *
+     * Resources that do not exist, do not match the filter or can not be read
+     * by the current user are skipped.<p>
+     *
+     * @param context the current request context
+     * @param structureIds the structure ids of the resources to read
+     * @param filter the resource filter to use while reading
+     *
+     * @return the resources that were read, in the order of the given ids
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see CmsObject#readResourcesById(Collection, CmsResourceFilter)
+     */
+    public List<CmsResource> readResourcesById(
+        CmsRequestContext context,
+        Collection<CmsUUID> structureIds,
+        CmsResourceFilter filter)
+    throws CmsException {
+
+        List<CmsResource> result = null;
+        CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
+        try {
+            result = m_driverManager.readResourcesById(dbc, structureIds, filter);
+            CmsResourceReadRecorder.recordResources(context, result);
+        } catch (Exception e) {
+            dbc.report(
+                null,
+                Messages.get().container(Messages.ERR_READ_RESOURCES_BY_ID_1, new Integer(structureIds.size())),
+                e);
+        } finally {
+            dbc.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Reads the resources with the given root paths, using the specified resource filter.<p>
+     *
+     * Resources that do not exist, do not match the filter or can not be read
+     * by the current user are skipped.<p>
+     *
+     * @param context the current request context
+     * @param resourcePaths the root paths of the resources to read
+     * @param filter the resource filter to use while reading
+     *
+     * @return the resources that were read, in the order of the given paths
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see CmsObject#readResourcesByPath(Collection, CmsResourceFilter)
+     */
+    public List<CmsResource> readResourcesByPath(
+        CmsRequestContext context,
+        Collection<String> resourcePaths,
+        CmsResourceFilter filter)
+    throws CmsException {
+
+        List<CmsResource> result = null;
+        CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
+        try {
+            if (CmsResourceReadRecorder.get(context) != null) {
+                for (String resourcePath : resourcePaths) {
+                    CmsResourceReadRecorder.recordRootPath(context, resourcePath);
+                }
+            }
+            result = m_driverManager.readResourcesByPath(dbc, resourcePaths, filter);
+        } catch (Exception e) {
+            dbc.report(
+                null,
+                Messages.get().container(Messages.ERR_READ_RESOURCES_BY_PATH_1, new Integer(resourcePaths.size())),
+                e);
+        } finally {
+            dbc.clear();
+        }
+        return result;
+    }
+
     /**
      * Returns the resources that were visited by a user set in the filter.<p>
      *
@@ -5158,6 +5292,7 @@ public final class CmsSecurityManager {
         CmsDbContext dbc = m_dbContextFactory.getDbContext(context);
         List<CmsResource> result = null;
         try {
+            CmsResourceReadRecorder.recordFolder(context, folder);
             result = m_driverManager.readResourcesWithProperty(dbc, folder, propertyDefinition, value, filter);
         } catch (Exception e) {
             dbc.report(
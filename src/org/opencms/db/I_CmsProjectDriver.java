@@ -637,6 +637,22 @@ public interface I_CmsProjectDriver {
      */
     void unmarkProjectResources(CmsDbContext dbc, CmsProject project) throws CmsDataAccessException;
 
+    /**
+     * Incrementally updates the locks stored in the database.<p>
+     *
+     * In contrast to {@link #writeLocks(CmsDbContext, List)}, the stored locks are not replaced,
+     * only the given lock entries are deleted and inserted. Each given lock is written as it is,
+     * i.e. the lists must contain the single system or edition locks which should be persisted.<p>
+     *
+     * @param dbc the current database context
+     * @param removedLocks the locks to delete from the database
+     * @param addedLocks the locks to insert into the database
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    void updateLocks(CmsDbContext dbc, List<CmsLock> removedLocks, List<CmsLock> addedLocks)
+    throws CmsDataAccessException;
+
     /**
      * Writes the <code>{@link List}&lt{@link org.opencms.lock.CmsLock};&gt; </code>
      * to the database for reuse in the next run of OpenCms.<p>
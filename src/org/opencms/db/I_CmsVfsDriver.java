@@ -570,6 +570,27 @@ public interface I_CmsVfsDriver {
     List<CmsProperty> readPropertyObjects(CmsDbContext dbc, CmsProject project, CmsResource resource)
     throws CmsDataAccessException;
 
+    /**
+     * Reads all property objects mapped to the given resources from the database.<p>
+     *
+     * The result maps the structure id of each given resource to the list of its properties,
+     * the list is empty if no properties are found for a resource.<p>
+     *
+     * @param dbc the current database context
+     * @param project the current project
+     * @param resources the resources to read the properties for
+     *
+     * @return the properties of the resources, by structure id
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     *
+     * @see #readPropertyObjects(CmsDbContext, CmsProject, CmsResource)
+     */
+    Map<CmsUUID, List<CmsProperty>> readPropertyObjects(
+        CmsDbContext dbc,
+        CmsProject project,
+        Collection<CmsResource> resources) throws CmsDataAccessException;
+
     /**
      * Reads all relations with the given filter for the given resource.<p>
      *
@@ -627,6 +648,48 @@ public interface I_CmsVfsDriver {
     List<CmsResource> readResources(CmsDbContext dbc, CmsUUID currentProject, CmsResourceState state, int mode)
     throws CmsDataAccessException;
 
+    /**
+     * Reads the resources with the given structure IDs.<p>
+     *
+     * The resources are read in chunks with as few database round trips as possible.
+     * IDs of resources that do not exist, or that are deleted if <code>includeDeleted</code>
+     * is <code>false</code>, are skipped. The order of the result is undefined.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the Id of the project
+     * @param structureIds the structure IDs of the resources to read
+     * @param includeDeleted true if already deleted files are included
+     *
+     * @return the resources that were read
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    List<CmsResource> readResourcesById(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        Collection<CmsUUID> structureIds,
+        boolean includeDeleted) throws CmsDataAccessException;
+
+    /**
+     * Reads the resources with the given root paths.<p>
+     *
+     * The resources are read in chunks with as few database round trips as possible.
+     * Paths of resources that do not exist, or that are deleted if <code>includeDeleted</code>
+     * is <code>false</code>, are skipped. The order of the result is undefined.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the Id of the project
+     * @param paths the root paths of the resources to read
+     * @param includeDeleted true if already deleted files are included
+     *
+     * @return the resources that were read
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    List<CmsResource> readResourcesByPath(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        Collection<String> paths,
+        boolean includeDeleted) throws CmsDataAccessException;
+
     /**
      * Returns all resources associated to a given principal via an ACE.<p>
      *
@@ -190,12 +190,18 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
     /** Attribute name for reading the project of a resource. */
     public static final String DBC_ATTR_READ_PROJECT_FOR_RESOURCE = "DBC_ATTR_READ_PROJECT_FOR_RESOURCE";
 
+    /** The default maximum number of rows queued in the statement batch while publishing a project. */
+    public static final int PUBLISH_BATCH_SIZE = 500;
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(org.opencms.db.generic.CmsProjectDriver.class);
 
     /** The driver manager. */
     protected CmsDriverManager m_driverManager;
 
+    /** The maximum number of rows queued in the statement batch while publishing a project. */
+    protected int m_publishBatchSize;
+
     /** The SQL manager. */
     protected CmsSqlManager m_sqlManager;
 
@@ -876,6 +882,8 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         m_sqlManager.init(I_CmsProjectDriver.DRIVER_TYPE_ID, poolUrl);
 
         m_driverManager = driverManager;
+        // a size below 2 disables the statement batch, then every row is written immediately
+        m_publishBatchSize = configuration.getInteger("db.project.publishBatchSize", PUBLISH_BATCH_SIZE);
 
         if (CmsLog.INIT.isInfoEnabled()) {
             CmsLog.INIT.info(Messages.get().getBundle().key(Messages.INIT_ASSIGNED_POOL_1, poolUrl));
@@ -1657,6 +1665,12 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         Set<CmsUUID> publishedContentIds = new HashSet<CmsUUID>();
         Set<CmsUUID> publishedIds = new HashSet<CmsUUID>();
 
+        // the publish history, the online relations and the online ACEs are inserted in batches
+        CmsStatementBatch batch = new CmsStatementBatch(m_publishBatchSize);
+        if (m_publishBatchSize > 1) {
+            batch.attach(dbc);
+        }
+
         try {
 
             ////////////////////////////////////////////////////////////////////////////////////////
@@ -1857,6 +1871,9 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
                 report.println(Messages.get().container(Messages.RPT_PUBLISH_FILES_END_0), I_CmsReport.FORMAT_HEADLINE);
             }
 
+            // write the remaining queued rows of the published folders and files
+            batch.execute(dbc);
+
             ////////////////////////////////////////////////////////////////////////////////////////
 
             // publish deleted folders
@@ -1926,6 +1943,9 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
                     Messages.get().container(Messages.RPT_DELETE_FOLDERS_END_0),
                     I_CmsReport.FORMAT_HEADLINE);
             }
+
+            // write the remaining queued rows of the deleted folders
+            batch.execute(dbc);
         } catch (OutOfMemoryError o) {
             // clear all caches to reclaim memory
             OpenCms.fireCmsEvent(
@@ -1937,6 +1957,15 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
             }
             throw new CmsDataAccessException(message, o);
         } finally {
+            batch.detach(dbc);
+            if (!batch.isEmpty()) {
+                // publishing was interrupted, keep the rows of the resources already published
+                try {
+                    batch.execute(dbc);
+                } catch (CmsDataAccessException e) {
+                    // already logged
+                }
+            }
             // reset vfs driver internal info after publishing
             m_driverManager.getVfsDriver(dbc).publishVersions(dbc, null, false);
             Object[] msgArgs = new Object[] {
@@ -2685,6 +2714,53 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         }
     }
 
+    /**
+     * @see org.opencms.db.I_CmsProjectDriver#updateLocks(org.opencms.db.CmsDbContext, java.util.List, java.util.List)
+     */
+    public void updateLocks(CmsDbContext dbc, List<CmsLock> removedLocks, List<CmsLock> addedLocks)
+    throws CmsDataAccessException {
+
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = m_sqlManager.getConnection(dbc);
+            if (!removedLocks.isEmpty()) {
+                stmt = m_sqlManager.getPreparedStatement(conn, "C_RESOURCE_LOCK_DELETE");
+                for (CmsLock lock : removedLocks) {
+                    internalSetLockParameters(stmt, lock);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                m_sqlManager.closeAll(dbc, null, stmt, null);
+                stmt = null;
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_DBG_CLEAR_LOCKS_1,
+                            new Integer(removedLocks.size())));
+                }
+            }
+            if (!addedLocks.isEmpty()) {
+                stmt = m_sqlManager.getPreparedStatement(conn, "C_RESOURCE_LOCK_WRITE");
+                for (CmsLock lock : addedLocks) {
+                    internalSetLockParameters(stmt, lock);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(
+                        Messages.get().getBundle().key(Messages.LOG_DBG_WRITE_LOCKS_1, new Integer(addedLocks.size())));
+                }
+            }
+        } catch (SQLException e) {
+            throw new CmsDbSqlException(
+                Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
+                e);
+        } finally {
+            m_sqlManager.closeAll(dbc, conn, stmt, null);
+        }
+    }
+
     /**
      * @see org.opencms.db.I_CmsProjectDriver#writeLocks(org.opencms.db.CmsDbContext, java.util.List)
      */
@@ -2699,6 +2775,7 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_DBG_CLEAR_LOCKS_1, new Integer(deleted)));
             }
+            m_sqlManager.closeAll(dbc, null, stmt, null);
             stmt = m_sqlManager.getPreparedStatement(conn, "C_RESOURCE_LOCK_WRITE");
             if (LOG.isDebugEnabled()) {
                 LOG.debug("SQL :" + m_sqlManager.readQuery("C_RESOURCE_LOCK_WRITE"));
@@ -2711,24 +2788,21 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
                 CmsLock sysLock = lock.getSystemLock();
                 if (sysLock.isPersistent()) {
                     // persist system lock
-                    stmt.setString(1, sysLock.getResourceName());
-                    stmt.setString(2, sysLock.getUserId().toString());
-                    stmt.setString(3, sysLock.getProjectId().toString());
-                    stmt.setInt(4, sysLock.getType().hashCode());
-                    stmt.executeUpdate();
+                    internalSetLockParameters(stmt, sysLock);
+                    stmt.addBatch();
                     count++;
                 }
                 CmsLock editLock = lock.getEditionLock();
                 if (editLock.isPersistent()) {
                     // persist edition lock
-                    stmt.setString(1, editLock.getResourceName());
-                    stmt.setString(2, editLock.getUserId().toString());
-                    stmt.setString(3, editLock.getProjectId().toString());
-                    stmt.setInt(4, editLock.getType().hashCode());
-                    stmt.executeUpdate();
+                    internalSetLockParameters(stmt, editLock);
+                    stmt.addBatch();
                     count++;
                 }
             }
+            if (count > 0) {
+                stmt.executeBatch();
+            }
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_DBG_WRITE_LOCKS_1, new Integer(count)));
             }
@@ -2779,6 +2853,25 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
     public void writePublishHistory(CmsDbContext dbc, CmsUUID publishId, CmsPublishedResource resource)
     throws CmsDataAccessException {
 
+        CmsStatementBatch batch = CmsStatementBatch.get(dbc);
+        if (batch != null) {
+            // a project is being published, the entries are written in batches
+            batch.add(
+                dbc,
+                m_sqlManager,
+                CmsUUID.getNullUUID(),
+                "C_RESOURCES_WRITE_PUBLISH_HISTORY",
+                Integer.valueOf(resource.getPublishTag()),
+                resource.getStructureId().toString(),
+                resource.getResourceId().toString(),
+                resource.getRootPath(),
+                Integer.valueOf(resource.getMovedState().getState()),
+                Integer.valueOf(resource.getType()),
+                publishId.toString(),
+                Integer.valueOf(resource.getSiblingCount()));
+            return;
+        }
+
         Connection conn = null;
         PreparedStatement stmt = null;
 
@@ -3219,6 +3312,23 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         return bout.toByteArray();
     }
 
+    /**
+     * Sets the resource path, user, project and lock type of the given lock
+     * as parameters of a resource lock statement.<p>
+     *
+     * @param stmt the statement to set the parameters for
+     * @param lock the single system or edition lock
+     *
+     * @throws SQLException if setting the parameters fails
+     */
+    protected void internalSetLockParameters(PreparedStatement stmt, CmsLock lock) throws SQLException {
+
+        stmt.setString(1, lock.getResourceName());
+        stmt.setString(2, lock.getUserId().toString());
+        stmt.setString(3, lock.getProjectId().toString());
+        stmt.setInt(4, lock.getType().hashCode());
+    }
+
     /**
      * Writes the needed history entries.<p>
      *
@@ -0,0 +1,310 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.db.generic;
+
+import org.opencms.db.CmsDbContext;
+import org.opencms.db.CmsDbSqlException;
+import org.opencms.file.CmsDataAccessException;
+import org.opencms.main.CmsLog;
+import org.opencms.util.CmsUUID;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Collects the parameters of insert statements, which are executed later with one JDBC batch per statement.<p>
+ *
+ * While a project is published, the generic project driver attaches a batch to the database context.
+ * The drivers then queue the inserts of rows that the following publish steps do not read back, instead of
+ * executing them one by one. Before a driver reads or changes rows of a table that may contain queued rows,
+ * it executes the queued statements with {@link #flush(CmsDbContext)}. The batch is also executed as soon as
+ * it contains the maximum number of rows.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsStatementBatch {
+
+    /**
+     * The rows queued for one statement.<p>
+     */
+    private static class CmsQueuedStatement {
+
+        /** The id of the project the statement is executed for. */
+        protected CmsUUID m_projectId;
+
+        /** The key of the SQL query. */
+        protected String m_queryKey;
+
+        /** The parameters of the queued rows. */
+        protected List<Object[]> m_rows = new ArrayList<Object[]>();
+
+        /** The SQL manager used to execute the statement. */
+        protected CmsSqlManager m_sqlManager;
+
+        /**
+         * Creates a new queued statement.<p>
+         *
+         * @param sqlManager the SQL manager used to execute the statement
+         * @param projectId the id of the project the statement is executed for
+         * @param queryKey the key of the SQL query
+         */
+        protected CmsQueuedStatement(CmsSqlManager sqlManager, CmsUUID projectId, String queryKey) {
+
+            m_sqlManager = sqlManager;
+            m_projectId = projectId;
+            m_queryKey = queryKey;
+        }
+    }
+
+    /** The database context attribute name used to store the batch. */
+    public static final String ATTRIBUTE_NAME = CmsStatementBatch.class.getName();
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsStatementBatch.class);
+
+    /** The maximum number of queued rows. */
+    private int m_maxSize;
+
+    /** The number of queued rows. */
+    private int m_size;
+
+    /** The queued statements, by project id and query key. */
+    private Map<String, CmsQueuedStatement> m_statements = new LinkedHashMap<String, CmsQueuedStatement>();
+
+    /**
+     * Creates a new statement batch.<p>
+     *
+     * @param maxSize the maximum number of queued rows, when it is reached the batch is executed
+     */
+    public CmsStatementBatch(int maxSize) {
+
+        m_maxSize = maxSize;
+    }
+
+    /**
+     * Executes the statements queued in the batch attached to the given database context, if there is one.<p>
+     *
+     * @param dbc the current database context
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    public static void flush(CmsDbContext dbc) throws CmsDataAccessException {
+
+        CmsStatementBatch batch = get(dbc);
+        if (batch != null) {
+            batch.execute(dbc);
+        }
+    }
+
+    /**
+     * Returns the batch attached to the given database context.<p>
+     *
+     * @param dbc the current database context
+     *
+     * @return the batch attached to the given database context, or <code>null</code>
+     */
+    public static CmsStatementBatch get(CmsDbContext dbc) {
+
+        return (CmsStatementBatch)dbc.getAttribute(ATTRIBUTE_NAME);
+    }
+
+    /**
+     * Queues a row for the given statement, and executes the batch if it is full.<p>
+     *
+     * The parameters must be <code>Integer</code> or <code>String</code> values.<p>
+     *
+     * @param dbc the current database context
+     * @param sqlManager the SQL manager used to execute the statement
+     * @param projectId the id of the project the statement is executed for
+     * @param queryKey the key of the SQL query
+     * @param params the parameters of the row
+     *
+     * @throws CmsDataAccessException if the batch is full and executing it fails
+     */
+    public void add(
+        CmsDbContext dbc,
+        CmsSqlManager sqlManager,
+        CmsUUID projectId,
+        String queryKey,
+        Object... params) throws CmsDataAccessException {
+
+        String key = projectId + "/" + queryKey;
+        CmsQueuedStatement statement = m_statements.get(key);
+        if (statement == null) {
+            statement = new CmsQueuedStatement(sqlManager, projectId, queryKey);
+            m_statements.put(key, statement);
+        }
+        statement.m_rows.add(params);
+        m_size++;
+        if (m_size >= m_maxSize) {
+            execute(dbc);
+        }
+    }
+
+    /**
+     * Attaches this batch to the given database context.<p>
+     *
+     * @param dbc the database context
+     */
+    public void attach(CmsDbContext dbc) {
+
+        dbc.setAttribute(ATTRIBUTE_NAME, this);
+    }
+
+    /**
+     * Checks if rows are queued for the given statement.<p>
+     *
+     * @param projectId the id of the project the statement is executed for
+     * @param queryKey the key of the SQL query
+     *
+     * @return <code>true</code> if rows are queued for the given statement
+     */
+    public boolean contains(CmsUUID projectId, String queryKey) {
+
+        return m_statements.containsKey(projectId + "/" + queryKey);
+    }
+
+    /**
+     * Checks if a row with the given parameter value is queued for the given statement.<p>
+     *
+     * @param projectId the id of the project the statement is executed for
+     * @param queryKey the key of the SQL query
+     * @param index the index of the parameter, starting with 0
+     * @param value the parameter value
+     *
+     * @return <code>true</code> if a row with the given parameter value is queued
+     */
+    public boolean contains(CmsUUID projectId, String queryKey, int index, Object value) {
+
+        CmsQueuedStatement statement = m_statements.get(projectId + "/" + queryKey);
+        if (statement != null) {
+            for (Object[] row : statement.m_rows) {
+                if (value.equals(row[index])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Detaches this batch from the given database context.<p>
+     *
+     * Queued rows are not executed.<p>
+     *
+     * @param dbc the database context
+     */
+    public void detach(CmsDbContext dbc) {
+
+        dbc.removeAttribute(ATTRIBUTE_NAME);
+    }
+
+    /**
+     * Executes all queued statements, with one JDBC batch per statement, and clears the batch.<p>
+     *
+     * @param dbc the current database context
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    public void execute(CmsDbContext dbc) throws CmsDataAccessException {
+
+        if (m_size == 0) {
+            return;
+        }
+        try {
+            for (CmsQueuedStatement statement : m_statements.values()) {
+                executeStatement(dbc, statement);
+            }
+        } finally {
+            m_statements.clear();
+            m_size = 0;
+        }
+    }
+
+    /**
+     * Checks if no rows are queued.<p>
+     *
+     * @return <code>true</code> if no rows are queued
+     */
+    public boolean isEmpty() {
+
+        return m_size == 0;
+    }
+
+    /**
+     * Executes the queued rows of a single statement as one JDBC batch.<p>
+     *
+     * @param dbc the current database context
+     * @param statement the queued statement
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    private void executeStatement(CmsDbContext dbc, CmsQueuedStatement statement) throws CmsDataAccessException {
+
+        CmsSqlManager sqlManager = statement.m_sqlManager;
+        Connection conn = null;
+        PreparedStatement stmt = null;
+
+        try {
+            conn = sqlManager.getConnection(dbc);
+            stmt = sqlManager.getPreparedStatement(conn, statement.m_projectId, statement.m_queryKey);
+            for (Object[] row : statement.m_rows) {
+                for (int i = 0; i < row.length; i++) {
+                    if (row[i] instanceof Integer) {
+                        stmt.setInt(i + 1, ((Integer)row[i]).intValue());
+                    } else {
+                        stmt.setString(i + 1, (String)row[i]);
+                    }
+                }
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            if (LOG.isErrorEnabled()) {
+                LOG.error(
+                    Messages.get().getBundle().key(
+                        Messages.ERR_EXECUTING_STATEMENT_BATCH_2,
+                        String.valueOf(statement.m_rows.size()),
+                        statement.m_queryKey),
+                    e);
+            }
+            throw new CmsDbSqlException(
+                Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
+                e);
+        } finally {
+            sqlManager.closeAll(dbc, conn, stmt, null);
+        }
+    }
+}
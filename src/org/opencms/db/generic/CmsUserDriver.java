@@ -1059,8 +1059,23 @@ public class CmsUserDriver implements I_CmsUserDriver {
             false);
         dbc.setProjectId(dbcProjectId);
 
+        CmsStatementBatch batch = CmsStatementBatch.get(dbc);
         for (CmsAccessControlEntry ace : aces) {
-            m_driverManager.getUserDriver(dbc).writeAccessControlEntry(dbc, onlineProject, ace);
+            if (batch != null) {
+                // a project is being published, the online entries have just been removed and are written in batches
+                batch.add(
+                    dbc,
+                    m_sqlManager,
+                    onlineProject.getUuid(),
+                    "C_ACCESS_CREATE_5",
+                    ace.getResource().toString(),
+                    ace.getPrincipal().toString(),
+                    Integer.valueOf(ace.getAllowedPermissions()),
+                    Integer.valueOf(ace.getDeniedPermissions()),
+                    Integer.valueOf(ace.getFlags()));
+            } else {
+                m_driverManager.getUserDriver(dbc).writeAccessControlEntry(dbc, onlineProject, ace);
+            }
         }
     }
 
@@ -1073,6 +1088,11 @@ public class CmsUserDriver implements I_CmsUserDriver {
         CmsUUID resource,
         boolean inheritedOnly) throws CmsDataAccessException {
 
+        flushQueuedAccessControlEntries(
+            dbc,
+            project,
+            resource.equals(CmsAccessControlEntry.PRINCIPAL_READALL_ID) ? null : resource);
+
         List<CmsAccessControlEntry> aceList = new ArrayList<CmsAccessControlEntry>();
         PreparedStatement stmt = null;
         Connection conn = null;
@@ -1120,6 +1140,8 @@ public class CmsUserDriver implements I_CmsUserDriver {
         CmsUUID resource,
         CmsUUID principal) throws CmsDataAccessException {
 
+        flushQueuedAccessControlEntries(dbc, project, resource);
+
         CmsAccessControlEntry ace = null;
         PreparedStatement stmt = null;
         Connection conn = null;
@@ -1600,6 +1622,8 @@ public class CmsUserDriver implements I_CmsUserDriver {
     public void removeAccessControlEntries(CmsDbContext dbc, CmsProject project, CmsUUID resource)
     throws CmsDataAccessException {
 
+        flushQueuedAccessControlEntries(dbc, project, resource);
+
         PreparedStatement stmt = null;
         Connection conn = null;
 
@@ -1629,6 +1653,8 @@ public class CmsUserDriver implements I_CmsUserDriver {
         CmsProject onlineProject,
         CmsUUID principal) throws CmsDataAccessException {
 
+        flushQueuedAccessControlEntries(dbc, onlineProject, null);
+
         PreparedStatement stmt = null;
         Connection conn = null;
         // TODO: refactor for only one project at a time
@@ -1668,6 +1694,8 @@ public class CmsUserDriver implements I_CmsUserDriver {
     public void removeAccessControlEntry(CmsDbContext dbc, CmsProject project, CmsUUID resource, CmsUUID principal)
     throws CmsDataAccessException {
 
+        flushQueuedAccessControlEntries(dbc, project, resource);
+
         PreparedStatement stmt = null;
         Connection conn = null;
 
@@ -1846,6 +1874,8 @@ public class CmsUserDriver implements I_CmsUserDriver {
     public void writeAccessControlEntry(CmsDbContext dbc, CmsProject project, CmsAccessControlEntry acEntry)
     throws CmsDataAccessException {
 
+        flushQueuedAccessControlEntries(dbc, project, acEntry.getResource());
+
         PreparedStatement stmt = null;
         Connection conn = null;
         ResultSet res = null;
@@ -2143,6 +2173,27 @@ public class CmsUserDriver implements I_CmsUserDriver {
         return new CmsUserQueryBuilder();
     }
 
+    /**
+     * Executes the access control entry inserts queued while publishing, if one of them is for the given resource.<p>
+     *
+     * @param dbc the current database context
+     * @param project the project whose access control entries are read or changed
+     * @param resource the id of the resource, or <code>null</code> to execute the inserts if any are queued
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    protected void flushQueuedAccessControlEntries(CmsDbContext dbc, CmsProject project, CmsUUID resource)
+    throws CmsDataAccessException {
+
+        CmsStatementBatch batch = CmsStatementBatch.get(dbc);
+        if ((batch != null)
+            && ((resource == null)
+            ? batch.contains(project.getUuid(), "C_ACCESS_CREATE_5")
+            : batch.contains(project.getUuid(), "C_ACCESS_CREATE_5", 0, resource.toString()))) {
+            batch.execute(dbc);
+        }
+    }
+
     /**
      * Internal helper method to create an access control entry from a database record.<p>
      *
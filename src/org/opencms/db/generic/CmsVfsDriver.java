@@ -90,6 +90,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -109,19 +111,18 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
     /** Contains the macro replacement value for the online project. */
     protected static final String ONLINE = "ONLINE";
 
+    /** The maximum number of values in the IN list of a single batch read query. */
+    protected static final int READ_RESOURCES_CHUNK_SIZE = 500;
+
+    /** Attribute name for the ids of the resources with a resource operation in the current publish job. */
+    private static final String DBC_ATTR_PUBLISH_RESOURCE_OPERATIONS = "DBC_ATTR_PUBLISH_RESOURCE_OPERATIONS";
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(org.opencms.db.generic.CmsVfsDriver.class);
 
     /** The driver manager. */
     protected CmsDriverManager m_driverManager;
 
-    /**
-     * This field is temporarily used to compute the versions during publishing.<p>
-     *
-     * @see #publishVersions(CmsDbContext, CmsResource, boolean)
-     */
-    protected List<CmsUUID> m_resOp = new ArrayList<CmsUUID>();
-
     /** The sql manager. */
     protected CmsSqlManager m_sqlManager;
 
@@ -562,6 +563,24 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
     public void createRelation(CmsDbContext dbc, CmsUUID projectId, CmsRelation relation)
     throws CmsDataAccessException {
 
+        CmsStatementBatch batch = CmsStatementBatch.get(dbc);
+        if ((batch != null)
+            && (relation.getType().getId() != CmsRelationType.LOCALE_VARIANT.getId())
+            && (relation.getType().getId() != CmsRelationType.OU_RESOURCE.getId())) {
+            // a project is being published, the relations are written in batches
+            batch.add(
+                dbc,
+                m_sqlManager,
+                projectId,
+                "C_CREATE_RELATION",
+                relation.getSourceId().toString(),
+                relation.getSourcePath(),
+                relation.getTargetId().toString(),
+                relation.getTargetPath(),
+                Integer.valueOf(relation.getType().getId()));
+            return;
+        }
+
         Connection conn = null;
         PreparedStatement stmt = null;
 
@@ -1153,6 +1172,8 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
     public void deleteRelations(CmsDbContext dbc, CmsUUID projectId, CmsResource resource, CmsRelationFilter filter)
     throws CmsDataAccessException {
 
+        flushQueuedRelations(dbc, projectId, resource, filter);
+
         Connection conn = null;
         PreparedStatement stmt = null;
 
@@ -1659,7 +1680,7 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
 
         // if resource is null just flush the internal cache
         if (resource == null) {
-            m_resOp.clear();
+            dbc.removeAttribute(DBC_ATTR_PUBLISH_RESOURCE_OPERATIONS);
             return;
         }
 
@@ -1668,9 +1689,11 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
             return;
         }
 
+        // kept per publish job, since publish jobs for independent resources may run in parallel
+        Set<CmsUUID> resourceOperations = getPublishResourceOperations(dbc);
         if (firstSibling) {
             // reset the resource operation flag
-            m_resOp.remove(resource.getResourceId());
+            resourceOperations.remove(resource.getResourceId());
         }
 
         boolean resOp = false; // assume structure operation
@@ -1692,7 +1715,7 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
             if (resOp) {
                 return;
             }
-            if (m_resOp.contains(resource.getResourceId())) {
+            if (resourceOperations.contains(resource.getResourceId())) {
                 return;
             }
         }
@@ -1708,7 +1731,7 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
 
         if (resOp) {
             if (resource.getSiblingCount() > 1) {
-                m_resOp.add(resource.getResourceId());
+                resourceOperations.add(resource.getResourceId());
             }
             resVersion++;
         }
@@ -2218,6 +2241,114 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         return new ArrayList<CmsProperty>(propertyMap.values());
     }
 
+    /**
+     * @see org.opencms.db.I_CmsVfsDriver#readPropertyObjects(org.opencms.db.CmsDbContext, org.opencms.file.CmsProject, java.util.Collection)
+     */
+    public Map<CmsUUID, List<CmsProperty>> readPropertyObjects(
+        CmsDbContext dbc,
+        CmsProject project,
+        Collection<CmsResource> resources) throws CmsDataAccessException {
+
+        CmsUUID projectId = ((dbc.getProjectId() == null) || dbc.getProjectId().isNullUUID())
+        ? project.getUuid()
+        : dbc.getProjectId();
+
+        // the resources a property mapping id belongs to, this is a resource id for all siblings
+        Map<String, List<CmsResource>> resourcesByMappingId = new LinkedHashMap<String, List<CmsResource>>();
+        Map<CmsUUID, Map<String, CmsProperty>> propertyMaps = new HashMap<CmsUUID, Map<String, CmsProperty>>();
+        for (CmsResource resource : resources) {
+            if (propertyMaps.put(resource.getStructureId(), new HashMap<String, CmsProperty>()) != null) {
+                continue;
+            }
+            for (String mappingId : new String[] {
+                resource.getStructureId().toString(),
+                resource.getResourceId().toString()}) {
+                List<CmsResource> mapped = resourcesByMappingId.get(mappingId);
+                if (mapped == null) {
+                    mapped = new ArrayList<CmsResource>(1);
+                    resourcesByMappingId.put(mappingId, mapped);
+                }
+                mapped.add(resource);
+            }
+        }
+
+        List<String> mappingIds = new ArrayList<String>(resourcesByMappingId.keySet());
+        String query = m_sqlManager.readQuery(projectId, "C_PROPERTIES_READALL_FOR_RESOURCES");
+        for (int start = 0; start < mappingIds.size(); start += READ_RESOURCES_CHUNK_SIZE) {
+            List<String> chunk = mappingIds.subList(
+                start,
+                Math.min(start + READ_RESOURCES_CHUNK_SIZE, mappingIds.size()));
+            StringBuffer queryBuf = new StringBuffer(query.length() + (chunk.size() * 2) + 8);
+            queryBuf.append(query);
+            queryBuf.append(" IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                queryBuf.append(i == 0 ? "?" : ",?");
+            }
+            queryBuf.append(")");
+
+            ResultSet res = null;
+            PreparedStatement stmt = null;
+            Connection conn = null;
+            try {
+                conn = m_sqlManager.getConnection(dbc);
+                stmt = m_sqlManager.getPreparedStatementForSql(conn, queryBuf.toString());
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setString(i + 1, chunk.get(i));
+                }
+                res = stmt.executeQuery();
+
+                while (res.next()) {
+                    String propertyKey = res.getString(1);
+                    String propertyValue = res.getString(2);
+                    int mappingType = res.getInt(3);
+                    List<CmsResource> mapped = resourcesByMappingId.get(res.getString(4));
+                    if (mapped == null) {
+                        continue;
+                    }
+
+                    for (CmsResource resource : mapped) {
+                        Map<String, CmsProperty> propertyMap = propertyMaps.get(resource.getStructureId());
+                        CmsProperty property = propertyMap.get(propertyKey);
+                        if (property == null) {
+                            // there doesn't exist a property object for this key yet
+                            property = new CmsProperty();
+                            property.setName(propertyKey);
+                            propertyMap.put(propertyKey, property);
+                        }
+
+                        if (mappingType == CmsProperty.STRUCTURE_RECORD_MAPPING) {
+                            // this property value is mapped to a structure record
+                            property.setStructureValue(propertyValue);
+                        } else if (mappingType == CmsProperty.RESOURCE_RECORD_MAPPING) {
+                            // this property value is mapped to a resource record
+                            property.setResourceValue(propertyValue);
+                        } else {
+                            throw new CmsDbConsistencyException(
+                                Messages.get().container(
+                                    Messages.ERR_UNKNOWN_PROPERTY_VALUE_MAPPING_3,
+                                    resource.getRootPath(),
+                                    new Integer(mappingType),
+                                    propertyKey));
+                        }
+                        property.setOrigin(resource.getRootPath());
+                    }
+                }
+            } catch (SQLException e) {
+                throw new CmsDbSqlException(
+                    Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
+                    e);
+            } finally {
+                m_sqlManager.closeAll(dbc, conn, stmt, res);
+            }
+        }
+
+        Map<CmsUUID, List<CmsProperty>> result = new HashMap<CmsUUID, List<CmsProperty>>(propertyMaps.size());
+        for (Map.Entry<CmsUUID, Map<String, CmsProperty>> entry : propertyMaps.entrySet()) {
+            result.put(entry.getKey(), new ArrayList<CmsProperty>(entry.getValue().values()));
+        }
+        return result;
+    }
+
     /**
      * @see org.opencms.db.I_CmsVfsDriver#readRelations(org.opencms.db.CmsDbContext, CmsUUID, CmsResource, org.opencms.relations.CmsRelationFilter)
      */
@@ -2227,6 +2358,8 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         CmsResource resource,
         CmsRelationFilter filter) throws CmsDataAccessException {
 
+        flushQueuedRelations(dbc, projectId, resource, filter);
+
         Set<CmsRelation> relations = new HashSet<CmsRelation>();
 
         Connection conn = null;
@@ -2457,6 +2590,77 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         return result;
     }
 
+    /**
+     * @see org.opencms.db.I_CmsVfsDriver#readResourcesById(org.opencms.db.CmsDbContext, org.opencms.util.CmsUUID, java.util.Collection, boolean)
+     */
+    public List<CmsResource> readResourcesById(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        Collection<CmsUUID> structureIds,
+        boolean includeDeleted) throws CmsDataAccessException {
+
+        Set<String> ids = new LinkedHashSet<String>(structureIds.size());
+        for (CmsUUID structureId : structureIds) {
+            ids.add(structureId.toString());
+        }
+        List<CmsResource> resources = internalReadResources(dbc, projectId, "C_RESOURCES_READ_BY_IDS", ids);
+        List<CmsResource> result = new ArrayList<CmsResource>(resources.size());
+        for (CmsResource resource : resources) {
+            if (includeDeleted || !resource.getState().isDeleted()) {
+                result.add(resource);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see org.opencms.db.I_CmsVfsDriver#readResourcesByPath(org.opencms.db.CmsDbContext, org.opencms.util.CmsUUID, java.util.Collection, boolean)
+     */
+    public List<CmsResource> readResourcesByPath(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        Collection<String> paths,
+        boolean includeDeleted) throws CmsDataAccessException {
+
+        // maps the path without trailing slash to the information if a file may be returned for it,
+        // which is not the case if the path was only requested with a trailing slash
+        Map<String, Boolean> filesAllowed = new LinkedHashMap<String, Boolean>(paths.size());
+        for (String path : paths) {
+            String queryPath = CmsFileUtil.removeTrailingSeparator(path);
+            boolean fileAllowed = queryPath.length() == path.length();
+            if (!Boolean.TRUE.equals(filesAllowed.get(queryPath))) {
+                filesAllowed.put(queryPath, Boolean.valueOf(fileAllowed));
+            }
+        }
+        List<CmsResource> resources = internalReadResources(
+            dbc,
+            projectId,
+            "C_RESOURCES_READ_BY_PATHS",
+            filesAllowed.keySet());
+
+        Map<String, CmsResource> result = new LinkedHashMap<String, CmsResource>(resources.size());
+        for (CmsResource resource : resources) {
+            String queryPath = CmsFileUtil.removeTrailingSeparator(resource.getRootPath());
+            Boolean fileAllowed = filesAllowed.get(queryPath);
+            if ((fileAllowed == null) || (resource.isFile() && !fileAllowed.booleanValue())) {
+                // path did not match exactly (case insensitive database) or file requested as folder
+                continue;
+            }
+            CmsResource existing = result.get(queryPath);
+            if ((existing == null) || existing.getState().isDeleted()) {
+                // like C_RESOURCES_READ, prefer a resource that is not deleted
+                result.put(queryPath, resource);
+            }
+        }
+        List<CmsResource> resultList = new ArrayList<CmsResource>(result.size());
+        for (CmsResource resource : result.values()) {
+            if (includeDeleted || !resource.getState().isDeleted()) {
+                resultList.add(resource);
+            }
+        }
+        return resultList;
+    }
+
     /**
      * @see org.opencms.db.I_CmsVfsDriver#readResourcesForPrincipalACE(org.opencms.db.CmsDbContext, org.opencms.file.CmsProject, org.opencms.util.CmsUUID)
      */
@@ -3648,6 +3852,80 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         }
     }
 
+    /**
+     * Executes the relation inserts queued while publishing, if one of them has the given parameter value.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the id of the project whose relations are read or changed
+     * @param index the index of the parameter of the queued relation insert, starting with 0
+     * @param value the parameter value, or <code>null</code> to execute the inserts if any are queued
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    protected void flushQueuedRelations(CmsDbContext dbc, CmsUUID projectId, int index, String value)
+    throws CmsDataAccessException {
+
+        CmsStatementBatch batch = CmsStatementBatch.get(dbc);
+        if ((batch != null)
+            && ((value == null)
+            ? batch.contains(projectId, "C_CREATE_RELATION")
+            : batch.contains(projectId, "C_CREATE_RELATION", index, value))) {
+            batch.execute(dbc);
+        }
+    }
+
+    /**
+     * Executes the relation inserts queued while publishing, if the given relation filter may select one of them.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the id of the project whose relations are read or changed
+     * @param resource the resource used as source and/or target, may be <code>null</code>
+     * @param filter the relation filter
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    protected void flushQueuedRelations(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        CmsResource resource,
+        CmsRelationFilter filter) throws CmsDataAccessException {
+
+        if ((resource == null) || filter.isIncludeSubresources()) {
+            flushQueuedRelations(dbc, projectId, 0, null);
+            return;
+        }
+        String structureId = resource.getStructureId().toString();
+        if (filter.isTarget()) {
+            // the relations with the resource as source
+            flushQueuedRelations(dbc, projectId, 0, structureId);
+        }
+        if (filter.isSource()) {
+            // the relations with the resource as target
+            flushQueuedRelations(dbc, projectId, 2, structureId);
+        }
+    }
+
+    /**
+     * Returns the ids of the resources which already had a resource operation in the publish job
+     * of the given database context.<p>
+     *
+     * @param dbc the current database context
+     *
+     * @return the ids of the resources which already had a resource operation
+     *
+     * @see #publishVersions(CmsDbContext, CmsResource, boolean)
+     */
+    protected Set<CmsUUID> getPublishResourceOperations(CmsDbContext dbc) {
+
+        @SuppressWarnings("unchecked")
+        Set<CmsUUID> resourceOperations = (Set<CmsUUID>)dbc.getAttribute(DBC_ATTR_PUBLISH_RESOURCE_OPERATIONS);
+        if (resourceOperations == null) {
+            resourceOperations = new HashSet<CmsUUID>();
+            dbc.setAttribute(DBC_ATTR_PUBLISH_RESOURCE_OPERATIONS, resourceOperations);
+        }
+        return resourceOperations;
+    }
+
     /**
      * Returns the count of properties for a property definition.<p>
      *
@@ -3926,6 +4204,69 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         return state;
     }
 
+    /**
+     * Reads resources with a query that is completed with an IN list of the given values.<p>
+     *
+     * The values are split into chunks of at most {@link #READ_RESOURCES_CHUNK_SIZE} entries,
+     * each chunk is read with a single query.<p>
+     *
+     * @param dbc the current database context
+     * @param projectId the id of the project
+     * @param queryKey the key of the query, which must end with the column to match
+     * @param values the values to match
+     *
+     * @return the resources that were read
+     *
+     * @throws CmsDataAccessException if something goes wrong
+     */
+    protected List<CmsResource> internalReadResources(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        String queryKey,
+        Collection<String> values) throws CmsDataAccessException {
+
+        List<CmsResource> result = new ArrayList<CmsResource>(values.size());
+        if (values.isEmpty()) {
+            return result;
+        }
+        List<String> valueList = new ArrayList<String>(values);
+        String query = m_sqlManager.readQuery(projectId, queryKey);
+        for (int start = 0; start < valueList.size(); start += READ_RESOURCES_CHUNK_SIZE) {
+            List<String> chunk = valueList.subList(
+                start,
+                Math.min(start + READ_RESOURCES_CHUNK_SIZE, valueList.size()));
+            StringBuffer queryBuf = new StringBuffer(query.length() + (chunk.size() * 2) + 8);
+            queryBuf.append(query);
+            queryBuf.append(" IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                queryBuf.append(i == 0 ? "?" : ",?");
+            }
+            queryBuf.append(")");
+
+            ResultSet res = null;
+            PreparedStatement stmt = null;
+            Connection conn = null;
+            try {
+                conn = m_sqlManager.getConnection(dbc);
+                stmt = m_sqlManager.getPreparedStatementForSql(conn, queryBuf.toString());
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setString(i + 1, chunk.get(i));
+                }
+                res = stmt.executeQuery();
+                while (res.next()) {
+                    result.add(createResource(res, projectId));
+                }
+            } catch (SQLException e) {
+                throw new CmsDbSqlException(
+                    Messages.get().container(Messages.ERR_GENERIC_SQL_1, CmsDbSqlException.getErrorQuery(stmt)),
+                    e);
+            } finally {
+                m_sqlManager.closeAll(dbc, conn, stmt, res);
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns the structure state of the given resource.<p>
      *
@@ -4104,6 +4445,9 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
     protected void moveRelations(CmsDbContext dbc, CmsUUID projectId, CmsUUID structureId, String rootPath)
     throws CmsDataAccessException {
 
+        flushQueuedRelations(dbc, projectId, 0, structureId.toString());
+        flushQueuedRelations(dbc, projectId, 2, structureId.toString());
+
         Connection conn = null;
         PreparedStatement stmt = null;
 
@@ -4641,6 +4985,8 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
     protected void repairBrokenRelations(CmsDbContext dbc, CmsUUID projectId, CmsUUID structureId, String rootPath)
     throws CmsDataAccessException {
 
+        flushQueuedRelations(dbc, projectId, 3, rootPath);
+
         PreparedStatement stmt = null;
         Connection conn = null;
 
@@ -4674,6 +5020,8 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
     protected void updateBrokenRelations(CmsDbContext dbc, CmsUUID projectId, String rootPath)
     throws CmsDataAccessException {
 
+        flushQueuedRelations(dbc, projectId, 3, rootPath);
+
         PreparedStatement stmt = null;
         Connection conn = null;
         try {
@@ -67,6 +67,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String ERR_ERROR_PUBLISHING_FOLDER_1 = "ERR_ERROR_PUBLISHING_FOLDER_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String ERR_EXECUTING_STATEMENT_BATCH_2 = "ERR_EXECUTING_STATEMENT_BATCH_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String ERR_GENERIC_SQL_0 = "ERR_GENERIC_SQL_0";
 
@@ -201,6 +201,9 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
     /** Query key. */
     private static final String C_PUBLISHJOB_READ_REPORT = "C_PUBLISHJOB_READ_REPORT";
 
+    /** Query key. */
+    private static final String C_RESOURCE_LOCK_DELETE = "C_RESOURCE_LOCK_DELETE";
+
     /** Query key. */
     private static final String C_RESOURCE_LOCKS_DELETEALL = "C_RESOURCE_LOCKS_DELETEALL";
 
@@ -2395,6 +2398,46 @@ public class CmsProjectDriver implements I_CmsDriver, I_CmsProjectDriver {
         }
     }
 
+    /**
+     * @see org.opencms.db.I_CmsProjectDriver#updateLocks(org.opencms.db.CmsDbContext, java.util.List, java.util.List)
+     */
+    public void updateLocks(CmsDbContext dbc, List<CmsLock> removedLocks, List<CmsLock> addedLocks)
+    throws CmsDataAccessException {
+
+        try {
+            int deleted = 0;
+            for (CmsLock lock : removedLocks) {
+                Query q = m_sqlManager.createQuery(dbc, C_RESOURCE_LOCK_DELETE);
+                q.setParameter(1, lock.getResourceName());
+                q.setParameter(2, lock.getUserId().toString());
+                q.setParameter(3, lock.getProjectId().toString());
+                q.setParameter(4, Integer.valueOf(lock.getType().hashCode()));
+                List<CmsDAOResourceLocks> res = q.getResultList();
+                for (CmsDAOResourceLocks r : res) {
+                    m_sqlManager.remove(dbc, r);
+                    deleted++;
+                }
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_DBG_CLEAR_LOCKS_1, new Integer(deleted)));
+            }
+            for (CmsLock lock : addedLocks) {
+                CmsDAOResourceLocks rl = new CmsDAOResourceLocks();
+                rl.setResourcePath(lock.getResourceName());
+                rl.setUserId(lock.getUserId().toString());
+                rl.setProjectId(lock.getProjectId().toString());
+                rl.setLockType(lock.getType().hashCode());
+                m_sqlManager.persist(dbc, rl);
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(
+                    Messages.get().getBundle().key(Messages.LOG_DBG_WRITE_LOCKS_1, new Integer(addedLocks.size())));
+            }
+        } catch (PersistenceException e) {
+            throw new CmsDataAccessException(Messages.get().container(Messages.ERR_JPA_PERSITENCE_1, e), e);
+        }
+    }
+
     /**
      * @see org.opencms.db.I_CmsProjectDriver#writeLocks(org.opencms.db.CmsDbContext, java.util.List)
      */
@@ -2257,6 +2257,24 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         return new ArrayList<CmsProperty>(propertyMap.values());
     }
 
+    /**
+     * @see org.opencms.db.I_CmsVfsDriver#readPropertyObjects(org.opencms.db.CmsDbContext, org.opencms.file.CmsProject, java.util.Collection)
+     */
+    public Map<CmsUUID, List<CmsProperty>> readPropertyObjects(
+        CmsDbContext dbc,
+        CmsProject project,
+        Collection<CmsResource> resources) throws CmsDataAccessException {
+
+        // no batch query here, read the properties resource by resource
+        Map<CmsUUID, List<CmsProperty>> result = new HashMap<CmsUUID, List<CmsProperty>>(resources.size());
+        for (CmsResource resource : resources) {
+            if (!result.containsKey(resource.getStructureId())) {
+                result.put(resource.getStructureId(), readPropertyObjects(dbc, project, resource));
+            }
+        }
+        return result;
+    }
+
     /**
      * @see org.opencms.db.I_CmsVfsDriver#readRelations(org.opencms.db.CmsDbContext, CmsUUID, CmsResource, org.opencms.relations.CmsRelationFilter)
      */
@@ -2440,6 +2458,52 @@ public class CmsVfsDriver implements I_CmsDriver, I_CmsVfsDriver {
         return result;
     }
 
+    /**
+     * @see org.opencms.db.I_CmsVfsDriver#readResourcesById(org.opencms.db.CmsDbContext, org.opencms.util.CmsUUID, java.util.Collection, boolean)
+     */
+    public List<CmsResource> readResourcesById(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        Collection<CmsUUID> structureIds,
+        boolean includeDeleted) throws CmsDataAccessException {
+
+        // no batch query here, read the resources one by one
+        List<CmsResource> result = new ArrayList<CmsResource>(structureIds.size());
+        for (CmsUUID structureId : new HashSet<CmsUUID>(structureIds)) {
+            try {
+                result.add(readResource(dbc, projectId, structureId, includeDeleted));
+            } catch (CmsVfsResourceNotFoundException e) {
+                // skip resources that do not exist
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see org.opencms.db.I_CmsVfsDriver#readResourcesByPath(org.opencms.db.CmsDbContext, org.opencms.util.CmsUUID, java.util.Collection, boolean)
+     */
+    public List<CmsResource> readResourcesByPath(
+        CmsDbContext dbc,
+        CmsUUID projectId,
+        Collection<String> paths,
+        boolean includeDeleted) throws CmsDataAccessException {
+
+        // no batch query here, read the resources one by one
+        List<CmsResource> result = new ArrayList<CmsResource>(paths.size());
+        Set<CmsUUID> readIds = new HashSet<CmsUUID>();
+        for (String path : paths) {
+            try {
+                CmsResource resource = readResource(dbc, projectId, path, includeDeleted);
+                if (readIds.add(resource.getStructureId())) {
+                    result.add(resource);
+                }
+            } catch (CmsVfsResourceNotFoundException e) {
+                // skip resources that do not exist
+            }
+        }
+        return result;
+    }
+
     /**
      * @see org.opencms.db.I_CmsVfsDriver#readResourcesForPrincipalACE(org.opencms.db.CmsDbContext, org.opencms.file.CmsProject, org.opencms.util.CmsUUID)
      */
@@ -68,6 +68,7 @@ import org.opencms.util.CmsUUID;
 import org.opencms.xml.content.CmsNumberSuffixNameSequence;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -2986,6 +2987,30 @@ public final class CmsObject {
         return m_securityManager.readPropertyObjects(m_context, resource, search);
     }
 
+    /**
+     * Reads all property objects from a list of resources.<p>
+     *
+     * This is much more efficient than calling <code>{@link #readPropertyObjects(CmsResource, boolean)}</code>
+     * for each resource, since the properties of all resources (and their parent folders,
+     * if <code>search</code> is <code>true</code>) are read with as few database queries as possible.<p>
+     *
+     * For each resource, the result contains the same list of properties
+     * <code>{@link #readPropertyObjects(CmsResource, boolean)}</code> would return.<p>
+     *
+     * @param resources the resources to read the properties from
+     * @param search if <code>true</code>, the properties of all parent folders of a resource
+     *      are merged with the resource properties.
+     *
+     * @return a map from the structure id of each resource to its list of <code>{@link CmsProperty}</code> objects
+     *
+     * @throws CmsException if something goes wrong
+     */
+    public Map<CmsUUID, List<CmsProperty>> readPropertyObjects(List<CmsResource> resources, boolean search)
+    throws CmsException {
+
+        return m_securityManager.readPropertyObjects(m_context, resources, search);
+    }
+
     /**
      * Reads all property objects from a resource.<p>
      *
@@ -3256,6 +3281,86 @@ public final class CmsObject {
         return m_securityManager.readResources(m_context, resource, filter, readTree);
     }
 
+    /**
+     * Reads the resources with the given structure ids, using the {@link CmsResourceFilter#DEFAULT} filter.<p>
+     *
+     * This is much faster than reading the resources one by one with {@link #readResource(CmsUUID)},
+     * since the resources are read with as few database queries as possible.<p>
+     *
+     * @param structureIds the structure ids of the resources to read
+     *
+     * @return the resources that were read, in the order of the given ids
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see #readResourcesById(Collection, CmsResourceFilter)
+     */
+    public List<CmsResource> readResourcesById(Collection<CmsUUID> structureIds) throws CmsException {
+
+        return readResourcesById(structureIds, CmsResourceFilter.DEFAULT);
+    }
+
+    /**
+     * Reads the resources with the given structure ids, using the specified resource filter.<p>
+     *
+     * Resources that do not exist, do not match the filter or can not be read by the
+     * current user are skipped, so the result may contain fewer resources than ids were given.<p>
+     *
+     * @param structureIds the structure ids of the resources to read
+     * @param filter the resource filter to use while reading
+     *
+     * @return the resources that were read, in the order of the given ids
+     *
+     * @throws CmsException if something goes wrong
+     */
+    public List<CmsResource> readResourcesById(Collection<CmsUUID> structureIds, CmsResourceFilter filter)
+    throws CmsException {
+
+        return m_securityManager.readResourcesById(m_context, structureIds, filter);
+    }
+
+    /**
+     * Reads the resources with the given paths, using the {@link CmsResourceFilter#DEFAULT} filter.<p>
+     *
+     * This is much faster than reading the resources one by one with {@link #readResource(String)},
+     * since the resources are read with as few database queries as possible.<p>
+     *
+     * @param resourcenames the names of the resources to read (full current site relative paths)
+     *
+     * @return the resources that were read, in the order of the given paths
+     *
+     * @throws CmsException if something goes wrong
+     *
+     * @see #readResourcesByPath(Collection, CmsResourceFilter)
+     */
+    public List<CmsResource> readResourcesByPath(Collection<String> resourcenames) throws CmsException {
+
+        return readResourcesByPath(resourcenames, CmsResourceFilter.DEFAULT);
+    }
+
+    /**
+     * Reads the resources with the given paths, using the specified resource filter.<p>
+     *
+     * Resources that do not exist, do not match the filter or can not be read by the
+     * current user are skipped, so the result may contain fewer resources than paths were given.<p>
+     *
+     * @param resourcenames the names of the resources to read (full current site relative paths)
+     * @param filter the resource filter to use while reading
+     *
+     * @return the resources that were read, in the order of the given paths
+     *
+     * @throws CmsException if something goes wrong
+     */
+    public List<CmsResource> readResourcesByPath(Collection<String> resourcenames, CmsResourceFilter filter)
+    throws CmsException {
+
+        List<String> rootPaths = new ArrayList<String>(resourcenames.size());
+        for (String resourcename : resourcenames) {
+            rootPaths.add(addSiteRoot(resourcename));
+        }
+        return m_securityManager.readResourcesByPath(m_context, rootPaths, filter);
+    }
+
     /**
      * Reads all resources that have a value set for the specified property.<p>
      *
@@ -0,0 +1,263 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.file;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the root paths of the resources read with a request context.<p>
+ *
+ * A recorder is attached to a request context with {@link #attach(CmsRequestContext)}. From then on the
+ * {@link org.opencms.db.CmsSecurityManager} adds the resources that are read with this context, the properties
+ * that are read for them (including the parent folders if properties are searched) and the folders whose
+ * contents are listed. This is used by the static export to find out which exported files must be
+ * written again after a publish.<p>
+ *
+ * If the result of an operation depends on resources that are not known, for example because they are
+ * the result of a search, the recorder is marked as incomplete.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsResourceReadRecorder {
+
+    /** The request context attribute name used to store the recorder. */
+    public static final String ATTRIBUTE_NAME = CmsResourceReadRecorder.class.getName();
+
+    /** The flag indicating if all read resources are known. */
+    private boolean m_complete = true;
+
+    /** The root paths of the folders whose content has been listed. */
+    private Set<String> m_folders = new HashSet<String>();
+
+    /** The root paths of the resources that have been read. */
+    private Set<String> m_resources = new HashSet<String>();
+
+    /**
+     * Detaches the recorder from the given request context and attaches the previous recorder again.<p>
+     *
+     * @param context the request context
+     * @param previous the recorder returned by {@link #attach(CmsRequestContext)}, may be <code>null</code>
+     */
+    public static void detach(CmsRequestContext context, CmsResourceReadRecorder previous) {
+
+        if (previous != null) {
+            context.setAttribute(ATTRIBUTE_NAME, previous);
+        } else {
+            context.removeAttribute(ATTRIBUTE_NAME);
+        }
+    }
+
+    /**
+     * Returns the recorder attached to the given request context.<p>
+     *
+     * @param context the request context
+     *
+     * @return the recorder attached to the given request context, or <code>null</code>
+     */
+    public static CmsResourceReadRecorder get(CmsRequestContext context) {
+
+        if (context == null) {
+            return null;
+        }
+        return (CmsResourceReadRecorder)context.getAttribute(ATTRIBUTE_NAME);
+    }
+
+    /**
+     * Marks the recorder attached to the given request context as incomplete, if there is one.<p>
+     *
+     * @param context the request context
+     */
+    public static void markIncomplete(CmsRequestContext context) {
+
+        CmsResourceReadRecorder recorder = get(context);
+        if (recorder != null) {
+            recorder.setIncomplete();
+        }
+    }
+
+    /**
+     * Adds a folder whose content is listed to the recorder attached to the given request context, if there is one.<p>
+     *
+     * @param context the request context
+     * @param folder the folder whose content is listed
+     */
+    public static void recordFolder(CmsRequestContext context, CmsResource folder) {
+
+        CmsResourceReadRecorder recorder = get(context);
+        if ((recorder != null) && (folder != null)) {
+            recorder.addFolder(folder.getRootPath());
+        }
+    }
+
+    /**
+     * Adds a resource to the recorder attached to the given request context, if there is one.<p>
+     *
+     * @param context the request context
+     * @param resource the resource that is read
+     * @param withParents if <code>true</code>, the parent folders of the resource are added as well
+     */
+    public static void recordResource(CmsRequestContext context, CmsResource resource, boolean withParents) {
+
+        CmsResourceReadRecorder recorder = get(context);
+        if ((recorder != null) && (resource != null)) {
+            recorder.addResource(resource.getRootPath(), withParents);
+        }
+    }
+
+    /**
+     * Adds resources to the recorder attached to the given request context, if there is one.<p>
+     *
+     * @param context the request context
+     * @param resources the resources that are read
+     */
+    public static void recordResources(CmsRequestContext context, Collection<CmsResource> resources) {
+
+        CmsResourceReadRecorder recorder = get(context);
+        if ((recorder != null) && (resources != null)) {
+            for (CmsResource resource : resources) {
+                recorder.addResource(resource.getRootPath(), false);
+            }
+        }
+    }
+
+    /**
+     * Adds a resource root path to the recorder attached to the given request context, if there is one.<p>
+     *
+     * This is used before reading a resource by path, so the path is recorded even if the resource does not exist.<p>
+     *
+     * @param context the request context
+     * @param rootPath the root path of the resource that is read
+     */
+    public static void recordRootPath(CmsRequestContext context, String rootPath) {
+
+        CmsResourceReadRecorder recorder = get(context);
+        if ((recorder != null) && (rootPath != null)) {
+            recorder.addResource(rootPath, false);
+        }
+    }
+
+    /**
+     * Adds the root path of a folder whose content is listed.<p>
+     *
+     * @param rootPath the root path of the folder
+     */
+    public synchronized void addFolder(String rootPath) {
+
+        m_folders.add(CmsResource.isFolder(rootPath) ? rootPath : rootPath + "/");
+    }
+
+    /**
+     * Adds all resources, folders and the completeness of the given recorder to this recorder.<p>
+     *
+     * @param other the recorder to add
+     */
+    public void addRecorder(CmsResourceReadRecorder other) {
+
+        Set<String> resources;
+        Set<String> folders;
+        boolean complete;
+        synchronized (other) {
+            resources = new HashSet<String>(other.m_resources);
+            folders = new HashSet<String>(other.m_folders);
+            complete = other.m_complete;
+        }
+        synchronized (this) {
+            m_resources.addAll(resources);
+            m_folders.addAll(folders);
+            m_complete &= complete;
+        }
+    }
+
+    /**
+     * Adds the root path of a resource that has been read.<p>
+     *
+     * @param rootPath the root path of the resource
+     * @param withParents if <code>true</code>, the parent folders are added as well
+     */
+    public synchronized void addResource(String rootPath, boolean withParents) {
+
+        String path = rootPath;
+        while ((path != null) && m_resources.add(path) && withParents) {
+            path = CmsResource.getParentFolder(path);
+        }
+    }
+
+    /**
+     * Attaches this recorder to the given request context, replacing a recorder that was attached before.<p>
+     *
+     * @param context the request context
+     *
+     * @return the recorder that was attached before, or <code>null</code>
+     */
+    public CmsResourceReadRecorder attach(CmsRequestContext context) {
+
+        CmsResourceReadRecorder previous = get(context);
+        context.setAttribute(ATTRIBUTE_NAME, this);
+        return previous;
+    }
+
+    /**
+     * Returns the root paths of the folders whose content has been listed.<p>
+     *
+     * @return the root paths of the folders whose content has been listed
+     */
+    public synchronized Set<String> getFolders() {
+
+        return new HashSet<String>(m_folders);
+    }
+
+    /**
+     * Returns the root paths of the resources that have been read.<p>
+     *
+     * @return the root paths of the resources that have been read
+     */
+    public synchronized Set<String> getResources() {
+
+        return new HashSet<String>(m_resources);
+    }
+
+    /**
+     * Returns if all resources the recorded operations depend on are known.<p>
+     *
+     * @return <code>true</code> if all resources the recorded operations depend on are known
+     */
+    public synchronized boolean isComplete() {
+
+        return m_complete;
+    }
+
+    /**
+     * Marks this recorder as incomplete.<p>
+     */
+    public synchronized void setIncomplete() {
+
+        m_complete = false;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A growable output buffer for Flex responses that stores the written bytes in a list of chunks.<p>
+ *
+ * Unlike a <code>{@link java.io.ByteArrayOutputStream}</code>, the buffer never copies the bytes
+ * already written when it grows. Parts of the buffer can be handed to the Flex cache as
+ * <code>{@link CmsFlexBytes}</code> that reference the chunks instead of copying them.<p>
+ *
+ * The first chunks are small and grow up to <code>{@link #CHUNK_SIZE}</code> bytes, so that small outputs
+ * do not retain much unused memory. Chunks of the maximum size are taken from and returned to a
+ * bounded pool, as long as no part of them has been handed out.<p>
+ *
+ * This class is not thread safe, like the response it belongs to.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsFlexBuffer extends OutputStream {
+
+    /** The size of the largest chunks, which are pooled. */
+    public static final int CHUNK_SIZE = 8192;
+
+    /** The size of the first chunk. */
+    public static final int INITIAL_CHUNK_SIZE = 512;
+
+    /** The maximum number of chunks kept in the pool. */
+    private static final int MAX_POOLED_CHUNKS = 256;
+
+    /** The pool of unused chunks with the size <code>{@link #CHUNK_SIZE}</code>. */
+    private static final ConcurrentLinkedQueue<byte[]> POOL = new ConcurrentLinkedQueue<byte[]>();
+
+    /** The number of chunks in the pool. */
+    private static final AtomicInteger POOL_SIZE = new AtomicInteger();
+
+    /** The chunks of this buffer. */
+    private List<byte[]> m_chunks;
+
+    /** The number of bytes used in the last chunk. */
+    private int m_lastChunkUsed;
+
+    /** Indicates that parts of the chunks have been handed out, so they must not be returned to the pool. */
+    private boolean m_shared;
+
+    /** The total number of bytes written. */
+    private int m_size;
+
+    /**
+     * Creates a new, empty buffer.<p>
+     */
+    public CmsFlexBuffer() {
+
+        m_chunks = new ArrayList<byte[]>();
+    }
+
+    /**
+     * Returns all bytes written to this buffer.<p>
+     *
+     * @return all bytes written to this buffer
+     *
+     * @see #getBytes(int, int)
+     */
+    public CmsFlexBytes getBytes() {
+
+        return getBytes(0, m_size);
+    }
+
+    /**
+     * Returns the bytes between the given positions.<p>
+     *
+     * Large parts reference the chunks of this buffer, which are not changed or pooled afterwards.
+     * Parts that would retain much more memory than their own size are copied.<p>
+     *
+     * @param start the start position, inclusive
+     * @param end the end position, exclusive
+     *
+     * @return the bytes between the given positions
+     */
+    public CmsFlexBytes getBytes(int start, int end) {
+
+        if ((start < 0) || (end > m_size) || (start > end)) {
+            throw new IndexOutOfBoundsException();
+        }
+        int length = end - start;
+        if (length == 0) {
+            return CmsFlexBytes.EMPTY;
+        }
+        // find the chunks spanning the range
+        int chunkStart = 0;
+        int first = 0;
+        while ((chunkStart + m_chunks.get(first).length) <= start) {
+            chunkStart += m_chunks.get(first).length;
+            first++;
+        }
+        int offset = start - chunkStart;
+        int last = first;
+        int retained = m_chunks.get(first).length;
+        int covered = retained - offset;
+        while (covered < length) {
+            last++;
+            retained += m_chunks.get(last).length;
+            covered += m_chunks.get(last).length;
+        }
+        byte[][] chunks = m_chunks.subList(first, last + 1).toArray(new byte[last - first + 1][]);
+        CmsFlexBytes result = new CmsFlexBytes(chunks, offset, length);
+        if ((2 * length) < retained) {
+            // copy small parts, they would keep large chunks alive
+            return new CmsFlexBytes(result.toByteArray());
+        }
+        m_shared = true;
+        return result;
+    }
+
+    /**
+     * Returns the first position of the given byte, starting at the given position.<p>
+     *
+     * @param b the byte to look for
+     * @param from the position to start at
+     *
+     * @return the position of the byte, or <code>-1</code> if the byte is not found
+     */
+    public int indexOf(byte b, int from) {
+
+        int chunkStart = 0;
+        for (int i = 0; i < m_chunks.size(); i++) {
+            byte[] chunk = m_chunks.get(i);
+            int used = (i == (m_chunks.size() - 1)) ? m_lastChunkUsed : chunk.length;
+            if ((chunkStart + used) > from) {
+                for (int j = Math.max(0, from - chunkStart); j < used; j++) {
+                    if (chunk[j] == b) {
+                        return chunkStart + j;
+                    }
+                }
+            }
+            chunkStart += used;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the chunks of this buffer to the pool, as far as possible, and empties the buffer.<p>
+     *
+     * Chunks which have been handed out with <code>{@link #getBytes(int, int)}</code> are never pooled.<p>
+     */
+    public void release() {
+
+        if (!m_shared) {
+            for (byte[] chunk : m_chunks) {
+                if ((chunk.length == CHUNK_SIZE) && (POOL_SIZE.incrementAndGet() <= MAX_POOLED_CHUNKS)) {
+                    POOL.offer(chunk);
+                } else if (chunk.length == CHUNK_SIZE) {
+                    POOL_SIZE.decrementAndGet();
+                }
+            }
+        }
+        m_chunks = new ArrayList<byte[]>();
+        m_lastChunkUsed = 0;
+        m_size = 0;
+        m_shared = false;
+    }
+
+    /**
+     * Returns the number of bytes written to this buffer.<p>
+     *
+     * @return the number of bytes written to this buffer
+     */
+    public int size() {
+
+        return m_size;
+    }
+
+    /**
+     * Returns a copy of all bytes written to this buffer.<p>
+     *
+     * @return a copy of all bytes written to this buffer
+     */
+    public byte[] toByteArray() {
+
+        byte[] result = new byte[m_size];
+        int pos = 0;
+        for (int i = 0; i < m_chunks.size(); i++) {
+            byte[] chunk = m_chunks.get(i);
+            int used = (i == (m_chunks.size() - 1)) ? m_lastChunkUsed : chunk.length;
+            System.arraycopy(chunk, 0, result, pos, used);
+            pos += used;
+        }
+        return result;
+    }
+
+    /**
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] b, int off, int len) {
+
+        if ((off < 0) || (len < 0) || ((off + len) > b.length)) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            byte[] chunk = getWritableChunk();
+            int count = Math.min(len, chunk.length - m_lastChunkUsed);
+            System.arraycopy(b, off, chunk, m_lastChunkUsed, count);
+            m_lastChunkUsed += count;
+            m_size += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(int b) {
+
+        byte[] chunk = getWritableChunk();
+        chunk[m_lastChunkUsed++] = (byte)b;
+        m_size++;
+    }
+
+    /**
+     * Writes all bytes of this buffer to the given output stream, one chunk after another.<p>
+     *
+     * @param out the output stream to write to
+     *
+     * @throws IOException in case writing to the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+
+        for (int i = 0; i < m_chunks.size(); i++) {
+            byte[] chunk = m_chunks.get(i);
+            out.write(chunk, 0, (i == (m_chunks.size() - 1)) ? m_lastChunkUsed : chunk.length);
+        }
+    }
+
+    /**
+     * Returns the chunk to write the next byte to, adding a new chunk if the last one is full.<p>
+     *
+     * @return the chunk to write the next byte to
+     */
+    private byte[] getWritableChunk() {
+
+        if (!m_chunks.isEmpty()) {
+            byte[] last = m_chunks.get(m_chunks.size() - 1);
+            if (m_lastChunkUsed < last.length) {
+                return last;
+            }
+        }
+        byte[] chunk = null;
+        int size = m_chunks.isEmpty()
+        ? INITIAL_CHUNK_SIZE
+        : Math.min(CHUNK_SIZE, 2 * m_chunks.get(m_chunks.size() - 1).length);
+        if (size == CHUNK_SIZE) {
+            chunk = POOL.poll();
+            if (chunk != null) {
+                POOL_SIZE.decrementAndGet();
+            }
+        }
+        if (chunk == null) {
+            chunk = new byte[size];
+        }
+        m_chunks.add(chunk);
+        m_lastChunkUsed = 0;
+        return chunk;
+    }
+}
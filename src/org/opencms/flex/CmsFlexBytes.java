@@ -0,0 +1,151 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An immutable sequence of bytes, stored in one or more chunks of a <code>{@link CmsFlexBuffer}</code>.<p>
+ *
+ * The Flex cache keeps the output of cached elements as instances of this class, so that the chunks
+ * written by a response can be referenced without copying them. The chunks are written to an output
+ * stream one after another.<p>
+ *
+ * @since 10.5.0
+ */
+public final class CmsFlexBytes {
+
+    /** An empty byte sequence. */
+    public static final CmsFlexBytes EMPTY = new CmsFlexBytes(new byte[0]);
+
+    /** The memory overhead of this object and of each referenced chunk. */
+    private static final int OVERHEAD = 32;
+
+    /** The chunks storing the bytes. */
+    private final byte[][] m_chunks;
+
+    /** The number of bytes. */
+    private final int m_length;
+
+    /** The offset of the first byte in the first chunk. */
+    private final int m_offset;
+
+    /**
+     * Creates a byte sequence backed by the given array.<p>
+     *
+     * The array must not be modified afterwards.<p>
+     *
+     * @param bytes the bytes
+     */
+    public CmsFlexBytes(byte[] bytes) {
+
+        this(new byte[][] {bytes}, 0, bytes.length);
+    }
+
+    /**
+     * Creates a byte sequence backed by the given chunks.<p>
+     *
+     * @param chunks the chunks, must not be modified afterwards in the range used
+     * @param offset the offset of the first byte in the first chunk
+     * @param length the number of bytes
+     */
+    CmsFlexBytes(byte[][] chunks, int offset, int length) {
+
+        m_chunks = chunks;
+        m_offset = offset;
+        m_length = length;
+    }
+
+    /**
+     * Returns the memory used by this byte sequence.<p>
+     *
+     * Only the used part of the chunks is counted, since the parts of a buffer
+     * are usually kept together in the same cache entry.<p>
+     *
+     * @return the memory used by this byte sequence
+     */
+    public int getMemorySize() {
+
+        return m_length + (OVERHEAD * (m_chunks.length + 1));
+    }
+
+    /**
+     * Returns the number of bytes.<p>
+     *
+     * @return the number of bytes
+     */
+    public int length() {
+
+        return m_length;
+    }
+
+    /**
+     * Returns the bytes as an array.<p>
+     *
+     * If the bytes are backed by exactly one complete array, this array is returned
+     * and must not be modified. Otherwise the bytes are copied into a new array.<p>
+     *
+     * @return the bytes as an array
+     */
+    public byte[] toByteArray() {
+
+        if ((m_chunks.length == 1) && (m_offset == 0) && (m_chunks[0].length == m_length)) {
+            return m_chunks[0];
+        }
+        byte[] result = new byte[m_length];
+        int pos = 0;
+        int offset = m_offset;
+        for (byte[] chunk : m_chunks) {
+            int len = Math.min(chunk.length - offset, m_length - pos);
+            System.arraycopy(chunk, offset, result, pos, len);
+            pos += len;
+            offset = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the bytes to the given output stream, one chunk after another.<p>
+     *
+     * @param out the output stream to write to
+     *
+     * @throws IOException in case writing to the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+
+        int remaining = m_length;
+        int offset = m_offset;
+        for (int i = 0; (i < m_chunks.length) && (remaining > 0); i++) {
+            int len = Math.min(m_chunks[i].length - offset, remaining);
+            out.write(m_chunks[i], offset, len);
+            remaining -= len;
+            offset = 0;
+        }
+    }
+}
@@ -27,24 +27,37 @@
 
 package org.opencms.flex;
 
+import org.opencms.cache.CmsConcurrentLruCache;
 import org.opencms.cache.CmsLruCache;
+import org.opencms.cache.I_CmsLruCacheEvictionListener;
 import org.opencms.cache.I_CmsLruCacheObject;
 import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProject;
+import org.opencms.flex.CmsFlexOffHeapCache.CmsOffHeapEntry;
 import org.opencms.loader.CmsJspLoader;
+import org.opencms.main.CmsException;
+import org.opencms.main.CmsEvent;
 import org.opencms.main.CmsLog;
+import org.opencms.main.I_CmsAsyncEventListener;
 import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
+import org.opencms.monitor.CmsCacheStatistics;
 import org.opencms.security.CmsRole;
 import org.opencms.util.CmsCollectionsGenericWrapper;
 import org.opencms.util.CmsStringUtil;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.logging.Log;
@@ -96,7 +109,7 @@ import org.apache.commons.logging.Log;
  * @see org.opencms.cache.CmsLruCache
  * @see org.opencms.cache.I_CmsLruCacheObject
  */
-public class CmsFlexCache extends Object implements I_CmsEventListener {
+public class CmsFlexCache extends Object implements I_CmsAsyncEventListener, I_CmsLruCacheEvictionListener {
 
     /**
      * A simple data container class for the FlexCache variations.<p>
@@ -149,6 +162,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
          *
          * @see LRUMap#removeLRU(LinkEntry)
          */
+        @SuppressWarnings("synthetic-access")
         @Override
         protected boolean removeLRU(LinkEntry entry) {
 
@@ -163,7 +177,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
             Collection<I_CmsLruCacheObject> entries = m.values();
             synchronized (m_variationCache) {
                 for (I_CmsLruCacheObject e : entries) {
-                    m_variationCache.remove(e);
+                    removeEntry(e);
                 }
                 v.m_map.clear();
                 v.m_map = null;
@@ -218,15 +232,39 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
     /** Indicates if offline resources should be cached or not. */
     private boolean m_cacheOffline;
 
+    /** The number of times the cache was cleared, used to cancel the restoring of a snapshot. */
+    private volatile int m_clearCount;
+
     /** Indicates if the cache is enabled or not. */
     private boolean m_enabled;
 
+    /** The number of entries evicted from the heap. */
+    private AtomicLong m_heapEvictionCount = new AtomicLong();
+
+    /** The number of cache hits on the heap. */
+    private AtomicLong m_heapHitCount = new AtomicLong();
+
     /** Map to store the entries for fast lookup. */
     private Map<String, CmsFlexCacheVariation> m_keyCache;
 
+    /** The number of cache misses in both tiers. */
+    private AtomicLong m_missCount = new AtomicLong();
+
+    /** The off-heap tier for entries evicted from the heap, or <code>null</code> if not configured. */
+    private CmsFlexOffHeapCache m_offHeapCache;
+
+    /** The number of cache hits in the off-heap tier. */
+    private AtomicLong m_offHeapHitCount = new AtomicLong();
+
     /** Counter for the size. */
     private int m_size;
 
+    /** The snapshot of the online entries, or <code>null</code> if not configured. */
+    private CmsFlexCacheSnapshot m_snapshot;
+
+    /** Indicates if the LRU state of the entries is updated on every cache hit. */
+    private boolean m_touchOnHit;
+
     /**
      * Constructor for class CmsFlexCache.<p>
      *
@@ -248,7 +286,14 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         int maxEntryBytes = configuration.getMaxEntryBytes();
         int maxKeys = configuration.getMaxKeys();
 
-        m_variationCache = new CmsLruCache(maxCacheBytes, avgCacheBytes, maxEntryBytes);
+        int lruSegments = configuration.getLruSegments();
+        if (lruSegments > 0) {
+            m_variationCache = new CmsConcurrentLruCache(maxCacheBytes, avgCacheBytes, maxEntryBytes, lruSegments);
+            // touching the entries is cheap here, so the LRU state can be updated on every cache hit
+            m_touchOnHit = true;
+        } else {
+            m_variationCache = new CmsLruCache(maxCacheBytes, avgCacheBytes, maxEntryBytes);
+        }
         OpenCms.getMemoryMonitor().register(getClass().getName() + ".m_entryLruCache", m_variationCache);
 
         if (m_enabled) {
@@ -257,6 +302,32 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
                 CmsCollectionsGenericWrapper.<String, CmsFlexCacheVariation> map(flexKeyMap));
             OpenCms.getMemoryMonitor().register(getClass().getName() + ".m_resourceMap", flexKeyMap);
 
+            if (configuration.getMaxOffHeapBytes() > 0) {
+                m_offHeapCache = new CmsFlexOffHeapCache(configuration.getMaxOffHeapBytes());
+                if (CmsLog.INIT.isInfoEnabled()) {
+                    CmsLog.INIT.info(
+                        Messages.get().getBundle().key(
+                            Messages.INIT_FLEXCACHE_OFFHEAP_1,
+                            new Long(m_offHeapCache.getMaxBytes())));
+                }
+            }
+            m_variationCache.setEvictionListener(this);
+
+            if (configuration.getSnapshotInterval() >= 0) {
+                File file = new File(
+                    OpenCms.getSystemInfo().getAbsoluteRfsPathRelativeToWebInf(CmsFlexCacheSnapshot.FILE_NAME));
+                m_snapshot = new CmsFlexCacheSnapshot(this, file, configuration.getSnapshotInterval());
+                if (CmsLog.INIT.isInfoEnabled()) {
+                    CmsLog.INIT.info(
+                        Messages.get().getBundle().key(
+                            Messages.INIT_FLEXCACHE_SNAPSHOT_2,
+                            file.getAbsolutePath(),
+                            new Integer(m_snapshot.getInterval())));
+                }
+            }
+            // the statistics of both tiers are collected from the cache itself
+            OpenCms.getMemoryMonitor().register(getClass().getName(), this);
+
             OpenCms.addCmsEventListener(
                 this,
                 new int[] {
@@ -358,6 +429,46 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         }
     }
 
+    /**
+     * Demotes entries evicted from the heap to the off-heap tier, if it is configured.<p>
+     *
+     * @see org.opencms.cache.I_CmsLruCacheEvictionListener#evictedFromLruCache(org.opencms.cache.I_CmsLruCacheObject)
+     */
+    public void evictedFromLruCache(I_CmsLruCacheObject theCacheObject) {
+
+        m_heapEvictionCount.incrementAndGet();
+        if ((m_offHeapCache == null) || !(theCacheObject instanceof CmsFlexCacheEntry)) {
+            return;
+        }
+        CmsFlexCacheEntry entry = (CmsFlexCacheEntry)theCacheObject;
+        Map<String, I_CmsLruCacheObject> variationMap = entry.getVariationMap();
+        String variationKey = entry.getVariationKey();
+        if ((variationMap == null) || (variationKey == null)) {
+            // the entry was never stored in a variation map
+            return;
+        }
+        if (entry.getDateExpires() < System.currentTimeMillis()) {
+            // no need to keep expired entries
+            return;
+        }
+        CmsOffHeapEntry offHeapEntry = m_offHeapCache.demote(entry);
+        if (offHeapEntry == null) {
+            return;
+        }
+        offHeapEntry.setVariationData(variationKey, variationMap);
+        boolean added = false;
+        synchronized (variationMap) {
+            // a new entry for the variation may have been created meanwhile
+            if (!variationMap.containsKey(variationKey)) {
+                variationMap.put(variationKey, offHeapEntry);
+                added = true;
+            }
+        }
+        if (!added) {
+            m_offHeapCache.remove(offHeapEntry);
+        }
+    }
+
     /**
      * Returns the CmsFlexCacheKey data structure for a given
      * key (i.e. resource name).<p>
@@ -440,6 +551,115 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         return m_variationCache;
     }
 
+    /**
+     * Returns the off-heap tier of this cache.<p>
+     *
+     * @return the off-heap tier of this cache, or <code>null</code> if it is not configured
+     */
+    public CmsFlexOffHeapCache getOffHeapCache() {
+
+        return m_offHeapCache;
+    }
+
+    /**
+     * The FlexCache is cleared before the other listeners process an event,
+     * so the static export does not render pages from stale cache entries.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#getPriority()
+     */
+    public int getPriority() {
+
+        return PRIORITY_CACHE;
+    }
+
+    /**
+     * Returns the snapshot of the online entries of this cache.<p>
+     *
+     * @return the snapshot of the online entries, or <code>null</code> if it is not configured
+     */
+    public CmsFlexCacheSnapshot getSnapshot() {
+
+        return m_snapshot;
+    }
+
+    /**
+     * Returns a statistics snapshot for each tier of this cache.<p>
+     *
+     * The costs of the heap tier are the estimated memory size of the entries,
+     * the costs of the off-heap tier are the direct memory bytes occupied by the entries.<p>
+     *
+     * @param name the name under which this cache is monitored
+     *
+     * @return a statistics snapshot for each tier of this cache
+     */
+    public List<CmsCacheStatistics> getStatistics(String name) {
+
+        long offHeapHits = m_offHeapHitCount.get();
+        long misses = m_missCount.get();
+        List<CmsCacheStatistics> result = new ArrayList<CmsCacheStatistics>(2);
+        result.add(
+            new CmsCacheStatistics(
+                name + ".heap",
+                m_variationCache.size(),
+                m_variationCache.getObjectCosts(),
+                m_variationCache.getMaxCacheCosts(),
+                m_heapHitCount.get(),
+                offHeapHits + misses,
+                m_heapEvictionCount.get()));
+        if (m_offHeapCache != null) {
+            result.add(
+                new CmsCacheStatistics(
+                    name + ".offHeap",
+                    m_offHeapCache.size(),
+                    m_offHeapCache.getObjectCosts(),
+                    m_offHeapCache.getMaxBytes(),
+                    offHeapHits,
+                    misses,
+                    m_offHeapCache.getEvictionCount()));
+        }
+        return result;
+    }
+
+    /**
+     * Starts restoring the online entries from the snapshot in the background, if a snapshot is configured.<p>
+     *
+     * This must be called after the cache has been cleared at the end of the startup,
+     * since the clearing would cancel the restoring.<p>
+     *
+     * @param cms an admin context used to validate the restored entries
+     *
+     * @throws CmsException if the online project can not be read
+     */
+    public void initialize(CmsObject cms) throws CmsException {
+
+        if (m_snapshot == null) {
+            return;
+        }
+        cms.getRequestContext().setCurrentProject(cms.readProject(CmsProject.ONLINE_PROJECT_ID));
+        cms.getRequestContext().setSiteRoot("");
+        m_snapshot.start(cms);
+    }
+
+    /**
+     * Clearing the cache after a publish or on request does not need to block the firing thread.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#isAsync(org.opencms.main.CmsEvent)
+     */
+    public boolean isAsync(CmsEvent event) {
+
+        return true;
+    }
+
+    /**
+     * All events only clear (parts of) the cache, so processing a waiting identical event is enough.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#isCoalescing(org.opencms.main.CmsEvent)
+     */
+    public boolean isCoalescing(CmsEvent event) {
+
+        return true;
+    }
+
     /**
      * Indicates if the cache is enabled (i.e. actually
      * caching entries) or not.<p>
@@ -465,12 +685,25 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
     }
 
     /**
-     * Returns the total number of entries in the cache.<p>
+     * Shuts down the cache, writing the snapshot of the online entries if it is configured.<p>
+     */
+    public void shutDown() {
+
+        if (m_snapshot != null) {
+            m_snapshot.shutDown();
+        }
+    }
+
+    /**
+     * Returns the total number of entries in the cache, including the entries in the off-heap tier.<p>
      *
      * @return the number of entries in the cache
      */
     public int size() {
 
+        if (m_offHeapCache != null) {
+            return m_variationCache.size() + m_offHeapCache.size();
+        }
         return m_variationCache.size();
     }
 
@@ -500,23 +733,51 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
                 // requested resource is not cacheable
                 return null;
             }
-            CmsFlexCacheEntry entry = (CmsFlexCacheEntry)v.m_map.get(variation);
-            if (entry == null) {
+            I_CmsLruCacheObject cached = v.m_map.get(variation);
+            if (cached == null) {
                 // no cache entry available for variation
+                m_missCount.incrementAndGet();
                 return null;
             }
+            if (cached instanceof CmsOffHeapEntry) {
+                // cache entry available in the off-heap tier
+                CmsFlexCacheEntry entry = promote((CmsOffHeapEntry)cached);
+                if (entry == null) {
+                    m_missCount.incrementAndGet();
+                    return null;
+                }
+                m_offHeapHitCount.incrementAndGet();
+                return entry;
+            }
+            CmsFlexCacheEntry entry = (CmsFlexCacheEntry)cached;
             if (entry.getDateExpires() < System.currentTimeMillis()) {
                 // cache entry avaiable but expired, remove entry
                 m_variationCache.remove(entry);
+                m_missCount.incrementAndGet();
                 return null;
             }
+            if (m_touchOnHit) {
+                m_variationCache.touch(entry);
+            }
+            m_heapHitCount.incrementAndGet();
             // return the found cache entry
             return entry;
         } else {
+            m_missCount.incrementAndGet();
             return null;
         }
     }
 
+    /**
+     * Returns the number of times the cache was cleared.<p>
+     *
+     * @return the number of times the cache was cleared
+     */
+    int getClearCount() {
+
+        return m_clearCount;
+    }
+
     /**
      * Returns the CmsFlexCacheKey data structure for a given resource name.<p>
      *
@@ -542,6 +803,61 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         }
     }
 
+    /**
+     * Returns the variations of all online resources in the cache.<p>
+     *
+     * @return the variations of all online resources in the cache
+     */
+    List<CmsFlexCacheVariation> getOnlineVariations() {
+
+        List<CmsFlexCacheVariation> result = new ArrayList<CmsFlexCacheVariation>();
+        if (!isEnabled()) {
+            return result;
+        }
+        synchronized (m_keyCache) {
+            for (Map.Entry<String, CmsFlexCacheVariation> entry : m_keyCache.entrySet()) {
+                if (entry.getKey().endsWith(CACHE_ONLINESUFFIX)) {
+                    result.add(entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entries of the given variations as entries on the heap.<p>
+     *
+     * Entries in the off-heap tier are copied without promoting them.<p>
+     *
+     * @param variation the variations of a resource
+     *
+     * @return the entries of the variations on the heap, by variation
+     */
+    Map<String, CmsFlexCacheEntry> getSnapshotEntries(CmsFlexCacheVariation variation) {
+
+        Map<String, CmsFlexCacheEntry> result = new HashMap<String, CmsFlexCacheEntry>();
+        Map<String, I_CmsLruCacheObject> variationMap = variation.m_map;
+        if (variationMap == null) {
+            return result;
+        }
+        Map<String, I_CmsLruCacheObject> cached;
+        synchronized (variationMap) {
+            cached = new HashMap<String, I_CmsLruCacheObject>(variationMap);
+        }
+        for (Map.Entry<String, I_CmsLruCacheObject> entry : cached.entrySet()) {
+            I_CmsLruCacheObject o = entry.getValue();
+            if (o instanceof CmsOffHeapEntry) {
+                CmsFlexCacheEntry copy = m_offHeapCache.read((CmsOffHeapEntry)o);
+                if (copy != null) {
+                    result.put(entry.getKey(), copy);
+                }
+            } else if (o instanceof CmsFlexCacheEntry) {
+                result.put(entry.getKey(), (CmsFlexCacheEntry)o);
+            }
+        }
+        return result;
+    }
+
     /**
      * Checks if the cache is empty or if at last one element is contained.<p>
      *
@@ -622,6 +938,36 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         // If != null the key is already in the cache, so we just do nothing
     }
 
+    /**
+     * Adds an entry restored from a snapshot to the cache.<p>
+     *
+     * The entry is not added if the cache already contains an entry for the variation,
+     * or if the cache was cleared since the restoring started.<p>
+     *
+     * @param key the validated key of the entry
+     * @param entry the restored entry
+     * @param variation the variation of the entry
+     * @param clearCount the number of times the cache was cleared when the restoring started
+     *
+     * @return true if the entry was added to the cache, false otherwise
+     */
+    synchronized boolean putSnapshotEntry(
+        CmsFlexCacheKey key,
+        CmsFlexCacheEntry entry,
+        String variation,
+        int clearCount) {
+
+        if (!isEnabled() || (m_clearCount != clearCount)) {
+            return false;
+        }
+        putKey(key);
+        CmsFlexCacheVariation v = m_keyCache.get(key.getResource());
+        if ((v == null) || (v.m_key == null) || (v.m_map == null) || v.m_map.containsKey(variation)) {
+            return false;
+        }
+        return put(v.m_key, entry, variation);
+    }
+
     /**
      * Removes an entry from the cache.<p>
      *
@@ -636,7 +982,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (o != null) {
             I_CmsLruCacheObject old = o.m_map.get(key.getVariation());
             if (old != null) {
-                getEntryLruCache().remove(old);
+                removeEntry(old);
             }
         }
     }
@@ -649,10 +995,14 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (!isEnabled()) {
             return;
         }
+        m_clearCount++;
         m_keyCache.clear();
         m_size = 0;
 
         m_variationCache.clear();
+        if (m_offHeapCache != null) {
+            m_offHeapCache.clear();
+        }
 
         if (LOG.isInfoEnabled()) {
             LOG.info(Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_CLEAR_0));
@@ -673,6 +1023,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
      */
     private synchronized void clearAccordingToSuffix(String suffix, boolean entriesOnly) {
 
+        m_clearCount++;
         Set<String> keys = new HashSet<String>(m_keyCache.keySet());
         Iterator<String> i = keys.iterator();
         while (i.hasNext()) {
@@ -686,7 +1037,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
                     while (allEntries.hasNext()) {
                         I_CmsLruCacheObject nextObject = allEntries.next();
                         allEntries.remove();
-                        m_variationCache.remove(nextObject);
+                        removeEntry(nextObject);
                     }
                     v.m_map = new Hashtable<String, I_CmsLruCacheObject>(INITIAL_CAPACITY_VARIATIONS);
                 } else {
@@ -696,7 +1047,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
                     while (allEntries.hasNext()) {
                         I_CmsLruCacheObject nextObject = allEntries.next();
                         allEntries.remove();
-                        m_variationCache.remove(nextObject);
+                        removeEntry(nextObject);
                     }
 
                     v.m_map = null;
@@ -730,6 +1081,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         if (LOG.isInfoEnabled()) {
             LOG.info(Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_CLEAR_ALL_0));
         }
+        m_clearCount++;
         // create new set to avoid ConcurrentModificationExceptions
         Set<String> cacheKeys = new HashSet<String>(m_keyCache.keySet());
         Iterator<String> i = cacheKeys.iterator();
@@ -739,7 +1091,7 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
             while (allEntries.hasNext()) {
                 I_CmsLruCacheObject nextObject = allEntries.next();
                 allEntries.remove();
-                m_variationCache.remove(nextObject);
+                removeEntry(nextObject);
             }
             v.m_map = new Hashtable<String, I_CmsLruCacheObject>(INITIAL_CAPACITY_VARIATIONS);
         }
@@ -824,6 +1176,45 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
         clearAccordingToSuffix(CACHE_ONLINESUFFIX, true);
     }
 
+    /**
+     * Moves an entry from the off-heap tier back to the heap.<p>
+     *
+     * @param offHeapEntry the entry in the off-heap tier
+     *
+     * @return the entry on the heap, or <code>null</code> if the entry is expired or has been dropped meanwhile
+     */
+    private CmsFlexCacheEntry promote(CmsOffHeapEntry offHeapEntry) {
+
+        if (offHeapEntry.getDateExpires() < System.currentTimeMillis()) {
+            m_offHeapCache.remove(offHeapEntry);
+            return null;
+        }
+        CmsFlexCacheEntry entry = m_offHeapCache.promote(offHeapEntry);
+        if (entry == null) {
+            return null;
+        }
+        Map<String, I_CmsLruCacheObject> variationMap = offHeapEntry.m_variationMap;
+        String variationKey = offHeapEntry.m_variationKey;
+        if (m_variationCache.add(entry)) {
+            entry.setVariationData(variationKey, variationMap);
+            boolean replaced = false;
+            synchronized (variationMap) {
+                // the variation may have been invalidated meanwhile
+                if (variationMap.get(variationKey) == offHeapEntry) {
+                    variationMap.put(variationKey, entry);
+                    replaced = true;
+                }
+            }
+            if (!replaced) {
+                m_variationCache.remove(entry);
+            }
+        } else {
+            offHeapEntry.removeFromLruCache();
+        }
+        // the entry can be delivered even if it was not cached again
+        return entry;
+    }
+
     /**
      * This method purges the JSP repository dirs,
      * i.e. it deletes all JSP files that OpenCms has written to the
@@ -898,4 +1289,18 @@ public class CmsFlexCache extends Object implements I_CmsEventListener {
             LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_ADDED_ENTRY_1, theCacheEntry.toString()));
         }
     }
+
+    /**
+     * Removes an entry from the tier of the cache it is stored in.<p>
+     *
+     * @param entry the entry to remove
+     */
+    private void removeEntry(I_CmsLruCacheObject entry) {
+
+        if (entry instanceof CmsOffHeapEntry) {
+            m_offHeapCache.remove((CmsOffHeapEntry)entry);
+        } else {
+            m_variationCache.remove(entry);
+        }
+    }
 }
\ No newline at end of file
@@ -74,6 +74,15 @@ public class CmsFlexCacheConfiguration {
     /** The maximum key. */
     private int m_maxKeys;
 
+    /** The number of segments of the entry LRU cache, 0 for a single synchronized LRU cache. */
+    private int m_lruSegments;
+
+    /** The maximum direct memory bytes for the off-heap tier, 0 if the off-heap tier is disabled. */
+    private long m_maxOffHeapBytes;
+
+    /** The interval in minutes for writing the snapshot of the online entries, -1 if no snapshot is written. */
+    private int m_snapshotInterval = -1;
+
     /**
      * Empty public constructor for the digester.
      */
@@ -115,6 +124,18 @@ public class CmsFlexCacheConfiguration {
         return m_deviceSelectorConfiguration;
     }
 
+    /**
+     * Returns the number of segments of the entry LRU cache.<p>
+     *
+     * If this is 0, a single synchronized LRU cache is used.<p>
+     *
+     * @return the number of segments of the entry LRU cache
+     */
+    public int getLruSegments() {
+
+        return m_lruSegments;
+    }
+
     /**
      * Returns the maxCacheBytes.<p>
      *
@@ -145,6 +166,31 @@ public class CmsFlexCacheConfiguration {
         return m_maxKeys;
     }
 
+    /**
+     * Returns the maximum direct memory bytes for the off-heap tier of the cache.<p>
+     *
+     * If this is 0, entries evicted from the heap are dropped.<p>
+     *
+     * @return the maximum direct memory bytes for the off-heap tier
+     */
+    public long getMaxOffHeapBytes() {
+
+        return m_maxOffHeapBytes;
+    }
+
+    /**
+     * Returns the interval in minutes for writing the snapshot of the online entries.<p>
+     *
+     * If this is 0, the snapshot is only written at shutdown.
+     * If this is -1, no snapshot is written and the cache starts empty.<p>
+     *
+     * @return the interval in minutes for writing the snapshot of the online entries
+     */
+    public int getSnapshotInterval() {
+
+        return m_snapshotInterval;
+    }
+
     /**
      * Initializes the flex cache configuration with required parameters.<p>
      *
@@ -258,6 +304,20 @@ public class CmsFlexCacheConfiguration {
         }
     }
 
+    /**
+     * Sets the number of segments of the entry LRU cache.<p>
+     *
+     * @param lruSegments the number of segments to set
+     */
+    public void setLruSegments(String lruSegments) {
+
+        try {
+            m_lruSegments = Math.max(0, Integer.parseInt(lruSegments.trim()));
+        } catch (NumberFormatException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+    }
+
     /**
      * Sets the maxCacheBytes.<p>
      *
@@ -287,4 +347,32 @@ public class CmsFlexCacheConfiguration {
 
         m_maxKeys = maxKeys;
     }
+
+    /**
+     * Sets the maximum direct memory bytes for the off-heap tier of the cache.<p>
+     *
+     * @param maxOffHeapBytes the maximum direct memory bytes to set
+     */
+    public void setMaxOffHeapBytes(String maxOffHeapBytes) {
+
+        try {
+            m_maxOffHeapBytes = Math.max(0, Long.parseLong(maxOffHeapBytes.trim()));
+        } catch (NumberFormatException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Sets the interval in minutes for writing the snapshot of the online entries.<p>
+     *
+     * @param snapshotInterval the interval in minutes to set, 0 to write the snapshot only at shutdown
+     */
+    public void setSnapshotInterval(String snapshotInterval) {
+
+        try {
+            m_snapshotInterval = Math.max(0, Integer.parseInt(snapshotInterval.trim()));
+        } catch (NumberFormatException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+    }
 }
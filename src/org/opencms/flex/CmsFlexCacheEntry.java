@@ -29,6 +29,7 @@ package org.opencms.flex;
 
 import org.opencms.cache.I_CmsLruCacheObject;
 import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceReadRecorder;
 import org.opencms.i18n.CmsMessageContainer;
 import org.opencms.jsp.util.CmsJspStandardContextBean;
 import org.opencms.main.CmsLog;
@@ -60,7 +61,8 @@ import org.apache.commons.logging.Log;
  * A CmsFlexCacheEntry might also describe a redirect-call, but in this case
  * nothing else will be cached.<p>
  *
- * The pre-generated output is saved in <code>byte[]</code> arrays.
+ * The pre-generated output is saved as <code>{@link CmsFlexBytes}</code>, which may reference
+ * the chunks of the response buffer the output was written to.
  * The include() calls are saved as Strings of the included resource name,
  * the parameters for the calls are saved in a HashMap.
  * The headers are saved in a HashMap.
@@ -105,6 +107,9 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
     /** Pointer to the previous cache entry in the LRU cache. */
     private I_CmsLruCacheObject m_previous;
 
+    /** The resources read while this entry was created, or <code>null</code> if they have not been recorded. */
+    private CmsResourceReadRecorder m_readRecorder;
+
     /** A redirection target (if redirection is set). */
     private String m_redirectTarget;
 
@@ -140,13 +145,24 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
      */
     public void add(byte[] bytes) {
 
+        add(new CmsFlexBytes(bytes));
+    }
+
+    /**
+     * Adds some output to this cache entry,
+     * this will usually be the result of some kind of output - stream.<p>
+     *
+     * @param bytes the output to save in the cache
+     */
+    public void add(CmsFlexBytes bytes) {
+
         if (m_completed) {
             return;
         }
         if (m_redirectTarget == null) {
             // Add only if not already redirected
             m_elements.add(bytes);
-            m_byteSize += CmsMemoryMonitor.getMemorySize(bytes);
+            m_byteSize += bytes.getMemorySize();
         }
     }
 
@@ -236,7 +252,7 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
     /**
      * Returns the list of data entries of this cache entry.<p>
      *
-     * Data entries are byte arrays representing some kind of output
+     * Data entries are <code>{@link CmsFlexBytes}</code> representing some kind of output
      * or Strings representing include calls to other resources.<p>
      *
      * @return the list of data elements of this cache entry
@@ -299,6 +315,16 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
         return m_previous;
     }
 
+    /**
+     * Returns the resources read while this entry was created.<p>
+     *
+     * @return the resources read while this entry was created, or <code>null</code> if they have not been recorded
+     */
+    public CmsResourceReadRecorder getReadRecorder() {
+
+        return m_readRecorder;
+    }
+
     /**
      * @see org.opencms.cache.I_CmsLruCacheObject#getValue()
      */
@@ -312,8 +338,14 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
      */
     public void removeFromLruCache() {
 
-        if ((m_variationMap != null) && (m_variationKey != null)) {
-            m_variationMap.remove(m_variationKey);
+        Map<String, I_CmsLruCacheObject> variationMap = m_variationMap;
+        if ((variationMap != null) && (m_variationKey != null)) {
+            synchronized (variationMap) {
+                // the variation may already have been replaced with a new entry
+                if (variationMap.get(m_variationKey) == this) {
+                    variationMap.remove(m_variationKey);
+                }
+            }
         }
         if (LOG.isDebugEnabled()) {
             LOG.debug(
@@ -387,7 +419,7 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
                     }
                 } else {
                     try {
-                        res.writeToOutputStream((byte[])o, hasNoSubElements);
+                        res.writeToOutputStream((CmsFlexBytes)o, hasNoSubElements);
                     } catch (IOException e) {
                         CmsMessageContainer message = Messages.get().container(
                             Messages.LOG_FLEXCACHEKEY_NOT_FOUND_1,
@@ -489,6 +521,16 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
         m_previous = thePreviousEntry;
     }
 
+    /**
+     * Sets the resources read while this entry was created.<p>
+     *
+     * @param readRecorder the resources read while this entry was created
+     */
+    public void setReadRecorder(CmsResourceReadRecorder readRecorder) {
+
+        m_readRecorder = readRecorder;
+    }
+
     /**
      * Set a redirect target for this cache entry.<p>
      *
@@ -544,8 +586,8 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
                 Object o = i.next();
                 if (o instanceof String) {
                     str += "" + count + " - <cms:include target=" + o + ">\n";
-                } else if (o instanceof byte[]) {
-                    str += "" + count + " - <![CDATA[" + new String((byte[])o) + "]]>\n";
+                } else if (o instanceof CmsFlexBytes) {
+                    str += "" + count + " - <![CDATA[" + new String(((CmsFlexBytes)o).toByteArray()) + "]]>\n";
                 } else {
                     str += "<!--[" + o.toString() + "]-->";
                 }
@@ -556,6 +598,94 @@ public class CmsFlexCacheEntry implements I_CmsLruCacheObject, I_CmsMemoryMonito
         return str;
     }
 
+    /**
+     * Creates a completed copy of this entry with other output.<p>
+     *
+     * The output elements of this entry are replaced in their order with the given output,
+     * all other data is shared with this entry.
+     * This is used to move the output of an entry between the tiers of the FlexCache.<p>
+     *
+     * @param output the output of the copy, as returned by {@link #getOutput()}
+     *
+     * @return the copy of this entry
+     */
+    CmsFlexCacheEntry copy(List<CmsFlexBytes> output) {
+
+        CmsFlexCacheEntry result = new CmsFlexCacheEntry();
+        Iterator<CmsFlexBytes> i = output.iterator();
+        for (Object o : m_elements) {
+            result.m_elements.add(o instanceof CmsFlexBytes ? i.next() : o);
+        }
+        // the headers and elements are not wrapped again to avoid nested wrappers after repeated copying
+        result.m_elements = Collections.unmodifiableList(result.m_elements);
+        result.m_headers = m_headers;
+        result.m_dateExpires = m_dateExpires;
+        result.m_dateLastModified = m_dateLastModified;
+        result.m_readRecorder = m_readRecorder;
+        result.m_byteSize = m_byteSize;
+        result.m_completed = true;
+        return result;
+    }
+
+    /**
+     * Returns the headers of this entry.<p>
+     *
+     * @return the headers of this entry, or <code>null</code> if no headers have been added
+     */
+    Map<String, List<String>> getHeaders() {
+
+        return m_headers;
+    }
+
+    /**
+     * Returns the output elements of this entry in their order.<p>
+     *
+     * @return the output elements of this entry, or <code>null</code> if this entry is a redirect
+     */
+    List<CmsFlexBytes> getOutput() {
+
+        if ((m_redirectTarget != null) || (m_elements == null)) {
+            return null;
+        }
+        List<CmsFlexBytes> result = new ArrayList<CmsFlexBytes>();
+        for (Object o : m_elements) {
+            if (o instanceof CmsFlexBytes) {
+                result.add((CmsFlexBytes)o);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the redirect target of this entry.<p>
+     *
+     * @return the redirect target of this entry, or <code>null</code> if this entry is not a redirect
+     */
+    String getRedirectTarget() {
+
+        return m_redirectTarget;
+    }
+
+    /**
+     * Returns the key under which this cache entry is stored in the variation map.<p>
+     *
+     * @return the key under which this cache entry is stored in the variation map
+     */
+    String getVariationKey() {
+
+        return m_variationKey;
+    }
+
+    /**
+     * Returns the variation map where this cache entry is stored.<p>
+     *
+     * @return the variation map where this cache entry is stored
+     */
+    Map<String, I_CmsLruCacheObject> getVariationMap() {
+
+        return m_variationMap;
+    }
+
     /**
      * Clones the attribute instances if possible.<p>
      *
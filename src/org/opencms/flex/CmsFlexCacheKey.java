@@ -53,6 +53,380 @@ import org.apache.commons.logging.Log;
  */
 public class CmsFlexCacheKey {
 
+    /**
+     * The cache directives of a key, compiled for matching request keys.<p>
+     *
+     * The directives are compiled to a list of steps in the order in which they contribute to the variation.
+     * All constant parts of the variation are prepared once, and the parameter, attribute and session names
+     * are stored in arrays. Matching a request then only reads the required values from the request key
+     * and appends them to a single unsynchronized buffer, which is sized from the previous variations.<p>
+     *
+     * The variations are the same as the ones produced by the interpretation of the directives
+     * in earlier versions, so they stay readable on the FlexCache administration page.<p>
+     */
+    private static final class CmsMatcher {
+
+        /** Step: the request attributes. */
+        private static final int STEP_ATTRS = 0;
+
+        /** Step: the container element. */
+        private static final int STEP_CONTAINER_ELEMENT = 1;
+
+        /** Step: the device. */
+        private static final int STEP_DEVICE = 2;
+
+        /** Step: the element. */
+        private static final int STEP_ELEMENT = 3;
+
+        /** Step: the encoding. */
+        private static final int STEP_ENCODING = 4;
+
+        /** Step: the ip address. */
+        private static final int STEP_IP = 5;
+
+        /** Step: the locale. */
+        private static final int STEP_LOCALE = 6;
+
+        /** Step: the request parameters. */
+        private static final int STEP_PARAMS = 7;
+
+        /** Step: the port. */
+        private static final int STEP_PORTS = 8;
+
+        /** Step: the scheme. */
+        private static final int STEP_SCHEMES = 9;
+
+        /** Step: the session variables. */
+        private static final int STEP_SESSION = 10;
+
+        /** Step: the site root. */
+        private static final int STEP_SITE = 11;
+
+        /** Step: the uri. */
+        private static final int STEP_URI = 12;
+
+        /** Step: the user. */
+        private static final int STEP_USER = 13;
+
+        /** -1 if never cachable, 1 if always cachable, 0 if the variation must be built. */
+        private int m_always;
+
+        /** The names of the attributes to add, <code>null</code> for all attributes. */
+        private String[] m_attrs;
+
+        /** The attributes that prevent caching, <code>null</code> if not used. */
+        private Set<String> m_noattrs;
+
+        /** The parameters that prevent caching, <code>null</code> if not used. */
+        private Set<String> m_noparams;
+
+        /** The names of the parameters to add, <code>null</code> for all parameters. */
+        private String[] m_params;
+
+        /** The allowed ports, empty for all ports. */
+        private Set<Integer> m_ports;
+
+        /** The allowed schemes, empty for all schemes. */
+        private Set<String> m_schemes;
+
+        /** The names of the session variables to add. */
+        private String[] m_session;
+
+        /** The initial size of the variation buffer, grows to the longest variation built so far. */
+        private int m_size;
+
+        /** The steps adding the request dependent parts of the variation, in their order. */
+        private int[] m_steps;
+
+        /** The constant end of the variation. */
+        private String m_suffix;
+
+        /**
+         * Compiles the cache directives of the given key.<p>
+         *
+         * @param key the parsed key
+         */
+        @SuppressWarnings("synthetic-access")
+        CmsMatcher(CmsFlexCacheKey key) {
+
+            m_always = key.m_always;
+            m_noparams = key.m_noparams;
+            m_noattrs = key.m_noattrs;
+            int[] steps = new int[STEP_USER + 1];
+            int count = 0;
+            if (key.m_uri != null) {
+                steps[count++] = STEP_URI;
+            }
+            if (key.m_site != null) {
+                steps[count++] = STEP_SITE;
+            }
+            if (key.m_element != null) {
+                steps[count++] = STEP_ELEMENT;
+            }
+            if (key.m_device != null) {
+                steps[count++] = STEP_DEVICE;
+            }
+            if (key.m_containerElement != null) {
+                steps[count++] = STEP_CONTAINER_ELEMENT;
+            }
+            if (key.m_locale != null) {
+                steps[count++] = STEP_LOCALE;
+            }
+            if (key.m_encoding != null) {
+                steps[count++] = STEP_ENCODING;
+            }
+            if (key.m_ip != null) {
+                steps[count++] = STEP_IP;
+            }
+            if (key.m_user != null) {
+                steps[count++] = STEP_USER;
+            }
+            if (key.m_params != null) {
+                steps[count++] = STEP_PARAMS;
+                m_params = key.m_params.isEmpty() ? null : key.m_params.toArray(new String[key.m_params.size()]);
+            }
+            if (key.m_attrs != null) {
+                steps[count++] = STEP_ATTRS;
+                m_attrs = key.m_attrs.isEmpty() ? null : key.m_attrs.toArray(new String[key.m_attrs.size()]);
+            }
+            if (key.m_session != null) {
+                steps[count++] = STEP_SESSION;
+                m_session = key.m_session.toArray(new String[key.m_session.size()]);
+            }
+            if (key.m_schemes != null) {
+                steps[count++] = STEP_SCHEMES;
+                m_schemes = key.m_schemes;
+            }
+            if (key.m_ports != null) {
+                steps[count++] = STEP_PORTS;
+                m_ports = key.m_ports;
+            }
+            m_steps = Arrays.copyOf(steps, count);
+            m_suffix = key.m_timeout > 0 ? CACHE_06_TIMEOUT + "=(" + key.m_timeout + ");" : "";
+            m_size = 64;
+        }
+
+        /**
+         * Builds the variation for the given request key.<p>
+         *
+         * @param key the request key
+         *
+         * @return the variation, or <code>null</code> if the request is not cachable
+         */
+        @SuppressWarnings("synthetic-access")
+        String match(CmsFlexRequestKey key) {
+
+            if (m_always < 0) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_KEYMATCH_CACHE_NEVER_0));
+                }
+                return null;
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_KEYMATCH_CHECK_NO_PARAMS_0));
+            }
+            if (m_noparams != null) {
+                Map<String, String[]> params = key.getParams();
+                if ((params != null) && (m_noparams.isEmpty() || containsAny(m_noparams, params))) {
+                    return null;
+                }
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_KEYMATCH_CHECK_NO_ATTRS_0));
+            }
+            if (m_noattrs != null) {
+                Map<String, Object> attrs = key.getAttributes();
+                if ((attrs != null) && (m_noattrs.isEmpty() || containsAny(m_noattrs, attrs))) {
+                    return null;
+                }
+            }
+            if (m_always > 0) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_KEYMATCH_CACHE_ALWAYS_0));
+                }
+                return CACHE_00_ALWAYS;
+            }
+            if (m_steps.length == 0) {
+                // the variation does not depend on the request
+                return m_suffix.length() > 0 ? m_suffix : null;
+            }
+            StringBuilder buf = new StringBuilder(m_size);
+            for (int step : m_steps) {
+                switch (step) {
+                    case STEP_URI:
+                        appendValue(buf, CACHE_02_URI, key.getUri());
+                        break;
+                    case STEP_SITE:
+                        appendValue(buf, CACHE_17_SITE, key.getSite());
+                        break;
+                    case STEP_ELEMENT:
+                        appendValue(buf, CACHE_14_ELEMENT, key.getElement());
+                        break;
+                    case STEP_DEVICE:
+                        appendValue(buf, CACHE_20_DEVICE, key.getDevice());
+                        break;
+                    case STEP_CONTAINER_ELEMENT:
+                        appendValue(buf, CACHE_21_CONTAINER_ELEMENT, key.getContainerElement());
+                        break;
+                    case STEP_LOCALE:
+                        appendValue(buf, CACHE_15_LOCALE, key.getLocale());
+                        break;
+                    case STEP_ENCODING:
+                        appendValue(buf, CACHE_16_ENCODING, key.getEncoding());
+                        break;
+                    case STEP_IP:
+                        appendValue(buf, CACHE_13_IP, key.getIp());
+                        break;
+                    case STEP_USER:
+                        appendValue(buf, CACHE_03_USER, key.getUser());
+                        break;
+                    case STEP_PARAMS:
+                        buf.append(CACHE_04_PARAMS).append("=(");
+                        Map<String, String[]> params = key.getParams();
+                        if (params != null) {
+                            appendMap(buf, m_params, params, true);
+                        }
+                        buf.append(");");
+                        break;
+                    case STEP_ATTRS:
+                        buf.append(CACHE_18_ATTRS).append("=(");
+                        Map<String, Object> attrs = key.getAttributes();
+                        if (attrs != null) {
+                            appendMap(buf, m_attrs, attrs, false);
+                        }
+                        buf.append(");");
+                        break;
+                    case STEP_SESSION:
+                        appendSession(buf, key.getSession());
+                        break;
+                    case STEP_SCHEMES:
+                        String scheme = key.getScheme();
+                        if (!m_schemes.isEmpty() && !m_schemes.contains(scheme)) {
+                            return null;
+                        }
+                        appendValue(buf, CACHE_08_SCHEMES, scheme);
+                        break;
+                    case STEP_PORTS:
+                        Integer port = key.getPort();
+                        if (!m_ports.isEmpty() && !m_ports.contains(port)) {
+                            return null;
+                        }
+                        appendValue(buf, CACHE_09_PORTS, port);
+                        break;
+                    default:
+                        // no other steps
+                }
+            }
+            buf.append(m_suffix);
+            int length = buf.length();
+            if (length == 0) {
+                return null;
+            }
+            if (length > m_size) {
+                // races only affect the initial size of the next buffers
+                m_size = length;
+            }
+            return buf.toString();
+        }
+
+        /**
+         * Appends the values of the given names from a map of request values.<p>
+         *
+         * @param buf the buffer to append to
+         * @param names the names to append, or <code>null</code> to append all values
+         * @param values the request values
+         * @param firstOnly if <code>true</code>, the values are arrays and only the first value is appended
+         */
+        private void appendMap(StringBuilder buf, String[] names, Map<String, ?> values, boolean firstOnly) {
+
+            if (names != null) {
+                for (int i = 0; i < names.length; i++) {
+                    String name = names[i];
+                    if (values.containsKey(name)) {
+                        buf.append(name).append('=');
+                        Object value = values.get(name);
+                        buf.append(firstOnly ? ((String[])value)[0] : value);
+                        if (i < (names.length - 1)) {
+                            buf.append(',');
+                        }
+                    }
+                }
+            } else {
+                Iterator<? extends Map.Entry<String, ?>> i = values.entrySet().iterator();
+                while (i.hasNext()) {
+                    Map.Entry<String, ?> entry = i.next();
+                    buf.append(entry.getKey()).append('=');
+                    Object value = entry.getValue();
+                    buf.append(firstOnly ? ((String[])value)[0] : value);
+                    if (i.hasNext()) {
+                        buf.append(',');
+                    }
+                }
+            }
+        }
+
+        /**
+         * Appends the session variables, if at least one of them is set.<p>
+         *
+         * @param buf the buffer to append to
+         * @param session the session of the request, may be <code>null</code>
+         */
+        private void appendSession(StringBuilder buf, HttpSession session) {
+
+            if (session == null) {
+                return;
+            }
+            int start = buf.length();
+            boolean found = false;
+            buf.append(CACHE_07_SESSION).append("=(");
+            for (int i = 0; i < m_session.length; i++) {
+                Object value = session.getAttribute(m_session[i]);
+                if (value != null) {
+                    found = true;
+                    buf.append(m_session[i]).append('=').append(value);
+                    if (i < (m_session.length - 1)) {
+                        buf.append(',');
+                    }
+                }
+            }
+            if (found) {
+                buf.append(");");
+            } else {
+                buf.setLength(start);
+            }
+        }
+
+        /**
+         * Appends a single request value.<p>
+         *
+         * @param buf the buffer to append to
+         * @param name the name of the directive
+         * @param value the request value
+         */
+        private void appendValue(StringBuilder buf, String name, Object value) {
+
+            buf.append(name).append("=(").append(value).append(");");
+        }
+
+        /**
+         * Checks if a map of request values contains one of the given names.<p>
+         *
+         * @param names the names to check
+         * @param values the request values
+         *
+         * @return <code>true</code> if one of the names is contained in the request values
+         */
+        private boolean containsAny(Set<String> names, Map<String, ?> values) {
+
+            for (String name : values.keySet()) {
+                if (names.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     /** Flex cache keyword: always. */
     private static final String CACHE_00_ALWAYS = "always";
 
@@ -175,6 +549,9 @@ public class CmsFlexCacheKey {
     /** Cache key variable: The requested locale. */
     private String m_locale;
 
+    /** The compiled cache directives used to match request keys. */
+    private CmsMatcher m_matcher;
+
     /** Cache key variable: List of "blocking" attributes. */
     private Set<String> m_noattrs;
 
@@ -239,6 +616,7 @@ public class CmsFlexCacheKey {
         if (cacheDirectives != null) {
             parseFlexKey(cacheDirectives);
         }
+        m_matcher = new CmsMatcher(this);
         if (LOG.isDebugEnabled()) {
             LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_GENERATED_1, toString()));
         }
@@ -308,226 +686,7 @@ public class CmsFlexCacheKey {
      */
     public String matchRequestKey(CmsFlexRequestKey key) {
 
-        StringBuffer str = new StringBuffer(100);
-        if (m_always < 0) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_KEYMATCH_CACHE_NEVER_0));
-            }
-            return null;
-        }
-
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_KEYMATCH_CHECK_NO_PARAMS_0));
-        }
-        if ((m_noparams != null) && (key.getParams() != null)) {
-            if ((m_noparams.size() == 0) && (key.getParams().size() > 0)) {
-                return null;
-            }
-            Iterator<String> i = key.getParams().keySet().iterator();
-            while (i.hasNext()) {
-                if (m_noparams.contains(i.next())) {
-                    return null;
-                }
-            }
-        }
-
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_KEYMATCH_CHECK_NO_ATTRS_0));
-        }
-        if ((m_noattrs != null) && (key.getAttributes() != null)) {
-            if ((m_noattrs.size() == 0) && (key.getAttributes().size() > 0)) {
-                return null;
-            }
-            Iterator<String> i = key.getAttributes().keySet().iterator();
-            while (i.hasNext()) {
-                if (m_noattrs.contains(i.next())) {
-                    return null;
-                }
-            }
-        }
-
-        if (m_always > 0) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXCACHEKEY_KEYMATCH_CACHE_ALWAYS_0));
-            }
-            str.append(CACHE_00_ALWAYS);
-            return str.toString();
-        }
-
-        if (m_uri != null) {
-            appendKeyValue(str, CACHE_02_URI, key.getUri());
-        }
-
-        if (m_site != null) {
-            appendKeyValue(str, CACHE_17_SITE, key.getSite());
-        }
-
-        if (m_element != null) {
-            appendKeyValue(str, CACHE_14_ELEMENT, key.getElement());
-        }
-
-        if (m_device != null) {
-            appendKeyValue(str, CACHE_20_DEVICE, key.getDevice());
-        }
-
-        if (m_containerElement != null) {
-            appendKeyValue(str, CACHE_21_CONTAINER_ELEMENT, key.getContainerElement());
-        }
-
-        if (m_locale != null) {
-            appendKeyValue(str, CACHE_15_LOCALE, key.getLocale());
-        }
-
-        if (m_encoding != null) {
-            appendKeyValue(str, CACHE_16_ENCODING, key.getEncoding());
-        }
-
-        if (m_ip != null) {
-            appendKeyValue(str, CACHE_13_IP, key.getIp());
-        }
-
-        if (m_user != null) {
-            appendKeyValue(str, CACHE_03_USER, key.getUser());
-        }
-
-        if (m_params != null) {
-            str.append(CACHE_04_PARAMS);
-            str.append("=(");
-            Map<String, String[]> keyParams = key.getParams();
-            if (keyParams != null) {
-                if (m_params.size() > 0) {
-                    // match only params listed in cache directives
-                    Iterator<String> i = m_params.iterator();
-                    while (i.hasNext()) {
-                        Object o = i.next();
-                        if (keyParams.containsKey(o)) {
-                            str.append(o);
-                            str.append("=");
-                            // TODO: handle multiple occurrences of the same parameter value
-                            String[] values = keyParams.get(o);
-                            str.append(values[0]);
-                            if (i.hasNext()) {
-                                str.append(",");
-                            }
-                        }
-                    }
-                } else {
-                    // match all request params
-                    Iterator<Map.Entry<String, String[]>> i = keyParams.entrySet().iterator();
-                    while (i.hasNext()) {
-                        Map.Entry<String, String[]> entry = i.next();
-                        str.append(entry.getKey());
-                        str.append("=");
-                        // TODO: handle multiple occurrences of the same parameter value
-                        String[] values = entry.getValue();
-                        str.append(values[0]);
-                        if (i.hasNext()) {
-                            str.append(",");
-                        }
-                    }
-                }
-            }
-            str.append(");");
-        }
-
-        if (m_attrs != null) {
-            str.append(CACHE_18_ATTRS);
-            str.append("=(");
-            Map<String, Object> keyAttrs = key.getAttributes();
-            if (keyAttrs != null) {
-                if (m_attrs.size() > 0) {
-                    // match only attributes listed in cache directives
-                    Iterator<String> i = m_attrs.iterator();
-                    while (i.hasNext()) {
-                        String s = i.next();
-                        if (keyAttrs.containsKey(s)) {
-                            str.append(s);
-                            str.append("=");
-                            Object value = keyAttrs.get(s);
-                            str.append(value);
-                            if (i.hasNext()) {
-                                str.append(",");
-                            }
-                        }
-                    }
-                } else {
-                    // match all request attributes
-                    Iterator<Map.Entry<String, Object>> i = keyAttrs.entrySet().iterator();
-                    while (i.hasNext()) {
-                        Map.Entry<String, Object> entry = i.next();
-                        str.append(entry.getKey());
-                        str.append("=");
-                        Object value = entry.getValue();
-                        str.append(value);
-                        if (i.hasNext()) {
-                            str.append(",");
-                        }
-                    }
-                }
-            }
-            str.append(");");
-        }
-
-        if (m_session != null) {
-            StringBuffer buf = new StringBuffer(32);
-            boolean found = false;
-            buf.append(CACHE_07_SESSION);
-            buf.append("=(");
-            HttpSession keySession = key.getSession();
-            if (keySession != null) {
-                // match only session attributes listed in cache directives
-                Iterator<String> i = m_session.iterator();
-                while (i.hasNext()) {
-                    String name = i.next();
-                    Object val = keySession.getAttribute(name);
-                    if (val != null) {
-                        found = true;
-                        buf.append(name);
-                        buf.append("=");
-                        buf.append(val);
-                        if (i.hasNext()) {
-                            buf.append(",");
-                        }
-                    }
-                }
-            }
-            if (found) {
-                buf.append(");");
-                str.append(buf);
-            }
-        }
-
-        if (m_schemes != null) {
-            String s = key.getScheme();
-            if ((m_schemes.size() > 0) && (!m_schemes.contains(s))) {
-                return null;
-            }
-            appendKeyValue(str, CACHE_08_SCHEMES, s);
-        }
-
-        if (m_ports != null) {
-            Integer i = key.getPort();
-            if ((m_ports.size() > 0) && (!m_ports.contains(i))) {
-                return null;
-            }
-            str.append(CACHE_09_PORTS);
-            str.append("=(");
-            str.append(i);
-            str.append(");");
-        }
-
-        if (m_timeout > 0) {
-            str.append(CACHE_06_TIMEOUT);
-            str.append("=(");
-            str.append(m_timeout);
-            str.append(");");
-        }
-
-        if (str.length() > 0) {
-            return str.toString();
-        } else {
-            return null;
-        }
+        return m_matcher.match(key);
     }
 
     /**
@@ -0,0 +1,612 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsPropertyDefinition;
+import org.opencms.file.CmsResource;
+import org.opencms.main.CmsException;
+import org.opencms.main.CmsLog;
+import org.opencms.main.OpenCms;
+import org.opencms.publish.CmsPublishJobFinished;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Persistent snapshot of the online entries of the Flex cache.<p>
+ *
+ * The snapshot is written at shutdown and, if configured, periodically while the server is running.
+ * After a restart the entries are restored in the background, so that the first requests after the
+ * start do not have to render all pages again.<p>
+ *
+ * A snapshot is discarded completely if resources have been published after it was written, since a
+ * publish clears the Flex cache and the resources an entry depends on are not known. A single key and its
+ * entries are discarded if the resource of the key was modified after the snapshot was written, or if the
+ * cache directives of the resource have changed. Entries that pass request attributes to their include calls
+ * are not written, since the attributes can not be stored.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsFlexCacheSnapshot implements Runnable {
+
+    /** The file name of the snapshot, relative to the WEB-INF folder. */
+    public static final String FILE_NAME = "flexcache-snapshot.dat";
+
+    /** Element type for output bytes in the stored entries. */
+    private static final byte ELEMENT_BYTES = 0;
+
+    /** Element type for include calls in the stored entries. */
+    private static final byte ELEMENT_INCLUDE = 1;
+
+    /** The encoding of the stored Strings. */
+    private static final String ENCODING = "UTF-8";
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsFlexCacheSnapshot.class);
+
+    /** Marker at the start of the stored snapshot, includes the version of the format. */
+    private static final int MAGIC = 0x464c5801;
+
+    /** The cache the entries are read from and restored to. */
+    private CmsFlexCache m_cache;
+
+    /** The context used to validate the stored keys, must be set to the online project. */
+    private CmsObject m_cms;
+
+    /** The file the snapshot is stored in. */
+    private File m_file;
+
+    /** The interval in minutes after which the snapshot is written again, 0 to write it only at shutdown. */
+    private int m_interval;
+
+    /** Flag indicating the stored snapshot has been restored to the cache. */
+    private boolean m_restored;
+
+    /** Flag indicating the snapshot was shut down. */
+    private volatile boolean m_shutDown;
+
+    /** The thread restoring and periodically writing the snapshot. */
+    private Thread m_thread;
+
+    /**
+     * Creates a new snapshot for the given cache.<p>
+     *
+     * @param cache the cache the entries are read from and restored to
+     * @param file the file the snapshot is stored in
+     * @param interval the interval in minutes after which the snapshot is written again, 0 to write it only at shutdown
+     */
+    public CmsFlexCacheSnapshot(CmsFlexCache cache, File file, int interval) {
+
+        m_cache = cache;
+        m_file = file;
+        m_interval = interval;
+    }
+
+    /**
+     * Checks if the given entry can be stored in a snapshot.<p>
+     *
+     * @param entry the entry to check
+     *
+     * @return <code>true</code> if the entry can be stored
+     */
+    static boolean isStorable(CmsFlexCacheEntry entry) {
+
+        List<Object> elements = entry.elements();
+        if (elements == null) {
+            return entry.getRedirectTarget() != null;
+        }
+        Iterator<Object> i = elements.iterator();
+        while (i.hasNext()) {
+            Object o = i.next();
+            if (o instanceof String) {
+                // the include parameters are followed by the request attributes, which can not be stored
+                i.next();
+                if (!((Map<?, ?>)i.next()).isEmpty()) {
+                    return false;
+                }
+            } else if (!(o instanceof CmsFlexBytes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a completed entry as written by {@link #writeEntry(DataOutputStream, CmsFlexCacheEntry)}.<p>
+     *
+     * @param in the stream to read from
+     *
+     * @return the completed entry
+     *
+     * @throws IOException if reading from the stream fails
+     */
+    static CmsFlexCacheEntry readEntry(DataInputStream in) throws IOException {
+
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        long dateExpires = in.readLong();
+        long dateLastModified = in.readLong();
+        String redirectTarget = in.readBoolean() ? readString(in) : null;
+        int headerCount = in.readInt();
+        if (headerCount >= 0) {
+            Map<String, List<String>> headers = new HashMap<String, List<String>>(headerCount);
+            for (int i = 0; i < headerCount; i++) {
+                String name = readString(in);
+                int valueCount = in.readInt();
+                List<String> values = new ArrayList<String>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(readString(in));
+                }
+                headers.put(name, values);
+            }
+            entry.addHeaders(headers);
+        }
+        int elementCount = in.readInt();
+        for (int i = 0; i < elementCount; i++) {
+            byte type = in.readByte();
+            if (type == ELEMENT_BYTES) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                entry.add(bytes);
+            } else if (type == ELEMENT_INCLUDE) {
+                String target = readString(in);
+                int parameterCount = in.readInt();
+                Map<String, String[]> parameters = new HashMap<String, String[]>(parameterCount);
+                for (int j = 0; j < parameterCount; j++) {
+                    String name = readString(in);
+                    String[] values = new String[in.readInt()];
+                    for (int k = 0; k < values.length; k++) {
+                        values[k] = readString(in);
+                    }
+                    parameters.put(name, values);
+                }
+                entry.add(target, parameters, null);
+            } else {
+                throw new IOException(String.valueOf(type));
+            }
+        }
+        entry.setRedirect(redirectTarget);
+        entry.setDateExpires(dateExpires);
+        entry.setDateLastModified(dateLastModified);
+        entry.complete();
+        return entry;
+    }
+
+    /**
+     * Writes a completed entry to the given stream.<p>
+     *
+     * The entry must be storable, see {@link #isStorable(CmsFlexCacheEntry)}.<p>
+     *
+     * @param out the stream to write to
+     * @param entry the entry to write
+     *
+     * @throws IOException if writing to the stream fails
+     */
+    static void writeEntry(DataOutputStream out, CmsFlexCacheEntry entry) throws IOException {
+
+        out.writeLong(entry.getDateExpires());
+        out.writeLong(entry.getDateLastModified());
+        String redirectTarget = entry.getRedirectTarget();
+        out.writeBoolean(redirectTarget != null);
+        if (redirectTarget != null) {
+            writeString(out, redirectTarget);
+        }
+        Map<String, List<String>> headers = entry.getHeaders();
+        if (headers == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(headers.size());
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                writeString(out, header.getKey());
+                out.writeInt(header.getValue().size());
+                for (String value : header.getValue()) {
+                    writeString(out, value);
+                }
+            }
+        }
+        List<Object> elements = entry.elements();
+        if (elements == null) {
+            out.writeInt(0);
+            return;
+        }
+        int count = 0;
+        for (Object o : elements) {
+            if ((o instanceof CmsFlexBytes) || (o instanceof String)) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        Iterator<Object> i = elements.iterator();
+        while (i.hasNext()) {
+            Object o = i.next();
+            if (o instanceof CmsFlexBytes) {
+                CmsFlexBytes bytes = (CmsFlexBytes)o;
+                out.writeByte(ELEMENT_BYTES);
+                out.writeInt(bytes.length());
+                bytes.writeTo(out);
+            } else {
+                @SuppressWarnings("unchecked")
+                Map<String, String[]> parameters = (Map<String, String[]>)i.next();
+                // the request attributes are empty for storable entries
+                i.next();
+                out.writeByte(ELEMENT_INCLUDE);
+                writeString(out, (String)o);
+                out.writeInt(parameters.size());
+                for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+                    writeString(out, parameter.getKey());
+                    out.writeInt(parameter.getValue().length);
+                    for (String value : parameter.getValue()) {
+                        writeString(out, value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a String as written by {@link #writeString(DataOutputStream, String)}.<p>
+     *
+     * @param in the stream to read from
+     *
+     * @return the String
+     *
+     * @throws IOException if reading from the stream fails
+     */
+    private static String readString(DataInputStream in) throws IOException {
+
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, ENCODING);
+    }
+
+    /**
+     * Writes a String of any length to the given stream.<p>
+     *
+     * @param out the stream to write to
+     * @param value the String to write
+     *
+     * @throws IOException if writing to the stream fails
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+
+        byte[] bytes = value.getBytes(ENCODING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Returns the file the snapshot is stored in.<p>
+     *
+     * @return the file the snapshot is stored in
+     */
+    public File getFile() {
+
+        return m_file;
+    }
+
+    /**
+     * Returns the interval in minutes after which the snapshot is written again.<p>
+     *
+     * @return the interval in minutes, 0 if the snapshot is only written at shutdown
+     */
+    public int getInterval() {
+
+        return m_interval;
+    }
+
+    /**
+     * Restores the entries of the stored snapshot to the cache.<p>
+     *
+     * Restoring stops as soon as the cache is cleared, since the remaining entries
+     * may have been invalidated by the clearing. Entries already present in the cache
+     * are not replaced.<p>
+     *
+     * @return the number of restored entries
+     *
+     * @throws IOException if reading the file fails
+     */
+    public int read() throws IOException {
+
+        if ((m_cms == null) || !m_file.exists()) {
+            return 0;
+        }
+        // the clear count must be read before the publish history is checked
+        int clearCount = m_cache.getClearCount();
+        int count = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(m_file.getAbsolutePath());
+            }
+            long dateWritten = in.readLong();
+            if (isPublishedSince(dateWritten)) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_FLEXCACHE_SNAPSHOT_DISCARDED_1,
+                            m_file.getAbsolutePath()));
+                }
+                return 0;
+            }
+            long now = System.currentTimeMillis();
+            while (in.readBoolean()) {
+                String rootPath = readString(in);
+                String directives = readString(in);
+                CmsFlexCacheKey key = readKey(rootPath, directives, dateWritten);
+                int entryCount = in.readInt();
+                for (int i = 0; i < entryCount; i++) {
+                    String variation = readString(in);
+                    CmsFlexCacheEntry entry = readEntry(in);
+                    if ((key != null)
+                        && (entry.getDateExpires() > now)
+                        && m_cache.putSnapshotEntry(key, entry, variation, clearCount)) {
+                        count++;
+                    }
+                }
+                if (m_shutDown || (m_cache.getClearCount() != clearCount)) {
+                    break;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return count;
+    }
+
+    /**
+     * Restores the stored snapshot and then writes the snapshot in the configured interval.<p>
+     *
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+
+        long start = System.currentTimeMillis();
+        try {
+            int count = read();
+            if (LOG.isInfoEnabled()) {
+                LOG.info(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_FLEXCACHE_SNAPSHOT_LOADED_3,
+                        new Integer(count),
+                        m_file.getAbsolutePath(),
+                        new Long(System.currentTimeMillis() - start)));
+            }
+        } catch (Throwable t) {
+            LOG.error(
+                Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_SNAPSHOT_READ_FAILED_1, m_file.getAbsolutePath()),
+                t);
+        } finally {
+            synchronized (this) {
+                m_restored = true;
+            }
+        }
+        while (m_interval > 0) {
+            synchronized (this) {
+                if (!m_shutDown) {
+                    try {
+                        wait(m_interval * 60000L);
+                    } catch (InterruptedException e) {
+                        // check the shutdown flag below
+                    }
+                }
+                if (m_shutDown) {
+                    return;
+                }
+            }
+            writeAndLog();
+        }
+    }
+
+    /**
+     * Stops the periodic writing and writes the snapshot a last time.<p>
+     *
+     * The snapshot is not written if it has not been started, or if the stored snapshot
+     * has not been restored yet, since the stored snapshot would be replaced by an incomplete one.<p>
+     */
+    public void shutDown() {
+
+        boolean write;
+        synchronized (this) {
+            write = (m_thread != null) && m_restored && !m_shutDown;
+            m_shutDown = true;
+            notifyAll();
+        }
+        if (write) {
+            writeAndLog();
+        }
+    }
+
+    /**
+     * Starts restoring the stored snapshot in the background, followed by the periodic writing.<p>
+     *
+     * @param cms the context used to validate the stored keys, must be set to the online project and the root site
+     */
+    public synchronized void start(CmsObject cms) {
+
+        if ((m_thread != null) || m_shutDown) {
+            return;
+        }
+        m_cms = cms;
+        m_thread = new Thread(this, "OpenCms: Flex cache snapshot");
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    /**
+     * Writes the current online entries of the cache to the snapshot file.<p>
+     *
+     * The snapshot is first written to a temporary file which then replaces the previous file,
+     * so that a failed write never leaves a truncated snapshot behind.<p>
+     *
+     * @return the number of written entries
+     *
+     * @throws IOException if writing the file fails
+     */
+    public synchronized int write() throws IOException {
+
+        File parent = m_file.getParentFile();
+        if ((parent != null) && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = new File(m_file.getPath() + ".tmp");
+        int count = 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            // the time is taken before the entries are collected, so no entry is newer than the snapshot
+            long now = System.currentTimeMillis();
+            out.writeInt(MAGIC);
+            out.writeLong(now);
+            for (CmsFlexCache.CmsFlexCacheVariation variation : m_cache.getOnlineVariations()) {
+                CmsFlexCacheKey key = variation.m_key;
+                Map<String, CmsFlexCacheEntry> entries = m_cache.getSnapshotEntries(variation);
+                Iterator<CmsFlexCacheEntry> i = entries.values().iterator();
+                while (i.hasNext()) {
+                    CmsFlexCacheEntry entry = i.next();
+                    if ((entry.getDateExpires() <= now) || !isStorable(entry)) {
+                        i.remove();
+                    }
+                }
+                if ((key == null) || entries.isEmpty()) {
+                    continue;
+                }
+                String resource = key.getResource();
+                int length = resource.length() - CmsFlexCache.CACHE_ONLINESUFFIX.length();
+                out.writeBoolean(true);
+                writeString(out, resource.substring(0, length));
+                writeString(out, key.toString());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, CmsFlexCacheEntry> entry : entries.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeEntry(out, entry.getValue());
+                    count++;
+                }
+            }
+            out.writeBoolean(false);
+        } finally {
+            out.close();
+        }
+        if (m_file.exists() && !m_file.delete()) {
+            throw new IOException(m_file.getAbsolutePath());
+        }
+        if (!temp.renameTo(m_file)) {
+            throw new IOException(temp.getAbsolutePath());
+        }
+        return count;
+    }
+
+    /**
+     * Checks if resources have been published after the given time.<p>
+     *
+     * @param date the time to check
+     *
+     * @return <code>true</code> if resources have been published after the given time
+     */
+    protected boolean isPublishedSince(long date) {
+
+        for (CmsPublishJobFinished job : OpenCms.getPublishManager().getPublishHistory()) {
+            if (job.getFinishTime() >= date) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the cache key for a stored key, if it is still valid.<p>
+     *
+     * @param rootPath the root path of the resource of the key
+     * @param directives the stored cache directives of the key
+     * @param dateWritten the time the snapshot was written
+     *
+     * @return the cache key, or <code>null</code> if the stored key is no longer valid
+     */
+    protected CmsFlexCacheKey readKey(String rootPath, String directives, long dateWritten) {
+
+        try {
+            CmsResource resource = m_cms.readResource(rootPath);
+            if (resource.getDateLastModified() >= dateWritten) {
+                return null;
+            }
+            String cacheProperty = m_cms.readPropertyObject(
+                resource,
+                CmsPropertyDefinition.PROPERTY_CACHE,
+                true).getValue();
+            if (cacheProperty == null) {
+                cacheProperty = OpenCms.getResourceManager().getResourceType(
+                    resource.getTypeId()).getCachePropertyDefault();
+            }
+            CmsFlexCacheKey key = new CmsFlexCacheKey(rootPath, cacheProperty, true);
+            if (key.hadParseError() || !directives.equals(key.toString())) {
+                return null;
+            }
+            return key;
+        } catch (CmsException e) {
+            // the resource was deleted or can not be read anymore
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(e.getLocalizedMessage(), e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot and logs the result.<p>
+     */
+    private void writeAndLog() {
+
+        long start = System.currentTimeMillis();
+        try {
+            int count = write();
+            if (LOG.isInfoEnabled()) {
+                LOG.info(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_FLEXCACHE_SNAPSHOT_WRITTEN_3,
+                        new Integer(count),
+                        m_file.getAbsolutePath(),
+                        new Long(System.currentTimeMillis() - start)));
+            }
+        } catch (Throwable t) {
+            LOG.error(
+                Messages.get().getBundle().key(Messages.LOG_FLEXCACHE_SNAPSHOT_WRITE_FAILED_1, m_file.getAbsolutePath()),
+                t);
+        }
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import org.opencms.cache.I_CmsLruCacheObject;
+import org.opencms.main.CmsLog;
+import org.opencms.monitor.CmsMemoryMonitor;
+import org.opencms.monitor.I_CmsMemoryMonitorable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Second tier of the FlexCache, which keeps the output of cache entries outside of the Java heap.<p>
+ *
+ * Entries evicted from the LRU cache on the heap are demoted to this tier. Their output is copied to
+ * direct memory, only the skeleton of the entry (headers, include calls, parameters and dates) stays on the heap.
+ * On the next cache hit the entry is promoted back to the heap.<p>
+ *
+ * The direct memory is allocated lazily in slabs of {@link #SLAB_SIZE} bytes, which are divided into blocks of
+ * {@link #BLOCK_SIZE} bytes. An entry occupies as many blocks as required for its output, so freed memory
+ * can be reused at once without fragmentation. If there are not enough free blocks,
+ * the entries that were demoted first are dropped.<p>
+ *
+ * All methods of this class are synchronized.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsFlexOffHeapCache {
+
+    /**
+     * An entry of the off-heap tier, as stored in the variation map of the FlexCache.<p>
+     */
+    static class CmsOffHeapEntry implements I_CmsLruCacheObject, I_CmsMemoryMonitorable {
+
+        /** The blocks holding the output of the entry. */
+        int[] m_blocks;
+
+        /** The lengths of the output elements of the entry. */
+        int[] m_lengths;
+
+        /** The size of the output in bytes. */
+        long m_size;
+
+        /** The entry without its output. */
+        CmsFlexCacheEntry m_skeleton;
+
+        /** The key under which this entry is stored in the variation map. */
+        String m_variationKey;
+
+        /** The variation map where this entry is stored. */
+        Map<String, I_CmsLruCacheObject> m_variationMap;
+
+        /** Pointer to the next object, not used. */
+        private I_CmsLruCacheObject m_next;
+
+        /** Pointer to the previous object, not used. */
+        private I_CmsLruCacheObject m_previous;
+
+        /**
+         * Creates a new off-heap entry.<p>
+         *
+         * @param skeleton the entry without its output
+         * @param lengths the lengths of the output elements
+         * @param size the size of the output in bytes
+         * @param blocks the blocks holding the output
+         */
+        CmsOffHeapEntry(CmsFlexCacheEntry skeleton, int[] lengths, long size, int[] blocks) {
+
+            m_skeleton = skeleton;
+            m_lengths = lengths;
+            m_size = size;
+            m_blocks = blocks;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#addToLruCache()
+         */
+        public void addToLruCache() {
+
+            // do nothing
+        }
+
+        /**
+         * Returns the expiration date of the entry.<p>
+         *
+         * @return the expiration date of the entry
+         */
+        public long getDateExpires() {
+
+            return m_skeleton.getDateExpires();
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getLruCacheCosts()
+         */
+        public int getLruCacheCosts() {
+
+            return m_blocks.length * BLOCK_SIZE;
+        }
+
+        /**
+         * @see org.opencms.monitor.I_CmsMemoryMonitorable#getMemorySize()
+         */
+        public int getMemorySize() {
+
+            // only the skeleton and the block list are kept on the heap
+            return 256
+                + (8 * m_lengths.length)
+                + (4 * m_blocks.length)
+                + (int)CmsMemoryMonitor.getValueSize(m_skeleton.elements());
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getNextLruObject()
+         */
+        public I_CmsLruCacheObject getNextLruObject() {
+
+            return m_next;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getPreviousLruObject()
+         */
+        public I_CmsLruCacheObject getPreviousLruObject() {
+
+            return m_previous;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getValue()
+         */
+        public Object getValue() {
+
+            return m_skeleton.elements();
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#removeFromLruCache()
+         */
+        public void removeFromLruCache() {
+
+            Map<String, I_CmsLruCacheObject> variationMap = m_variationMap;
+            if ((variationMap != null) && (m_variationKey != null)) {
+                synchronized (variationMap) {
+                    // the variation may already have been replaced with a new entry
+                    if (variationMap.get(m_variationKey) == this) {
+                        variationMap.remove(m_variationKey);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#setNextLruObject(org.opencms.cache.I_CmsLruCacheObject)
+         */
+        public void setNextLruObject(I_CmsLruCacheObject theNextObject) {
+
+            m_next = theNextObject;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#setPreviousLruObject(org.opencms.cache.I_CmsLruCacheObject)
+         */
+        public void setPreviousLruObject(I_CmsLruCacheObject thePreviousObject) {
+
+            m_previous = thePreviousObject;
+        }
+
+        /**
+         * Stores a backward reference to the map and key where this entry is stored.<p>
+         *
+         * @param theVariationKey the variation key
+         * @param theVariationMap the variation map
+         */
+        void setVariationData(String theVariationKey, Map<String, I_CmsLruCacheObject> theVariationMap) {
+
+            m_variationKey = theVariationKey;
+            m_variationMap = theVariationMap;
+        }
+    }
+
+    /**
+     * Output stream that writes to a list of blocks.<p>
+     */
+    private class CmsBlockOutputStream extends OutputStream {
+
+        /** The blocks to write to. */
+        private int[] m_outBlocks;
+
+        /** The index of the current block. */
+        private int m_index;
+
+        /** The position in the current block. */
+        private int m_pos;
+
+        /**
+         * Creates a new stream writing to the given blocks.<p>
+         *
+         * @param blocks the blocks to write to
+         */
+        CmsBlockOutputStream(int[] blocks) {
+
+            m_outBlocks = blocks;
+        }
+
+        /**
+         * @see java.io.OutputStream#write(byte[], int, int)
+         */
+        @Override
+        public void write(byte[] b, int off, int len) {
+
+            while (len > 0) {
+                if (m_pos == BLOCK_SIZE) {
+                    m_index++;
+                    m_pos = 0;
+                }
+                int count = Math.min(len, BLOCK_SIZE - m_pos);
+                ByteBuffer slab = getSlab(m_outBlocks[m_index]);
+                slab.position(getOffset(m_outBlocks[m_index]) + m_pos);
+                slab.put(b, off, count);
+                m_pos += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        /**
+         * @see java.io.OutputStream#write(int)
+         */
+        @Override
+        public void write(int b) {
+
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+    }
+
+    /** The size of a block in bytes. */
+    public static final int BLOCK_SIZE = 4 * 1024;
+
+    /** The size of a slab in bytes. */
+    public static final int SLAB_SIZE = 1024 * 1024;
+
+    /** The number of blocks in a slab. */
+    private static final int BLOCKS_PER_SLAB = SLAB_SIZE / BLOCK_SIZE;
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsFlexOffHeapCache.class);
+
+    /** The number of direct memory bytes allocated so far. */
+    private long m_allocatedBytes;
+
+    /** The total number of blocks. */
+    private int m_blockCount;
+
+    /** The number of entries demoted to this tier. */
+    private long m_demotionCount;
+
+    /** The cached entries, in the order they were demoted. */
+    private LinkedHashSet<CmsOffHeapEntry> m_entries;
+
+    /** The number of entries dropped because the tier was full. */
+    private long m_evictionCount;
+
+    /** The number of free blocks. */
+    private int m_freeCount;
+
+    /** The stack of free blocks. */
+    private int[] m_freeBlocks;
+
+    /** The number of entries promoted back to the heap. */
+    private long m_promotionCount;
+
+    /** The slabs, allocated on first use. */
+    private ByteBuffer[] m_slabs;
+
+    /** The size of the output of all cached entries. */
+    private long m_usedBytes;
+
+    /**
+     * Creates a new off-heap tier.<p>
+     *
+     * @param maxBytes the maximum number of direct memory bytes to use
+     */
+    public CmsFlexOffHeapCache(long maxBytes) {
+
+        m_blockCount = (int)Math.min(Integer.MAX_VALUE, Math.max(0, maxBytes) / BLOCK_SIZE);
+        m_slabs = new ByteBuffer[((m_blockCount + BLOCKS_PER_SLAB) - 1) / BLOCKS_PER_SLAB];
+        m_freeBlocks = new int[m_blockCount];
+        for (int i = 0; i < m_blockCount; i++) {
+            // the lowest blocks are used first, so that slabs are only allocated when needed
+            m_freeBlocks[i] = m_blockCount - 1 - i;
+        }
+        m_freeCount = m_blockCount;
+        m_entries = new LinkedHashSet<CmsOffHeapEntry>();
+    }
+
+    /**
+     * Removes all entries from this tier.<p>
+     *
+     * The direct memory already allocated is kept for reuse.<p>
+     */
+    public synchronized void clear() {
+
+        Iterator<CmsOffHeapEntry> it = m_entries.iterator();
+        while (it.hasNext()) {
+            CmsOffHeapEntry entry = it.next();
+            it.remove();
+            release(entry);
+            entry.removeFromLruCache();
+        }
+    }
+
+    /**
+     * Returns the number of direct memory bytes allocated so far.<p>
+     *
+     * @return the number of direct memory bytes allocated so far
+     */
+    public synchronized long getAllocatedBytes() {
+
+        return m_allocatedBytes;
+    }
+
+    /**
+     * Returns the number of entries demoted to this tier.<p>
+     *
+     * @return the number of entries demoted to this tier
+     */
+    public synchronized long getDemotionCount() {
+
+        return m_demotionCount;
+    }
+
+    /**
+     * Returns the number of entries dropped because this tier was full.<p>
+     *
+     * @return the number of dropped entries
+     */
+    public synchronized long getEvictionCount() {
+
+        return m_evictionCount;
+    }
+
+    /**
+     * Returns the maximum number of direct memory bytes used by this tier.<p>
+     *
+     * @return the maximum number of direct memory bytes
+     */
+    public long getMaxBytes() {
+
+        return (long)m_blockCount * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the number of direct memory bytes occupied by the cached entries.<p>
+     *
+     * This includes the unused space in the last block of each entry.<p>
+     *
+     * @return the number of direct memory bytes occupied by the cached entries
+     */
+    public synchronized long getObjectCosts() {
+
+        return (long)(m_blockCount - m_freeCount) * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the number of entries promoted back to the heap.<p>
+     *
+     * @return the number of entries promoted back to the heap
+     */
+    public synchronized long getPromotionCount() {
+
+        return m_promotionCount;
+    }
+
+    /**
+     * Returns the size of the output of all cached entries.<p>
+     *
+     * @return the size of the output of all cached entries
+     */
+    public synchronized long getUsedBytes() {
+
+        return m_usedBytes;
+    }
+
+    /**
+     * Returns the number of entries in this tier.<p>
+     *
+     * @return the number of entries in this tier
+     */
+    public synchronized int size() {
+
+        return m_entries.size();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+
+        StringBuffer buf = new StringBuffer();
+        buf.append("max. bytes: " + getMaxBytes()).append(", ");
+        buf.append("allocated bytes: " + m_allocatedBytes).append(", ");
+        buf.append("costs: " + getObjectCosts()).append(", ");
+        buf.append("count: " + m_entries.size());
+        return buf.toString();
+    }
+
+    /**
+     * Copies the output of the given entry to direct memory.<p>
+     *
+     * The given entry itself is not changed, so it can still be used by requests currently delivering it.
+     * Redirect entries and entries larger than half of this tier are not demoted.<p>
+     *
+     * @param entry the entry to demote
+     *
+     * @return the off-heap entry, or <code>null</code> if the entry was not demoted
+     */
+    synchronized CmsOffHeapEntry demote(CmsFlexCacheEntry entry) {
+
+        List<CmsFlexBytes> output = entry.getOutput();
+        if (output == null) {
+            // redirects have no output and are cheap to recreate
+            return null;
+        }
+        long size = 0;
+        for (CmsFlexBytes bytes : output) {
+            size += bytes.length();
+        }
+        int blockCount = (int)(((size + BLOCK_SIZE) - 1) / BLOCK_SIZE);
+        if (blockCount > (m_blockCount / 2)) {
+            return null;
+        }
+        while (m_freeCount < blockCount) {
+            evictEldest();
+        }
+        int[] blocks = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            blocks[i] = m_freeBlocks[--m_freeCount];
+        }
+        int[] lengths = new int[output.size()];
+        try {
+            CmsBlockOutputStream out = new CmsBlockOutputStream(blocks);
+            for (int i = 0; i < lengths.length; i++) {
+                CmsFlexBytes bytes = output.get(i);
+                lengths[i] = bytes.length();
+                bytes.writeTo(out);
+            }
+        } catch (IOException e) {
+            // can not happen when writing to direct memory
+            freeBlocks(blocks);
+            LOG.error(e.getLocalizedMessage(), e);
+            return null;
+        } catch (OutOfMemoryError e) {
+            // the direct memory limit of the VM is lower than the configured size of this tier
+            freeBlocks(blocks);
+            LOG.error(
+                Messages.get().getBundle().key(
+                    Messages.LOG_FLEXCACHE_OFFHEAP_ALLOCATION_FAILED_1,
+                    new Long(m_allocatedBytes)),
+                e);
+            return null;
+        }
+        CmsFlexCacheEntry skeleton = entry.copy(Collections.nCopies(lengths.length, CmsFlexBytes.EMPTY));
+        CmsOffHeapEntry result = new CmsOffHeapEntry(skeleton, lengths, size, blocks);
+        m_entries.add(result);
+        m_usedBytes += size;
+        m_demotionCount++;
+        return result;
+    }
+
+    /**
+     * Copies the output of the given entry back to the heap and removes the entry from this tier.<p>
+     *
+     * @param entry the entry to promote
+     *
+     * @return the entry on the heap, or <code>null</code> if the given entry has already been removed from this tier
+     */
+    synchronized CmsFlexCacheEntry promote(CmsOffHeapEntry entry) {
+
+        CmsFlexCacheEntry result = read(entry);
+        if (result != null) {
+            m_entries.remove(entry);
+            release(entry);
+            m_promotionCount++;
+        }
+        return result;
+    }
+
+    /**
+     * Copies the output of the given entry to the heap, leaving the entry in this tier.<p>
+     *
+     * @param entry the entry to read
+     *
+     * @return a copy of the entry, or <code>null</code> if the given entry has already been removed from this tier
+     */
+    synchronized CmsFlexCacheEntry read(CmsOffHeapEntry entry) {
+
+        if (!m_entries.contains(entry)) {
+            return null;
+        }
+        List<CmsFlexBytes> output = new ArrayList<CmsFlexBytes>(entry.m_lengths.length);
+        int index = 0;
+        int pos = 0;
+        for (int length : entry.m_lengths) {
+            byte[] bytes = new byte[length];
+            int off = 0;
+            while (off < length) {
+                if (pos == BLOCK_SIZE) {
+                    index++;
+                    pos = 0;
+                }
+                int count = Math.min(length - off, BLOCK_SIZE - pos);
+                ByteBuffer slab = getSlab(entry.m_blocks[index]);
+                slab.position(getOffset(entry.m_blocks[index]) + pos);
+                slab.get(bytes, off, count);
+                pos += count;
+                off += count;
+            }
+            output.add(new CmsFlexBytes(bytes));
+        }
+        return entry.m_skeleton.copy(output);
+    }
+
+    /**
+     * Removes the given entry from this tier and from its variation map.<p>
+     *
+     * @param entry the entry to remove
+     */
+    synchronized void remove(CmsOffHeapEntry entry) {
+
+        if (m_entries.remove(entry)) {
+            release(entry);
+            entry.removeFromLruCache();
+        }
+    }
+
+    /**
+     * Drops the entry that was demoted first.<p>
+     */
+    private void evictEldest() {
+
+        Iterator<CmsOffHeapEntry> it = m_entries.iterator();
+        CmsOffHeapEntry entry = it.next();
+        it.remove();
+        release(entry);
+        entry.removeFromLruCache();
+        m_evictionCount++;
+    }
+
+    /**
+     * Puts the given blocks back on the stack of free blocks.<p>
+     *
+     * @param blocks the blocks to free
+     */
+    private void freeBlocks(int[] blocks) {
+
+        for (int i = blocks.length - 1; i >= 0; i--) {
+            m_freeBlocks[m_freeCount++] = blocks[i];
+        }
+    }
+
+    /**
+     * Returns the offset of the given block in its slab.<p>
+     *
+     * @param block the block
+     *
+     * @return the offset of the block in its slab
+     */
+    private int getOffset(int block) {
+
+        return (block % BLOCKS_PER_SLAB) * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the slab holding the given block, allocating it if required.<p>
+     *
+     * @param block the block
+     *
+     * @return the slab holding the block
+     */
+    private ByteBuffer getSlab(int block) {
+
+        int index = block / BLOCKS_PER_SLAB;
+        ByteBuffer slab = m_slabs[index];
+        if (slab == null) {
+            int blocks = Math.min(BLOCKS_PER_SLAB, m_blockCount - (index * BLOCKS_PER_SLAB));
+            slab = ByteBuffer.allocateDirect(blocks * BLOCK_SIZE);
+            m_slabs[index] = slab;
+            m_allocatedBytes += slab.capacity();
+        }
+        return slab;
+    }
+
+    /**
+     * Frees the blocks of an entry that was removed from the list of entries.<p>
+     *
+     * @param entry the removed entry
+     */
+    private void release(CmsOffHeapEntry entry) {
+
+        freeBlocks(entry.m_blocks);
+        m_usedBytes -= entry.m_size;
+    }
+}
@@ -30,6 +30,7 @@ package org.opencms.flex;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceReadRecorder;
 import org.opencms.file.CmsVfsResourceNotFoundException;
 import org.opencms.loader.I_CmsResourceLoader;
 import org.opencms.main.CmsException;
@@ -315,6 +316,15 @@ public class CmsFlexRequestDispatcher implements RequestDispatcher {
                                     m_vfsTarget));
                         }
                         controller.updateDates(entry.getDateLastModified(), entry.getDateExpires());
+                        CmsResourceReadRecorder recorder = CmsResourceReadRecorder.get(cms.getRequestContext());
+                        if (recorder != null) {
+                            // the resources read by the cached target are only known if they were recorded
+                            if (entry.getReadRecorder() != null) {
+                                recorder.addRecorder(entry.getReadRecorder());
+                            } else {
+                                recorder.setIncomplete();
+                            }
+                        }
                         entry.service(w_req, w_res);
                     } catch (CmsException e) {
                         Throwable t;
@@ -437,17 +447,31 @@ public class CmsFlexRequestDispatcher implements RequestDispatcher {
                             Messages.LOG_FLEXREQUESTDISPATCHER_INCLUDE_RESOURCE_1,
                             m_vfsTarget));
                 }
+                // record the resources read by the target separately, so they can be kept with the cache entry
+                CmsResourceReadRecorder parentRecorder = CmsResourceReadRecorder.get(cms.getRequestContext());
+                CmsResourceReadRecorder recorder = null;
+                if (parentRecorder != null) {
+                    recorder = new CmsResourceReadRecorder();
+                    recorder.addResource(resource.getRootPath(), false);
+                    recorder.attach(cms.getRequestContext());
+                }
                 try {
                     loader.service(cms, resource, w_req, w_res);
                 } catch (CmsException e) {
                     // an error occurred during access to OpenCms
                     controller.setThrowable(e, m_vfsTarget);
                     throw new ServletException(e);
+                } finally {
+                    if (recorder != null) {
+                        CmsResourceReadRecorder.detach(cms.getRequestContext(), parentRecorder);
+                        parentRecorder.addRecorder(recorder);
+                    }
                 }
 
                 entry = w_res.processCacheEntry();
                 if ((entry != null) && (variation != null) && w_req.isCacheable()) {
                     // the result can be cached
+                    entry.setReadRecorder(recorder);
                     if (w_res.getCmsCacheKey().getTimeout() > 0) {
                         // cache entry has a timeout, set last modified to time of last creation
                         entry.setDateLastModifiedToPreviousTimeout(w_res.getCmsCacheKey().getTimeout());
@@ -468,17 +492,19 @@ public class CmsFlexRequestDispatcher implements RequestDispatcher {
             if (f_res.hasIncludeList()) {
                 // special case: this indicates that the output was not yet displayed
                 Map<String, List<String>> headers = w_res.getHeaders();
-                byte[] result = w_res.getWriterBytes();
+                CmsFlexBytes result = w_res.getWriterOutput();
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(
                         Messages.get().getBundle().key(
                             Messages.LOG_FLEXREQUESTDISPATCHER_RESULT_1,
-                            new String(result)));
+                            new String(result.toByteArray())));
                 }
                 CmsFlexResponse.processHeaders(headers, f_res);
                 f_res.addToIncludeResults(result);
                 result = null;
             }
+            // the output of the include has been processed, unused buffer chunks can be reused
+            w_res.releaseBuffer();
         } finally {
             // indicate to response that include is finished
             f_res.setCmsIncludeMode(false);
@@ -120,6 +120,18 @@ public class CmsFlexRequestKey {
         }
     }
 
+    /**
+     * Creates a key for the given resource name without a request.<p>
+     *
+     * Subclasses using this constructor must provide the request values by overriding the getters.<p>
+     *
+     * @param resource the resource name, including the online or offline suffix
+     */
+    protected CmsFlexRequestKey(String resource) {
+
+        m_resource = resource;
+    }
+
     /**
      * Returns the request attributes.<p>
      *
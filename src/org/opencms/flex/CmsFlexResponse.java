@@ -35,7 +35,6 @@ import org.opencms.util.CmsDateUtil;
 import org.opencms.util.CmsRequestUtil;
 
 import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -67,7 +66,7 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
     /**
      * Wrapped implementation of the ServletOutputStream.<p>
      *
-     * This implementation writes to an internal buffer and optionally to another
+     * This implementation writes to an internal chunked buffer and optionally to another
      * output stream at the same time.<p>
      *
      * It should be fully transparent to the standard ServletOutputStream.<p>
@@ -78,7 +77,7 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
         private ServletOutputStream m_servletStream;
 
         /** The internal stream buffer. */
-        private ByteArrayOutputStream m_stream;
+        private CmsFlexBuffer m_stream;
 
         /**
          * Constructor that must be used if the stream should write
@@ -103,11 +102,15 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
         }
 
         /**
-         * Clears the buffer by initializing the buffer with a new stream.<p>
+         * Clears the buffer, returning its chunks to the pool if they have not been handed out.<p>
          */
         public void clear() {
 
-            m_stream = new java.io.ByteArrayOutputStream(1024);
+            if (m_stream == null) {
+                m_stream = new CmsFlexBuffer();
+            } else {
+                m_stream.release();
+            }
         }
 
         /**
@@ -139,6 +142,16 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
             }
         }
 
+        /**
+         * Provides access to the buffer.<p>
+         *
+         * @return the buffer
+         */
+        public CmsFlexBuffer getBuffer() {
+
+            return m_stream;
+        }
+
         /**
          * Provides access to the bytes cached in the buffer.<p>
          *
@@ -189,8 +202,8 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
     /** String to hold a buffered redirect target. */
     private String m_bufferRedirect;
 
-    /** Byte array used for "cached leafs" optimization. */
-    private byte[] m_cacheBytes;
+    /** Output used for "cached leafs" optimization. */
+    private CmsFlexBytes m_cacheBytes;
 
     /** The cached entry that is constructed from this response. */
     private CmsFlexCacheEntry m_cachedEntry;
@@ -220,7 +233,7 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
     private boolean m_includeMode;
 
     /** A list of results from the inclusions, needed because of JSP buffering. */
-    private List<byte[]> m_includeResults;
+    private List<CmsFlexBytes> m_includeResults;
 
     /** Flag to indicate if this is the top level element or an included sub - element. */
     private boolean m_isTopElement;
@@ -231,6 +244,9 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
     /** A special wrapper class for a ServletOutputStream. */
     private CmsFlexResponse.CmsServletOutputStream m_out;
 
+    /** Indicates that m_out was created by this response, and is not the stream of the parent response. */
+    private boolean m_outOwned;
+
     /** Indicates that parent stream is writing only in the buffer. */
     private boolean m_parentWritesOnlyToBuffer;
 
@@ -566,7 +582,7 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
         }
         if (m_cacheBytes != null) {
             // Optimization for cached "leaf" nodes, here I re-use the array from the cache
-            return m_cacheBytes;
+            return m_cacheBytes.toByteArray();
         }
         if (m_out == null) {
             // No output was written so far, just return an empty array
@@ -579,6 +595,35 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
         return m_out.getBytes();
     }
 
+    /**
+     * Returns the output that has been written on the current writers output stream.<p>
+     *
+     * In contrast to <code>{@link #getWriterBytes()}</code>, large outputs are not copied,
+     * the result references the chunks of the output buffer.<p>
+     *
+     * @return the output that has been written on the current writers output stream
+     */
+    public CmsFlexBytes getWriterOutput() {
+
+        if (isSuspended()) {
+            // No output whatsoever if the response is suspended
+            return CmsFlexBytes.EMPTY;
+        }
+        if (m_cacheBytes != null) {
+            // Optimization for cached "leaf" nodes, here I re-use the output from the cache
+            return m_cacheBytes;
+        }
+        if (m_out == null) {
+            // No output was written so far
+            return CmsFlexBytes.EMPTY;
+        }
+        if (m_writer != null) {
+            // Flush the writer in case something was written on it
+            m_writer.flush();
+        }
+        return m_out.getBuffer().getBytes();
+    }
+
     /**
      * This flag indicates if the response is suspended or not.<p>
      *
@@ -788,12 +833,12 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
      * Should be used only in inclusion-scenarios
      * like the JSP cms:include tag processing.<p>
      *
-     * @param result the byte array to add
+     * @param result the output to add
      */
-    void addToIncludeResults(byte[] result) {
+    void addToIncludeResults(CmsFlexBytes result) {
 
         if (m_includeResults == null) {
-            m_includeResults = new ArrayList<byte[]>(10);
+            m_includeResults = new ArrayList<CmsFlexBytes>(10);
         }
         m_includeResults.add(result);
     }
@@ -854,7 +899,7 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
                     processIncludeList();
                 } else {
                     // output is delivered directly, no include call parsing required
-                    m_cachedEntry.add(getWriterBytes());
+                    m_cachedEntry.add(getWriterOutput());
                 }
             }
             // update the "last modified" date for the cache entry
@@ -901,6 +946,20 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
         return m_cachedEntry;
     }
 
+    /**
+     * Releases the output buffer of this response, returning its chunks to the pool if they
+     * have not been handed out.<p>
+     *
+     * Must only be called after the output of this response has been processed completely.
+     * The buffer of a parent response used by this response is never released.<p>
+     */
+    void releaseBuffer() {
+
+        if ((m_out != null) && m_outOwned && (m_cacheBytes == null)) {
+            m_out.clear();
+        }
+    }
+
     /**
      * Sets the cache key for this response from
      * a pre-calculated cache key.<p>
@@ -985,12 +1044,12 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
      * Writes some bytes to the current output stream,
      * this method should be called from CmsFlexCacheEntry.service() only.<p>
      *
-     * @param bytes an array of bytes
-     * @param useArray indicates that the byte array should be used directly
+     * @param bytes the cached output
+     * @param useArray indicates that the output should be used directly
      *
      * @throws IOException in case something goes wrong while writing to the stream
      */
-    void writeToOutputStream(byte[] bytes, boolean useArray) throws IOException {
+    void writeToOutputStream(CmsFlexBytes bytes, boolean useArray) throws IOException {
 
         if (isSuspended()) {
             return;
@@ -1004,14 +1063,14 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
                     initStream();
                 }
                 // In this case the buffer will not write to the servlet stream, but to it's internal buffer only
-                m_out.write(bytes);
+                bytes.writeTo(m_out);
             }
         } else {
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_FLEXRESPONSE_ERROR_WRITING_TO_OUTPUT_STREAM_0));
             }
             // The request is not buffered, so we can write directly to it's parents output stream
-            m_res.getOutputStream().write(bytes);
+            bytes.writeTo(m_res.getOutputStream());
             m_res.getOutputStream().flush();
         }
     }
@@ -1033,6 +1092,28 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
         values.add(value);
     }
 
+    /**
+     * Returns the buffer holding the output that has been written on the current writers output stream.<p>
+     *
+     * If the output is not held in the buffer of this response, a new buffer with the output is returned.<p>
+     *
+     * @return the buffer holding the output
+     */
+    private CmsFlexBuffer getWriterBuffer() {
+
+        if (!isSuspended() && (m_cacheBytes == null) && (m_out != null)) {
+            if (m_writer != null) {
+                // Flush the writer in case something was written on it
+                m_writer.flush();
+            }
+            return m_out.getBuffer();
+        }
+        CmsFlexBuffer buffer = new CmsFlexBuffer();
+        byte[] bytes = getWriterBytes();
+        buffer.write(bytes, 0, bytes.length);
+        return buffer;
+    }
+
     /**
      * Initializes the current responses output stream
      * and the corresponding print writer.<p>
@@ -1047,6 +1128,7 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
                 if (m_cachingRequired || (m_controller.getResponseStackSize() > 1)) {
                     // we are allowed to cache our results (probably to construct a new cache entry)
                     m_out = new CmsFlexResponse.CmsServletOutputStream(m_res.getOutputStream());
+                    m_outOwned = true;
                 } else {
                     // we are not allowed to cache so we just use the parents output stream
                     m_out = (CmsFlexResponse.CmsServletOutputStream)m_res.getOutputStream();
@@ -1054,6 +1136,7 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
             } else {
                 // construct a "buffer only" output stream
                 m_out = new CmsFlexResponse.CmsServletOutputStream();
+                m_outOwned = true;
             }
         }
         if (m_writer == null) {
@@ -1084,39 +1167,35 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
      */
     private void processIncludeList() {
 
-        byte[] result = getWriterBytes();
+        CmsFlexBuffer result = getWriterBuffer();
         if (!hasIncludeList()) {
             // no include list, so no includes and we just use the bytes as they are in one block
-            m_cachedEntry.add(result);
+            m_cachedEntry.add(result.getBytes());
         } else {
             // process the include list
-            int max = result.length;
+            int max = result.size();
             int pos = 0;
             int last = 0;
-            int size = 0;
             int count = 0;
 
             // work through result and split this with include list calls
             int i = 0;
             while ((i < m_includeList.size()) && (pos < max)) {
-                // look for the first FLEX_CACHE_DELIMITER char
-                while ((pos < max) && (result[pos] != FLEX_CACHE_DELIMITER)) {
-                    pos++;
-                }
-                if ((pos < max) && (result[pos] == FLEX_CACHE_DELIMITER)) {
+                // look for the next FLEX_CACHE_DELIMITER char
+                int next = result.indexOf((byte)FLEX_CACHE_DELIMITER, pos);
+                if (next < 0) {
+                    pos = max;
+                } else {
                     count++;
                     // a byte value of C_FLEX_CACHE_DELIMITER in our (String) output list indicates
                     // that the next include call must be placed here
-                    size = pos - last;
-                    if (size > 0) {
+                    if (next > last) {
                         // if not (it might be 0) there would be 2 include calls back 2 back
-                        byte[] piece = new byte[size];
-                        System.arraycopy(result, last, piece, 0, size);
-                        // add the byte array to the cache entry
-                        m_cachedEntry.add(piece);
-                        piece = null;
+                        // add the bytes to the cache entry, large parts reference the buffer chunks
+                        m_cachedEntry.add(result.getBytes(last, next));
                     }
-                    last = ++pos;
+                    pos = next + 1;
+                    last = pos;
                     // add an include call to the cache entry
                     m_cachedEntry.add(
                         m_includeList.get(i),
@@ -1127,11 +1206,7 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
             }
             if (pos < max) {
                 // there is content behind the last include call
-                size = max - pos;
-                byte[] piece = new byte[size];
-                System.arraycopy(result, pos, piece, 0, size);
-                m_cachedEntry.add(piece);
-                piece = null;
+                m_cachedEntry.add(result.getBytes(pos, max));
             }
             if (i >= m_includeList.size()) {
                 // clear the include list if all include calls are handled
@@ -1176,12 +1251,12 @@ public class CmsFlexResponse extends HttpServletResponseWrapper {
         if (elements != null) {
             for (int i = 0; i < elements.size(); i++) {
                 Object o = elements.get(i);
-                if (o instanceof byte[]) {
-                    res.getOutputStream().write((byte[])o);
+                if (o instanceof CmsFlexBytes) {
+                    ((CmsFlexBytes)o).writeTo(res.getOutputStream());
                 } else {
                     if ((m_includeResults != null) && (m_includeResults.size() > count)) {
                         // make sure that we don't run behind end of list (should never happen, though)
-                        res.getOutputStream().write(m_includeResults.get(count));
+                        m_includeResults.get(count).writeTo(res.getOutputStream());
                         count++;
                     }
                     // skip next entry, which is the parameter map for this include call
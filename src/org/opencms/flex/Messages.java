@@ -73,6 +73,12 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String INIT_FLEXCACHE_DEVICE_SELECTOR_SUCCESS_1 = "INIT_FLEXCACHE_DEVICE_SELECTOR_SUCCESS_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String INIT_FLEXCACHE_OFFHEAP_1 = "INIT_FLEXCACHE_OFFHEAP_1";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String INIT_FLEXCACHE_SNAPSHOT_2 = "INIT_FLEXCACHE_SNAPSHOT_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_CLASS_INIT_FAILURE_1 = "LOG_CLASS_INIT_FAILURE_1";
 
@@ -112,6 +118,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_FLEXCACHE_CLEAR_ONLINE_KEYS_AND_ENTRIES_0 = "LOG_FLEXCACHE_CLEAR_ONLINE_KEYS_AND_ENTRIES_0";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_FLEXCACHE_OFFHEAP_ALLOCATION_FAILED_1 = "LOG_FLEXCACHE_OFFHEAP_ALLOCATION_FAILED_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_FLEXCACHE_PURGED_JSP_REPOSITORY_0 = "LOG_FLEXCACHE_PURGED_JSP_REPOSITORY_0";
 
@@ -127,6 +136,21 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_FLEXCACHE_RESOURCE_NOT_CACHEABLE_0 = "LOG_FLEXCACHE_RESOURCE_NOT_CACHEABLE_0";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_FLEXCACHE_SNAPSHOT_DISCARDED_1 = "LOG_FLEXCACHE_SNAPSHOT_DISCARDED_1";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_FLEXCACHE_SNAPSHOT_LOADED_3 = "LOG_FLEXCACHE_SNAPSHOT_LOADED_3";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_FLEXCACHE_SNAPSHOT_READ_FAILED_1 = "LOG_FLEXCACHE_SNAPSHOT_READ_FAILED_1";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_FLEXCACHE_SNAPSHOT_WRITE_FAILED_1 = "LOG_FLEXCACHE_SNAPSHOT_WRITE_FAILED_1";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_FLEXCACHE_SNAPSHOT_WRITTEN_3 = "LOG_FLEXCACHE_SNAPSHOT_WRITTEN_3";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_FLEXCACHE_WILL_PURGE_JSP_REPOSITORY_0 = "LOG_FLEXCACHE_WILL_PURGE_JSP_REPOSITORY_0";
 
@@ -478,6 +478,7 @@ public class CmsJspNavBuilder {
         if (resources == null) {
             return Collections.<CmsJspNavElement> emptyList();
         }
+        readPropertiesForNavigation(resources);
         boolean includeAll = visibility == Visibility.all;
         boolean includeHidden = visibility == Visibility.includeHidden;
         for (CmsResource r : resources) {
@@ -690,6 +691,7 @@ public class CmsJspNavBuilder {
             return Collections.<CmsJspNavElement> emptyList();
         }
 
+        readPropertiesForNavigation(resources);
         for (CmsResource r : resources) {
             CmsJspNavElement element = getNavigationForResource(m_cms.getSitePath(r), resourceFilter, shallow);
             if ((element != null) && (includeInvisible || element.isInNavigation())) {
@@ -763,4 +765,23 @@ public class CmsJspNavBuilder {
 
         return new CmsJspNavElement(sitePath, resource, propertiesMap, level, m_locale);
     }
+
+    /**
+     * Reads the properties of all given resources at once, so that the property cache is filled
+     * before the navigation elements are created one by one.<p>
+     *
+     * @param resources the resources to read the properties for
+     */
+    private void readPropertiesForNavigation(List<CmsResource> resources) {
+
+        if (resources.size() < 2) {
+            return;
+        }
+        try {
+            m_cms.readPropertyObjects(resources, false);
+        } catch (CmsException e) {
+            // the properties are read again for each single resource, so this is not an error here
+            LOG.debug(e.getLocalizedMessage(), e);
+        }
+    }
 }
@@ -27,11 +27,15 @@
 
 package org.opencms.loader;
 
+import org.opencms.cache.CmsDiskCacheIndex;
 import org.opencms.cache.CmsVfsNameBasedDiskCache;
 import org.opencms.configuration.CmsParameterConfiguration;
+import org.opencms.db.CmsPublishedResource;
 import org.opencms.file.CmsFile;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.types.CmsResourceTypeImage;
 import org.opencms.main.CmsEvent;
 import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
@@ -39,9 +43,20 @@ import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
 import org.opencms.scheduler.jobs.CmsImageCacheCleanupJob;
 import org.opencms.util.CmsStringUtil;
+import org.opencms.util.CmsUUID;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -62,6 +77,9 @@ import org.apache.commons.logging.Log;
  */
 public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener {
 
+    /** The configuration parameter for the OpenCms XML configuration to set the maximum size of the image cache repository in megabytes. */
+    public static final String CONFIGURATION_CACHE_MAX_SIZE = "image.cache.maxsize";
+
     /** The configuration parameter for the OpenCms XML configuration to set the image down scale operation. */
     public static final String CONFIGURATION_DOWNSCALE = "image.scaling.downscale";
 
@@ -74,9 +92,15 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
     /** The configuration parameter for the OpenCms XML configuration to set the maximum image scale size. */
     public static final String CONFIGURATION_MAX_SCALE_SIZE = "image.scaling.maxsize";
 
+    /** The configuration parameter for the OpenCms XML configuration to set the scale parameters of the image versions generated after publishing, separated by "|". */
+    public static final String CONFIGURATION_PREGENERATE = "image.scaling.pregenerate";
+
     /** The configuration parameter for the OpenCms XML configuration to enable the image scaling. */
     public static final String CONFIGURATION_SCALING_ENABLED = "image.scaling.enabled";
 
+    /** The configuration parameter for the OpenCms XML configuration to set the number of image scaling threads. */
+    public static final String CONFIGURATION_SCALING_THREADS = "image.scaling.threads";
+
     /** Default name for the image cache repository. */
     public static final String IMAGE_REPOSITORY_DEFAULT = "/WEB-INF/imagecache/";
 
@@ -98,15 +122,27 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
     /** The maximum image size (width * height) to apply image blurring when down scaling (setting this to high may cause "out of memory" errors). */
     protected static int m_maxBlurSize = CmsImageScaler.SCALE_DEFAULT_MAX_BLUR_SIZE;
 
+    /** The executor for image scaling operations. */
+    protected static CmsImageScalingExecutor m_scalingExecutor;
+
     /** The disk cache to use for saving scaled image versions. */
     protected static CmsVfsNameBasedDiskCache m_vfsDiskCache;
 
+    /** The maximum size of the image cache repository in megabytes, a value &lt;= 0 means no limit. */
+    protected long m_imageCacheMaxSize = -1;
+
     /** The name of the configured image cache repository. */
     protected String m_imageRepositoryFolder;
 
     /** The maximum image size (width or height) to allow when up scaling an image using request parameters. */
     protected int m_maxScaleSize = CmsImageScaler.SCALE_DEFAULT_MAX_SIZE;
 
+    /** The scale parameters of the image versions generated after publishing. */
+    protected List<String> m_pregenerateParams = Collections.emptyList();
+
+    /** The number of image scaling threads. */
+    protected int m_scalingThreads = Runtime.getRuntime().availableProcessors();
+
     /**
      * Creates a new image loader.<p>
      */
@@ -128,6 +164,17 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         return m_downScaleParams;
     }
 
+    /**
+     * Returns the index of the files in the image cache,
+     * or <code>null</code> if the size of the image cache is not limited.<p>
+     *
+     * @return the index of the files in the image cache
+     */
+    public static CmsDiskCacheIndex getImageCacheIndex() {
+
+        return m_vfsDiskCache != null ? m_vfsDiskCache.getIndex() : null;
+    }
+
     /**
      * Returns the path of the image cache repository folder in the RFS,
      * which is set with the {@link #CONFIGURATION_IMAGE_FOLDER} configuration option.<p>
@@ -152,6 +199,17 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         return m_maxBlurSize;
     }
 
+    /**
+     * Returns the executor for image scaling operations,
+     * which also provides the statistics for the image scaling operations.<p>
+     *
+     * @return the executor for image scaling operations, <code>null</code> if the image loader is not initialized
+     */
+    public static CmsImageScalingExecutor getScalingExecutor() {
+
+        return m_scalingExecutor;
+    }
+
     /**
      * Returns <code>true</code> if the image scaling and processing capabilities for the
      * OpenCms VFS images have been enabled, <code>false</code> if not.<p>
@@ -185,6 +243,9 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
             if (CONFIGURATION_IMAGE_FOLDER.equals(paramName)) {
                 m_imageRepositoryFolder = paramValue.trim();
             }
+            if (CONFIGURATION_CACHE_MAX_SIZE.equals(paramName)) {
+                m_imageCacheMaxSize = CmsStringUtil.getIntValue(paramValue, -1, paramName);
+            }
             if (CONFIGURATION_MAX_SCALE_SIZE.equals(paramName)) {
                 m_maxScaleSize = CmsStringUtil.getIntValue(
                     paramValue,
@@ -200,6 +261,15 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
             if (CONFIGURATION_DOWNSCALE.equals(paramName)) {
                 m_downScaleParams = paramValue.trim();
             }
+            if (CONFIGURATION_SCALING_THREADS.equals(paramName)) {
+                m_scalingThreads = CmsStringUtil.getIntValue(
+                    paramValue,
+                    Runtime.getRuntime().availableProcessors(),
+                    paramName);
+            }
+            if (CONFIGURATION_PREGENERATE.equals(paramName)) {
+                m_pregenerateParams = CmsStringUtil.splitAsList(paramValue, '|', true);
+            }
         }
         super.addConfigurationParameter(paramName, paramValue);
     }
@@ -212,13 +282,30 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         if (event == null) {
             return;
         }
-        // only react on the clear caches event
         int type = event.getType();
+        Map<String, ?> data = event.getData();
+        if ((type == I_CmsEventListener.EVENT_PUBLISH_PROJECT)
+            && m_enabled
+            && !m_pregenerateParams.isEmpty()
+            && (m_scalingExecutor != null)
+            && (data != null)
+            && (data.get(I_CmsEventListener.KEY_PUBLISHID) != null)) {
+            // generate the configured scaled versions of the published images, without blocking the publish thread
+            final CmsUUID publishHistoryId = new CmsUUID((String)data.get(I_CmsEventListener.KEY_PUBLISHID));
+            m_scalingExecutor.submitBackgroundTask(new Runnable() {
+
+                public void run() {
+
+                    pregenerateScaledImages(publishHistoryId);
+                }
+            });
+            return;
+        }
+        // only react on the clear caches event
         if (type != I_CmsEventListener.EVENT_CLEAR_CACHES) {
             return;
         }
         // only react if the clear images cache parameter is set
-        Map<String, ?> data = event.getData();
         if (data == null) {
             return;
         }
@@ -244,6 +331,10 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         m_enabled = false;
         m_imageRepositoryFolder = null;
         m_vfsDiskCache = null;
+        if (m_scalingExecutor != null) {
+            m_scalingExecutor.shutDown();
+            m_scalingExecutor = null;
+        }
     }
 
     /**
@@ -284,7 +375,11 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         if (m_vfsDiskCache == null) {
             m_vfsDiskCache = new CmsVfsNameBasedDiskCache(
                 OpenCms.getSystemInfo().getWebApplicationRfsPath(),
-                m_imageRepositoryFolder);
+                m_imageRepositoryFolder,
+                m_imageCacheMaxSize * 1024L * 1024L);
+        }
+        if (m_scalingExecutor == null) {
+            m_scalingExecutor = new CmsImageScalingExecutor(m_scalingThreads);
         }
         OpenCms.addCmsEventListener(this);
         // output setup information
@@ -295,6 +390,10 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
                     m_vfsDiskCache.getRepositoryPath()));
             CmsLog.INIT.info(
                 Messages.get().getBundle().key(Messages.INIT_IMAGE_SCALING_ENABLED_1, Boolean.valueOf(m_enabled)));
+            CmsLog.INIT.info(
+                Messages.get().getBundle().key(
+                    Messages.INIT_IMAGE_SCALING_THREADS_1,
+                    new Integer(m_scalingExecutor.getThreads())));
         }
     }
 
@@ -312,6 +411,14 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
             }
             // get the scale information from the request
             CmsImageScaler scaler = new CmsImageScaler(req, m_maxScaleSize, m_maxBlurSize);
+            if (!(resource instanceof CmsFile)) {
+                // send the cached file directly, without reading it into memory
+                // not for files, since their content must be replaced with the scaled image (required for static export)
+                File cached = m_vfsDiskCache.getCacheFile(getCacheName(resource, scaler));
+                if ((cached != null) && sendCacheFile(cached, resource, req, res)) {
+                    return;
+                }
+            }
             // load the file from the cache
             CmsFile file = getScaledImage(cms, resource, scaler);
             // now perform standard load operation inherited from dump loader
@@ -322,6 +429,20 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
         }
     }
 
+    /**
+     * Returns the name of the given scaled version of the image in the disk cache.<p>
+     *
+     * @param resource the base VFS resource for the image
+     * @param scaler the configured image scaler
+     *
+     * @return the name of the scaled version of the image in the disk cache
+     */
+    protected String getCacheName(CmsResource resource, CmsImageScaler scaler) {
+
+        String cacheParam = scaler.isValid() ? scaler.toString() : null;
+        return m_vfsDiskCache.getCacheName(resource, cacheParam);
+    }
+
     /**
      * Returns a scaled version of the given OpenCms VFS image resource.<p>
      *
@@ -341,34 +462,165 @@ public class CmsImageLoader extends CmsDumpLoader implements I_CmsEventListener
     protected CmsFile getScaledImage(CmsObject cms, CmsResource resource, CmsImageScaler scaler)
     throws IOException, CmsException {
 
-        String cacheParam = scaler.isValid() ? scaler.toString() : null;
-        String cacheName = m_vfsDiskCache.getCacheName(resource, cacheParam);
+        String cacheName = getCacheName(resource, scaler);
         byte[] content = m_vfsDiskCache.getCacheContent(cacheName);
 
-        CmsFile file;
-        if (content != null) {
-            if (resource instanceof CmsFile) {
-                // the original file content must be modified (required e.g. for static export)
-                file = (CmsFile)resource;
+        if (content == null) {
+            if (!scaler.isValid()) {
+                // no scaling required, just store the original content in the cache
+                content = cms.readFile(resource).getContents();
+                m_vfsDiskCache.saveCacheFile(cacheName, content);
             } else {
-                // this is no file, but we don't want to use "upgrade" since we don't need to read the content from the VFS
-                file = new CmsFile(resource);
+                content = scaleImage(cms, resource, scaler, cacheName);
             }
-            // save the content in the file
-            file.setContents(content);
+        }
+        CmsFile file;
+        if (resource instanceof CmsFile) {
+            // the original file content must be modified (required e.g. for static export)
+            file = (CmsFile)resource;
         } else {
-            // we must read the content from the VFS (if this has not been done yet)
-            file = cms.readFile(resource);
-            // upgrade the file (load the content)
+            // this is no file, but we don't want to use "upgrade" since we don't need to read the content from the VFS
+            file = new CmsFile(resource);
+        }
+        // save the content in the file
+        file.setContents(content);
+        return file;
+    }
+
+    /**
+     * Generates the configured scaled versions of all images published with the given publish job.<p>
+     *
+     * @param publishHistoryId the publish history id of the publish job
+     */
+    protected void pregenerateScaledImages(CmsUUID publishHistoryId) {
+
+        List<CmsPublishedResource> publishedResources;
+        CmsObject cms;
+        try {
+            cms = OpenCms.initCmsObject(OpenCms.getDefaultUsers().getUserGuest());
+            cms.getRequestContext().setSiteRoot("");
+            publishedResources = cms.readPublishedResources(publishHistoryId);
+        } catch (CmsException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+            return;
+        }
+        List<CmsImageScaler> scalers = new ArrayList<CmsImageScaler>(m_pregenerateParams.size());
+        for (String params : m_pregenerateParams) {
+            CmsImageScaler scaler = new CmsImageScaler(params);
             if (scaler.isValid()) {
-                // valid scaling parameters found, scale the content
-                content = scaler.scaleImage(file);
-                // exchange the content of the file with the scaled version
-                file.setContents(content);
+                scalers.add(scaler);
             }
-            // save the file content in the cache
-            m_vfsDiskCache.saveCacheFile(cacheName, file.getContents());
         }
-        return file;
+        for (CmsPublishedResource published : publishedResources) {
+            if ((published.getType() != CmsResourceTypeImage.getStaticTypeId()) || published.getState().isDeleted()) {
+                continue;
+            }
+            try {
+                CmsResource resource = cms.readResource(published.getRootPath(), CmsResourceFilter.DEFAULT_FILES);
+                for (CmsImageScaler scaler : scalers) {
+                    getScaledImage(cms, resource, scaler);
+                }
+            } catch (Exception e) {
+                LOG.warn(
+                    Messages.get().getBundle().key(Messages.LOG_PREGENERATE_IMAGE_FAILED_1, published.getRootPath()),
+                    e);
+            }
+        }
+    }
+
+    /**
+     * Scales the given image with the image scaling executor and saves the result in the disk cache.<p>
+     *
+     * If the same scaled version of the image is already being created by another thread,
+     * this waits for the result of the other thread instead.<p>
+     *
+     * @param cms the current users OpenCms context
+     * @param resource the base VFS resource for the image
+     * @param scaler the configured image scaler
+     * @param cacheName the name of the scaled image in the disk cache
+     *
+     * @return the content of the scaled image
+     *
+     * @throws IOException in case of errors accessing the disk based cache
+     * @throws CmsException in case of errors accessing the OpenCms VFS
+     */
+    protected byte[] scaleImage(
+        final CmsObject cms,
+        final CmsResource resource,
+        final CmsImageScaler scaler,
+        final String cacheName)
+    throws IOException, CmsException {
+
+        Callable<byte[]> operation = new Callable<byte[]>() {
+
+            public byte[] call() throws Exception {
+
+                // the previous operation for the same image may have finished just now
+                byte[] content = m_vfsDiskCache.getCacheContent(cacheName);
+                if (content == null) {
+                    // we must read the content from the VFS (if this has not been done yet)
+                    CmsFile file = cms.readFile(resource);
+                    content = scaler.scaleImage(file);
+                    m_vfsDiskCache.saveCacheFile(cacheName, content);
+                }
+                return content;
+            }
+        };
+        try {
+            return m_scalingExecutor.execute(cacheName, operation);
+        } catch (IOException e) {
+            throw e;
+        } catch (CmsException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // interrupted while waiting for the result
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Sends the given file from the disk cache to the response.<p>
+     *
+     * The file content is transferred by the file channel, without copying it into a byte array first.<p>
+     *
+     * @param cached the file in the disk cache
+     * @param resource the base VFS resource for the image
+     * @param req the current request
+     * @param res the current response
+     *
+     * @return <code>false</code> if the file has been removed from the cache in the meantime
+     *
+     * @throws IOException in case of errors reading the file or writing the response
+     */
+    protected boolean sendCacheFile(File cached, CmsResource resource, HttpServletRequest req, HttpServletResponse res)
+    throws IOException {
+
+        FileInputStream in;
+        try {
+            in = new FileInputStream(cached);
+        } catch (FileNotFoundException e) {
+            // the file has been evicted from the cache
+            return false;
+        }
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            setResponseHeaders(resource, (int)size, req, res);
+            // the target channel must not be closed, since this would close the response output stream
+            WritableByteChannel target = Channels.newChannel(res.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                long count = channel.transferTo(position, size - position, target);
+                if (count <= 0) {
+                    break;
+                }
+                position += count;
+            }
+        } finally {
+            in.close();
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
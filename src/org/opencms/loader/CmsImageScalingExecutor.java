@@ -0,0 +1,331 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.loader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes image scaling operations in a bounded thread pool and makes sure that concurrent
+ * requests for the same scaled image version are only computed once.<p>
+ *
+ * Scaling operations are identified by a key, usually the name of the scaled image in the disk cache.
+ * If an operation for a key is already running, the caller waits for its result instead of starting another one.<p>
+ *
+ * If all threads are busy and the queue is full, the operation is executed in the calling thread.
+ * If the number of threads is 0, all operations are executed in the calling thread, but are still coalesced.
+ * After {@link #shutDown()}, new operations are rejected with a {@link RejectedExecutionException}, which is also
+ * thrown to the callers waiting for the rejected operation.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsImageScalingExecutor {
+
+    /** The maximum number of operations waiting for a thread, per thread. */
+    public static final int QUEUE_SIZE_PER_THREAD = 50;
+
+    /** Counter for the names of the scaling threads. */
+    static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /** The executor for background tasks. */
+    private ExecutorService m_backgroundExecutor;
+
+    /** The number of operations that used the result of an already running operation. */
+    private AtomicLong m_coalescedCount = new AtomicLong();
+
+    /** The thread pool, <code>null</code> if all operations are executed in the calling thread. */
+    private ThreadPoolExecutor m_executor;
+
+    /** The total time the operations waited for a thread, in nanoseconds. */
+    private AtomicLong m_queueWaitTime = new AtomicLong();
+
+    /** The currently running operations by key. */
+    private ConcurrentHashMap<String, FutureTask<byte[]>> m_running;
+
+    /** The number of executed operations. */
+    private AtomicLong m_scaleCount = new AtomicLong();
+
+    /** The total time of the executed operations, in nanoseconds. */
+    private AtomicLong m_scaleTime = new AtomicLong();
+
+    /**
+     * Creates a new image scaling executor.<p>
+     *
+     * @param threads the number of scaling threads, if 0 all operations are executed in the calling thread
+     */
+    public CmsImageScalingExecutor(int threads) {
+
+        m_running = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+        if (threads > 0) {
+            m_executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUE_SIZE_PER_THREAD),
+                createThreadFactory("OpenCms: Image scaling "),
+                new RejectedExecutionHandler() {
+
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+
+                        if (executor.isShutdown()) {
+                            // complete the operation, otherwise callers waiting for its result would wait forever
+                            if (r instanceof Future) {
+                                ((Future<?>)r).cancel(false);
+                            }
+                            throw new RejectedExecutionException();
+                        }
+                        // all threads are busy and the queue is full, scale in the calling thread
+                        r.run();
+                    }
+                });
+            m_executor.allowCoreThreadTimeOut(true);
+        }
+        m_backgroundExecutor = Executors.newSingleThreadExecutor(createThreadFactory("OpenCms: Image background "));
+    }
+
+    /**
+     * Executes the given scaling operation, or waits for the result of an already running operation with the same key.<p>
+     *
+     * @param key the key identifying the result of the operation
+     * @param operation the scaling operation
+     *
+     * @return the result of the operation
+     *
+     * @throws Exception the exception thrown by the operation, or a {@link RejectedExecutionException}
+     *      if this executor has been shut down
+     */
+    public byte[] execute(String key, final Callable<byte[]> operation) throws Exception {
+
+        final long submitted = System.nanoTime();
+        FutureTask<byte[]> future = new FutureTask<byte[]>(new Callable<byte[]>() {
+
+            public byte[] call() throws Exception {
+
+                long start = System.nanoTime();
+                m_queueWaitTime.addAndGet(start - submitted);
+                try {
+                    return operation.call();
+                } finally {
+                    m_scaleCount.incrementAndGet();
+                    m_scaleTime.addAndGet(System.nanoTime() - start);
+                }
+            }
+        });
+        FutureTask<byte[]> running = m_running.putIfAbsent(key, future);
+        if (running != null) {
+            // the same operation is already running, use its result
+            m_coalescedCount.incrementAndGet();
+            return getResult(running);
+        }
+        try {
+            if (m_executor != null) {
+                m_executor.execute(future);
+            } else {
+                future.run();
+            }
+            return getResult(future);
+        } finally {
+            m_running.remove(key, future);
+        }
+    }
+
+    /**
+     * Returns the average time an operation waited for a thread, in milliseconds.<p>
+     *
+     * @return the average time an operation waited for a thread
+     */
+    public long getAverageQueueWaitTime() {
+
+        long count = m_scaleCount.get();
+        return count > 0 ? (m_queueWaitTime.get() / count) / 1000000L : 0;
+    }
+
+    /**
+     * Returns the average time of an operation, in milliseconds.<p>
+     *
+     * @return the average time of an operation
+     */
+    public long getAverageScaleTime() {
+
+        long count = m_scaleCount.get();
+        return count > 0 ? (m_scaleTime.get() / count) / 1000000L : 0;
+    }
+
+    /**
+     * Returns the number of operations that used the result of an already running operation.<p>
+     *
+     * @return the number of coalesced operations
+     */
+    public long getCoalescedCount() {
+
+        return m_coalescedCount.get();
+    }
+
+    /**
+     * Returns the number of operations waiting for a thread.<p>
+     *
+     * @return the number of operations waiting for a thread
+     */
+    public int getQueueSize() {
+
+        return m_executor != null ? m_executor.getQueue().size() : 0;
+    }
+
+    /**
+     * Returns the number of executed operations.<p>
+     *
+     * @return the number of executed operations
+     */
+    public long getScaleCount() {
+
+        return m_scaleCount.get();
+    }
+
+    /**
+     * Returns the total time of the executed operations, in milliseconds.<p>
+     *
+     * @return the total time of the executed operations
+     */
+    public long getScaleTime() {
+
+        return m_scaleTime.get() / 1000000L;
+    }
+
+    /**
+     * Returns the number of threads, 0 if all operations are executed in the calling thread.<p>
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+
+        return m_executor != null ? m_executor.getMaximumPoolSize() : 0;
+    }
+
+    /**
+     * Shuts down the threads of this executor, running operations are finished.<p>
+     */
+    public void shutDown() {
+
+        if (m_executor != null) {
+            m_executor.shutdown();
+        }
+        m_backgroundExecutor.shutdownNow();
+    }
+
+    /**
+     * Executes the given task in a background thread, one task after another.<p>
+     *
+     * This is used for tasks that should not block the calling thread, like the generation of
+     * scaled image versions after publishing. The task itself may use {@link #execute(String, Callable)}.<p>
+     *
+     * @param task the task to execute
+     */
+    public void submitBackgroundTask(Runnable task) {
+
+        m_backgroundExecutor.execute(task);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        StringBuffer result = new StringBuffer();
+        result.append("threads=").append(getThreads()).append(", ");
+        result.append("scaled=").append(getScaleCount()).append(", ");
+        result.append("time=").append(getScaleTime()).append("ms, ");
+        result.append("avg=").append(getAverageScaleTime()).append("ms, ");
+        result.append("avgQueueWait=").append(getAverageQueueWaitTime()).append("ms, ");
+        result.append("queue=").append(getQueueSize()).append(", ");
+        result.append("coalesced=").append(getCoalescedCount());
+        return result.toString();
+    }
+
+    /**
+     * Creates a thread factory for daemon threads with the given name prefix.<p>
+     *
+     * @param prefix the name prefix
+     *
+     * @return the thread factory
+     */
+    private ThreadFactory createThreadFactory(final String prefix) {
+
+        return new ThreadFactory() {
+
+            public Thread newThread(Runnable r) {
+
+                Thread thread = new Thread(r, prefix + THREAD_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Waits for the result of the given operation.<p>
+     *
+     * @param future the operation
+     *
+     * @return the result of the operation
+     *
+     * @throws Exception the exception thrown by the operation
+     */
+    private byte[] getResult(FutureTask<byte[]> future) throws Exception {
+
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            // only happens if the operation has been rejected after the executor was shut down
+            throw new RejectedExecutionException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -62,11 +62,17 @@ import java.util.Map;
  */
 public final class CmsLockManager {
 
+    /** The number of incremental lock writes after which all locks are rewritten to the db. */
+    private static final int LOCKS_COMPACTION_INTERVAL = 100;
+
     /** The driver manager instance. */
     private CmsDriverManager m_driverManager;
 
-    /** The flag to indicate if the locks should be written to the db. */
-    private boolean m_isDirty;
+    /** The number of incremental lock writes since the last full rewrite. */
+    private int m_incrementalWrites;
+
+    /** The locks last written to the db by their row key, or <code>null</code> if not known. */
+    private Map<String, CmsLock> m_persistedLocks;
 
     /** The flag to indicate if the lock manager has been started in run level 4. */
     private boolean m_runningInServlet;
@@ -126,11 +132,11 @@ public final class CmsLockManager {
         // handle collisions with exclusive locked sub-resources in case of a folder
         if (resource.isFolder() && newLock.getSystemLock().isUnlocked()) {
             String resourceName = resource.getRootPath();
-            Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+            Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks(resourceName).iterator();
             while (itLocks.hasNext()) {
                 CmsLock lock = itLocks.next();
                 String lockedPath = lock.getResourceName();
-                if (lockedPath.startsWith(resourceName) && !lockedPath.equals(resourceName)) {
+                if (!lockedPath.equals(resourceName)) {
                     unlockResource(lockedPath, false);
                 }
             }
@@ -231,7 +237,7 @@ public final class CmsLockManager {
     throws CmsException {
 
         List<CmsResource> lockedResources = new ArrayList<CmsResource>();
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        Iterator<CmsLock> itLocks = getCandidateLocks(resource.getRootPath(), filter).iterator();
         while (itLocks.hasNext()) {
             CmsLock lock = itLocks.next();
             CmsResource lockedResource;
@@ -283,7 +289,7 @@ public final class CmsLockManager {
         Map<String, CmsResource> cache) throws CmsException {
 
         List<CmsResource> lockedResources = new ArrayList<CmsResource>();
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        Iterator<CmsLock> itLocks = getCandidateLocks(resource.getRootPath(), filter).iterator();
         while (itLocks.hasNext()) {
             CmsLock lock = itLocks.next();
             CmsResource lockedResource;
@@ -358,7 +364,7 @@ public final class CmsLockManager {
     public List<CmsLock> getLocks(CmsDbContext dbc, String resourceName, CmsLockFilter filter) throws CmsException {
 
         List<CmsLock> locks = new ArrayList<CmsLock>();
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        Iterator<CmsLock> itLocks = getCandidateLocks(resourceName, filter).iterator();
         while (itLocks.hasNext()) {
             CmsLock lock = itLocks.next();
             if (filter.isSharedExclusive()) {
@@ -404,40 +410,12 @@ public final class CmsLockManager {
         if (resource == null) {
             return false;
         }
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks(resource.getRootPath()).iterator();
         while (itLocks.hasNext()) {
             CmsLock lock = itLocks.next();
-            if (lock.getSystemLock().isUnlocked()) {
+            if (!lock.getSystemLock().isUnlocked()) {
                 // only system locks matter here
-                continue;
-            }
-            if (lock.getResourceName().startsWith(resource.getRootPath())) {
-                if (lock.getResourceName().startsWith(resource.getRootPath())) {
-                    return true;
-                }
-                try {
-                    resource = m_driverManager.readResource(dbc, lock.getResourceName(), CmsResourceFilter.ALL);
-                } catch (CmsVfsResourceNotFoundException e) {
-                    OpenCms.getMemoryMonitor().uncacheLock(lock.getResourceName());
-                    continue;
-                }
-                CmsResource lockedResource;
-                try {
-                    lockedResource = m_driverManager.readResource(dbc, lock.getResourceName(), CmsResourceFilter.ALL);
-                } catch (CmsVfsResourceNotFoundException e) {
-                    OpenCms.getMemoryMonitor().uncacheLock(lock.getResourceName());
-                    continue;
-                }
-                if (lockedResource.getSiblingCount() > 1) {
-                    Iterator<CmsResource> itSiblings = internalReadSiblings(dbc, lockedResource).iterator();
-                    while (itSiblings.hasNext()) {
-                        CmsResource sibling = itSiblings.next();
-                        CmsLock siblingLock = internalSiblingLock(lock, sibling.getRootPath());
-                        if (siblingLock.getResourceName().startsWith(resource.getRootPath())) {
-                            return true;
-                        }
-                    }
-                }
+                return true;
             }
         }
         return false;
@@ -576,10 +554,10 @@ public final class CmsLockManager {
             if (resource.isFolder()) {
                 // in case of a folder, remove any exclusive locks on sub-resources that probably have
                 // been upgraded from an inherited lock when the user edited a resource
-                Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+                Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks(resourcename).iterator();
                 while (itLocks.hasNext()) {
                     String lockedPath = (itLocks.next()).getResourceName();
-                    if (lockedPath.startsWith(resourcename) && !lockedPath.equals(resourcename)) {
+                    if (!lockedPath.equals(resourcename)) {
                         // remove the exclusive locked sub-resource
                         unlockResource(lockedPath, false);
                     }
@@ -593,13 +571,12 @@ public final class CmsLockManager {
         }
 
         if (lock.getType().isSharedExclusive()) {
-            List<String> locks = OpenCms.getMemoryMonitor().getAllCachedLockPaths();
             // when a resource with a shared lock gets unlocked, fetch all siblings of the resource
             // to the same content record to identify the exclusive locked sibling
             List<CmsResource> siblings = internalReadSiblings(dbc, resource);
             for (int i = 0; i < siblings.size(); i++) {
                 CmsResource sibling = siblings.get(i);
-                if (locks.contains(sibling.getRootPath())) {
+                if (getDirectLock(sibling.getRootPath()) != null) {
                     // remove the exclusive locked sibling
                     if (removeSystemLock) {
                         unlockResource(sibling.getRootPath(), true);
@@ -681,7 +658,10 @@ public final class CmsLockManager {
      * Writes the locks that are currently stored in-memory to the database to allow restoring them in
      * later startups.<p>
      *
-     * This overwrites the locks previously stored in the underlying database table.<p>
+     * The first write after startup overwrites the locks previously stored in the underlying database table.
+     * Later writes compare the current locks with the locks of the last write, and only delete and insert
+     * the locks which changed. If nothing changed, nothing is written. After
+     * {@link #LOCKS_COMPACTION_INTERVAL} incremental writes all locks are rewritten again.<p>
      *
      *  @param dbc the current database context
      *
@@ -689,13 +669,53 @@ public final class CmsLockManager {
      */
     public void writeLocks(CmsDbContext dbc) throws CmsException {
 
-        if (m_isDirty // only if something changed
-            && m_runningInServlet // only if started in run level 4
+        writeLocks(dbc, false);
+    }
+
+    /**
+     * Writes the locks that are currently stored in-memory to the database.<p>
+     *
+     * Works like {@link #writeLocks(CmsDbContext)}, but can also write the locks
+     * if OpenCms does not run in a servlet container, e.g. in the unit tests.<p>
+     *
+     *  @param dbc the current database context
+     *  @param force if <code>true</code>, the locks are also written if OpenCms does not run in a servlet container
+     *
+     *  @throws CmsException if something goes wrong
+     */
+    public synchronized void writeLocks(CmsDbContext dbc, boolean force) throws CmsException {
+
+        if ((m_runningInServlet || force) // only if started in run level 4
             && OpenCms.getMemoryMonitor().requiresPersistency()) { // only if persistency is required
 
+            // every change of the lock cache shows up in the difference to the locks of the last write
             List<CmsLock> locks = OpenCms.getMemoryMonitor().getAllCachedLocks();
-            m_driverManager.getProjectDriver(dbc).writeLocks(dbc, locks);
-            m_isDirty = false;
+            Map<String, CmsLock> persistentLocks = getPersistentLocks(locks);
+            Map<String, CmsLock> persistedLocks = m_persistedLocks;
+            // if writing fails, the stored locks are unknown and have to be rewritten the next time
+            m_persistedLocks = null;
+            if ((persistedLocks == null) || (m_incrementalWrites >= LOCKS_COMPACTION_INTERVAL)) {
+                m_driverManager.getProjectDriver(dbc).writeLocks(dbc, locks);
+                m_incrementalWrites = 0;
+            } else {
+                List<CmsLock> removedLocks = new ArrayList<CmsLock>();
+                for (Map.Entry<String, CmsLock> entry : persistedLocks.entrySet()) {
+                    if (!persistentLocks.containsKey(entry.getKey())) {
+                        removedLocks.add(entry.getValue());
+                    }
+                }
+                List<CmsLock> addedLocks = new ArrayList<CmsLock>();
+                for (Map.Entry<String, CmsLock> entry : persistentLocks.entrySet()) {
+                    if (!persistedLocks.containsKey(entry.getKey())) {
+                        addedLocks.add(entry.getValue());
+                    }
+                }
+                if (!removedLocks.isEmpty() || !addedLocks.isEmpty()) {
+                    m_driverManager.getProjectDriver(dbc).updateLocks(dbc, removedLocks, addedLocks);
+                    m_incrementalWrites++;
+                }
+            }
+            m_persistedLocks = persistentLocks;
         }
     }
 
@@ -745,6 +765,44 @@ public final class CmsLockManager {
         }
     }
 
+    /**
+     * Returns the cached locks that may match the given filter for the given resource.<p>
+     *
+     * Only the locks of the resource itself, its sub-resources and its parent folders are returned,
+     * depending on the filter settings. If the filter has to check siblings, all cached locks are returned,
+     * since siblings may be located anywhere in the VFS.<p>
+     *
+     * @param rootPath the root path of the resource
+     * @param filter the lock filter
+     *
+     * @return the locks that may match the given filter
+     */
+    private List<CmsLock> getCandidateLocks(String rootPath, CmsLockFilter filter) {
+
+        if (filter.isSharedExclusive()) {
+            return OpenCms.getMemoryMonitor().getAllCachedLocks();
+        }
+        List<CmsLock> locks;
+        if (filter.isIncludeChildren()) {
+            locks = OpenCms.getMemoryMonitor().getAllCachedLocks(rootPath);
+        } else {
+            locks = new ArrayList<CmsLock>();
+        }
+        if (filter.isIncludeParent()) {
+            // parent folders are not contained in the subtree, only the resource itself may be
+            int pos = rootPath.indexOf('/');
+            while (pos > -1) {
+                String parentPath = rootPath.substring(0, pos + 1);
+                CmsLock lock = getDirectLock(parentPath);
+                if ((lock != null) && !(filter.isIncludeChildren() && parentPath.equals(rootPath))) {
+                    locks.add(lock);
+                }
+                pos = rootPath.indexOf('/', pos + 1);
+            }
+        }
+        return locks;
+    }
+
     /**
      * Returns the direct lock of a resource.<p>
      *
@@ -757,6 +815,47 @@ public final class CmsLockManager {
         return OpenCms.getMemoryMonitor().getCachedLock(resourcename);
     }
 
+    /**
+     * Returns the single system and edition locks of the given locks which are stored in the db,
+     * by a key built from the columns of their db row.<p>
+     *
+     * @param locks the locks to get the persistent locks for
+     *
+     * @return the persistent locks by their row key
+     */
+    private Map<String, CmsLock> getPersistentLocks(List<CmsLock> locks) {
+
+        Map<String, CmsLock> result = new HashMap<String, CmsLock>(locks.size());
+        for (CmsLock lock : locks) {
+            CmsLock sysLock = lock.getSystemLock();
+            if (sysLock.isPersistent()) {
+                result.put(getPersistentLockKey(sysLock), sysLock);
+            }
+            CmsLock editLock = lock.getEditionLock();
+            if (editLock.isPersistent()) {
+                result.put(getPersistentLockKey(editLock), editLock);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key for the db row of the given single system or edition lock.<p>
+     *
+     * @param lock the lock to get the key for
+     *
+     * @return the key for the db row of the lock
+     */
+    private String getPersistentLockKey(CmsLock lock) {
+
+        StringBuffer key = new StringBuffer(lock.getResourceName().length() + 80);
+        key.append(lock.getResourceName()).append('|');
+        key.append(lock.getUserId()).append('|');
+        key.append(lock.getProjectId()).append('|');
+        key.append(lock.getType().hashCode());
+        return key.toString();
+    }
+
     /**
      * Returns the lock of a possible locked parent folder of a resource, system locks are ignored.<p>
      *
@@ -766,12 +865,12 @@ public final class CmsLockManager {
      */
     private CmsLock getParentFolderLock(String resourceName) {
 
-        Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
-        while (itLocks.hasNext()) {
-            CmsLock lock = itLocks.next();
-            if (lock.getResourceName().endsWith("/")
-                && resourceName.startsWith(lock.getResourceName())
-                && !resourceName.equals(lock.getResourceName())) {
+        // only the parent folders can pass on their lock, so looking them up directly
+        // costs the depth of the path instead of the number of cached locks
+        int pos = resourceName.indexOf('/');
+        while ((pos > -1) && (pos < (resourceName.length() - 1))) {
+            CmsLock lock = getDirectLock(resourceName.substring(0, pos + 1));
+            if (lock != null) {
                 // system locks does not get inherited
                 lock = lock.getEditionLock();
                 // check the lock
@@ -779,6 +878,7 @@ public final class CmsLockManager {
                     return lock;
                 }
             }
+            pos = resourceName.indexOf('/', pos + 1);
         }
         return CmsLock.getNullLock();
     }
@@ -941,7 +1041,6 @@ public final class CmsLockManager {
      */
     private void lockResource(CmsLock lock) throws CmsLockException {
 
-        m_isDirty = true;
         internalLockResource(lock, null);
     }
 
@@ -956,8 +1055,6 @@ public final class CmsLockManager {
      */
     private CmsLock unlockResource(String resourceName, boolean systemLocks) {
 
-        m_isDirty = true;
-
         // get the current lock
         CmsLock lock = OpenCms.getMemoryMonitor().getCachedLock(resourceName);
         if (lock == null) {
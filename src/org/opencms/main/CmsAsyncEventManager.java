@@ -0,0 +1,547 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Event manager that processes events for listeners implementing {@link I_CmsAsyncEventListener}
+ * in a background thread.<p>
+ *
+ * Each asynchronous listener gets its own worker thread with a bounded queue, so a slow listener
+ * neither blocks the thread that fired the event nor delays the other listeners.
+ * Events for one listener are still processed in the order they were fired.
+ * All synchronous listeners are called first, so they are always processed before the event is
+ * handed over to the asynchronous listeners.
+ * If the queue of a listener is full, the firing thread waits until the worker has taken the next
+ * event from the queue, which provides natural back pressure without ever calling the listener
+ * from two threads at the same time.<p>
+ *
+ * For a single event, an asynchronous listener only starts processing the event after all asynchronous
+ * listeners with a lower {@link I_CmsAsyncEventListener#getPriority() priority} value have finished it,
+ * e.g. the static export only renders published pages after the caches have been cleared.
+ * An event that is identical to an event still waiting in the queue of a coalescing listener is dropped.<p>
+ *
+ * To use this event manager, configure it in <code>opencms-system.xml</code>:
+ * <pre>
+ * &lt;events&gt;
+ *     &lt;eventmanager class="org.opencms.main.CmsAsyncEventManager" /&gt;
+ * &lt;/events&gt;
+ * </pre>
+ *
+ * @since 10.5.0
+ */
+public class CmsAsyncEventManager extends CmsEventManager {
+
+    /**
+     * Processes a single event for an asynchronous listener.<p>
+     */
+    protected class CmsAsyncEventTask implements Runnable {
+
+        /** Released when the listener has processed the event. */
+        protected CountDownLatch m_done;
+
+        /** The event to process. */
+        private CmsEvent m_event;
+
+        /** The key for coalescing identical events, <code>null</code> if the event is not coalescing. */
+        private CmsEventKey m_key;
+
+        /** The listener to call. */
+        private I_CmsAsyncEventListener m_listener;
+
+        /** The tasks of the listeners that have to process the event first. */
+        private List<CmsAsyncEventTask> m_predecessors;
+
+        /** The worker of the listener. */
+        private CmsListenerWorker m_worker;
+
+        /**
+         * Creates a new task.<p>
+         *
+         * @param worker the worker of the listener
+         * @param listener the listener to call
+         * @param event the event to process
+         * @param key the key for coalescing identical events, or <code>null</code>
+         * @param predecessors the tasks of the listeners that have to process the event first
+         */
+        protected CmsAsyncEventTask(
+            CmsListenerWorker worker,
+            I_CmsAsyncEventListener listener,
+            CmsEvent event,
+            CmsEventKey key,
+            List<CmsAsyncEventTask> predecessors) {
+
+            m_worker = worker;
+            m_listener = listener;
+            m_event = event;
+            m_key = key;
+            m_predecessors = predecessors;
+            m_done = new CountDownLatch(1);
+        }
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+
+            if (m_key != null) {
+                // from now on, an identical event must be processed again
+                m_worker.m_pending.remove(m_key, this);
+            }
+            try {
+                awaitPredecessors();
+                fireEventToListener(m_listener, m_event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn(Messages.get().getBundle().key(Messages.LOG_ERROR_EVENT_LISTENER_2, m_listener, m_event), e);
+            } catch (Throwable t) {
+                LOG.error(Messages.get().getBundle().key(Messages.LOG_ERROR_EVENT_LISTENER_2, m_listener, m_event), t);
+            } finally {
+                m_done.countDown();
+            }
+        }
+
+        /**
+         * Waits until the listeners with a lower priority value have processed the event.<p>
+         *
+         * To avoid waiting forever, e.g. for a worker that is blocked by a full queue, the wait is limited
+         * to {@link CmsAsyncEventManager#ORDER_TIMEOUT} milliseconds.<p>
+         *
+         * @throws InterruptedException if the worker thread is interrupted while waiting
+         */
+        private void awaitPredecessors() throws InterruptedException {
+
+            long deadline = System.currentTimeMillis() + ORDER_TIMEOUT;
+            for (CmsAsyncEventTask predecessor : m_predecessors) {
+                long wait = deadline - System.currentTimeMillis();
+                if ((wait <= 0) || !predecessor.m_done.await(wait, TimeUnit.MILLISECONDS)) {
+                    LOG.warn(
+                        Messages.get().getBundle().key(Messages.LOG_ERROR_EVENT_ORDER_TIMEOUT_2, m_listener, m_event));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Identifies identical events, i.e. events of the same type with equal data.<p>
+     */
+    protected static class CmsEventKey {
+
+        /** The event data. */
+        private Map<String, Object> m_data;
+
+        /** The event type. */
+        private Integer m_type;
+
+        /**
+         * Creates a new key for the given event.<p>
+         *
+         * @param event the event
+         */
+        protected CmsEventKey(CmsEvent event) {
+
+            m_type = event.getTypeInteger();
+            m_data = event.getData();
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof CmsEventKey) {
+                CmsEventKey other = (CmsEventKey)obj;
+                return m_type.equals(other.m_type) && m_data.equals(other.m_data);
+            }
+            return false;
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+
+            return (31 * m_type.hashCode()) + m_data.hashCode();
+        }
+    }
+
+    /**
+     * The worker thread and the queue of an asynchronous listener.<p>
+     */
+    protected static class CmsListenerWorker {
+
+        /** The executor that runs the tasks. */
+        protected ThreadPoolExecutor m_executor;
+
+        /** The tasks of the coalescing events that are queued, but not yet processed. */
+        protected ConcurrentHashMap<CmsEventKey, CmsAsyncEventTask> m_pending;
+
+        /** The worker thread, <code>null</code> until the first event has been queued. */
+        protected volatile Thread m_thread;
+
+        /**
+         * Creates a new worker.<p>
+         *
+         * @param name the thread name
+         * @param queueSize the maximum number of waiting events
+         */
+        protected CmsListenerWorker(final String name, int queueSize) {
+
+            m_pending = new ConcurrentHashMap<CmsEventKey, CmsAsyncEventTask>();
+            m_executor = new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize),
+                new ThreadFactory() {
+
+                    public Thread newThread(Runnable r) {
+
+                        Thread thread = new Thread(r, name);
+                        thread.setDaemon(true);
+                        m_thread = thread;
+                        return thread;
+                    }
+                },
+                new CmsBlockingRejectionHandler(this));
+        }
+    }
+
+    /**
+     * Makes the firing thread wait for space in the queue of a listener, instead of processing the
+     * event itself while the worker is still busy with earlier events.<p>
+     *
+     * The event is only rejected if the worker has been shut down, if the firing thread is interrupted,
+     * or if the worker thread fires an event to its own listener, since waiting would never end then.<p>
+     */
+    protected static class CmsBlockingRejectionHandler implements RejectedExecutionHandler {
+
+        /** The worker this handler belongs to. */
+        private CmsListenerWorker m_worker;
+
+        /**
+         * Creates a new handler.<p>
+         *
+         * @param worker the worker this handler belongs to
+         */
+        protected CmsBlockingRejectionHandler(CmsListenerWorker worker) {
+
+            m_worker = worker;
+        }
+
+        /**
+         * @see java.util.concurrent.RejectedExecutionHandler#rejectedExecution(java.lang.Runnable, java.util.concurrent.ThreadPoolExecutor)
+         */
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+
+            if (Thread.currentThread() == m_worker.m_thread) {
+                // the listener fired an event to itself, the worker can not wait for its own queue
+                throw new RejectedExecutionException();
+            }
+            BlockingQueue<Runnable> queue = executor.getQueue();
+            try {
+                while (!executor.isShutdown()) {
+                    if (queue.offer(task, 100, TimeUnit.MILLISECONDS)) {
+                        if (executor.isShutdown() && queue.remove(task)) {
+                            // shut down while waiting, the task would never be processed
+                            break;
+                        }
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RejectedExecutionException();
+        }
+    }
+
+    /** The default maximum number of events waiting for a single listener. */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * The maximum time in milliseconds a listener waits for the listeners with a lower priority value
+     * to process an event.
+     */
+    public static final long ORDER_TIMEOUT = 60000;
+
+    /** The static log object for this class. */
+    static final Log LOG = CmsLog.getLog(CmsAsyncEventManager.class);
+
+    /** Orders the asynchronous listeners by their priority. */
+    private static final Comparator<I_CmsAsyncEventListener> COMPARATOR = new Comparator<I_CmsAsyncEventListener>() {
+
+        /**
+         * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+         */
+        public int compare(I_CmsAsyncEventListener listener1, I_CmsAsyncEventListener listener2) {
+
+            return Integer.compare(listener1.getPriority(), listener2.getPriority());
+        }
+    };
+
+    /** Counter for the names of the worker threads. */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /** The maximum number of events waiting for a single listener. */
+    private int m_queueSize;
+
+    /** Flag to indicate this event manager has been shut down. */
+    private volatile boolean m_shutDown;
+
+    /** The workers of the asynchronous listeners. */
+    private ConcurrentHashMap<I_CmsAsyncEventListener, CmsListenerWorker> m_workers;
+
+    /**
+     * Creates a new asynchronous event manager with the default queue size.<p>
+     */
+    public CmsAsyncEventManager() {
+
+        this(DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Creates a new asynchronous event manager.<p>
+     *
+     * @param queueSize the maximum number of events waiting for a single listener
+     */
+    public CmsAsyncEventManager(int queueSize) {
+
+        super();
+        m_queueSize = queueSize;
+        m_workers = new ConcurrentHashMap<I_CmsAsyncEventListener, CmsListenerWorker>();
+    }
+
+    /**
+     * Fires the event to the listeners for its type and to the listeners for all events at once,
+     * so the asynchronous listeners of both groups are ordered by their priority.<p>
+     *
+     * @see org.opencms.main.CmsEventManager#fireEvent(org.opencms.main.CmsEvent)
+     */
+    @Override
+    public void fireEvent(CmsEvent event) {
+
+        List<I_CmsEventListener> listeners = new ArrayList<I_CmsEventListener>();
+        List<I_CmsEventListener> typeListeners = getEventListeners().get(event.getTypeInteger());
+        if (typeListeners != null) {
+            listeners.addAll(Arrays.asList(typeListeners.toArray(EVENT_LIST)));
+        }
+        List<I_CmsEventListener> allListeners = getEventListeners().get(I_CmsEventListener.LISTENERS_FOR_ALL_EVENTS);
+        if (allListeners != null) {
+            listeners.addAll(Arrays.asList(allListeners.toArray(EVENT_LIST)));
+        }
+        fireEventHandler(listeners, event);
+    }
+
+    /**
+     * @see org.opencms.main.CmsEventManager#removeCmsEventListener(org.opencms.main.I_CmsEventListener)
+     */
+    @Override
+    public void removeCmsEventListener(I_CmsEventListener listener) {
+
+        super.removeCmsEventListener(listener);
+        CmsListenerWorker worker = m_workers.remove(listener);
+        if (worker != null) {
+            // already queued events are still processed
+            worker.m_executor.shutdown();
+        }
+    }
+
+    /**
+     * Shuts down the worker threads, waiting a short time for already queued events.<p>
+     *
+     * @see org.opencms.main.CmsEventManager#shutDown()
+     */
+    @Override
+    public void shutDown() {
+
+        m_shutDown = true;
+        List<CmsListenerWorker> workers = new ArrayList<CmsListenerWorker>(m_workers.values());
+        m_workers.clear();
+        for (CmsListenerWorker worker : workers) {
+            worker.m_executor.shutdown();
+        }
+        for (CmsListenerWorker worker : workers) {
+            try {
+                if (!worker.m_executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    worker.m_executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                worker.m_executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @see org.opencms.main.CmsEventManager#fireEventHandler(java.util.List, org.opencms.main.CmsEvent)
+     */
+    @Override
+    protected void fireEventHandler(List<I_CmsEventListener> listeners, CmsEvent event) {
+
+        if ((listeners == null) || listeners.isEmpty()) {
+            super.fireEventHandler(listeners, event);
+            return;
+        }
+        I_CmsEventListener[] list = listeners.toArray(EVENT_LIST);
+        List<I_CmsEventListener> syncListeners = new ArrayList<I_CmsEventListener>(list.length);
+        List<I_CmsAsyncEventListener> asyncListeners = null;
+        for (int i = 0; i < list.length; i++) {
+            if (!m_shutDown
+                && (list[i] instanceof I_CmsAsyncEventListener)
+                && ((I_CmsAsyncEventListener)list[i]).isAsync(event)) {
+                if (asyncListeners == null) {
+                    asyncListeners = new ArrayList<I_CmsAsyncEventListener>();
+                }
+                asyncListeners.add((I_CmsAsyncEventListener)list[i]);
+            } else {
+                syncListeners.add(list[i]);
+            }
+        }
+        // synchronous listeners first, they may rely on being called before the firing thread continues
+        super.fireEventHandler(syncListeners, event);
+        if (asyncListeners != null) {
+            // the sort is stable, so listeners with the same priority keep the order they were added in
+            Collections.sort(asyncListeners, COMPARATOR);
+            List<CmsAsyncEventTask> predecessors = Collections.emptyList();
+            List<CmsAsyncEventTask> tasks = new ArrayList<CmsAsyncEventTask>();
+            int priority = asyncListeners.get(0).getPriority();
+            for (I_CmsAsyncEventListener listener : asyncListeners) {
+                if (listener.getPriority() != priority) {
+                    // the listeners with the next priority wait for all listeners queued so far
+                    predecessors = new ArrayList<CmsAsyncEventTask>(tasks);
+                    priority = listener.getPriority();
+                }
+                tasks.add(enqueue(listener, event, predecessors));
+            }
+        }
+    }
+
+    /**
+     * Returns the worker for the given listener, creating it if required.<p>
+     *
+     * @param listener the listener
+     *
+     * @return the worker for the given listener
+     */
+    protected CmsListenerWorker getWorker(I_CmsAsyncEventListener listener) {
+
+        CmsListenerWorker worker = m_workers.get(listener);
+        if (worker == null) {
+            CmsListenerWorker newWorker = new CmsListenerWorker(
+                "OpenCms: Event listener " + THREAD_COUNTER.incrementAndGet(),
+                m_queueSize);
+            worker = m_workers.putIfAbsent(listener, newWorker);
+            if (worker == null) {
+                worker = newWorker;
+                getListenerStatistics(listener).setQueue(worker.m_executor.getQueue());
+                if (OpenCms.getMemoryMonitor() != null) {
+                    OpenCms.getMemoryMonitor().register(
+                        CmsAsyncEventManager.class.getName() + "." + listener.getClass().getName(),
+                        worker.m_executor.getQueue());
+                }
+            } else {
+                // another thread was faster
+                newWorker.m_executor.shutdown();
+            }
+        }
+        return worker;
+    }
+
+    /**
+     * Hands the event over to the worker of the given listener.<p>
+     *
+     * @param listener the listener
+     * @param event the event
+     * @param predecessors the tasks of the listeners that have to process the event first
+     *
+     * @return the task that processes the event for the listener
+     */
+    private CmsAsyncEventTask enqueue(
+        I_CmsAsyncEventListener listener,
+        CmsEvent event,
+        List<CmsAsyncEventTask> predecessors) {
+
+        CmsListenerWorker worker = getWorker(listener);
+        CmsEventKey key = listener.isCoalescing(event) ? new CmsEventKey(event) : null;
+        CmsAsyncEventTask task = new CmsAsyncEventTask(worker, listener, event, key, predecessors);
+        if (key != null) {
+            CmsAsyncEventTask pending = worker.m_pending.putIfAbsent(key, task);
+            if (pending != null) {
+                // an identical event is still waiting, this one is not required
+                getListenerStatistics(listener).addCoalesced();
+                return pending;
+            }
+        }
+        try {
+            worker.m_executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (key != null) {
+                worker.m_pending.remove(key, task);
+            }
+            if (Thread.currentThread() != worker.m_thread) {
+                // the worker has been shut down concurrently: let it finish the queued events first,
+                // so the listener is not called from two threads at the same time
+                try {
+                    worker.m_executor.awaitTermination(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    LOG.warn(Messages.get().getBundle().key(Messages.LOG_ERROR_EVENT_LISTENER_2, listener, event), ie);
+                    task.m_done.countDown();
+                    return task;
+                }
+            }
+            task.run();
+        }
+        return task;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.main;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processing statistics of a single event listener.<p>
+ *
+ * @since 10.5.0
+ *
+ * @see CmsEventManager#getListenerStatistics()
+ */
+public class CmsEventListenerStatistics {
+
+    /** The number of events dropped because an event of the same type was already waiting. */
+    private AtomicLong m_coalescedCount = new AtomicLong();
+
+    /** The number of processed events. */
+    private AtomicLong m_count = new AtomicLong();
+
+    /** The name of the listener. */
+    private String m_listenerName;
+
+    /** The maximum processing time in nanoseconds. */
+    private AtomicLong m_maxTime = new AtomicLong();
+
+    /** The queue of waiting events, <code>null</code> if the listener is called synchronously. */
+    private Collection<?> m_queue;
+
+    /** The total processing time in nanoseconds. */
+    private AtomicLong m_totalTime = new AtomicLong();
+
+    /**
+     * Creates new statistics for the given listener.<p>
+     *
+     * @param listener the listener
+     */
+    public CmsEventListenerStatistics(I_CmsEventListener listener) {
+
+        m_listenerName = listener.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(listener));
+    }
+
+    /**
+     * Returns the average processing time in milliseconds.<p>
+     *
+     * @return the average processing time in milliseconds
+     */
+    public long getAverageTime() {
+
+        long count = m_count.get();
+        return count > 0 ? (m_totalTime.get() / count) / 1000000L : 0;
+    }
+
+    /**
+     * Returns the number of events that were dropped because an event of the same type was already waiting.<p>
+     *
+     * @return the number of coalesced events
+     */
+    public long getCoalescedCount() {
+
+        return m_coalescedCount.get();
+    }
+
+    /**
+     * Returns the number of processed events.<p>
+     *
+     * @return the number of processed events
+     */
+    public long getCount() {
+
+        return m_count.get();
+    }
+
+    /**
+     * Returns the name of the listener.<p>
+     *
+     * @return the name of the listener
+     */
+    public String getListenerName() {
+
+        return m_listenerName;
+    }
+
+    /**
+     * Returns the maximum processing time in milliseconds.<p>
+     *
+     * @return the maximum processing time in milliseconds
+     */
+    public long getMaxTime() {
+
+        return m_maxTime.get() / 1000000L;
+    }
+
+    /**
+     * Returns the number of events waiting to be processed.<p>
+     *
+     * @return the number of waiting events, always 0 for synchronous listeners
+     */
+    public int getQueueSize() {
+
+        return m_queue != null ? m_queue.size() : 0;
+    }
+
+    /**
+     * Returns the total processing time in milliseconds.<p>
+     *
+     * @return the total processing time in milliseconds
+     */
+    public long getTotalTime() {
+
+        return m_totalTime.get() / 1000000L;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        StringBuffer result = new StringBuffer();
+        result.append(m_listenerName).append(": ");
+        result.append("count=").append(getCount()).append(", ");
+        result.append("total=").append(getTotalTime()).append("ms, ");
+        result.append("avg=").append(getAverageTime()).append("ms, ");
+        result.append("max=").append(getMaxTime()).append("ms, ");
+        result.append("queue=").append(getQueueSize()).append(", ");
+        result.append("coalesced=").append(getCoalescedCount());
+        return result.toString();
+    }
+
+    /**
+     * Counts an event that was dropped because an event of the same type was already waiting.<p>
+     */
+    protected void addCoalesced() {
+
+        m_coalescedCount.incrementAndGet();
+    }
+
+    /**
+     * Adds the processing time of an event.<p>
+     *
+     * @param nanos the processing time in nanoseconds
+     */
+    protected void addEvent(long nanos) {
+
+        m_count.incrementAndGet();
+        m_totalTime.addAndGet(nanos);
+        long max = m_maxTime.get();
+        while ((nanos > max) && !m_maxTime.compareAndSet(max, nanos)) {
+            max = m_maxTime.get();
+        }
+    }
+
+    /**
+     * Sets the queue of waiting events.<p>
+     *
+     * @param queue the queue of waiting events
+     */
+    protected void setQueue(Collection<?> queue) {
+
+        m_queue = queue;
+    }
+}
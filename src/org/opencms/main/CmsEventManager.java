@@ -32,6 +32,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 
@@ -60,12 +61,16 @@ public class CmsEventManager {
     /** Stores the active event listeners. */
     private Map<Integer, List<I_CmsEventListener>> m_eventListeners;
 
+    /** The processing statistics of the event listeners. */
+    private ConcurrentHashMap<I_CmsEventListener, CmsEventListenerStatistics> m_listenerStatistics;
+
     /**
      * Create a new instance of an OpenCms event manager.<p>
      */
     public CmsEventManager() {
 
         m_eventListeners = new HashMap<Integer, List<I_CmsEventListener>>();
+        m_listenerStatistics = new ConcurrentHashMap<I_CmsEventListener, CmsEventListenerStatistics>();
     }
 
     /**
@@ -139,6 +144,16 @@ public class CmsEventManager {
         fireEvent(new CmsEvent(type, data));
     }
 
+    /**
+     * Returns the processing statistics of all event listeners that have received at least one event.<p>
+     *
+     * @return the processing statistics of the event listeners
+     */
+    public List<CmsEventListenerStatistics> getListenerStatistics() {
+
+        return new ArrayList<CmsEventListenerStatistics>(m_listenerStatistics.values());
+    }
+
     /**
      * Removes a cms event listener.<p>
      *
@@ -153,6 +168,17 @@ public class CmsEventManager {
                 listeners.remove(listener);
             }
         }
+        m_listenerStatistics.remove(listener);
+    }
+
+    /**
+     * Shuts down this event manager.<p>
+     *
+     * The default implementation processes all events synchronously, so there is nothing to do.<p>
+     */
+    public void shutDown() {
+
+        // NOOP
     }
 
     /**
@@ -175,6 +201,43 @@ public class CmsEventManager {
         m_eventListeners = new HashMap<Integer, List<I_CmsEventListener>>(base.getEventListeners());
     }
 
+    /**
+     * Returns the processing statistics for the given listener, creating them if required.<p>
+     *
+     * @param listener the listener
+     *
+     * @return the processing statistics for the given listener
+     */
+    protected CmsEventListenerStatistics getListenerStatistics(I_CmsEventListener listener) {
+
+        CmsEventListenerStatistics stats = m_listenerStatistics.get(listener);
+        if (stats == null) {
+            stats = new CmsEventListenerStatistics(listener);
+            CmsEventListenerStatistics existing = m_listenerStatistics.putIfAbsent(listener, stats);
+            if (existing != null) {
+                // another thread was faster
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Fires the specified event to a single event listener and records the processing time.<p>
+     *
+     * @param listener the listener to fire
+     * @param event the event to fire
+     */
+    protected void fireEventToListener(I_CmsEventListener listener, CmsEvent event) {
+
+        long start = System.nanoTime();
+        try {
+            listener.cmsEvent(event);
+        } finally {
+            getListenerStatistics(listener).addEvent(System.nanoTime() - start);
+        }
+    }
+
     /**
      * Fires the specified event to a list of event listeners.<p>
      *
@@ -191,7 +254,7 @@ public class CmsEventManager {
                 // loop through all registered event listeners
                 for (int i = 0; i < list.length; i++) {
                     // fire the event
-                    list[i].cmsEvent(event);
+                    fireEventToListener(list[i], event);
                 }
             }
         } else {
@@ -235,7 +298,7 @@ public class CmsEventManager {
                             new Integer(i),
                             event.toString()));
                     // fire the event
-                    list[i].cmsEvent(event);
+                    fireEventToListener(list[i], event);
                     LOG.debug(
                         Messages.get().getBundle().key(
                             Messages.LOG_DEBUG_EVENT_END_LISTENER_3,
@@ -479,6 +479,22 @@ class CmsShellCommands implements I_CmsShellCommands {
             new CmsShellReport(m_cms.getRequestContext().getLocale()));
     }
 
+    /**
+     * Exports the text extraction cache of the search to a ZIP file.<p>
+     *
+     * @param exportFile the absolute RFS path of the ZIP file to write
+     *
+     * @throws Exception if something goes wrong
+     *
+     * @see org.opencms.search.CmsSearchManager#exportExtractionCache(CmsObject, String)
+     */
+    public void exportExtractionCache(String exportFile) throws Exception {
+
+        int count = OpenCms.getSearchManager().exportExtractionCache(m_cms, exportFile);
+        m_shell.getOut().println(
+            getMessages().key(Messages.GUI_SHELL_EXTRACTION_CACHE_EXPORTED_2, new Integer(count), exportFile));
+    }
+
     /**
      * Exports the module with the given name to the default location.<p>
      *
@@ -705,6 +721,22 @@ class CmsShellCommands implements I_CmsShellCommands {
         }
     }
 
+    /**
+     * Imports the text extraction cache of the search from a ZIP file written by {@link #exportExtractionCache(String)}.<p>
+     *
+     * @param importFile the absolute RFS path of the ZIP file to read
+     *
+     * @throws Exception if something goes wrong
+     *
+     * @see org.opencms.search.CmsSearchManager#importExtractionCache(CmsObject, String)
+     */
+    public void importExtractionCache(String importFile) throws Exception {
+
+        int count = OpenCms.getSearchManager().importExtractionCache(m_cms, importFile);
+        m_shell.getOut().println(
+            getMessages().key(Messages.GUI_SHELL_EXTRACTION_CACHE_IMPORTED_2, new Integer(count), importFile));
+    }
+
     /**
      * Imports a module.<p>
      *
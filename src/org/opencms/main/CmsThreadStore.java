@@ -36,6 +36,7 @@ import org.opencms.util.CmsUUID;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -168,30 +169,32 @@ public final class CmsThreadStore extends Thread {
                 // this can happen during shutdown
                 return;
             }
-            // get the current publish job
-            CmsPublishJobRunning publishJob = publishManager.getCurrentPublishJob();
-            if (publishJob == null) {
+            // get the running publish jobs
+            List<CmsPublishJobRunning> publishJobs = publishManager.getRunningPublishJobs();
+            if (publishJobs.isEmpty()) {
                 // try to start next job
                 publishManager.checkCurrentPublishJobThread();
                 return;
             }
-            // get the thread id of the current publish job
-            CmsUUID uid = publishJob.getThreadUUID();
-            if ((uid == null) || (uid.isNullUUID())) {
-                return;
-            }
-            // find the thread
-            A_CmsReportThread thread = m_threads.get(uid);
-            if (thread == null) {
-                return;
-            }
-            // check if the report still has output and so is active
-            if ((System.currentTimeMillis() - thread.getLastEntryTime()) > (UPDATE_MINUTES_INTERVAL
-                * ONE_MINUTE_IN_MILLIS)) {
-                // remove it
-                m_threads.remove(thread);
-                // abandon thread
-                publishManager.abandonThread();
+            for (CmsPublishJobRunning publishJob : publishJobs) {
+                // get the thread id of the publish job
+                CmsUUID uid = publishJob.getThreadUUID();
+                if ((uid == null) || (uid.isNullUUID())) {
+                    continue;
+                }
+                // find the thread
+                A_CmsReportThread thread = m_threads.get(uid);
+                if (thread == null) {
+                    continue;
+                }
+                // check if the report still has output and so is active
+                if ((System.currentTimeMillis() - thread.getLastEntryTime()) > (UPDATE_MINUTES_INTERVAL
+                    * ONE_MINUTE_IN_MILLIS)) {
+                    // remove it
+                    m_threads.remove(thread);
+                    // abandon thread
+                    publishManager.abandonThread(publishJob);
+                }
             }
         } catch (Throwable t) {
             LOG.error(Messages.get().getBundle().key(Messages.LOG_THREADSTORE_CHECK_PUBLISH_THREAD_ERROR_0), t);
@@ -0,0 +1,86 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.main;
+
+/**
+ * Event listener that allows the {@link CmsAsyncEventManager} to process (some of) its events
+ * asynchronously, instead of blocking the thread that fired the event.<p>
+ *
+ * Listeners that do not implement this interface are always called synchronously.
+ * Implementing classes must be thread safe, since the events are processed in a separate thread.
+ * The events for a single listener are still processed one after another, in the order they were fired.<p>
+ *
+ * For a single event, the asynchronous listeners are ordered by their {@link #getPriority() priority}:
+ * a listener only starts processing the event after all listeners with a lower priority value have finished
+ * processing it, while listeners with the same priority process it at the same time.<p>
+ *
+ * @since 10.5.0
+ *
+ * @see CmsAsyncEventManager
+ */
+public interface I_CmsAsyncEventListener extends I_CmsEventListener {
+
+    /** The priority of listeners that clear or update caches other listeners read from. */
+    int PRIORITY_CACHE = 100;
+
+    /** The default priority. */
+    int PRIORITY_DEFAULT = 500;
+
+    /**
+     * Returns the priority of this listener, listeners with a lower value process an event first.<p>
+     *
+     * @return the priority of this listener
+     *
+     * @see #PRIORITY_CACHE
+     * @see #PRIORITY_DEFAULT
+     */
+    int getPriority();
+
+    /**
+     * Checks if the given event can be processed asynchronously by this listener.<p>
+     *
+     * If <code>false</code> is returned, the event is processed in the thread that fired it.<p>
+     *
+     * @param event the event
+     *
+     * @return <code>true</code> if the given event can be processed asynchronously
+     */
+    boolean isAsync(CmsEvent event);
+
+    /**
+     * Checks if the given event can be dropped in case an identical event, i.e. an event of the same type
+     * with equal data, is still waiting to be processed by this listener.<p>
+     *
+     * This is useful for events like {@link I_CmsEventListener#EVENT_CLEAR_CACHES}, where processing
+     * the waiting event has the same effect as processing both of them.<p>
+     *
+     * @param event the event
+     *
+     * @return <code>true</code> if the event can be coalesced with a waiting identical event
+     */
+    boolean isCoalescing(CmsEvent event);
+}
@@ -168,6 +168,12 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String GUI_SHELL_EXEC_METHOD_1 = "GUI_SHELL_EXEC_METHOD_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String GUI_SHELL_EXTRACTION_CACHE_EXPORTED_2 = "GUI_SHELL_EXTRACTION_CACHE_EXPORTED_2";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String GUI_SHELL_EXTRACTION_CACHE_IMPORTED_2 = "GUI_SHELL_EXTRACTION_CACHE_IMPORTED_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String GUI_SHELL_FOLDER_ALREADY_EXISTS_1 = "GUI_SHELL_FOLDER_ALREADY_EXISTS_1";
 
@@ -384,12 +390,27 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_ERROR_DERIGISTERING_JDBC_DRIVER_1 = "LOG_ERROR_DERIGISTERING_JDBC_DRIVER_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_ERROR_EVENT_LISTENER_2 = "LOG_ERROR_EVENT_LISTENER_2";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_ERROR_EVENT_MANAGER_SHUTDOWN_1 = "LOG_ERROR_EVENT_MANAGER_SHUTDOWN_1";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_ERROR_EVENT_ORDER_TIMEOUT_2 = "LOG_ERROR_EVENT_ORDER_TIMEOUT_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_ERROR_EXPORT_1 = "LOG_ERROR_EXPORT_1";
 
     /** Message constant for key in the resource bundle. */
     public static final String LOG_ERROR_EXPORT_SHUTDOWN_1 = "LOG_ERROR_EXPORT_SHUTDOWN_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_ERROR_FLEX_CACHE_SHUTDOWN_1 = "LOG_ERROR_FLEX_CACHE_SHUTDOWN_1";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_ERROR_FLEX_CACHE_SNAPSHOT_0 = "LOG_ERROR_FLEX_CACHE_SNAPSHOT_0";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_ERROR_GENERIC_0 = "LOG_ERROR_GENERIC_0";
 
@@ -204,6 +204,9 @@ public final class OpenCmsCore {
     /** The set of configured export points. */
     private Set<CmsExportPoint> m_exportPoints;
 
+    /** The Flex cache, or <code>null</code> if it could not be initialized. */
+    private CmsFlexCache m_flexCache;
+
     /** The context objects for GWT services. */
     private Map<String, CmsGwtServiceContext> m_gwtServiceContexts;
 
@@ -1277,6 +1280,7 @@ public final class OpenCmsCore {
             getSystemInfo().setDeviceSelector(flexCacheConfiguration.getDeviceSelector());
             // pass configuration to flex cache for initialization
             flexCache = new CmsFlexCache(flexCacheConfiguration);
+            m_flexCache = flexCache;
             if (CmsLog.INIT.isInfoEnabled()) {
                 CmsLog.INIT.info(Messages.get().getBundle().key(Messages.INIT_FLEX_CACHE_FINISHED_0));
             }
@@ -1878,6 +1882,16 @@ public final class OpenCmsCore {
                         Messages.get().getBundle().key(Messages.LOG_ERROR_EXPORT_SHUTDOWN_1, e.getMessage()),
                         e);
                 }
+                try {
+                    // the Flex cache writes the snapshot of the online entries
+                    if (m_flexCache != null) {
+                        m_flexCache.shutDown();
+                    }
+                } catch (Throwable e) {
+                    CmsLog.INIT.error(
+                        Messages.get().getBundle().key(Messages.LOG_ERROR_FLEX_CACHE_SHUTDOWN_1, e.getMessage()),
+                        e);
+                }
                 try {
                     if (m_moduleManager != null) {
                         m_moduleManager.shutDown();
@@ -1887,6 +1901,16 @@ public final class OpenCmsCore {
                         Messages.get().getBundle().key(Messages.LOG_ERROR_MODULE_SHUTDOWN_1, e.getMessage()),
                         e);
                 }
+                try {
+                    // stops the threads of asynchronous event listeners, if any
+                    if (m_eventManager != null) {
+                        m_eventManager.shutDown();
+                    }
+                } catch (Throwable e) {
+                    CmsLog.INIT.error(
+                        Messages.get().getBundle().key(Messages.LOG_ERROR_EVENT_MANAGER_SHUTDOWN_1, e.getMessage()),
+                        e);
+                }
 
                 try {
                     if (m_executor != null) {
@@ -2156,6 +2180,16 @@ public final class OpenCmsCore {
             }
         }
 
+        if ((m_flexCache != null) && (getRunLevel() == OpenCms.RUNLEVEL_4_SERVLET_ACCESS)) {
+            try {
+                // restore the Flex cache entries of the last run, the shell does not need them
+                m_flexCache.initialize(
+                    initCmsObject(null, null, getDefaultUsers().getUserAdmin(), (String)null, (String)null));
+            } catch (CmsException e) {
+                LOG.error(Messages.get().getBundle().key(Messages.LOG_ERROR_FLEX_CACHE_SNAPSHOT_0), e);
+            }
+        }
+
         // everything is initialized, now start publishing
         m_publishManager.startPublishing();
     }
@@ -0,0 +1,236 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ForwardingConcurrentMap;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Thread safe LRU cache map based on a guava cache that records hit, miss, load and eviction statistics.<p>
+ *
+ * The map view of a guava cache does not record statistics for read access,
+ * so this map routes {@link #get(Object)} through {@link Cache#getIfPresent(Object)}.<p>
+ *
+ * With {@link #get(Object, Callable)} the map can also be used as loading cache, where concurrent
+ * misses for the same key wait for a single load instead of all reading from the database.<p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ *
+ * @since 10.5.0
+ */
+public class CmsCacheMap<K, V> extends ForwardingConcurrentMap<K, V> {
+
+    /** The underlying guava cache. */
+    private Cache<K, V> m_cache;
+
+    /** Counts the invalidations, used to detect invalidations that race with a load. */
+    private AtomicLong m_invalidations = new AtomicLong();
+
+    /** The map view of the guava cache. */
+    private ConcurrentMap<K, V> m_map;
+
+    /** The maximum number of entries. */
+    private long m_maxSize;
+
+    /**
+     * Creates a new cache map.<p>
+     *
+     * @param maxSize the maximum number of entries
+     * @param concurrencyLevel the concurrency level of the guava cache
+     */
+    public CmsCacheMap(long maxSize, int concurrencyLevel) {
+
+        m_maxSize = maxSize;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().concurrencyLevel(
+            concurrencyLevel).maximumSize(maxSize).recordStats();
+        m_cache = builder.build();
+        m_map = m_cache.asMap();
+    }
+
+    /**
+     * @see com.google.common.collect.ForwardingMap#clear()
+     */
+    @Override
+    public void clear() {
+
+        m_invalidations.incrementAndGet();
+        super.clear();
+    }
+
+    /**
+     * @see com.google.common.collect.ForwardingMap#get(java.lang.Object)
+     */
+    @Override
+    public V get(Object key) {
+
+        if (key == null) {
+            return null;
+        }
+        return m_cache.getIfPresent(key);
+    }
+
+    /**
+     * Returns the value cached for the given key, loading it with the given loader if it is not cached.<p>
+     *
+     * Concurrent calls for the same key wait for a single load and share its result.
+     * If the map is cleared or the key is removed while the load is in progress,
+     * the loaded value is returned to the waiting callers but is not kept in the cache,
+     * since it may have been read before the change that caused the invalidation.<p>
+     *
+     * Exceptions thrown by the loader are re-thrown unwrapped.<p>
+     *
+     * @param key the key to look up
+     * @param loader the loader to use on a cache miss, must not return <code>null</code>
+     *
+     * @return the cached or loaded value
+     *
+     * @throws Exception if the loader fails
+     */
+    public V get(K key, final Callable<? extends V> loader) throws Exception {
+
+        final long[] loadStart = new long[] {-1};
+        V value;
+        try {
+            value = m_cache.get(key, new Callable<V>() {
+
+                public V call() throws Exception {
+
+                    loadStart[0] = m_invalidations.get();
+                    return loader.call();
+                }
+            });
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (ExecutionError e) {
+            throw (Error)e.getCause();
+        }
+        if ((loadStart[0] >= 0) && (loadStart[0] != m_invalidations.get())) {
+            // the cache was invalidated during the load, don't keep a possibly stale value
+            m_map.remove(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the underlying guava cache.<p>
+     *
+     * @return the underlying guava cache
+     */
+    public Cache<K, V> getCache() {
+
+        return m_cache;
+    }
+
+    /**
+     * Returns the maximum number of entries.<p>
+     *
+     * @return the maximum number of entries
+     */
+    public long getMaxSize() {
+
+        return m_maxSize;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this cache.<p>
+     *
+     * @param name the name under which the cache is monitored
+     *
+     * @return a snapshot of the statistics of this cache
+     */
+    public CmsCacheStatistics getStatistics(String name) {
+
+        return new CmsCacheStatistics(name, m_cache.size(), m_maxSize, m_cache.stats());
+    }
+
+    /**
+     * Returns the raw guava statistics of this cache.<p>
+     *
+     * @return the raw guava statistics of this cache
+     */
+    public CacheStats getStats() {
+
+        return m_cache.stats();
+    }
+
+    /**
+     * @see com.google.common.collect.ForwardingMap#remove(java.lang.Object)
+     */
+    @Override
+    public V remove(Object key) {
+
+        m_invalidations.incrementAndGet();
+        return super.remove(key);
+    }
+
+    /**
+     * @see com.google.common.collect.ForwardingConcurrentMap#remove(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+
+        m_invalidations.incrementAndGet();
+        return super.remove(key, value);
+    }
+
+    /**
+     * @see com.google.common.collect.ForwardingConcurrentMap#delegate()
+     */
+    @Override
+    protected ConcurrentMap<K, V> delegate() {
+
+        return m_map;
+    }
+
+    /**
+     * Returns the exception to re-throw for the given cause of a failed load.<p>
+     *
+     * @param cause the cause of the failed load
+     *
+     * @return the exception to re-throw
+     */
+    private Exception unwrap(Throwable cause) {
+
+        if (cause instanceof Error) {
+            throw (Error)cause;
+        }
+        return (Exception)cause;
+    }
+}
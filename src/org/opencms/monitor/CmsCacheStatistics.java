@@ -0,0 +1,320 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import org.opencms.json.JSONException;
+import org.opencms.json.JSONObject;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Immutable snapshot of the statistics of a monitored cache.<p>
+ *
+ * The getters of this bean are exposed as composite data by the
+ * {@link I_CmsCacheStatisticsMXBean}.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsCacheStatistics {
+
+    /** Nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /** The costs of all entries, or -1 if the cache does not track costs. */
+    private long m_costs;
+
+    /** The number of evicted entries. */
+    private long m_evictionCount;
+
+    /** The number of cache hits. */
+    private long m_hitCount;
+
+    /** The number of loads. */
+    private long m_loadCount;
+
+    /** The maximum costs of all entries, or -1 if the cache does not track costs. */
+    private long m_maxCosts;
+
+    /** The maximum number of entries. */
+    private long m_maxSize;
+
+    /** The number of cache misses. */
+    private long m_missCount;
+
+    /** The name under which the cache is monitored. */
+    private String m_name;
+
+    /** The current number of entries. */
+    private long m_size;
+
+    /** The total time spent loading entries, in nanoseconds. */
+    private long m_totalLoadTime;
+
+    /**
+     * Creates a new statistics snapshot.<p>
+     *
+     * @param name the name under which the cache is monitored
+     * @param size the current number of entries
+     * @param maxSize the maximum number of entries
+     * @param stats the guava cache statistics
+     */
+    public CmsCacheStatistics(String name, long size, long maxSize, CacheStats stats) {
+
+        m_name = name;
+        m_size = size;
+        m_maxSize = maxSize;
+        m_hitCount = stats.hitCount();
+        m_missCount = stats.missCount();
+        m_evictionCount = stats.evictionCount();
+        m_loadCount = stats.loadCount();
+        m_totalLoadTime = stats.totalLoadTime();
+        m_costs = -1;
+        m_maxCosts = -1;
+    }
+
+    /**
+     * Creates a new statistics snapshot for a cache that is limited by the costs of its entries.<p>
+     *
+     * @param name the name under which the cache is monitored
+     * @param size the current number of entries
+     * @param costs the current costs of all entries, e.g. their size in bytes
+     * @param maxCosts the maximum costs of all entries
+     * @param hitCount the number of cache hits
+     * @param missCount the number of cache misses
+     * @param evictionCount the number of evicted entries
+     */
+    public CmsCacheStatistics(
+        String name,
+        long size,
+        long costs,
+        long maxCosts,
+        long hitCount,
+        long missCount,
+        long evictionCount) {
+
+        m_name = name;
+        m_size = size;
+        m_maxSize = -1;
+        m_costs = costs;
+        m_maxCosts = maxCosts;
+        m_hitCount = hitCount;
+        m_missCount = missCount;
+        m_evictionCount = evictionCount;
+    }
+
+    /**
+     * Returns the average time spent loading an entry, in milliseconds.<p>
+     *
+     * @return the average load time in milliseconds
+     */
+    public double getAverageLoadTime() {
+
+        return m_loadCount == 0 ? 0.0 : (m_totalLoadTime / NANOS_PER_MILLI) / m_loadCount;
+    }
+
+    /**
+     * Returns the costs of all entries, e.g. their size in bytes.<p>
+     *
+     * @return the costs of all entries, or -1 if the cache does not track costs
+     */
+    public long getCosts() {
+
+        return m_costs;
+    }
+
+    /**
+     * Returns the number of entries evicted because the cache was full.<p>
+     *
+     * @return the number of evicted entries
+     */
+    public long getEvictionCount() {
+
+        return m_evictionCount;
+    }
+
+    /**
+     * Returns the number of cache hits.<p>
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+
+        return m_hitCount;
+    }
+
+    /**
+     * Returns the ratio of hits to requests, or 1.0 if the cache was never read.<p>
+     *
+     * @return the hit rate
+     */
+    public double getHitRate() {
+
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double)m_hitCount / requests;
+    }
+
+    /**
+     * Returns the number of loads.<p>
+     *
+     * @return the number of loads
+     */
+    public long getLoadCount() {
+
+        return m_loadCount;
+    }
+
+    /**
+     * Returns the maximum costs of all entries.<p>
+     *
+     * @return the maximum costs of all entries, or -1 if the cache does not track costs
+     */
+    public long getMaxCosts() {
+
+        return m_maxCosts;
+    }
+
+    /**
+     * Returns the maximum number of entries.<p>
+     *
+     * @return the maximum number of entries, or -1 if the number of entries is not limited
+     */
+    public long getMaxSize() {
+
+        return m_maxSize;
+    }
+
+    /**
+     * Returns the number of cache misses.<p>
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+
+        return m_missCount;
+    }
+
+    /**
+     * Returns the ratio of misses to requests, or 0.0 if the cache was never read.<p>
+     *
+     * @return the miss rate
+     */
+    public double getMissRate() {
+
+        long requests = getRequestCount();
+        return requests == 0 ? 0.0 : (double)m_missCount / requests;
+    }
+
+    /**
+     * Returns the name under which the cache is monitored.<p>
+     *
+     * @return the name under which the cache is monitored
+     */
+    public String getName() {
+
+        return m_name;
+    }
+
+    /**
+     * Returns the number of read requests, that is hits plus misses.<p>
+     *
+     * @return the number of read requests
+     */
+    public long getRequestCount() {
+
+        return m_hitCount + m_missCount;
+    }
+
+    /**
+     * Returns the number of entries at the time the snapshot was taken.<p>
+     *
+     * @return the number of entries
+     */
+    public long getSize() {
+
+        return m_size;
+    }
+
+    /**
+     * Returns the total time spent loading entries, in milliseconds.<p>
+     *
+     * @return the total load time in milliseconds
+     */
+    public long getTotalLoadTime() {
+
+        return Math.round(m_totalLoadTime / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Returns this snapshot as JSON object.<p>
+     *
+     * @return this snapshot as JSON object
+     *
+     * @throws JSONException if something goes wrong
+     */
+    public JSONObject toJson() throws JSONException {
+
+        JSONObject result = new JSONObject();
+        result.put("name", m_name);
+        result.put("size", m_size);
+        result.put("maxSize", m_maxSize);
+        if (m_maxCosts >= 0) {
+            result.put("costs", m_costs);
+            result.put("maxCosts", m_maxCosts);
+        }
+        result.put("hitCount", m_hitCount);
+        result.put("missCount", m_missCount);
+        result.put("hitRate", getHitRate());
+        result.put("missRate", getMissRate());
+        result.put("evictionCount", m_evictionCount);
+        result.put("loadCount", m_loadCount);
+        result.put("totalLoadTime", getTotalLoadTime());
+        result.put("averageLoadTime", getAverageLoadTime());
+        return result;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return m_name
+            + " [size="
+            + m_size
+            + "/"
+            + m_maxSize
+            + (m_maxCosts >= 0 ? ", costs=" + m_costs + "/" + m_maxCosts : "")
+            + ", hitRate="
+            + getHitRate()
+            + ", evictions="
+            + m_evictionCount
+            + ", avgLoadTime="
+            + getAverageLoadTime()
+            + "ms]";
+    }
+}
@@ -43,14 +43,22 @@ import org.opencms.file.CmsProperty;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsUser;
+import org.opencms.flex.CmsFlexCache;
 import org.opencms.flex.CmsFlexCache.CmsFlexCacheVariation;
 import org.opencms.i18n.CmsLocaleManager;
+import org.opencms.json.JSONArray;
+import org.opencms.json.JSONException;
+import org.opencms.json.JSONObject;
 import org.opencms.lock.CmsLock;
 import org.opencms.lock.CmsLockManager;
 import org.opencms.mail.CmsMailTransport;
 import org.opencms.mail.CmsSimpleMail;
 import org.opencms.main.CmsEvent;
+import org.opencms.main.CmsEventListenerStatistics;
+import org.opencms.main.CmsEventManager;
+import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
+import org.opencms.main.CmsRuntimeException;
 import org.opencms.main.CmsSessionManager;
 import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
@@ -70,7 +78,9 @@ import org.opencms.util.PrintfFormat;
 import org.opencms.xml.CmsXmlContentDefinition;
 import org.opencms.xml.CmsXmlEntityResolver;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
@@ -79,17 +89,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import javax.mail.internet.InternetAddress;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.collections.Buffer;
 import org.apache.commons.collections.buffer.SynchronizedBuffer;
 import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.logging.Log;
 
-import com.google.common.cache.CacheBuilder;
-
 /**
  * Monitors OpenCms memory consumption.<p>
  *
@@ -97,7 +109,7 @@ import com.google.common.cache.CacheBuilder;
  *
  * @since 6.0.0
  */
-public class CmsMemoryMonitor implements I_CmsScheduledJob {
+public class CmsMemoryMonitor implements I_CmsScheduledJob, I_CmsCacheStatisticsMXBean {
 
     /** Cache types. */
     public enum CacheType {
@@ -183,8 +195,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /** A cache for accelerated locale lookup. */
     private Map<String, Locale> m_cacheLocale;
 
-    /** Cache for the resource locks. */
-    private Map<String, CmsLock> m_cacheLock;
+    /** Cache for the resource locks, sorted by root path to allow fast lookups of whole subtrees. */
+    private ConcurrentSkipListMap<String, CmsLock> m_cacheLock;
 
     /** The memory object cache map. */
     private Map<String, Object> m_cacheMemObject;
@@ -193,7 +205,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     private Map<String, CmsOrganizationalUnit> m_cacheOrgUnit;
 
     /** Cache for permission checks. */
-    private Map<String, I_CmsPermissionHandler.CmsPermissionCheckResult> m_cachePermission;
+    private CmsCacheMap<String, I_CmsPermissionHandler.CmsPermissionCheckResult> m_cachePermission;
 
     /** Cache for offline projects. */
     private Map<String, CmsProject> m_cacheProject;
@@ -205,13 +217,13 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     private Map<String, CmsProperty> m_cacheProperty;
 
     /** Cache for property lists. */
-    private Map<String, List<CmsProperty>> m_cachePropertyList;
+    private CmsCacheMap<String, List<CmsProperty>> m_cachePropertyList;
 
     /** Cache for published resources. */
     private Map<String, List<CmsPublishedResource>> m_cachePublishedResources;
 
     /** Cache for resources. */
-    private Map<String, CmsResource> m_cacheResource;
+    private CmsCacheMap<String, CmsResource> m_cacheResource;
 
     /** Cache for resource lists. */
     private Map<String, List<CmsResource>> m_cacheResourceList;
@@ -279,6 +291,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /** The current memory status. */
     private CmsMemoryStatus m_memoryCurrent;
 
+    /** The name under which the cache statistics MBean is registered. */
+    private ObjectName m_mbeanName;
+
     /** Contains the object to be monitored. */
     private Map<String, Object> m_monitoredObjects;
 
@@ -299,24 +314,23 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
      */
     public CmsMemoryMonitor() {
 
-        m_monitoredObjects = new HashMap<String, Object>();
+        m_monitoredObjects = new ConcurrentHashMap<String, Object>();
     }
 
     /**
      * Creates a thread safe LRU cache map based on the guava cache builder.<p>
      * Use this instead of synchronized maps for better performance.<p>
      *
+     * The returned map records hit, miss, load and eviction statistics, which are
+     * available with {@link #getCacheStatistics()} once the map has been registered.<p>
+     *
      * @param capacity the cache capacity
      *
      * @return the cache map
      */
-    @SuppressWarnings("unchecked")
     public static <T, V> Map<T, V> createLRUCacheMap(int capacity) {
 
-        CacheBuilder<?, ?> builder = CacheBuilder.newBuilder().concurrencyLevel(CONCURRENCY_LEVEL).maximumSize(
-            capacity);
-        builder.build();
-        return (Map<T, V>)(builder.build().asMap());
+        return new CmsCacheMap<T, V>(capacity, CONCURRENCY_LEVEL);
     }
 
     /**
@@ -1143,7 +1157,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
             return;
         }
         // initialize new lock cache
-        Map<String, CmsLock> newLockCache = new ConcurrentHashMap<String, CmsLock>(newLocks);
+        ConcurrentSkipListMap<String, CmsLock> newLockCache = new ConcurrentSkipListMap<String, CmsLock>(newLocks);
         // register it
         register(CmsLockManager.class.getName(), newLockCache);
         // save the old cache
@@ -1384,6 +1398,22 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         return new ArrayList<CmsLock>(m_cacheLock.values());
     }
 
+    /**
+     * Returns all cached locks for the given root path and all resources below it.<p>
+     *
+     * Since the lock cache is sorted by root path, this only costs the size of the subtree
+     * and not the number of all cached locks.<p>
+     *
+     * @param rootPath the root path to get the locks for, should end with a slash in case of a folder
+     *
+     * @return a list of {@link CmsLock} objects, sorted by root path
+     */
+    public List<CmsLock> getAllCachedLocks(String rootPath) {
+
+        return new ArrayList<CmsLock>(
+            m_cacheLock.subMap(rootPath, true, rootPath + Character.MAX_VALUE, false).values());
+    }
+
     /**
      * Returns all cached publish jobs in the queue as ordered list.<p>
      *
@@ -1406,6 +1436,44 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         return new ArrayList<CmsPublishJobInfoBean>(m_publishHistory);
     }
 
+    /**
+     * @see org.opencms.monitor.I_CmsCacheStatisticsMXBean#getCacheStatistics()
+     */
+    public List<CmsCacheStatistics> getCacheStatistics() {
+
+        List<String> keyList = new ArrayList<String>(m_monitoredObjects.keySet());
+        Collections.sort(keyList);
+        List<CmsCacheStatistics> result = new ArrayList<CmsCacheStatistics>();
+        for (String key : keyList) {
+            Object obj = m_monitoredObjects.get(key);
+            if (obj instanceof CmsCacheMap) {
+                result.add(((CmsCacheMap<?, ?>)obj).getStatistics(key));
+            } else if (obj instanceof CmsFlexCache) {
+                result.addAll(((CmsFlexCache)obj).getStatistics(key));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see org.opencms.monitor.I_CmsCacheStatisticsMXBean#getCacheStatisticsJson()
+     */
+    public String getCacheStatisticsJson() {
+
+        JSONObject result = new JSONObject();
+        try {
+            JSONArray caches = new JSONArray();
+            for (CmsCacheStatistics stats : getCacheStatistics()) {
+                caches.put(stats.toJson());
+            }
+            result.put("time", System.currentTimeMillis());
+            result.put("caches", caches);
+        } catch (JSONException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+        return result.toString();
+    }
+
     /**
      * Returns the ACL cached with the given cache key or <code>null</code> if not found.<p>
      *
@@ -1506,6 +1574,26 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         return m_cachePermission.get(key);
     }
 
+    /**
+     * Returns the permission check result cached with the given cache key, loading it with the given loader if not found.<p>
+     *
+     * Concurrent calls for the same key wait for a single load.<p>
+     *
+     * @param key the cache key to look for
+     * @param loader the loader that calculates the permission check result on a cache miss
+     *
+     * @return the cached or loaded permission check result
+     *
+     * @throws CmsException if the loader fails
+     */
+    public I_CmsPermissionHandler.CmsPermissionCheckResult getCachedPermission(
+        String key,
+        Callable<I_CmsPermissionHandler.CmsPermissionCheckResult> loader)
+    throws CmsException {
+
+        return loadCachedObject(CacheType.PERMISSION, m_cachePermission, key, loader);
+    }
+
     /**
      * Returns the project cached with the given cache key or <code>null</code> if not found.<p>
      *
@@ -1554,6 +1642,24 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         return m_cachePropertyList.get(key);
     }
 
+    /**
+     * Returns the property list cached with the given cache key, loading it with the given loader if not found.<p>
+     *
+     * Concurrent calls for the same key wait for a single load.<p>
+     *
+     * @param key the cache key to look for
+     * @param loader the loader that reads the property list on a cache miss
+     *
+     * @return the cached or loaded property list
+     *
+     * @throws CmsException if the loader fails
+     */
+    public List<CmsProperty> getCachedPropertyList(String key, Callable<List<CmsProperty>> loader)
+    throws CmsException {
+
+        return loadCachedObject(CacheType.PROPERTY_LIST, m_cachePropertyList, key, loader);
+    }
+
     /**
      * Returns the published resources list cached with the given cache key or <code>null</code> if not found.<p>
      *
@@ -1617,6 +1723,23 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         return m_cacheResource.get(key);
     }
 
+    /**
+     * Returns the resource cached with the given cache key, loading it with the given loader if not found.<p>
+     *
+     * Concurrent calls for the same key wait for a single load.<p>
+     *
+     * @param key the cache key to look for
+     * @param loader the loader that reads the resource on a cache miss
+     *
+     * @return the cached or loaded resource
+     *
+     * @throws CmsException if the loader fails
+     */
+    public CmsResource getCachedResource(String key, Callable<CmsResource> loader) throws CmsException {
+
+        return loadCachedObject(CacheType.RESOURCE, m_cacheResource, key, loader);
+    }
+
     /**
      * Returns the resource list cached with the given cache key or <code>null</code> if not found.<p>
      *
@@ -1850,7 +1973,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         register(CmsXmlEntityResolver.class.getName() + ".contentDefinitionsCache", m_cacheContentDefinitions);
 
         // lock cache
-        m_cacheLock = new ConcurrentHashMap<String, CmsLock>();
+        m_cacheLock = new ConcurrentSkipListMap<String, CmsLock>();
         register(CmsLockManager.class.getName(), m_cacheLock);
 
         // locale cache
@@ -1858,7 +1981,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         register(CmsLocaleManager.class.getName(), m_cacheLocale);
 
         // permissions cache
-        m_cachePermission = createLRUCacheMap(cacheSettings.getPermissionCacheSize());
+        m_cachePermission = new CmsCacheMap<String, I_CmsPermissionHandler.CmsPermissionCheckResult>(
+            cacheSettings.getPermissionCacheSize(),
+            CONCURRENCY_LEVEL);
         register(CmsSecurityManager.class.getName(), m_cachePermission);
 
         // user cache
@@ -1901,7 +2026,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         register(CmsPublishQueue.class.getName() + ".publishQueue", buffer);
 
         // resource cache
-        m_cacheResource = createLRUCacheMap(cacheSettings.getResourceCacheSize());
+        m_cacheResource = new CmsCacheMap<String, CmsResource>(
+            cacheSettings.getResourceCacheSize(),
+            CONCURRENCY_LEVEL);
         register(CmsDriverManager.class.getName() + ".resourceCache", m_cacheResource);
 
         // roles cache
@@ -1921,7 +2048,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         register(CmsDriverManager.class.getName() + ".propertyCache", m_cacheProperty);
 
         // property list cache
-        m_cachePropertyList = createLRUCacheMap(cacheSettings.getPropertyListsCacheSize());
+        m_cachePropertyList = new CmsCacheMap<String, List<CmsProperty>>(
+            cacheSettings.getPropertyListsCacheSize(),
+            CONCURRENCY_LEVEL);
         register(CmsDriverManager.class.getName() + ".propertyListCache", m_cachePropertyList);
 
         // published resources list cache
@@ -1933,7 +2062,11 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         register(CmsDriverManager.class.getName() + ".accessControlListCache", m_cacheAccessControlList);
 
         // vfs object cache
-        m_cacheVfsObject = new ConcurrentHashMap<String, Object>();
+        if (cacheSettings.getConfiguredVfsObjectCacheSize() > 0) {
+            m_cacheVfsObject = createLRUCacheMap(cacheSettings.getConfiguredVfsObjectCacheSize());
+        } else {
+            m_cacheVfsObject = new ConcurrentHashMap<String, Object>();
+        }
         register(CmsVfsMemoryObjectCache.class.getName(), m_cacheVfsObject);
 
         // memory object cache
@@ -1944,6 +2077,8 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
             // this will happen only once during system startup
             LOG.debug(Messages.get().getBundle().key(Messages.LOG_MM_CREATED_1, new Date(System.currentTimeMillis())));
         }
+
+        registerMBean();
     }
 
     /**
@@ -2181,6 +2316,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         for (CacheType type : CacheType.values()) {
             flushCache(type);
         }
+        unregisterMBean();
     }
 
     /**
@@ -2340,7 +2476,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /**
      * Returns the number of items within a monitored object.<p>
      *
-     * <code>obj</code> must be of type {@link CmsLruCache} or {@link Map}.<p>
+     * <code>obj</code> must be of type {@link CmsLruCache}, {@link Map} or {@link Collection}.<p>
      *
      * @param obj the object
      *
@@ -2354,6 +2490,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         if (obj instanceof Map) {
             return Integer.toString(((Map<?, ?>)obj).size());
         }
+        if (obj instanceof Collection) {
+            return Integer.toString(((Collection<?>)obj).size());
+        }
         return "-";
     }
 
@@ -2426,7 +2565,7 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
     /**
      * Returns the max costs for all items within a monitored object.<p>
      *
-     * <code>obj</code> must be of type {@link CmsLruCache} or {@link LRUMap}.<p>
+     * <code>obj</code> must be of type {@link CmsLruCache}, {@link LRUMap} or {@link CmsCacheMap}.<p>
      *
      * @param obj the object
      *
@@ -2440,6 +2579,9 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         if (obj instanceof LRUMap) {
             return Integer.toString(((LRUMap)obj).maxSize());
         }
+        if (obj instanceof CmsCacheMap) {
+            return Long.toString(((CmsCacheMap<?, ?>)obj).getMaxSize());
+        }
 
         return "-";
     }
@@ -2689,6 +2831,35 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
                         new Long(m_memoryAverage.getUsage()),
                         new Integer(m_memoryAverage.getCount())}));
 
+            CmsEventManager em = OpenCms.getEventManager();
+            if (em != null) {
+                for (CmsEventListenerStatistics stats : em.getListenerStatistics()) {
+                    LOG.info(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_MM_EVENT_LISTENER_STAT_5,
+                            new Object[] {
+                                stats.getListenerName(),
+                                String.valueOf(stats.getCount()),
+                                String.valueOf(stats.getAverageTime()),
+                                String.valueOf(stats.getMaxTime()),
+                                String.valueOf(stats.getQueueSize())}));
+                }
+            }
+
+            for (CmsCacheStatistics stats : getCacheStatistics()) {
+                LOG.info(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_MM_CACHE_STAT_7,
+                        new Object[] {
+                            stats.getName(),
+                            String.valueOf(stats.getSize()),
+                            String.valueOf(stats.getHitCount()),
+                            String.valueOf(stats.getMissCount()),
+                            String.format(Locale.ENGLISH, "%.2f", new Double(stats.getHitRate() * 100)),
+                            String.valueOf(stats.getEvictionCount()),
+                            String.format(Locale.ENGLISH, "%.3f", new Double(stats.getAverageLoadTime()))}));
+            }
+
             CmsSessionManager sm = OpenCms.getSessionManager();
 
             if (sm != null) {
@@ -2736,4 +2907,77 @@ public class CmsMemoryMonitor implements I_CmsScheduledJob {
         m_memoryCurrent.update();
         m_memoryAverage.calculateAverage(m_memoryCurrent);
     }
+
+    /**
+     * Returns the object cached with the given key, loading it with the given loader if not found.<p>
+     *
+     * If the cache of the given type is disabled, the loader is called without caching the result.<p>
+     *
+     * @param type the cache type
+     * @param cache the cache to use
+     * @param key the cache key to look for
+     * @param loader the loader to use on a cache miss
+     *
+     * @return the cached or loaded object
+     *
+     * @throws CmsException if the loader fails
+     */
+    private <V> V loadCachedObject(CacheType type, CmsCacheMap<String, V> cache, String key, Callable<V> loader)
+    throws CmsException {
+
+        try {
+            if (m_disabled.get(type) != null) {
+                return loader.call();
+            }
+            return cache.get(key, loader);
+        } catch (CmsException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CmsRuntimeException(Messages.get().container(Messages.ERR_MM_LOAD_CACHED_OBJECT_1, key), e);
+        }
+    }
+
+    /**
+     * Registers this monitor as cache statistics MBean with the platform MBean server.<p>
+     *
+     * The web application name is part of the MBean name, so that several OpenCms
+     * instances can run in the same JVM.<p>
+     */
+    private void registerMBean() {
+
+        String webapp = OpenCms.getSystemInfo().getWebApplicationName();
+        if (CmsStringUtil.isEmptyOrWhitespaceOnly(webapp)) {
+            webapp = "opencms";
+        }
+        try {
+            ObjectName name = new ObjectName(
+                "org.opencms:type=CacheStatistics,webapp=" + ObjectName.quote(webapp));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            m_mbeanName = name;
+        } catch (Exception e) {
+            LOG.error(Messages.get().getBundle().key(Messages.LOG_MM_REGISTER_MBEAN_FAILED_1, webapp), e);
+        }
+    }
+
+    /**
+     * Removes the cache statistics MBean from the platform MBean server.<p>
+     */
+    private void unregisterMBean() {
+
+        if (m_mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(m_mbeanName);
+        } catch (Exception e) {
+            LOG.error(Messages.get().getBundle().key(Messages.LOG_MM_UNREGISTER_MBEAN_FAILED_1, m_mbeanName), e);
+        }
+        m_mbeanName = null;
+    }
 }
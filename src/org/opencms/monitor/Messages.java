@@ -37,12 +37,18 @@ import org.opencms.i18n.I_CmsMessageBundle;
  */
 public final class Messages extends A_CmsMessageBundle {
 
+    /** Message constant for key in the resource bundle. */
+    public static final String ERR_MM_LOAD_CACHED_OBJECT_1 = "ERR_MM_LOAD_CACHED_OBJECT_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_CAUGHT_THROWABLE_1 = "LOG_CAUGHT_THROWABLE_1";
 
     /** Message constant for key in the resource bundle. */
     public static final String LOG_CLEAR_CACHE_MEM_CONS_0 = "LOG_CLEAR_CACHE_MEM_CONS_0";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_MM_CACHE_STAT_7 = "LOG_MM_CACHE_STAT_7";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_MM_CONNECTIONS_3 = "LOG_MM_CONNECTIONS_3";
 
@@ -58,6 +64,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_MM_EMAIL_SENDER_1 = "LOG_MM_EMAIL_SENDER_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_MM_EVENT_LISTENER_STAT_5 = "LOG_MM_EVENT_LISTENER_STAT_5";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_MM_INTERVAL_EMAIL_1 = "LOG_MM_INTERVAL_EMAIL_1";
 
@@ -76,6 +85,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_MM_NOWARN_STATUS_5 = "LOG_MM_NOWARN_STATUS_5";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_MM_REGISTER_MBEAN_FAILED_1 = "LOG_MM_REGISTER_MBEAN_FAILED_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_MM_SESSION_STAT_3 = "LOG_MM_SESSION_STAT_3";
 
@@ -85,6 +97,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_MM_STATUS_EMAIL_SENT_0 = "LOG_MM_STATUS_EMAIL_SENT_0";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_MM_UNREGISTER_MBEAN_FAILED_1 = "LOG_MM_UNREGISTER_MBEAN_FAILED_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_MM_WARNING_EMAIL_SENT_0 = "LOG_MM_WARNING_EMAIL_SENT_0";
 
@@ -50,10 +50,13 @@ import org.opencms.security.CmsAuthentificationException;
 import org.opencms.security.CmsRole;
 import org.opencms.util.CmsUUID;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.logging.Log;
 
@@ -70,9 +73,6 @@ public final class CmsPublishEngine {
     /** The id of the admin user. */
     private CmsUUID m_adminUserId;
 
-    /** The current running publish job. */
-    private CmsPublishThread m_currentPublishThread;
-
     /** The runtime info factory used during publishing. */
     private final I_CmsDbContextFactory m_dbContextFactory;
 
@@ -85,12 +85,18 @@ public final class CmsPublishEngine {
     /** The publish listeners. */
     private final CmsPublishListenerCollection m_listeners;
 
+    /** The maximum number of publish jobs running in parallel. */
+    private int m_parallelJobs = 1;
+
     /** The publish history list with already published jobs. */
     private final CmsPublishHistory m_publishHistory;
 
     /** The queue with still waiting publish job. */
     private final CmsPublishQueue m_publishQueue;
 
+    /** The running publish jobs, in the order they have been started. */
+    private final List<CmsPublishThread> m_publishThreads = new CopyOnWriteArrayList<CmsPublishThread>();
+
     /** The amount of time the system will wait for a running publish job during shutdown. */
     private int m_publishQueueShutdowntime;
 
@@ -132,30 +138,14 @@ public final class CmsPublishEngine {
     }
 
     /**
-     * Abandons the given publish thread.<p>
+     * Abandons the thread of the current publish job, that is the longest running publish job.<p>
      */
     public void abandonThread() {
 
-        if (!m_currentPublishThread.isAlive()) {
-            // thread is dead
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_DEAD_JOB_0));
-            }
-        } else {
-            // thread is not dead, and we suppose it hangs :(
-            if (LOG.isWarnEnabled()) {
-                LOG.warn(
-                    Messages.get().getBundle().key(
-                        Messages.LOG_THREADSTORE_PUBLISH_THREAD_INTERRUPT_2,
-                        m_currentPublishThread.getName(),
-                        m_currentPublishThread.getUUID()));
-            }
-            m_currentPublishThread.interrupt();
+        CmsPublishThread publishThread = getCurrentPublishJob();
+        if (publishThread != null) {
+            abandonThread(publishThread);
         }
-        // just throw it away
-        m_currentPublishThread = null;
-        // and try again
-        checkCurrentPublishJobThread();
     }
 
     /**
@@ -186,31 +176,56 @@ public final class CmsPublishEngine {
             return;
         }
 
-        // there is no running publish job
-        if (m_currentPublishThread == null) {
-            // but something is waiting in the queue
-            if (!m_publishQueue.isEmpty()) {
-                // start the next waiting publish job
-                CmsPublishJobInfoBean publishJob = m_publishQueue.next();
-                m_currentPublishThread = new CmsPublishThread(this, publishJob);
-                m_currentPublishThread.start();
-            } else {
-                // nothing to do
+        // clean up dead threads
+        for (CmsPublishThread publishThread : m_publishThreads) {
+            if (!publishThread.isAlive()) {
                 if (LOG.isDebugEnabled()) {
-                    LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_NO_RUNNING_JOB_0));
+                    LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_DEAD_JOB_0));
                 }
+                m_publishThreads.remove(publishThread);
+            }
+        }
+
+        if (m_publishQueue.isEmpty()) {
+            // nothing to do
+            if (m_publishThreads.isEmpty() && LOG.isDebugEnabled()) {
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_NO_RUNNING_JOB_0));
             }
             return;
         }
-        if (m_currentPublishThread.isAlive()) {
-            // normal running
-            // wait until it is finished
+        if (m_publishThreads.size() >= m_parallelJobs) {
+            // normal running, wait until a running job is finished
             if (LOG.isDebugEnabled()) {
                 LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_WAITING_0));
             }
-        } else {
-            // clean up the dead thread
-            abandonThread();
+            return;
+        }
+
+        // the partitions of the running jobs and of the jobs waiting before the current one,
+        // a waiting job never overtakes an earlier job it conflicts with
+        List<CmsPublishJobPartition> blocked = new ArrayList<CmsPublishJobPartition>();
+        for (CmsPublishThread publishThread : m_publishThreads) {
+            // the publish job of the thread may already be finished, the thread keeps its partition
+            CmsPublishJobPartition partition = publishThread.getPartition();
+            if (partition != null) {
+                blocked.add(partition);
+            }
+        }
+        for (CmsPublishJobInfoBean publishJob : m_publishQueue.asJobList()) {
+            if (m_publishThreads.size() >= m_parallelJobs) {
+                break;
+            }
+            // the partition is computed before the job starts, since publishing modifies the publish list
+            CmsPublishJobPartition partition = (m_parallelJobs > 1) ? publishJob.getPartition() : null;
+            if (!isConflicting(partition, blocked) && m_publishQueue.take(publishJob)) {
+                // start the waiting publish job
+                CmsPublishThread publishThread = new CmsPublishThread(this, publishJob, partition);
+                m_publishThreads.add(publishThread);
+                publishThread.start();
+            }
+            if (partition != null) {
+                blocked.add(partition);
+            }
         }
     }
 
@@ -272,10 +287,11 @@ public final class CmsPublishEngine {
      */
     public CmsPublishJobBase getJobByPublishHistoryId(CmsUUID publishHistoryId) {
 
-        // try current running job
-        if ((m_currentPublishThread != null)
-            && m_currentPublishThread.getPublishJob().getPublishHistoryId().equals(publishHistoryId)) {
-            return new CmsPublishJobRunning(m_currentPublishThread.getPublishJob());
+        // try running jobs
+        for (CmsPublishThread publishThread : m_publishThreads) {
+            if (publishThread.getPublishJob().getPublishHistoryId().equals(publishHistoryId)) {
+                return new CmsPublishJobRunning(publishThread.getPublishJob());
+            }
         }
         // try enqueued jobs
         Iterator<CmsPublishJobEnqueued> itEnqueuedJobs = getPublishQueue().asList().iterator();
@@ -334,10 +350,10 @@ public final class CmsPublishEngine {
         // prevent new publish jobs are accepted
         m_shuttingDown = true;
 
-        // if a job is currently running,
+        // if jobs are currently running,
         // wait the specified amount of time,
-        // then write an abort message to the report
-        if (m_currentPublishThread != null) {
+        // then write an abort message to the reports
+        if (!m_publishThreads.isEmpty()) {
 
             // if a shutdown time is defined, wait  if a publish process is running
             if (m_publishQueueShutdowntime > 0) {
@@ -350,8 +366,8 @@ public final class CmsPublishEngine {
                 }
             }
 
-            if (m_currentPublishThread != null) {
-                CmsPublishJobInfoBean publishJob = m_currentPublishThread.getPublishJob();
+            for (CmsPublishThread publishThread : m_publishThreads) {
+                CmsPublishJobInfoBean publishJob = publishThread.getPublishJob();
                 try {
                     abortPublishJob(m_adminUserId, new CmsPublishJobEnqueued(publishJob), false);
                 } catch (CmsException e) {
@@ -382,6 +398,48 @@ public final class CmsPublishEngine {
         }
     }
 
+    /**
+     * Abandons the thread of the given running publish job.<p>
+     *
+     * @param publishJob the running publish job
+     */
+    protected void abandonThread(CmsPublishJobInfoBean publishJob) {
+
+        CmsPublishThread publishThread = getPublishThread(publishJob);
+        if (publishThread != null) {
+            abandonThread(publishThread);
+        }
+    }
+
+    /**
+     * Abandons the given publish thread.<p>
+     *
+     * @param publishThread the publish thread to abandon
+     */
+    protected void abandonThread(CmsPublishThread publishThread) {
+
+        if (!publishThread.isAlive()) {
+            // thread is dead
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(Messages.get().getBundle().key(Messages.LOG_PUBLISH_ENGINE_DEAD_JOB_0));
+            }
+        } else {
+            // thread is not dead, and we suppose it hangs :(
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_THREADSTORE_PUBLISH_THREAD_INTERRUPT_2,
+                        publishThread.getName(),
+                        publishThread.getUUID()));
+            }
+            publishThread.interrupt();
+        }
+        // just throw it away
+        m_publishThreads.remove(publishThread);
+        // and try again
+        checkCurrentPublishJobThread();
+    }
+
     /**
      * Aborts the given publish job.<p>
      *
@@ -398,9 +456,9 @@ public final class CmsPublishEngine {
         // abort event should be raised before the job is removed implicitly
         m_listeners.fireAbort(userId, publishJob);
 
-        if ((m_currentPublishThread == null)
-            || !publishJob.m_publishJob.equals(m_currentPublishThread.getPublishJob())) {
-            // engine is currently publishing another job or is not publishing
+        CmsPublishThread publishThread = getPublishThread(publishJob.m_publishJob);
+        if (publishThread == null) {
+            // engine is currently publishing other jobs or is not publishing
             if (!m_publishQueue.abortPublishJob(publishJob.m_publishJob)) {
                 // job not found
                 throw new CmsPublishException(
@@ -408,10 +466,10 @@ public final class CmsPublishEngine {
             }
         } else if (!m_shuttingDown) {
             // engine is currently publishing the job to abort
-            m_currentPublishThread.abort();
-        } else if (m_shuttingDown && (m_currentPublishThread != null)) {
-            // aborting the current job during shut down
-            I_CmsReport report = m_currentPublishThread.getReport();
+            publishThread.abort();
+        } else {
+            // aborting a running job during shut down
+            I_CmsReport report = publishThread.getReport();
             report.println();
             report.println();
             report.println(
@@ -459,19 +517,20 @@ public final class CmsPublishEngine {
 
         m_engineState = CmsPublishEngineState.ENGINE_STARTED;
         // start publish job if jobs waiting
-        if ((m_currentPublishThread == null) && !m_publishQueue.isEmpty()) {
+        if ((m_publishThreads.size() < m_parallelJobs) && !m_publishQueue.isEmpty()) {
             checkCurrentPublishJobThread();
         }
     }
 
     /**
-     * Returns the current running publish job.<p>
+     * Returns the current running publish job, that is the longest running publish job.<p>
      *
-     * @return the current running publish job
+     * @return the current running publish job, or <code>null</code> if no publish job is running
      */
     protected CmsPublishThread getCurrentPublishJob() {
 
-        return m_currentPublishThread;
+        Iterator<CmsPublishThread> it = m_publishThreads.iterator();
+        return it.hasNext() ? it.next() : null;
     }
 
     /**
@@ -516,6 +575,16 @@ public final class CmsPublishEngine {
         return m_publishQueue;
     }
 
+    /**
+     * Returns the threads of all running publish jobs, in the order they have been started.<p>
+     *
+     * @return the threads of all running publish jobs
+     */
+    protected List<CmsPublishThread> getPublishThreads() {
+
+        return Collections.unmodifiableList(new ArrayList<CmsPublishThread>(m_publishThreads));
+    }
+
     /**
      * Returns the content of the publish report assigned to the given publish job.<p>
      *
@@ -567,10 +636,15 @@ public final class CmsPublishEngine {
      * @param adminCms the admin cms
      * @param publishQueuePersistance flag if the queue is persisted
      * @param publishQueueShutdowntime amount of time to wait for a publish job during shutdown
+     * @param parallelJobs the maximum number of publish jobs running in parallel
      *
      * @throws CmsException if something goes wrong
      */
-    protected void initialize(CmsObject adminCms, boolean publishQueuePersistance, int publishQueueShutdowntime)
+    protected void initialize(
+        CmsObject adminCms,
+        boolean publishQueuePersistance,
+        int publishQueueShutdowntime,
+        int parallelJobs)
     throws CmsException {
 
         // check the driver manager
@@ -579,6 +653,7 @@ public final class CmsPublishEngine {
         }
 
         m_publishQueueShutdowntime = publishQueueShutdowntime;
+        m_parallelJobs = Math.max(1, parallelJobs);
 
         // initially the engine is stopped, must be restartet after full system initialization
         m_engineState = CmsPublishEngineState.ENGINE_STOPPED;
@@ -598,7 +673,7 @@ public final class CmsPublishEngine {
     protected boolean isRunning() {
 
         return (((m_engineState == CmsPublishEngineState.ENGINE_STARTED) && !m_publishQueue.isEmpty())
-            || (m_currentPublishThread != null));
+            || !m_publishThreads.isEmpty());
     }
 
     /**
@@ -680,7 +755,7 @@ public final class CmsPublishEngine {
             LOG.error(t.getLocalizedMessage(), t);
         }
         try {
-            // finish the job
+            // finish the job, the thread keeps the partition of the job until it is removed
             publishJob.finish();
         } catch (Throwable t) {
             // log failure, most likely a database problem
@@ -693,10 +768,8 @@ public final class CmsPublishEngine {
             // log failure, most likely a database problem
             LOG.error(t.getLocalizedMessage(), t);
         }
-        if (Thread.currentThread() == m_currentPublishThread) {
-            // wipe the dead thread, only if this thread has not been abandoned
-            m_currentPublishThread = null;
-        }
+        // wipe the finishing thread, if it has not been abandoned
+        m_publishThreads.remove(Thread.currentThread());
         // clear the published resources cache
         OpenCms.getMemoryMonitor().flushCache(CmsMemoryMonitor.CacheType.PUBLISHED_RESOURCES);
         // try to start a new publish job
@@ -771,7 +844,7 @@ public final class CmsPublishEngine {
         if (m_engineState != CmsPublishEngineState.ENGINE_STARTED) {
             m_engineState = CmsPublishEngineState.ENGINE_STARTED;
             // start publish job if jobs waiting
-            if ((m_currentPublishThread == null) && !m_publishQueue.isEmpty()) {
+            if ((m_publishThreads.size() < m_parallelJobs) && !m_publishQueue.isEmpty()) {
                 checkCurrentPublishJobThread();
             }
         }
@@ -812,6 +885,41 @@ public final class CmsPublishEngine {
         }
     }
 
+    /**
+     * Returns the thread of the given running publish job.<p>
+     *
+     * @param publishJob the publish job
+     *
+     * @return the thread of the given publish job, or <code>null</code> if the job is not running
+     */
+    private CmsPublishThread getPublishThread(CmsPublishJobInfoBean publishJob) {
+
+        for (CmsPublishThread publishThread : m_publishThreads) {
+            if (publishThread.getPublishJob().equals(publishJob)) {
+                return publishThread;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a publish job with the given partition conflicts with any of the given partitions.<p>
+     *
+     * @param partition the partition of the publish job to check
+     * @param partitions the partitions of the running and of the earlier waiting publish jobs
+     *
+     * @return <code>true</code> if the publish job must wait
+     */
+    private boolean isConflicting(CmsPublishJobPartition partition, List<CmsPublishJobPartition> partitions) {
+
+        for (CmsPublishJobPartition other : partitions) {
+            if (partition.conflictsWith(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns <code>true</code> if the login manager allows login.<p>
      *
@@ -65,6 +65,9 @@ public final class CmsPublishJobInfoBean {
     /** The locale to use for publishing. */
     private Locale m_locale;
 
+    /** The part of the repository this publish job writes to, computed on first access. */
+    private CmsPublishJobPartition m_partition;
+
     /** Project to use for publishing. */
     private CmsUUID m_projectId;
 
@@ -410,6 +413,7 @@ public final class CmsPublishJobInfoBean {
         m_report = null;
         m_size = m_publishList.size();
         m_publishList = null;
+        m_partition = null;
         if (m_publishReport instanceof CmsPublishReport) {
             ((CmsPublishReport)m_publishReport).finish();
         }
@@ -427,6 +431,19 @@ public final class CmsPublishJobInfoBean {
         return m_cms;
     }
 
+    /**
+     * Returns the part of the repository this publish job writes to.<p>
+     *
+     * @return the part of the repository this publish job writes to
+     */
+    protected CmsPublishJobPartition getPartition() {
+
+        if (m_partition == null) {
+            m_partition = new CmsPublishJobPartition(m_publishList);
+        }
+        return m_partition;
+    }
+
     /**
      * Returns <code>true</code> if this is a "direct publish" operation.<p>
      *
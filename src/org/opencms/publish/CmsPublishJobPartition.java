@@ -0,0 +1,139 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.publish;
+
+import org.opencms.db.CmsPublishList;
+import org.opencms.file.CmsResource;
+import org.opencms.main.OpenCms;
+import org.opencms.util.CmsUUID;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Describes the part of the repository a publish job writes to, used to decide which
+ * publish jobs can run in parallel.<p>
+ *
+ * The partition consists of the sites and the resource ids of all resources in the publish list.
+ * Since siblings share the resource id, a sibling in another site is also detected as conflict.
+ * Resources outside of all sites, like the content of <code>/system/</code>, may be used by every site,
+ * so a publish job containing such a resource conflicts with every other publish job.<p>
+ *
+ * @since 10.5.0
+ */
+public final class CmsPublishJobPartition {
+
+    /** Flag to indicate that resources outside of all sites are published. */
+    private boolean m_global;
+
+    /** The resource ids of the published resources. */
+    private Set<CmsUUID> m_resourceIds;
+
+    /** The site roots of the published resources, with trailing slash. */
+    private Set<String> m_siteRoots;
+
+    /**
+     * Creates the partition for the given resources.<p>
+     *
+     * @param resources the resources to publish
+     */
+    public CmsPublishJobPartition(Collection<CmsResource> resources) {
+
+        m_resourceIds = new HashSet<CmsUUID>();
+        m_siteRoots = new HashSet<String>();
+        for (CmsResource resource : resources) {
+            m_resourceIds.add(resource.getResourceId());
+            String siteRoot = OpenCms.getSiteManager().getSiteRoot(resource.getRootPath());
+            if (siteRoot == null) {
+                m_global = true;
+            } else {
+                m_siteRoots.add(siteRoot.endsWith("/") ? siteRoot : siteRoot + "/");
+            }
+        }
+    }
+
+    /**
+     * Creates the partition for the given publish list.<p>
+     *
+     * @param publishList the publish list
+     */
+    public CmsPublishJobPartition(CmsPublishList publishList) {
+
+        this(publishList.getAllResources());
+    }
+
+    /**
+     * Checks if a publish job with this partition must not run in parallel to a
+     * publish job with the given partition.<p>
+     *
+     * @param partition the partition of the other publish job
+     *
+     * @return <code>true</code> if the two publish jobs conflict
+     */
+    public boolean conflictsWith(CmsPublishJobPartition partition) {
+
+        if (m_global || partition.m_global) {
+            return true;
+        }
+        for (String siteRoot : m_siteRoots) {
+            for (String otherSiteRoot : partition.m_siteRoots) {
+                // sites may be nested
+                if (siteRoot.startsWith(otherSiteRoot) || otherSiteRoot.startsWith(siteRoot)) {
+                    return true;
+                }
+            }
+        }
+        for (CmsUUID resourceId : m_resourceIds) {
+            if (partition.m_resourceIds.contains(resourceId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the site roots of the published resources.<p>
+     *
+     * @return the site roots of the published resources
+     */
+    public Set<String> getSiteRoots() {
+
+        return m_siteRoots;
+    }
+
+    /**
+     * Checks if resources outside of all sites are published.<p>
+     *
+     * @return <code>true</code> if resources outside of all sites are published
+     */
+    public boolean isGlobal() {
+
+        return m_global;
+    }
+}
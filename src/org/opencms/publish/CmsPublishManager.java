@@ -69,6 +69,9 @@ public class CmsPublishManager {
     /** The default history size. */
     public static final int DEFAULT_HISTORY_SIZE = 100;
 
+    /** The default number of publish jobs running in parallel. */
+    public static final int DEFAULT_PARALLEL_JOBS = 1;
+
     /** The default persistence setting for the publish queue. */
     public static final boolean DEFAULT_QUEUE_PERSISTANCE = false;
 
@@ -81,6 +84,9 @@ public class CmsPublishManager {
     /** Indicates if the configuration can be modified. */
     private boolean m_frozen;
 
+    /** The maximum number of publish jobs running in parallel. */
+    private int m_parallelJobs = DEFAULT_PARALLEL_JOBS;
+
     /** The underlying publish engine. */
     private CmsPublishEngine m_publishEngine;
 
@@ -135,6 +141,16 @@ public class CmsPublishManager {
         m_publishEngine.abandonThread();
     }
 
+    /**
+     * Abandons the thread of the given running publish job.<p>
+     *
+     * @param publishJob the running publish job
+     */
+    public void abandonThread(CmsPublishJobRunning publishJob) {
+
+        m_publishEngine.abandonThread(publishJob.m_publishJob);
+    }
+
     /**
      * Aborts the given publish job.<p>
      *
@@ -198,7 +214,11 @@ public class CmsPublishManager {
     /**
      * Returns the current running publish job.<p>
      *
+     * If several publish jobs are running in parallel, this is the longest running one.<p>
+     *
      * @return the current running publish job
+     *
+     * @see #getRunningPublishJobs()
      */
     public CmsPublishJobRunning getCurrentPublishJob() {
 
@@ -222,6 +242,19 @@ public class CmsPublishManager {
         return m_publishEngine.getJobByPublishHistoryId(publishHistoryId);
     }
 
+    /**
+     * Returns the maximum number of publish jobs running in parallel.<p>
+     *
+     * Publish jobs only run in parallel if they publish resources of different sites,
+     * see {@link CmsPublishJobPartition}.<p>
+     *
+     * @return the maximum number of publish jobs running in parallel
+     */
+    public int getParallelJobs() {
+
+        return m_parallelJobs;
+    }
+
     /**
      * Returns the publish history list with already publish jobs.<p>
      *
@@ -446,6 +479,21 @@ public class CmsPublishManager {
         return m_publishEngine.getReportContents(publishJob);
     }
 
+    /**
+     * Returns all running publish jobs, in the order they have been started.<p>
+     *
+     * @return a list of {@link CmsPublishJobRunning} objects
+     */
+    public List<CmsPublishJobRunning> getRunningPublishJobs() {
+
+        List<CmsPublishThread> publishThreads = m_publishEngine.getPublishThreads();
+        List<CmsPublishJobRunning> result = new ArrayList<CmsPublishJobRunning>(publishThreads.size());
+        for (CmsPublishThread publishThread : publishThreads) {
+            result.add(new CmsPublishJobRunning(publishThread.getPublishJob()));
+        }
+        return result;
+    }
+
     /**
      * Returns the current user's publish list.<p>
      *
@@ -469,7 +517,7 @@ public class CmsPublishManager {
      */
     public void initialize(CmsObject cms) throws CmsException {
 
-        m_publishEngine.initialize(cms, m_publishQueuePersistance, m_publishQueueShutdowntime);
+        m_publishEngine.initialize(cms, m_publishQueuePersistance, m_publishQueueShutdowntime, m_parallelJobs);
         m_frozen = true;
     }
 
@@ -647,6 +695,19 @@ public class CmsPublishManager {
         m_securityManager.removeResourceFromUsersPubList(cms.getRequestContext(), structureIds);
     }
 
+    /**
+     * Sets the maximum number of publish jobs running in parallel.<p>
+     *
+     * @param parallelJobs the maximum number of parallel publish jobs, parsed as <code>int</code>
+     */
+    public void setParallelJobs(String parallelJobs) {
+
+        if (m_frozen) {
+            throw new CmsRuntimeException(Messages.get().container(Messages.ERR_CONFIG_FROZEN_0));
+        }
+        m_parallelJobs = Integer.parseInt(parallelJobs);
+    }
+
     /**
      * Sets the publish engine during initialization.<p>
      *
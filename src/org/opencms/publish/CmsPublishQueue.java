@@ -164,6 +164,16 @@ public class CmsPublishQueue {
         return Collections.unmodifiableList(result);
     }
 
+    /**
+     * Returns the waiting publish jobs, in the order they have been enqueued.<p>
+     *
+     * @return the waiting publish jobs
+     */
+    protected List<CmsPublishJobInfoBean> asJobList() {
+
+        return Collections.unmodifiableList(OpenCms.getMemoryMonitor().getAllCachedPublishJobs());
+    }
+
     /**
      * Checks if the given job is already in the queue, this does only check for the identical job.<p>
      *
@@ -315,6 +325,23 @@ public class CmsPublishQueue {
         }
     }
 
+    /**
+     * Removes the given publish job from the queue to be published, like {@link #next()}
+     * does for the first publish job.<p>
+     *
+     * @param publishJob the publish job to be published
+     *
+     * @return <code>false</code> if the publish job is not in the queue anymore
+     */
+    protected boolean take(CmsPublishJobInfoBean publishJob) {
+
+        if (!contains(publishJob)) {
+            return false;
+        }
+        OpenCms.getMemoryMonitor().uncachePublishJob(publishJob);
+        return true;
+    }
+
     /**
      * Updates the given job in the list.<p>
      *
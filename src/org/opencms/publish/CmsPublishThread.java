@@ -61,6 +61,9 @@ import org.apache.commons.logging.Log;
     /** the aborted flag. */
     private boolean m_abort;
 
+    /** The part of the repository the publish job writes to, computed before the job started. */
+    private final CmsPublishJobPartition m_partition;
+
     /** The publish engine instance. */
     private final CmsPublishEngine m_publishEngine;
 
@@ -81,15 +84,21 @@ import org.apache.commons.logging.Log;
      *
      * @param publishEngine the publish engine instance
      * @param publishJob the publish job to process
+     * @param partition the part of the repository the publish job writes to,
+     *      or <code>null</code> if publish jobs run one at a time
      *
      * @see org.opencms.publish.CmsPublishManager#getPublishList(org.opencms.file.CmsObject, org.opencms.file.CmsResource, boolean)
      * @see org.opencms.publish.CmsPublishManager#getPublishList(org.opencms.file.CmsObject)
      */
-    protected CmsPublishThread(CmsPublishEngine publishEngine, CmsPublishJobInfoBean publishJob) {
+    protected CmsPublishThread(
+        CmsPublishEngine publishEngine,
+        CmsPublishJobInfoBean publishJob,
+        CmsPublishJobPartition partition) {
 
         super(publishJob.getCmsObject(), Messages.get().getBundle().key(Messages.GUI_PUBLISH_TRHEAD_NAME_0));
         m_publishJob = publishJob;
         m_publishEngine = publishEngine;
+        m_partition = partition;
 
         // if the project to publish is a temporary project
         if (getCms().getRequestContext().getCurrentProject().getType() == CmsProject.PROJECT_TYPE_TEMPORARY) {
@@ -199,6 +208,20 @@ import org.apache.commons.logging.Log;
         m_abort = true;
     }
 
+    /**
+     * Returns the part of the repository the publish job of this thread writes to.<p>
+     *
+     * The partition is kept until the thread is removed from the publish engine,
+     * even if the publish job is already finished.<p>
+     *
+     * @return the part of the repository the publish job writes to,
+     *      or <code>null</code> if publish jobs run one at a time
+     */
+    protected CmsPublishJobPartition getPartition() {
+
+        return m_partition;
+    }
+
     /**
      * Returns the publish job for this thread.<p>
      *
@@ -0,0 +1,208 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.report;
+
+import org.opencms.i18n.CmsMessageContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report that records its output in order to write it to another report later.<p>
+ *
+ * Tasks running in parallel can use a recording report each, so that their output
+ * is written to the shared report one task after the other instead of being mixed up.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsRecordingReport extends A_CmsReport {
+
+    /**
+     * A single recorded report entry.<p>
+     */
+    private static class CmsRecordedEntry {
+
+        /** The message to print, <code>null</code> for a line break or a throwable. */
+        CmsMessageContainer m_container;
+
+        /** The format of the message. */
+        int m_format;
+
+        /** The throwable to print. */
+        Throwable m_throwable;
+    }
+
+    /** Flag to indicate that further output is dropped instead of recorded. */
+    private boolean m_closed;
+
+    /** The recorded entries. */
+    private List<CmsRecordedEntry> m_entries = new ArrayList<CmsRecordedEntry>();
+
+    /** The report to write the recorded output to. */
+    private I_CmsReport m_report;
+
+    /**
+     * Creates a new recording report for the given report.<p>
+     *
+     * @param report the report to write the recorded output to
+     */
+    public CmsRecordingReport(I_CmsReport report) {
+
+        init(report.getLocale(), report.getSiteRoot());
+        m_report = report;
+    }
+
+    /**
+     * Stops recording, all output written after this call is dropped.<p>
+     *
+     * This is used for tasks that have been abandoned, but may still be running, so their late output
+     * does not show up in the target report between the output of other tasks.
+     * The output recorded before can still be written with {@link #replay()}.<p>
+     */
+    public synchronized void close() {
+
+        m_closed = true;
+    }
+
+    /**
+     * @see org.opencms.report.I_CmsReport#getReportUpdate()
+     */
+    public String getReportUpdate() {
+
+        return "";
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#print(org.opencms.i18n.CmsMessageContainer)
+     */
+    @Override
+    public void print(CmsMessageContainer container) {
+
+        record(container, FORMAT_DEFAULT, null);
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#print(org.opencms.i18n.CmsMessageContainer, int)
+     */
+    @Override
+    public void print(CmsMessageContainer container, int format) {
+
+        record(container, format, null);
+    }
+
+    /**
+     * @see org.opencms.report.I_CmsReport#println()
+     */
+    public void println() {
+
+        record(null, FORMAT_DEFAULT, null);
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#println(org.opencms.i18n.CmsMessageContainer)
+     */
+    @Override
+    public void println(CmsMessageContainer container) {
+
+        record(container, FORMAT_DEFAULT, null);
+        println();
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#println(org.opencms.i18n.CmsMessageContainer, int)
+     */
+    @Override
+    public void println(CmsMessageContainer container, int format) {
+
+        record(container, format, null);
+        println();
+    }
+
+    /**
+     * @see org.opencms.report.I_CmsReport#println(java.lang.Throwable)
+     */
+    public void println(Throwable t) {
+
+        record(null, FORMAT_ERROR, t);
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#removeSiteRoot(java.lang.String)
+     */
+    @Override
+    public String removeSiteRoot(String resourcename) {
+
+        return m_report.removeSiteRoot(resourcename);
+    }
+
+    /**
+     * Writes the output recorded so far to the target report and clears the recorded output.<p>
+     */
+    public synchronized void replay() {
+
+        for (CmsRecordedEntry entry : m_entries) {
+            if (entry.m_throwable != null) {
+                m_report.println(entry.m_throwable);
+            } else if (entry.m_container != null) {
+                m_report.print(entry.m_container, entry.m_format);
+            } else {
+                m_report.println();
+            }
+        }
+        m_entries.clear();
+    }
+
+    /**
+     * @see org.opencms.report.A_CmsReport#print(java.lang.String, int)
+     */
+    @Override
+    protected void print(String value, int format) {
+
+        record(Messages.get().container(Messages.RPT_ARGUMENT_1, value), format, null);
+    }
+
+    /**
+     * Records a report entry.<p>
+     *
+     * @param container the message to print, <code>null</code> for a line break or a throwable
+     * @param format the format of the message
+     * @param t the throwable to print
+     */
+    private synchronized void record(CmsMessageContainer container, int format, Throwable t) {
+
+        if (m_closed) {
+            return;
+        }
+        CmsRecordedEntry entry = new CmsRecordedEntry();
+        entry.m_container = container;
+        entry.m_format = format;
+        entry.m_throwable = t;
+        m_entries.add(entry);
+        setLastEntryTime(System.currentTimeMillis());
+    }
+}
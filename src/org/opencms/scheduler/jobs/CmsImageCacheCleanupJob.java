@@ -27,6 +27,7 @@
 
 package org.opencms.scheduler.jobs;
 
+import org.opencms.cache.CmsDiskCacheIndex;
 import org.opencms.file.CmsObject;
 import org.opencms.loader.CmsImageLoader;
 import org.opencms.main.CmsLog;
@@ -73,7 +74,13 @@ public class CmsImageCacheCleanupJob implements I_CmsScheduledJob {
         long expireDate = System.currentTimeMillis() - (long)(maxAge * 60f * 60f * 1000f);
         File basedir = new File(CmsImageLoader.getImageRepositoryPath());
         // perform the cache cleanup
-        return cleanImageCache(expireDate, basedir);
+        int count = cleanImageCache(expireDate, basedir);
+        CmsDiskCacheIndex index = CmsImageLoader.getImageCacheIndex();
+        if (index != null) {
+            // the deleted files must no longer count for the size limit of the cache
+            index.rebuild();
+        }
+        return count;
     }
 
     /**
@@ -41,7 +41,8 @@ import org.apache.commons.logging.Log;
  * Implements the indexing method for a single resource as thread.<p>
  *
  * The indexing of a single resource is wrapped into a thread
- * in order to prevent the overall indexer from hanging.<p>
+ * in order to prevent the overall indexer from hanging.
+ * The {@link CmsIndexingThreadManager} runs it with one of its indexing workers.<p>
  *
  * @since 6.0.0
  */
@@ -118,7 +119,7 @@ public class CmsIndexingThread extends Thread {
             docOk = true;
 
             // check if the thread was interrupted
-            if (isInterrupted() && LOG.isDebugEnabled()) {
+            if (Thread.currentThread().isInterrupted() && LOG.isDebugEnabled()) {
                 LOG.debug(
                     Messages.get().getBundle().key(Messages.LOG_ABANDONED_THREAD_FINISHED_1, m_res.getRootPath()));
             }
@@ -28,29 +28,85 @@
 package org.opencms.search;
 
 import org.opencms.db.CmsPublishedResource;
+import org.opencms.file.CmsObject;
 import org.opencms.file.CmsResource;
 import org.opencms.i18n.CmsMessageContainer;
+import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
+import org.opencms.main.OpenCms;
 import org.opencms.report.CmsLogReport;
+import org.opencms.report.CmsRecordingReport;
 import org.opencms.report.I_CmsReport;
 
 import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 
 /**
  * Implements the management of indexing threads.<p>
  *
+ * The documents are created by a bounded pool of indexing workers running in parallel.
+ * The created documents are written to the index by the thread that submitted the resources,
+ * in the order the resources have been submitted.<p>
+ *
  * @since 6.0.0
  */
 public class CmsIndexingThreadManager {
 
+    /**
+     * A resource submitted to the indexing workers.<p>
+     */
+    private static class CmsIndexingJob implements Runnable {
+
+        /** The future of the job. */
+        Future<?> m_future;
+
+        /** The indexer the resource is indexed with. */
+        CmsVfsIndexer m_indexer;
+
+        /** The report recording the output of the indexing thread. */
+        CmsRecordingReport m_report;
+
+        /** The resource to index. */
+        CmsResource m_res;
+
+        /** The time the job was started by a worker, 0 as long as it waits for a free worker. */
+        volatile long m_startTime;
+
+        /** The indexing thread creating the document, run by a worker. */
+        CmsIndexingThread m_thread;
+
+        /** The index writer to write the document with. */
+        I_CmsIndexWriter m_writer;
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+
+            m_startTime = System.currentTimeMillis();
+            m_thread.run();
+        }
+    }
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsIndexingThreadManager.class);
 
     /** Number of threads abandoned. */
     private int m_abandonedCounter;
 
+    /** The pool of indexing workers, <code>null</code> if no indexing is in progress. */
+    private ThreadPoolExecutor m_executor;
+
     /** The time the last error was written to the log. */
     private long m_lastLogErrorTime;
 
@@ -60,15 +116,24 @@ public class CmsIndexingThreadManager {
     /** The maximum number of modifications before a commit in the search index is triggered. */
     private int m_maxModificationsBeforeCommit;
 
+    /** The submitted jobs whose documents have not been written to the index yet, in the order of submission. */
+    private LinkedList<CmsIndexingJob> m_pendingJobs = new LinkedList<CmsIndexingJob>();
+
     /** Number of thread returned. */
     private int m_returnedCounter;
 
     /** Overall number of threads started. */
     private int m_startedCounter;
 
+    /** The number of indexing workers running in parallel. */
+    private int m_threads;
+
     /** Timeout for abandoning threads. */
     private long m_timeout;
 
+    /** Number of documents written to or deleted from the index. */
+    private int m_writtenCounter;
+
     /**
      * Creates and starts a thread manager for indexing threads.<p>
      *
@@ -77,15 +142,30 @@ public class CmsIndexingThreadManager {
      */
     public CmsIndexingThreadManager(long timeout, int maxModificationsBeforeCommit) {
 
+        this(timeout, maxModificationsBeforeCommit, 1);
+    }
+
+    /**
+     * Creates and starts a thread manager for indexing threads.<p>
+     *
+     * @param timeout timeout after a thread is abandoned
+     * @param maxModificationsBeforeCommit the maximum number of modifications before a commit in the search index is triggered
+     * @param threads the number of indexing workers running in parallel
+     */
+    public CmsIndexingThreadManager(long timeout, int maxModificationsBeforeCommit, int threads) {
+
         m_timeout = timeout;
         m_maxModificationsBeforeCommit = maxModificationsBeforeCommit;
+        m_threads = Math.max(1, threads);
     }
 
     /**
-     * Creates and starts a new indexing thread for a resource.<p>
+     * Creates a new indexing thread for a resource and passes it to the indexing workers.<p>
      *
-     * After an indexing thread was started, the manager suspends itself
-     * and waits for an amount of time specified by the <code>timeout</code>
+     * At most two resources per indexing worker are pending at the same time. If this limit
+     * is reached, the manager waits for the oldest pending document and writes all finished
+     * documents to the index. Once an indexing worker has started to create a document,
+     * the manager waits for an amount of time specified by the <code>timeout</code>
      * value. If the timeout value is reached, the indexing thread is
      * aborted by an interrupt signal.<p>
      *
@@ -95,71 +175,46 @@ public class CmsIndexingThreadManager {
      */
     public void createIndexingThread(CmsVfsIndexer indexer, I_CmsIndexWriter writer, CmsResource res) {
 
-        I_CmsReport report = indexer.getReport();
         m_startedCounter++;
-        CmsIndexingThread thread = new CmsIndexingThread(
-            indexer.getCms(),
+        CmsIndexingJob job = new CmsIndexingJob();
+        job.m_indexer = indexer;
+        job.m_writer = writer;
+        job.m_res = res;
+        job.m_report = indexer.getReport() != null ? new CmsRecordingReport(indexer.getReport()) : null;
+        job.m_thread = new CmsIndexingThread(
+            getWorkerCms(indexer.getCms()),
             res,
             indexer.getIndex(),
             m_startedCounter,
-            report);
-        thread.setPriority(Thread.MIN_PRIORITY);
-        thread.start();
-        try {
-            thread.join(m_timeout);
-        } catch (InterruptedException e) {
-            // ignore
-        }
-        if (thread.isAlive()) {
-            // the thread has not finished - so it must be marked as an abandoned thread
-            m_abandonedCounter++;
-            thread.interrupt();
-            if (LOG.isWarnEnabled()) {
-                LOG.warn(Messages.get().getBundle().key(Messages.LOG_INDEXING_TIMEOUT_1, res.getRootPath()));
-            }
-            if (report != null) {
-                report.println();
-                report.print(
-                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_FAILED_0),
-                    I_CmsReport.FORMAT_WARNING);
-                report.println(
-                    Messages.get().container(Messages.RPT_SEARCH_INDEXING_TIMEOUT_1, res.getRootPath()),
-                    I_CmsReport.FORMAT_WARNING);
-            }
-        } else {
-            // the thread finished normally
-            m_returnedCounter++;
-        }
-        I_CmsSearchDocument doc = thread.getResult();
-        if (doc != null) {
-            // write the document to the index
-            indexer.updateResource(writer, res.getRootPath(), doc);
-        } else {
-            indexer.deleteResource(writer, new CmsPublishedResource(res));
-        }
-        if ((m_startedCounter % m_maxModificationsBeforeCommit) == 0) {
-            try {
-                writer.commit();
-            } catch (IOException e) {
-                if (LOG.isWarnEnabled()) {
-                    LOG.warn(
-                        Messages.get().getBundle().key(
-                            Messages.LOG_IO_INDEX_WRITER_COMMIT_2,
-                            indexer.getIndex().getName(),
-                            indexer.getIndex().getPath()),
-                        e);
-                }
-            }
+            job.m_report);
+        job.m_future = getExecutor().submit(job);
+        m_pendingJobs.add(job);
+        if (m_pendingJobs.size() >= (2 * m_threads)) {
+            writeDocuments(false);
         }
     }
 
+    /**
+     * Returns the number of indexing workers running in parallel.<p>
+     *
+     * @return the number of indexing workers
+     */
+    public int getThreads() {
+
+        return m_threads;
+    }
+
     /**
      * Returns if the indexing manager still have indexing threads.<p>
      *
+     * All pending documents are written to the index before the result is calculated.<p>
+     *
      * @return true if the indexing manager still have indexing threads
      */
     public boolean isRunning() {
 
+        writeDocuments(true);
+
         if (m_lastLogErrorTime <= 0) {
             m_lastLogErrorTime = System.currentTimeMillis();
             m_lastLogWarnTime = m_lastLogErrorTime;
@@ -223,4 +278,185 @@ public class CmsIndexingThreadManager {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Stops the indexing workers.<p>
+     *
+     * Documents that are still pending are not written to the index, and indexing threads
+     * that have not started yet are discarded. This must be called once indexing is finished,
+     * also if it failed.<p>
+     */
+    public void shutDown() {
+
+        m_pendingJobs.clear();
+        if (m_executor != null) {
+            m_executor.shutdownNow();
+            m_executor = null;
+        }
+    }
+
+    /**
+     * Returns the pool of indexing workers, creating it if required.<p>
+     *
+     * @return the pool of indexing workers
+     */
+    private ThreadPoolExecutor getExecutor() {
+
+        if (m_executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            m_executor = new ThreadPoolExecutor(
+                m_threads,
+                m_threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    public Thread newThread(Runnable r) {
+
+                        Thread thread = new Thread(r, "OpenCms: Indexing worker " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        }
+        return m_executor;
+    }
+
+    /**
+     * Returns a copy of the indexer's OpenCms context for a single indexing thread.<p>
+     *
+     * The indexing workers run in parallel, so they must not share the request context.<p>
+     *
+     * @param cms the OpenCms context of the indexer
+     *
+     * @return the OpenCms context for the indexing thread
+     */
+    private CmsObject getWorkerCms(CmsObject cms) {
+
+        try {
+            return OpenCms.initCmsObject(cms);
+        } catch (CmsException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+            return cms;
+        }
+    }
+
+    /**
+     * Waits until the document of the given job has been created.<p>
+     *
+     * @param job the job to wait for
+     *
+     * @return <code>true</code> if the document has been created, <code>false</code> if the timeout was reached
+     */
+    private boolean waitForJob(CmsIndexingJob job) {
+
+        while (true) {
+            long startTime = job.m_startTime;
+            long waitTime = startTime > 0 ? (startTime + m_timeout) - System.currentTimeMillis() : m_timeout;
+            try {
+                job.m_future.get(Math.max(1, waitTime), TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                if ((job.m_startTime > 0) && ((System.currentTimeMillis() - job.m_startTime) >= m_timeout)) {
+                    return false;
+                }
+                // the job is still waiting for a free worker, continue waiting
+            } catch (InterruptedException e) {
+                // ignore
+                return job.m_future.isDone();
+            } catch (ExecutionException e) {
+                // the indexing thread handles all errors itself
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Writes the document of the given job to the index.<p>
+     *
+     * @param job the job to write the document for
+     */
+    private void writeDocument(CmsIndexingJob job) {
+
+        I_CmsReport report = job.m_indexer.getReport();
+        boolean finished = waitForJob(job);
+        if (job.m_report != null) {
+            if (!finished) {
+                // the abandoned thread may still write to its report, drop this output
+                job.m_report.close();
+            }
+            job.m_report.replay();
+        }
+        if (!finished) {
+            // the thread has not finished - so it must be marked as an abandoned thread
+            m_abandonedCounter++;
+            job.m_future.cancel(true);
+            // replace the blocked worker so the number of parallel workers is kept
+            m_executor.setMaximumPoolSize(m_executor.getMaximumPoolSize() + 1);
+            m_executor.setCorePoolSize(m_executor.getCorePoolSize() + 1);
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(Messages.get().getBundle().key(Messages.LOG_INDEXING_TIMEOUT_1, job.m_res.getRootPath()));
+            }
+            if (report != null) {
+                report.println();
+                report.print(
+                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_FAILED_0),
+                    I_CmsReport.FORMAT_WARNING);
+                report.println(
+                    Messages.get().container(Messages.RPT_SEARCH_INDEXING_TIMEOUT_1, job.m_res.getRootPath()),
+                    I_CmsReport.FORMAT_WARNING);
+            }
+        } else {
+            // the thread finished normally
+            m_returnedCounter++;
+        }
+        I_CmsSearchDocument doc = job.m_thread.getResult();
+        if (doc != null) {
+            // write the document to the index
+            job.m_indexer.updateResource(job.m_writer, job.m_res.getRootPath(), doc);
+        } else {
+            job.m_indexer.deleteResource(job.m_writer, new CmsPublishedResource(job.m_res));
+        }
+        m_writtenCounter++;
+        if ((m_writtenCounter % m_maxModificationsBeforeCommit) == 0) {
+            try {
+                job.m_writer.commit();
+            } catch (IOException e) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_IO_INDEX_WRITER_COMMIT_2,
+                            job.m_indexer.getIndex().getName(),
+                            job.m_indexer.getIndex().getPath()),
+                        e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the pending documents to the index.<p>
+     *
+     * Waits for the oldest pending document and writes it together with all following
+     * documents that are already finished. If <code>all</code> is set, waits for all pending documents
+     * and shuts down the indexing workers afterwards.<p>
+     *
+     * @param all if all pending documents should be written
+     */
+    private void writeDocuments(boolean all) {
+
+        if (!m_pendingJobs.isEmpty()) {
+            writeDocument(m_pendingJobs.removeFirst());
+        }
+        while (!m_pendingJobs.isEmpty() && (all || m_pendingJobs.getFirst().m_future.isDone())) {
+            writeDocument(m_pendingJobs.removeFirst());
+        }
+        if (all && (m_executor != null)) {
+            // abandoned threads may still be running, they terminate their worker once they are finished
+            m_executor.shutdown();
+            m_executor = null;
+        }
+    }
+}
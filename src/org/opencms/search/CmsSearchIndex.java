@@ -37,6 +37,7 @@ import org.opencms.file.CmsObject;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.CmsResourceReadRecorder;
 import org.opencms.file.types.CmsResourceTypeXmlContent;
 import org.opencms.i18n.CmsLocaleManager;
 import org.opencms.main.CmsException;
@@ -1247,6 +1248,9 @@ public class CmsSearchIndex implements I_CmsConfigurationParameterHandler {
         long timeLucene;
         long timeResultProcessing;
 
+        // the result depends on resources that have not been read before
+        CmsResourceReadRecorder.markIncomplete(cms.getRequestContext());
+
         if (LOG.isDebugEnabled()) {
             LOG.debug(Messages.get().getBundle().key(Messages.LOG_SEARCH_PARAMS_2, params, getName()));
         }
@@ -45,6 +45,7 @@ import org.opencms.main.CmsException;
 import org.opencms.main.CmsIllegalArgumentException;
 import org.opencms.main.CmsIllegalStateException;
 import org.opencms.main.CmsLog;
+import org.opencms.main.I_CmsAsyncEventListener;
 import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
 import org.opencms.main.OpenCmsSolrHandler;
@@ -75,7 +76,11 @@ import org.opencms.util.CmsUUID;
 import org.opencms.util.CmsWaitHandle;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.FileSystems;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -105,7 +110,7 @@ import org.apache.solr.core.SolrCore;
  *
  * @since 6.0.0
  */
-public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
+public class CmsSearchManager implements I_CmsScheduledJob, I_CmsAsyncEventListener {
 
     /**
      *  Enumeration class for force unlock types.<p>
@@ -161,6 +166,9 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         /** Indicates if the event handlers for the offline search have been already registered. */
         private boolean m_isEventRegistered;
 
+        /** The structure ids of the folders with changed access control entries, whose sub trees must be reindexed. */
+        private Set<CmsUUID> m_foldersToIndex;
+
         /** The list of resources to index. */
         private List<CmsPublishedResource> m_resourcesToIndex;
 
@@ -170,6 +178,7 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         protected CmsSearchOfflineHandler() {
 
             m_resourcesToIndex = new ArrayList<CmsPublishedResource>();
+            m_foldersToIndex = new HashSet<CmsUUID>();
         }
 
         /**
@@ -199,6 +208,11 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
                     // a resource has been modified - offline indexes require (re)indexing
                     List<CmsResource> resources = Collections.singletonList(
                         (CmsResource)event.getData().get(I_CmsEventListener.KEY_RESOURCE));
+                    CmsResource folder = getFolderWithChangedAccess(event);
+                    if (folder != null) {
+                        // the access control fields of all resources in the folder are stale
+                        addFolderToIndex(folder.getStructureId());
+                    }
                     reIndexResources(resources);
                     break;
                 case I_CmsEventListener.EVENT_RESOURCE_DELETED:
@@ -226,6 +240,16 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
             }
         }
 
+        /**
+         * Adds a folder whose sub tree is to be indexed.<p>
+         *
+         * @param folderId the structure id of the folder
+         */
+        protected synchronized void addFolderToIndex(CmsUUID folderId) {
+
+            m_foldersToIndex.add(folderId);
+        }
+
         /**
          * Adds a list of {@link CmsPublishedResource} objects to be indexed.<p>
          *
@@ -244,9 +268,12 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         protected List<CmsPublishedResource> getResourcesToIndex() {
 
             List<CmsPublishedResource> result;
+            Set<CmsUUID> folders;
             synchronized (this) {
                 result = m_resourcesToIndex;
                 m_resourcesToIndex = new ArrayList<CmsPublishedResource>();
+                folders = m_foldersToIndex;
+                m_foldersToIndex = new HashSet<CmsUUID>();
             }
             try {
                 CmsObject cms = m_adminCms;
@@ -256,6 +283,7 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
                     cms = OpenCms.initCmsObject(m_adminCms);
                     cms.getRequestContext().setCurrentProject(offline);
                 }
+                addResourcesBelowFolders(cms, folders, result);
                 findRelatedContainerPages(cms, result);
             } catch (CmsException e) {
                 LOG.error(e.getLocalizedMessage(), e);
@@ -629,9 +657,15 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
     /** The default value used for keeping the extraction results in the cache (672 hours = 4 weeks). */
     public static final float DEFAULT_EXTRACTION_CACHE_MAX_AGE = 672.0f;
 
+    /** The default maximum size of the extraction cache (1024 MB). */
+    public static final int DEFAULT_EXTRACTION_CACHE_MAX_SIZE = 1024;
+
     /** Default for the maximum number of modifications before a commit in the search index is triggered (500). */
     public static final int DEFAULT_MAX_MODIFICATIONS_BEFORE_COMMIT = 500;
 
+    /** The default number of indexing threads creating documents in parallel (1). */
+    public static final int DEFAULT_INDEXING_THREADS = 1;
+
     /** The default update frequency for offline indexes (15000 msec = 15 sec). */
     public static final int DEFAULT_OFFLINE_UPDATE_FREQNENCY = 15000;
 
@@ -668,6 +702,9 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
     /** Stores the offline update frequency while indexing is paused. */
     private long m_configuredOfflineIndexingFrequency;
 
+    /** The structure ids of the folders with changed access control entries, whose sub trees must be reindexed after publishing. */
+    private Set<CmsUUID> m_foldersWithChangedAccess;
+
     /** The Solr core container. */
     private CoreContainer m_coreContainer;
 
@@ -680,6 +717,9 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
     /** The max age for extraction results to remain in the cache. */
     private float m_extractionCacheMaxAge;
 
+    /** The max size of the extraction result cache in MB. */
+    private int m_extractionCacheMaxSize;
+
     /** The cache for the extraction results. */
     private CmsExtractionResultCache m_extractionResultCache;
 
@@ -695,6 +735,9 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
     /** A list of search indexes. */
     private List<CmsSearchIndex> m_indexes;
 
+    /** The number of indexing threads creating documents in parallel. */
+    private int m_indexingThreads;
+
     /** Seconds to wait for an index lock. */
     private int m_indexLockMaxWaitSeconds = 10;
 
@@ -736,11 +779,14 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         m_indexes = new ArrayList<CmsSearchIndex>();
         m_indexSources = new TreeMap<String, CmsSearchIndexSource>();
         m_offlineHandler = new CmsSearchOfflineHandler();
+        m_foldersWithChangedAccess = Collections.synchronizedSet(new HashSet<CmsUUID>());
         m_extractionCacheMaxAge = DEFAULT_EXTRACTION_CACHE_MAX_AGE;
+        m_extractionCacheMaxSize = DEFAULT_EXTRACTION_CACHE_MAX_SIZE;
         m_maxExcerptLength = DEFAULT_EXCERPT_LENGTH;
         m_offlineUpdateFrequency = DEFAULT_OFFLINE_UPDATE_FREQNENCY;
         m_maxIndexWaitTime = DEFAULT_MAX_INDEX_WAITTIME;
         m_maxModificationsBeforeCommit = DEFAULT_MAX_MODIFICATIONS_BEFORE_COMMIT;
+        m_indexingThreads = DEFAULT_INDEXING_THREADS;
 
         m_fieldConfigurations = new HashMap<String, CmsSearchFieldConfiguration>();
         // make sure we have a "standard" field configuration
@@ -951,6 +997,32 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         }
     }
 
+    /**
+     * Writes all entries of the text extraction cache as a ZIP file to the RFS.<p>
+     *
+     * The extraction results are cached by a digest of the resource content, so the written file can be
+     * imported on another server with {@link #importExtractionCache(CmsObject, String)}
+     * before rebuilding its indexes, which then only need to extract the text of changed documents.<p>
+     *
+     * @param cms the current users OpenCms context
+     * @param rfsPath the RFS path of the ZIP file to write
+     *
+     * @return the number of exported cache entries
+     *
+     * @throws CmsRoleViolationException in case the given opencms object does not have <code>{@link CmsRole#WORKPLACE_MANAGER}</code> permissions
+     * @throws IOException in case the ZIP file could not be written
+     */
+    public int exportExtractionCache(CmsObject cms, String rfsPath) throws CmsRoleViolationException, IOException {
+
+        OpenCms.getRoleManager().checkRole(cms, CmsRole.WORKPLACE_MANAGER);
+        OutputStream out = new FileOutputStream(rfsPath);
+        try {
+            return m_extractionResultCache.exportCache(out);
+        } finally {
+            out.close();
+        }
+    }
+
     /**
      * Implements the event listener of this class.<p>
      *
@@ -1011,6 +1083,13 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
                             publishHistoryId));
                 }
                 break;
+            case I_CmsEventListener.EVENT_RESOURCE_MODIFIED:
+                CmsResource folder = getFolderWithChangedAccess(event);
+                if (folder != null) {
+                    // the sub tree of the folder must be reindexed when the folder is published
+                    m_foldersWithChangedAccess.add(folder.getStructureId());
+                }
+                break;
             default:
                 // no operation
         }
@@ -1196,6 +1275,16 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         return m_extractionCacheMaxAge;
     }
 
+    /**
+     * Returns the maximum size of the text extraction result cache (in MB).<p>
+     *
+     * @return the maximum size of the text extraction result cache (in MB), 0 means no limit
+     */
+    public int getExtractionCacheMaxSize() {
+
+        return m_extractionCacheMaxSize;
+    }
+
     /**
      * Returns the search field configuration with the given name.<p>
      *
@@ -1336,6 +1425,16 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         return null;
     }
 
+    /**
+     * Returns the number of indexing threads creating documents in parallel.<p>
+     *
+     * @return the number of indexing threads
+     */
+    public int getIndexingThreads() {
+
+        return m_indexingThreads;
+    }
+
     /**
      * Returns a search index source for a specified source name.<p>
      *
@@ -1387,6 +1486,14 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         return m_offlineUpdateFrequency;
     }
 
+    /**
+     * @see org.opencms.main.I_CmsAsyncEventListener#getPriority()
+     */
+    public int getPriority() {
+
+        return PRIORITY_DEFAULT;
+    }
+
     /**
      * Returns an unmodifiable list of all configured <code>{@link CmsSearchIndex}</code> instances.<p>
      *
@@ -1478,6 +1585,29 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         return m_timeout;
     }
 
+    /**
+     * Reads the text extraction cache entries from a ZIP file written by
+     * {@link #exportExtractionCache(CmsObject, String)}.<p>
+     *
+     * @param cms the current users OpenCms context
+     * @param rfsPath the RFS path of the ZIP file to read
+     *
+     * @return the number of imported cache entries
+     *
+     * @throws CmsRoleViolationException in case the given opencms object does not have <code>{@link CmsRole#WORKPLACE_MANAGER}</code> permissions
+     * @throws IOException in case the ZIP file could not be read
+     */
+    public int importExtractionCache(CmsObject cms, String rfsPath) throws CmsRoleViolationException, IOException {
+
+        OpenCms.getRoleManager().checkRole(cms, CmsRole.WORKPLACE_MANAGER);
+        InputStream in = new FileInputStream(rfsPath);
+        try {
+            return m_extractionResultCache.importCache(in);
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * Initializes the search manager.<p>
      *
@@ -1502,6 +1632,7 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         m_extractionResultCache = new CmsExtractionResultCache(
             OpenCms.getSystemInfo().getAbsoluteRfsPathRelativeToWebInf(getDirectory()),
             "/extractCache");
+        m_extractionResultCache.setMaxSize(m_extractionCacheMaxSize * 1024L * 1024L);
         initializeIndexes();
         initOfflineIndexes();
 
@@ -1511,7 +1642,8 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
             new int[] {
                 I_CmsEventListener.EVENT_CLEAR_CACHES,
                 I_CmsEventListener.EVENT_PUBLISH_PROJECT,
-                I_CmsEventListener.EVENT_REBUILD_SEARCHINDEXES});
+                I_CmsEventListener.EVENT_REBUILD_SEARCHINDEXES,
+                I_CmsEventListener.EVENT_RESOURCE_MODIFIED});
     }
 
     /**
@@ -1545,6 +1677,29 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
 
     }
 
+    /**
+     * Updating the indexes after a publish and rebuilding them are processed asynchronously.
+     * A folder with changed permissions is recorded in the firing thread, so it is known
+     * before the project containing it is published.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#isAsync(org.opencms.main.CmsEvent)
+     */
+    public boolean isAsync(CmsEvent event) {
+
+        return (event.getType() == I_CmsEventListener.EVENT_PUBLISH_PROJECT)
+            || (event.getType() == I_CmsEventListener.EVENT_REBUILD_SEARCHINDEXES);
+    }
+
+    /**
+     * Only a waiting identical rebuild of the same indexes makes a rebuild obsolete.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#isCoalescing(org.opencms.main.CmsEvent)
+     */
+    public boolean isCoalescing(CmsEvent event) {
+
+        return event.getType() == I_CmsEventListener.EVENT_REBUILD_SEARCHINDEXES;
+    }
+
     /**
      * Returns if the offline indexing is paused.<p>
      *
@@ -2058,6 +2213,41 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         }
     }
 
+    /**
+     * Sets the maximum size of the text extraction result cache (in MB).<p>
+     *
+     * If the cache grows larger, the least recently used extraction results are removed.<p>
+     *
+     * @param extractionCacheMaxSize the maximum size of the text extraction result cache, 0 means no limit
+     */
+    public void setExtractionCacheMaxSize(int extractionCacheMaxSize) {
+
+        m_extractionCacheMaxSize = Math.max(0, extractionCacheMaxSize);
+        if (m_extractionResultCache != null) {
+            m_extractionResultCache.setMaxSize(m_extractionCacheMaxSize * 1024L * 1024L);
+        }
+    }
+
+    /**
+     * Sets the maximum size of the text extraction result cache (in MB) as a String.<p>
+     *
+     * @param extractionCacheMaxSize the maximum size of the text extraction result cache
+     */
+    public void setExtractionCacheMaxSize(String extractionCacheMaxSize) {
+
+        try {
+            setExtractionCacheMaxSize(Integer.parseInt(extractionCacheMaxSize));
+        } catch (NumberFormatException e) {
+            LOG.error(
+                Messages.get().getBundle().key(
+                    Messages.LOG_PARSE_EXTRACTION_CACHE_SIZE_FAILED_2,
+                    extractionCacheMaxSize,
+                    new Integer(DEFAULT_EXTRACTION_CACHE_MAX_SIZE)),
+                e);
+            setExtractionCacheMaxSize(DEFAULT_EXTRACTION_CACHE_MAX_SIZE);
+        }
+    }
+
     /**
      * Sets the unlock mode during indexing.<p>
      *
@@ -2085,6 +2275,36 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         }
     }
 
+    /**
+     * Sets the number of indexing threads creating documents in parallel.<p>
+     *
+     * @param indexingThreads the number of indexing threads to set
+     */
+    public void setIndexingThreads(int indexingThreads) {
+
+        m_indexingThreads = Math.max(1, indexingThreads);
+    }
+
+    /**
+     * Sets the number of indexing threads creating documents in parallel as a String.<p>
+     *
+     * @param value the number of indexing threads to set
+     */
+    public void setIndexingThreads(String value) {
+
+        try {
+            setIndexingThreads(Integer.parseInt(value.trim()));
+        } catch (Exception e) {
+            LOG.error(
+                Messages.get().getBundle().key(
+                    Messages.LOG_PARSE_INDEXING_THREADS_FAILED_2,
+                    value,
+                    new Integer(DEFAULT_INDEXING_THREADS)),
+                e);
+            setIndexingThreads(DEFAULT_INDEXING_THREADS);
+        }
+    }
+
     /**
      * Sets the seconds to wait for an index lock during an update operation.<p>
      *
@@ -2326,6 +2546,44 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         }
     }
 
+    /**
+     * Adds the files below the given folders to the list of resources to index.<p>
+     *
+     * The access control fields of the search documents contain the permissions inherited from the
+     * parent folders, so they are stale after the access control entries of a parent folder were changed.<p>
+     *
+     * @param cms the OpenCms context used to read the files
+     * @param folderIds the structure ids of the folders
+     * @param resourcesToIndex the list of resources to index
+     */
+    protected void addResourcesBelowFolders(
+        CmsObject cms,
+        Set<CmsUUID> folderIds,
+        List<CmsPublishedResource> resourcesToIndex) {
+
+        if (folderIds.isEmpty()) {
+            return;
+        }
+        Set<CmsPublishedResource> contained = new HashSet<CmsPublishedResource>(resourcesToIndex);
+        for (CmsUUID folderId : folderIds) {
+            try {
+                CmsResource folder = cms.readResource(folderId, CmsResourceFilter.ALL);
+                List<CmsResource> files = cms.readResources(
+                    cms.getRequestContext().removeSiteRoot(folder.getRootPath()),
+                    CmsResourceFilter.ALL.addRequireFile(),
+                    true);
+                for (CmsResource file : files) {
+                    CmsPublishedResource pubRes = new CmsPublishedResource(file);
+                    if (contained.add(pubRes)) {
+                        resourcesToIndex.add(pubRes);
+                    }
+                }
+            } catch (CmsException e) {
+                LOG.warn(e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
     /**
      * Cleans up the extraction result cache.<p>
      */
@@ -2433,6 +2691,26 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
         return names;
     }
 
+    /**
+     * Returns the folder whose access control entries were changed by the given resource modification event.<p>
+     *
+     * @param event the resource modification event
+     *
+     * @return the folder, or <code>null</code> if the event did not change the access control entries of a folder
+     */
+    protected CmsResource getFolderWithChangedAccess(CmsEvent event) {
+
+        Object change = event.getData().get(I_CmsEventListener.KEY_CHANGE);
+        Object resource = event.getData().get(I_CmsEventListener.KEY_RESOURCE);
+        if ((change instanceof Integer)
+            && ((((Integer)change).intValue() & CmsDriverManager.CHANGED_ACCESSCONTROL) > 0)
+            && (resource instanceof CmsResource)
+            && ((CmsResource)resource).isFolder()) {
+            return (CmsResource)resource;
+        }
+        return null;
+    }
+
     /**
      * Returns the a offline project used for offline indexing.<p>
      *
@@ -2463,7 +2741,7 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
      */
     protected CmsIndexingThreadManager getThreadManager() {
 
-        return new CmsIndexingThreadManager(m_timeout, m_maxModificationsBeforeCommit);
+        return new CmsIndexingThreadManager(m_timeout, m_maxModificationsBeforeCommit, m_indexingThreads);
     }
 
     /**
@@ -2665,6 +2943,17 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
                 }
             }
 
+            // the access control fields of the resources below published folders with changed permissions are stale
+            Set<CmsUUID> changedFolders = new HashSet<CmsUUID>();
+            for (CmsPublishedResource res : publishedResources) {
+                if (res.isFolder()
+                    && m_foldersWithChangedAccess.remove(res.getStructureId())
+                    && !res.getState().isDeleted()) {
+                    changedFolders.add(res.getStructureId());
+                }
+            }
+            addResourcesBelowFolders(adminCms, changedFolders, updateResources);
+
             findRelatedContainerPages(adminCms, updateResources);
             if (!updateResources.isEmpty()) {
                 // sort the resource to update
@@ -2826,6 +3115,8 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
                     I_CmsReport.FORMAT_HEADLINE);
 
             } finally {
+                // make sure the indexing workers are stopped, also if indexing failed
+                threadManager.shutDown();
                 if (writer != null) {
                     try {
                         writer.close();
@@ -2926,26 +3217,30 @@ public class CmsSearchManager implements I_CmsScheduledJob, I_CmsEventListener {
                 if (hasResourcesToUpdate) {
                     // create a new thread manager
                     CmsIndexingThreadManager threadManager = getThreadManager();
-
-                    Iterator<CmsSearchIndexUpdateData> i = updateCollections.iterator();
-                    while (i.hasNext()) {
-                        CmsSearchIndexUpdateData updateCollection = i.next();
-                        if (updateCollection.hasResourceToUpdate()) {
-                            updateCollection.getIndexer().updateResources(
-                                writer,
-                                threadManager,
-                                updateCollection.getResourcesToUpdate());
+                    try {
+                        Iterator<CmsSearchIndexUpdateData> i = updateCollections.iterator();
+                        while (i.hasNext()) {
+                            CmsSearchIndexUpdateData updateCollection = i.next();
+                            if (updateCollection.hasResourceToUpdate()) {
+                                updateCollection.getIndexer().updateResources(
+                                    writer,
+                                    threadManager,
+                                    updateCollection.getResourcesToUpdate());
+                            }
                         }
-                    }
 
-                    // wait for indexing threads to finish
-                    while (threadManager.isRunning()) {
-                        try {
-                            Thread.sleep(500);
-                        } catch (InterruptedException e) {
-                            // just continue with the loop after interruption
-                            LOG.info(e.getLocalizedMessage(), e);
+                        // wait for indexing threads to finish
+                        while (threadManager.isRunning()) {
+                            try {
+                                Thread.sleep(500);
+                            } catch (InterruptedException e) {
+                                // just continue with the loop after interruption
+                                LOG.info(e.getLocalizedMessage(), e);
+                            }
                         }
+                    } finally {
+                        // make sure the indexing workers are stopped, also if indexing failed
+                        threadManager.shutDown();
                     }
                 }
             } finally {
@@ -116,7 +116,8 @@ public abstract class A_CmsVfsDocument implements I_CmsDocumentFactory {
             // check if caching is enabled for this document type
             CmsExtractionResultCache cache = getCache();
             String cacheName = null;
-            if ((cache != null) && (resource.getSiblingCount() > 1)) {
+            CmsResource extractResource = resource;
+            if ((cache != null) && !isExtractingContentOnly() && (resource.getSiblingCount() > 1)) {
                 // hard drive based caching only makes sense for resources that have siblings,
                 // because the index will also store the content as a blob
                 cacheName = cache.getCacheName(
@@ -142,14 +143,37 @@ public abstract class A_CmsVfsDocument implements I_CmsDocumentFactory {
                 }
             }
 
+            if ((content == null) && (cache != null) && isExtractingContentOnly()) {
+                // the extraction result only depends on the content, so it is cached by a digest of the content,
+                // which allows to share it between all indexes, siblings and copies of the resource
+                try {
+                    CmsFile file = cms.readFile(resource);
+                    if (file.getLength() > 0) {
+                        // keep the file so the content is not read again for the extraction
+                        extractResource = file;
+                        cacheName = cache.getCacheName(
+                            file.getContents(),
+                            isLocaleDependend() ? index.getLocaleForResource(cms, resource, null) : null,
+                            getName(),
+                            getExtractorVersion());
+                        if (cacheName != null) {
+                            content = cache.getCacheObject(cacheName);
+                        }
+                    }
+                } catch (CmsException e) {
+                    // the extraction below will fail as well and log the error
+                    LOG.debug(e.getLocalizedMessage(), e);
+                }
+            }
+
             if (content == null) {
                 // extraction result has not been attached to the resource
                 try {
-                    content = extractContent(cms, resource, index);
+                    content = extractContent(cms, extractResource, index);
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Extracting content for '" + resource.getRootPath() + "' successful.");
                     }
-                    if ((cache != null) && (resource.getSiblingCount() > 1)) {
+                    if (cacheName != null) {
                         // save extracted content to the cache
                         cache.saveCacheObject(cacheName, content);
                     }
@@ -230,6 +254,34 @@ public abstract class A_CmsVfsDocument implements I_CmsDocumentFactory {
         m_cache = cache;
     }
 
+    /**
+     * Returns the version of the text extraction of this document factory.<p>
+     *
+     * The version is part of the cache key for extraction results that are cached by content,
+     * so results of older extractor implementations are not used after an update.<p>
+     *
+     * @return the version of the text extraction of this document factory
+     */
+    protected String getExtractorVersion() {
+
+        return getClass().getName() + "_" + OpenCms.getSystemInfo().getVersionNumber();
+    }
+
+    /**
+     * Returns if the text extraction result of this document factory only depends on the content of the resource.<p>
+     *
+     * In this case the extraction result is cached with a key calculated from the content itself
+     * (see {@link CmsExtractionResultCache#getCacheName(byte[], java.util.Locale, String, String)}),
+     * otherwise the cache key is based on the resource id and the date of the last content change,
+     * and the cache is only used for resources with siblings.<p>
+     *
+     * @return <code>true</code> if the text extraction result only depends on the content of the resource
+     */
+    protected boolean isExtractingContentOnly() {
+
+        return false;
+    }
+
     /**
      * Logs content extraction for the specified resource and index.<p>
      *
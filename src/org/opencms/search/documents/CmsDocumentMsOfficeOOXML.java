@@ -92,4 +92,13 @@ public class CmsDocumentMsOfficeOOXML extends A_CmsVfsDocument {
 
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * @see org.opencms.search.documents.A_CmsVfsDocument#isExtractingContentOnly()
+     */
+    @Override
+    protected boolean isExtractingContentOnly() {
+
+        return true;
+    }
+}
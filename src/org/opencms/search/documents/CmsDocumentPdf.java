@@ -102,4 +102,13 @@ public class CmsDocumentPdf extends A_CmsVfsDocument {
 
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * @see org.opencms.search.documents.A_CmsVfsDocument#isExtractingContentOnly()
+     */
+    @Override
+    protected boolean isExtractingContentOnly() {
+
+        return true;
+    }
+}
@@ -89,4 +89,13 @@ public class CmsDocumentRtf extends A_CmsVfsDocument {
 
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * @see org.opencms.search.documents.A_CmsVfsDocument#isExtractingContentOnly()
+     */
+    @Override
+    protected boolean isExtractingContentOnly() {
+
+        return true;
+    }
+}
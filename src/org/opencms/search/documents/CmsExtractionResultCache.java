@@ -36,8 +36,25 @@ import org.opencms.util.CmsFileUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.logging.Log;
 
 /**
@@ -52,21 +69,45 @@ import org.apache.commons.logging.Log;
  * the most problematic contents to extract for the search are in fact the MS Office and PDF formats.
  * For these documents, all siblings must produce the exact same text extraction result.<p>
  *
+ * For these documents the cache name can also be calculated from a digest of the content itself
+ * (see {@link #getCacheName(byte[], Locale, String, String)}). Such entries are shared by all
+ * search indexes, survive moves and renames of a resource and can be exported to another
+ * server with {@link #exportCache(OutputStream)} and {@link #importCache(InputStream)}.<p>
+ *
  * This cache is usable for resources from the online AND the offline project at the same time,
  * because any change to a resource will result in a changed hash code. This means a resource changed in the offline
  * project will have a new hash code compared to the online project. If the resource is identical in the online and
  * the offline project, the generated hash codes will be the same.<p>
  *
+ * The total size of the cache files can be limited with {@link #setMaxSize(long)}, in this case the least
+ * recently used entries are removed once the limit is exceeded.<p>
+ *
  * @since 6.2.0
  */
 public class CmsExtractionResultCache {
 
+    /** The file extension used for the cache files. */
+    private static final String EXTENSION = ".ext";
+
     /** The log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsExtractionResultCache.class);
 
+    /** The pattern the relative names of cache files must match, used to validate imported entries. */
+    private static final Pattern PATTERN_ENTRY_NAME = Pattern.compile(
+        "([0-9a-f]{2}/)?[0-9A-Za-z_\\-]+\\" + EXTENSION);
+
+    /** The cache entries in the order of their last access, mapped to the file size, <code>null</code> until the repository was read. */
+    private Map<String, Long> m_entries;
+
+    /** The maximum total size of all cache files in bytes, or 0 for no limit. */
+    private long m_maxSize;
+
     /** The name of the cache base repository folder in the RFS. */
     private String m_rfsRepository;
 
+    /** The total size of all cache files in bytes. */
+    private long m_size;
+
     /**
      * Creates a new disk cache.<p>
      *
@@ -90,29 +131,13 @@ public class CmsExtractionResultCache {
 
         // calculate oldest possible date for the cache files
         long expireDate = System.currentTimeMillis() - (long)(maxAge * 60.0f * 60.0f * 1000.0f);
-        File basedir = new File(m_rfsRepository);
         // perform the cache cleanup
         int count = 0;
-        if (basedir.canRead() && basedir.isDirectory()) {
-            File[] files = basedir.listFiles();
-            if (files != null) {
-                for (int i = 0; i < files.length; i++) {
-                    File f = files[i];
-                    if (f.canWrite()) {
-                        if (f.lastModified() < expireDate) {
-                            try {
-                                f.delete();
-                                count++;
-                            } catch (Exception e) {
-                                if (LOG.isWarnEnabled()) {
-                                    LOG.warn(
-                                        Messages.get().getBundle().key(
-                                            Messages.LOG_EXCERPT_CACHE_DELETE_ERROR_1,
-                                            f.getAbsolutePath()),
-                                        e);
-                                }
-                            }
-                        }
+        for (File f : listCacheFiles()) {
+            if (f.canWrite()) {
+                if (f.lastModified() < expireDate) {
+                    if (deleteCacheFile(f)) {
+                        count++;
                     }
                 }
             }
@@ -120,6 +145,88 @@ public class CmsExtractionResultCache {
         return count;
     }
 
+    /**
+     * Writes all entries of this cache as a ZIP file to the given output stream.<p>
+     *
+     * The stream is finished but not closed.<p>
+     *
+     * @param out the stream to write the ZIP file to
+     *
+     * @return the number of exported cache entries
+     *
+     * @throws IOException in case of errors writing the stream
+     */
+    public synchronized int exportCache(OutputStream out) throws IOException {
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        int count = 0;
+        for (File f : listCacheFiles()) {
+            byte[] content;
+            try {
+                content = CmsFileUtil.readFile(f);
+            } catch (IOException e) {
+                // the file has been removed in the meantime
+                continue;
+            }
+            ZipEntry entry = new ZipEntry(getEntryName(f));
+            entry.setTime(f.lastModified());
+            zip.putNextEntry(entry);
+            zip.write(content);
+            zip.closeEntry();
+            count++;
+        }
+        zip.finish();
+        return count;
+    }
+
+    /**
+     * Returns the RFS name used for caching the text extraction result of the given content.<p>
+     *
+     * The name is calculated from a digest of the content, so the same result is used for all resources
+     * with the same content, regardless of their id, path or date of last modification.
+     * This must only be used for document types where the extraction result depends on
+     * nothing but the content.<p>
+     *
+     * @param content the content to generate the cache name for
+     * @param locale the locale to generate the cache name for (may be <code>null</code>)
+     * @param docTypeName the name of the search document type
+     * @param extractorVersion the version of the extractor, a changed version invalidates all cached results
+     *
+     * @return the RFS name to use for caching the extraction result of the given content,
+     *      or <code>null</code> if no digest could be calculated
+     */
+    public String getCacheName(byte[] content, Locale locale, String docTypeName, String extractorVersion) {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+            return null;
+        }
+        digest.update(content);
+        StringBuffer key = new StringBuffer(64);
+        key.append('\n').append(docTypeName);
+        key.append('\n').append(locale);
+        key.append('\n').append(extractorVersion);
+        try {
+            digest.update(key.toString().getBytes("UTF-8"));
+        } catch (IOException e) {
+            // UTF-8 is always supported
+        }
+        String hash = new String(Hex.encodeHex(digest.digest()));
+
+        StringBuffer buf = new StringBuffer(m_rfsRepository.length() + 72);
+        buf.append(m_rfsRepository);
+        buf.append('/');
+        // use sub folders to keep the number of files in a single folder low
+        buf.append(hash.substring(0, 2));
+        buf.append('/');
+        buf.append(hash);
+        buf.append(EXTENSION);
+        return buf.toString();
+    }
+
     /**
      * Returns the RFS name used for caching an the text extraction result
      * based on the given VFS resource and locale.<p>
@@ -155,7 +262,7 @@ public class CmsExtractionResultCache {
         buf.append(resource.getDateContent());
 
         // finally append the extension
-        buf.append(".ext");
+        buf.append(EXTENSION);
         return buf.toString();
     }
 
@@ -178,6 +285,7 @@ public class CmsExtractionResultCache {
                     f.setLastModified(System.currentTimeMillis());
                 }
                 byte[] byteContent = CmsFileUtil.readFile(f);
+                touchEntry(f, byteContent.length);
                 return CmsExtractionResult.fromBytes(byteContent);
             }
         } catch (IOException e) {
@@ -187,6 +295,16 @@ public class CmsExtractionResultCache {
         return null;
     }
 
+    /**
+     * Returns the maximum total size of all cache files in bytes.<p>
+     *
+     * @return the maximum total size of all cache files in bytes, or 0 if the size is not limited
+     */
+    public long getMaxSize() {
+
+        return m_maxSize;
+    }
+
     /**
      * Returns the absolute path of the cache repository in the RFS.<p>
      *
@@ -197,6 +315,54 @@ public class CmsExtractionResultCache {
         return m_rfsRepository;
     }
 
+    /**
+     * Returns the current total size of all cache files in bytes.<p>
+     *
+     * @return the current total size of all cache files in bytes
+     */
+    public synchronized long getSize() {
+
+        initEntries();
+        return m_size;
+    }
+
+    /**
+     * Reads cache entries from a ZIP file written by {@link #exportCache(OutputStream)}.<p>
+     *
+     * Entries already contained in this cache are not overwritten. The stream is not closed.<p>
+     *
+     * @param in the stream to read the ZIP file from
+     *
+     * @return the number of imported cache entries
+     *
+     * @throws IOException in case of errors reading the stream or writing the cache files
+     */
+    public synchronized int importCache(InputStream in) throws IOException {
+
+        initEntries();
+        ZipInputStream zip = new ZipInputStream(in);
+        int count = 0;
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            String name = entry.getName();
+            if (entry.isDirectory() || !PATTERN_ENTRY_NAME.matcher(name).matches()) {
+                if (!entry.isDirectory()) {
+                    LOG.warn(Messages.get().getBundle().key(Messages.LOG_EXTRACTION_CACHE_IMPORT_SKIPPED_1, name));
+                }
+                continue;
+            }
+            byte[] content = CmsFileUtil.readFully(zip, false);
+            File f = new File(m_rfsRepository, name);
+            if (!f.exists()) {
+                CmsVfsDiskCache.saveFile(f.getAbsolutePath(), content);
+                count++;
+            }
+            touchEntry(f, content.length);
+        }
+        evict();
+        return count;
+    }
+
     /**
      * Serializes the given extraction result and saves it in the disk cache.<p>
      *
@@ -209,7 +375,178 @@ public class CmsExtractionResultCache {
 
         byte[] byteContent = content.getBytes();
         if (byteContent != null) {
-            CmsVfsDiskCache.saveFile(rfsName, byteContent);
+            File f = CmsVfsDiskCache.saveFile(rfsName, byteContent);
+            synchronized (this) {
+                touchEntry(f, byteContent.length);
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum total size of all cache files in bytes.<p>
+     *
+     * If the size is exceeded, the least recently used cache files are deleted.<p>
+     *
+     * @param maxSize the maximum total size of all cache files in bytes, or 0 for no limit
+     */
+    public synchronized void setMaxSize(long maxSize) {
+
+        m_maxSize = maxSize > 0 ? maxSize : 0;
+        evict();
+    }
+
+    /**
+     * Deletes the given cache file and removes it from the list of cache entries.<p>
+     *
+     * @param f the file to delete
+     *
+     * @return <code>true</code> if the file was deleted
+     */
+    private boolean deleteCacheFile(File f) {
+
+        boolean deleted = false;
+        try {
+            deleted = f.delete();
+        } catch (Exception e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(Messages.get().getBundle().key(Messages.LOG_EXCERPT_CACHE_DELETE_ERROR_1, f.getAbsolutePath()), e);
+            }
+        }
+        if (deleted && (m_entries != null)) {
+            Long size = m_entries.remove(f.getAbsolutePath());
+            if (size != null) {
+                m_size -= size.longValue();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes the least recently used cache files until the total size is below the configured maximum.<p>
+     */
+    private void evict() {
+
+        if (m_maxSize <= 0) {
+            return;
+        }
+        initEntries();
+        Iterator<Map.Entry<String, Long>> it = m_entries.entrySet().iterator();
+        while ((m_size > m_maxSize) && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            it.remove();
+            m_size -= entry.getValue().longValue();
+            File f = new File(entry.getKey());
+            try {
+                f.delete();
+            } catch (Exception e) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn(
+                        Messages.get().getBundle().key(Messages.LOG_EXCERPT_CACHE_DELETE_ERROR_1, f.getAbsolutePath()),
+                        e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the given cache file relative to the repository folder, using '/' as separator.<p>
+     *
+     * @param f the cache file
+     *
+     * @return the name of the given cache file relative to the repository folder
+     */
+    private String getEntryName(File f) {
+
+        File parent = f.getParentFile();
+        if ((parent != null) && !parent.getAbsoluteFile().equals(new File(m_rfsRepository).getAbsoluteFile())) {
+            return parent.getName() + "/" + f.getName();
+        }
+        return f.getName();
+    }
+
+    /**
+     * Reads the existing cache files from the repository folder if this has not already been done.<p>
+     *
+     * Files written earlier are considered to be used less recently.<p>
+     */
+    private void initEntries() {
+
+        if (m_entries != null) {
+            return;
+        }
+        m_entries = new LinkedHashMap<String, Long>(256, 0.75f, true);
+        m_size = 0;
+        List<File> files = listCacheFiles();
+        final Map<File, Long> dates = new HashMap<File, Long>();
+        for (File f : files) {
+            dates.put(f, new Long(f.lastModified()));
+        }
+        Collections.sort(files, new Comparator<File>() {
+
+            public int compare(File f1, File f2) {
+
+                return dates.get(f1).compareTo(dates.get(f2));
+            }
+        });
+        for (File f : files) {
+            long size = f.length();
+            m_entries.put(f.getAbsolutePath(), new Long(size));
+            m_size += size;
+        }
+    }
+
+    /**
+     * Returns all cache files in the repository folder, including the digest sub folders.<p>
+     *
+     * @return all cache files in the repository folder
+     */
+    private List<File> listCacheFiles() {
+
+        List<File> result = new ArrayList<File>();
+        File basedir = new File(m_rfsRepository);
+        if (basedir.canRead() && basedir.isDirectory()) {
+            File[] files = basedir.listFiles();
+            if (files != null) {
+                for (int i = 0; i < files.length; i++) {
+                    File f = files[i];
+                    if (f.isDirectory()) {
+                        File[] subFiles = f.listFiles();
+                        if (subFiles != null) {
+                            for (int j = 0; j < subFiles.length; j++) {
+                                if (subFiles[j].isFile()) {
+                                    result.add(subFiles[j]);
+                                }
+                            }
+                        }
+                    } else {
+                        result.add(f);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks the given cache file as most recently used.<p>
+     *
+     * @param f the cache file
+     * @param size the size of the cache file
+     */
+    private synchronized void touchEntry(File f, long size) {
+
+        if (m_entries == null) {
+            // the entries are read from disk once they are needed, this will include the given file
+            if (m_maxSize <= 0) {
+                return;
+            }
+            initEntries();
+        }
+        Long old = m_entries.put(f.getAbsolutePath(), new Long(size));
+        if (old != null) {
+            m_size -= old.longValue();
         }
+        m_size += size;
     }
-}
\ No newline at end of file
+}
@@ -55,7 +55,12 @@ import org.opencms.search.fields.CmsSearchFieldConfiguration;
 import org.opencms.search.fields.CmsSearchFieldMapping;
 import org.opencms.search.fields.CmsSearchFieldMappingType;
 import org.opencms.search.fields.I_CmsSearchFieldMapping;
+import org.opencms.security.CmsAccessControlEntry;
+import org.opencms.security.CmsAccessControlList;
+import org.opencms.security.CmsPermissionSet;
+import org.opencms.security.CmsPermissionSetCustom;
 import org.opencms.util.CmsStringUtil;
+import org.opencms.util.CmsUUID;
 import org.opencms.xml.CmsXmlContentDefinition;
 import org.opencms.xml.containerpage.CmsContainerElementBean;
 import org.opencms.xml.containerpage.CmsContainerPageBean;
@@ -225,6 +230,7 @@ public class CmsSolrFieldConfiguration extends CmsSearchFieldConfiguration {
         } else {
             document.addSearchField(m_solrFields.get(CmsSearchField.FIELD_SEARCH_CHANNEL), "content");
         }
+        appendPermissions(document, cms, resource);
 
         return document;
     }
@@ -511,6 +517,57 @@ public class CmsSolrFieldConfiguration extends CmsSearchFieldConfiguration {
         return document;
     }
 
+    /**
+     * Appends the ids of the principals that are allowed or denied to read the resource.<p>
+     *
+     * The fields are only written if the Solr schema defines them. They allow the Solr index
+     * to restrict a search to the documents the current user can read before paging the result,
+     * see {@link CmsSolrIndex#PERMISSION_FILTER}.<p>
+     *
+     * @param document the document to extend
+     * @param cms the OpenCms context used for indexing
+     * @param resource the indexed resource
+     *
+     * @return the document extended by the access control fields
+     */
+    protected I_CmsSearchDocument appendPermissions(
+        I_CmsSearchDocument document,
+        CmsObject cms,
+        CmsResource resource) {
+
+        if (!(document instanceof CmsSolrDocument)
+            || !OpenCms.getSearchManager().getSolrServerConfiguration().getSolrSchema().hasExplicitField(
+                CmsSearchField.FIELD_ACL_READ_ALLOWED)) {
+            return document;
+        }
+        try {
+            CmsAccessControlList acl = cms.getAccessControlList(cms.getRequestContext().getSitePath(resource));
+            List<String> principals = new ArrayList<String>();
+            List<String> allowed = new ArrayList<String>();
+            List<String> denied = new ArrayList<String>();
+            for (Map.Entry<CmsUUID, CmsPermissionSetCustom> entry : acl.getPermissionMap().entrySet()) {
+                String principalId = entry.getKey().toString();
+                CmsPermissionSet permissions = entry.getValue();
+                if (!CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_ID.equals(entry.getKey())) {
+                    principals.add(principalId);
+                }
+                if ((permissions.getAllowedPermissions() & CmsPermissionSet.PERMISSION_READ) > 0) {
+                    allowed.add(principalId);
+                }
+                if ((permissions.getDeniedPermissions() & CmsPermissionSet.PERMISSION_READ) > 0) {
+                    denied.add(principalId);
+                }
+            }
+            CmsSolrDocument solrDoc = (CmsSolrDocument)document;
+            solrDoc.addMultiValuedField(CmsSearchField.FIELD_ACL_PRINCIPALS, principals);
+            solrDoc.addMultiValuedField(CmsSearchField.FIELD_ACL_READ_ALLOWED, allowed);
+            solrDoc.addMultiValuedField(CmsSearchField.FIELD_ACL_READ_DENIED, denied);
+        } catch (CmsException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+        return document;
+    }
+
     /**
      * @see org.opencms.search.fields.CmsSearchFieldConfiguration#appendProperties(org.opencms.search.I_CmsSearchDocument, org.opencms.file.CmsObject, org.opencms.file.CmsResource, org.opencms.search.extractors.I_CmsExtractionResult, java.util.List, java.util.List)
      */
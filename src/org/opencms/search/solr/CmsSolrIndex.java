@@ -33,10 +33,13 @@ package org.opencms.search.solr;
 
 import org.opencms.configuration.CmsConfigurationException;
 import org.opencms.configuration.CmsParameterConfiguration;
+import org.opencms.file.CmsGroup;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsProject;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.CmsResourceReadRecorder;
+import org.opencms.file.CmsUser;
 import org.opencms.file.types.CmsResourceTypeXmlContainerPage;
 import org.opencms.file.types.CmsResourceTypeXmlContent;
 import org.opencms.i18n.CmsEncoder;
@@ -60,6 +63,7 @@ import org.opencms.search.fields.CmsSearchField;
 import org.opencms.search.galleries.CmsGallerySearchParameters;
 import org.opencms.search.galleries.CmsGallerySearchResult;
 import org.opencms.search.galleries.CmsGallerySearchResultList;
+import org.opencms.security.CmsAccessControlEntry;
 import org.opencms.security.CmsRole;
 import org.opencms.security.CmsRoleViolationException;
 import org.opencms.util.CmsRequestUtil;
@@ -72,8 +76,12 @@ import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletResponse;
 
@@ -120,6 +128,12 @@ public class CmsSolrIndex extends CmsSearchIndex {
     /** The name of the default Solr Online index. */
     public static final String DEFAULT_INDEX_NAME_ONLINE = "Solr Online";
 
+    /** Constant for additional parameter to limit the number of searches running concurrently on this index. */
+    public static final String MAX_CONCURRENT_SEARCHES = "search.solr.maxConcurrentSearches";
+
+    /** Constant for additional parameter to restrict searches to readable documents using the indexed access control fields. */
+    public static final String PERMISSION_FILTER = "search.solr.permissionFilter";
+
     /** Constant for additional parameter to set the post processor class name. */
     public static final String POST_PROCESSOR = "search.solr.postProcessor";
 
@@ -129,6 +143,12 @@ public class CmsSolrIndex extends CmsSearchIndex {
     /** Indicates the maximum number of documents from the complete result set to return. */
     public static final int ROWS_MAX = 50;
 
+    /** Constant for additional parameter to set the time in milliseconds a search waits for a free slot. */
+    public static final String SEARCH_TIMEOUT = "search.solr.searchTimeout";
+
+    /** The default time in milliseconds a search waits for a free slot if the concurrent searches are limited. */
+    public static final long SEARCH_TIMEOUT_DEFAULT = 10000;
+
     /** A constant for debug formatting output. */
     protected static final int DEBUG_PADDING_RIGHT = 50;
 
@@ -177,6 +197,18 @@ public class CmsSolrIndex extends CmsSearchIndex {
     /** The core name for the index. */
     private String m_coreName;
 
+    /** The maximum number of searches running concurrently on this index, 0 for no limit. */
+    private int m_maxConcurrentSearches;
+
+    /** Indicates if searches are restricted to readable documents by the indexed access control fields. */
+    private boolean m_permissionFilter;
+
+    /** The permits for running searches, <code>null</code> if the concurrent searches are not limited. */
+    private volatile Semaphore m_searchPermits;
+
+    /** The time in milliseconds a search waits for a free slot. */
+    private long m_searchTimeout = SEARCH_TIMEOUT_DEFAULT;
+
     /**
      * Default constructor.<p>
      */
@@ -236,6 +268,30 @@ public class CmsSolrIndex extends CmsSearchIndex {
                     LOG.error(ex.getMessage(), ex);
                 }
             }
+        } else if (MAX_CONCURRENT_SEARCHES.equals(key)) {
+            try {
+                setMaxConcurrentSearches(Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                LOG.error(
+                    org.opencms.search.Messages.get().getBundle().key(
+                        org.opencms.search.Messages.LOG_INVALID_PARAM_3,
+                        value,
+                        key,
+                        getName()));
+            }
+        } else if (PERMISSION_FILTER.equals(key)) {
+            setPermissionFilter(Boolean.valueOf(value.trim()).booleanValue());
+        } else if (SEARCH_TIMEOUT.equals(key)) {
+            try {
+                setSearchTimeout(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                LOG.error(
+                    org.opencms.search.Messages.get().getBundle().key(
+                        org.opencms.search.Messages.LOG_INVALID_PARAM_3,
+                        value,
+                        key,
+                        getName()));
+            }
         }
         super.addConfigurationParameter(key, value);
     }
@@ -314,6 +370,15 @@ public class CmsSolrIndex extends CmsSearchIndex {
         if (getPostProcessor() != null) {
             result.put(POST_PROCESSOR, getPostProcessor().getClass().getName());
         }
+        if (m_maxConcurrentSearches > 0) {
+            result.put(MAX_CONCURRENT_SEARCHES, String.valueOf(m_maxConcurrentSearches));
+        }
+        if (m_permissionFilter) {
+            result.put(PERMISSION_FILTER, String.valueOf(m_permissionFilter));
+        }
+        if (m_searchTimeout != SEARCH_TIMEOUT_DEFAULT) {
+            result.put(SEARCH_TIMEOUT, String.valueOf(m_searchTimeout));
+        }
         return result;
     }
 
@@ -332,9 +397,11 @@ public class CmsSolrIndex extends CmsSearchIndex {
      * @see org.opencms.search.CmsSearchIndex#getDocument(java.lang.String, java.lang.String)
      */
     @Override
-    public synchronized I_CmsSearchDocument getDocument(String fieldname, String term) {
+    public I_CmsSearchDocument getDocument(String fieldname, String term) {
 
+        Semaphore permit = null;
         try {
+            permit = acquireSearchPermit();
             SolrQuery query = new SolrQuery();
             if (CmsSearchField.FIELD_PATH.equals(fieldname)) {
                 query.setQuery(fieldname + ":\"" + term + "\"");
@@ -343,7 +410,7 @@ public class CmsSolrIndex extends CmsSearchIndex {
             }
             QueryResponse res = m_solr.query(query);
             if (res != null) {
-                SolrDocumentList sdl = m_solr.query(query).getResults();
+                SolrDocumentList sdl = res.getResults();
                 if ((sdl.getNumFound() == 1L) && (sdl.get(0) != null)) {
                     return new CmsSolrDocument(sdl.get(0));
                 }
@@ -351,6 +418,10 @@ public class CmsSolrIndex extends CmsSearchIndex {
         } catch (Exception e) {
             // ignore and assume that the document could not be found
             LOG.error(e.getMessage(), e);
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
         }
         return null;
     }
@@ -406,6 +477,16 @@ public class CmsSolrIndex extends CmsSearchIndex {
         return result;
     }
 
+    /**
+     * Returns the maximum number of searches running concurrently on this index.<p>
+     *
+     * @return the maximum number of concurrent searches, or 0 if the searches are not limited
+     */
+    public int getMaxConcurrentSearches() {
+
+        return m_maxConcurrentSearches;
+    }
+
     /**
      * Returns the search post processor.<p>
      *
@@ -432,6 +513,17 @@ public class CmsSolrIndex extends CmsSearchIndex {
         }
     }
 
+    /**
+     * Returns if searches are restricted to the documents readable by the current user
+     * using the indexed access control fields.<p>
+     *
+     * @return <code>true</code> if the permission filter is used
+     */
+    public boolean isPermissionFilter() {
+
+        return m_permissionFilter;
+    }
+
     /** Returns a flag, indicating if the Solr server is not yet set.
      * @return a flag, indicating if the Solr server is not yet set.
      */
@@ -453,7 +545,7 @@ public class CmsSolrIndex extends CmsSearchIndex {
      */
     @Override
     @Deprecated
-    public synchronized CmsSearchResultList search(CmsObject cms, CmsSearchParameters params) {
+    public CmsSearchResultList search(CmsObject cms, CmsSearchParameters params) {
 
         throw new UnsupportedOperationException();
     }
@@ -493,7 +585,12 @@ public class CmsSolrIndex extends CmsSearchIndex {
      * the requested amount of search results and to provide a working pagination with
      * security check.</li>
      *
-     * <li>To be sure we get enough documents left even the permission check reduces the amount
+     * <li>If the permission filter is enabled (see {@link #PERMISSION_FILTER}), the query is restricted
+     * to the documents the current user can read using the indexed access control fields, so
+     * exactly the requested page is fetched. The permission check is then only a safety check for
+     * the documents of this page.</li>
+     *
+     * <li>Otherwise, to be sure we get enough documents left even the permission check reduces the amount
      * of found documents, the rows are multiplied by <code>'5'</code> and the current page
      * additionally the offset is added. The count of documents we don't have enough
      * permissions for grows with increasing page number, that's why we also multiply
@@ -582,6 +679,8 @@ public class CmsSolrIndex extends CmsSearchIndex {
         if (!ignoreSearchExclude) {
             query.addFilterQuery(CmsSearchField.FIELD_SEARCH_EXCLUDE + ":\"false\"");
         }
+        // the result depends on resources that have not been read before
+        CmsResourceReadRecorder.markIncomplete(cms.getRequestContext());
 
         int previousPriority = Thread.currentThread().getPriority();
         long startTime = System.currentTimeMillis();
@@ -591,6 +690,8 @@ public class CmsSolrIndex extends CmsSearchIndex {
 
         query.setHighlight(false);
         LocalSolrQueryRequest solrQueryRequest = null;
+        // wait for a free slot if the number of concurrent searches is limited
+        Semaphore permit = acquireSearchPermit();
         try {
 
             // initialize the search context
@@ -617,9 +718,20 @@ public class CmsSolrIndex extends CmsSearchIndex {
                 page = Math.round(start / rows) + 1;
             }
 
-            // set the start to '0' and expand the rows before performing the query
-            query.setStart(new Integer(0));
-            query.setRows(new Integer((5 * rows * page) + start));
+            // the position in the complete result of the first fetched document
+            int fetchStart = 0;
+            String permissionFilter = rows > 0 ? getPermissionFilterQuery(searchCms) : null;
+            if (permissionFilter != null) {
+                // the index already excludes unreadable documents, so only fetch the requested page
+                fetchStart = rows * (page - 1);
+                query.addFilterQuery(permissionFilter);
+                query.setStart(new Integer(fetchStart));
+                query.setRows(new Integer(rows));
+            } else {
+                // set the start to '0' and expand the rows before performing the query
+                query.setStart(new Integer(0));
+                query.setRows(new Integer((5 * rows * page) + start));
+            }
 
             // perform the Solr query and remember the original Solr response
             QueryResponse queryResponse = m_solr.query(query);
@@ -644,14 +756,12 @@ public class CmsSolrIndex extends CmsSearchIndex {
             long visibleHitCount = hitCount;
             float maxScore = 0;
 
-            // If we're using a postprocessor, (re-)initialize it before using it
-            if (m_postProcessor != null) {
-                m_postProcessor.init();
-            }
+            // If we're using a postprocessor, use an initialized instance for this search only
+            I_CmsSolrPostSearchProcessor postProcessor = createPostProcessor();
 
             // process found documents
             List<CmsSearchResource> allDocs = new ArrayList<CmsSearchResource>();
-            int cnt = 0;
+            int cnt = fetchStart;
             for (int i = 0; (i < queryResponse.getResults().size()) && (cnt < end); i++) {
                 try {
                     SolrDocument doc = queryResponse.getResults().get(i);
@@ -664,8 +774,8 @@ public class CmsSolrIndex extends CmsSearchIndex {
                         if (resource != null) {
                             // permission check performed successfully: the user has read permissions!
                             if (cnt >= start) {
-                                if (m_postProcessor != null) {
-                                    doc = m_postProcessor.process(
+                                if (postProcessor != null) {
+                                    doc = postProcessor.process(
                                         searchCms,
                                         resource,
                                         (SolrInputDocument)searchDoc.getDocument());
@@ -867,6 +977,9 @@ public class CmsSolrIndex extends CmsSearchIndex {
             }
             // re-set thread to previous priority
             Thread.currentThread().setPriority(previousPriority);
+            if (permit != null) {
+                permit.release();
+            }
         }
 
     }
@@ -926,6 +1039,20 @@ public class CmsSolrIndex extends CmsSearchIndex {
         search(cms, query, ignoreMaxRows, response, false, filter);
     }
 
+    /**
+     * Sets the maximum number of searches running concurrently on this index.<p>
+     *
+     * Further searches wait for a free slot, at most for the configured search timeout.
+     * Searches that are already running are not affected when the limit is changed.<p>
+     *
+     * @param maxConcurrentSearches the maximum number of concurrent searches, 0 or less for no limit
+     */
+    public void setMaxConcurrentSearches(int maxConcurrentSearches) {
+
+        m_maxConcurrentSearches = Math.max(0, maxConcurrentSearches);
+        m_searchPermits = m_maxConcurrentSearches > 0 ? new Semaphore(m_maxConcurrentSearches, true) : null;
+    }
+
     /**
      * Sets the logical key/name of this search index.<p>
      *
@@ -940,6 +1067,20 @@ public class CmsSolrIndex extends CmsSearchIndex {
         updateCoreName();
     }
 
+    /**
+     * Sets if searches are restricted to the documents readable by the current user
+     * using the indexed access control fields.<p>
+     *
+     * Only enable this if the index has been rebuilt with a schema containing the access control fields,
+     * otherwise documents indexed before will not be found anymore.<p>
+     *
+     * @param permissionFilter <code>true</code> to use the permission filter
+     */
+    public void setPermissionFilter(boolean permissionFilter) {
+
+        m_permissionFilter = permissionFilter;
+    }
+
     /**
      * Sets the search post processor.<p>
      *
@@ -950,6 +1091,16 @@ public class CmsSolrIndex extends CmsSearchIndex {
         m_postProcessor = postProcessor;
     }
 
+    /**
+     * Sets the time in milliseconds a search waits for a free slot if the concurrent searches are limited.<p>
+     *
+     * @param searchTimeout the search timeout in milliseconds
+     */
+    public void setSearchTimeout(long searchTimeout) {
+
+        m_searchTimeout = Math.max(0, searchTimeout);
+    }
+
     /**
      * Sets the Solr server used by this index.<p>
      *
@@ -973,6 +1124,7 @@ public class CmsSolrIndex extends CmsSearchIndex {
 
         SolrCore core = null;
         LocalSolrQueryRequest solrQueryRequest = null;
+        Semaphore permit = acquireSearchPermit();
         try {
             q.setRequestHandler("/spell");
 
@@ -980,7 +1132,8 @@ public class CmsSolrIndex extends CmsSearchIndex {
 
             List<CmsSearchResource> resourceDocumentList = new ArrayList<CmsSearchResource>();
             SolrDocumentList solrDocumentList = new SolrDocumentList();
-            if (m_postProcessor != null) {
+            I_CmsSolrPostSearchProcessor postProcessor = createPostProcessor();
+            if (postProcessor != null) {
                 for (int i = 0; (i < queryResponse.getResults().size()); i++) {
                     try {
                         SolrDocument doc = queryResponse.getResults().get(i);
@@ -990,8 +1143,8 @@ public class CmsSolrIndex extends CmsSearchIndex {
                             CmsResource resource = getResource(cms, searchDoc);
                             if (resource != null) {
                                 // permission check performed successfully: the user has read permissions!
-                                if (m_postProcessor != null) {
-                                    doc = m_postProcessor.process(
+                                if (postProcessor != null) {
+                                    doc = postProcessor.process(
                                         cms,
                                         resource,
                                         (SolrInputDocument)searchDoc.getDocument());
@@ -1036,6 +1189,9 @@ public class CmsSolrIndex extends CmsSearchIndex {
             if (core != null) {
                 core.close();
             }
+            if (permit != null) {
+                permit.release();
+            }
         }
     }
 
@@ -1135,6 +1291,35 @@ public class CmsSolrIndex extends CmsSearchIndex {
         return false;
     }
 
+    /**
+     * Waits for a free search slot if the number of concurrent searches on this index is limited.<p>
+     *
+     * @return the semaphore to release the slot to when the search is done,
+     *      or <code>null</code> if the concurrent searches are not limited
+     *
+     * @throws CmsSearchException if no slot became free within the search timeout
+     */
+    private Semaphore acquireSearchPermit() throws CmsSearchException {
+
+        Semaphore permits = m_searchPermits;
+        if (permits == null) {
+            return null;
+        }
+        try {
+            if (permits.tryAcquire(m_searchTimeout, TimeUnit.MILLISECONDS)) {
+                return permits;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new CmsSearchException(
+            Messages.get().container(
+                Messages.LOG_SOLR_ERR_SEARCH_TIMEOUT_3,
+                getName(),
+                new Integer(m_maxConcurrentSearches),
+                new Long(m_searchTimeout)));
+    }
+
     /**
      * Checks if the current user is allowed to access non-online indexes.<p>
      *
@@ -1162,6 +1347,27 @@ public class CmsSolrIndex extends CmsSearchIndex {
         }
     }
 
+    /**
+     * Returns a new, initialized instance of the configured post processor for a single search.<p>
+     *
+     * The configured post processor is only used directly if no new instance of its class can be created.<p>
+     *
+     * @return the post processor to use, or <code>null</code> if no post processor is configured
+     */
+    private I_CmsSolrPostSearchProcessor createPostProcessor() {
+
+        I_CmsSolrPostSearchProcessor postProcessor = m_postProcessor;
+        if (postProcessor != null) {
+            try {
+                postProcessor = postProcessor.getClass().newInstance();
+            } catch (Exception e) {
+                LOG.debug(e.getLocalizedMessage(), e);
+            }
+            postProcessor.init();
+        }
+        return postProcessor;
+    }
+
     /**
      * Generates a valid core name from the provided name (the index name).
      * @param name the index name.
@@ -1176,6 +1382,63 @@ public class CmsSolrIndex extends CmsSearchIndex {
         return null;
     }
 
+    /**
+     * Returns the filter query restricting a search to the documents the current user can read.<p>
+     *
+     * The filter mirrors {@link org.opencms.security.CmsAccessControlList#getPermissions(CmsUser, List, List)}:
+     * a document is readable if one of the user's principals is allowed and none is denied to read it,
+     * or, if none of the user's principals has an entry, the "all others" entry allows reading.<p>
+     *
+     * @param cms the current OpenCms context
+     *
+     * @return the filter query, or <code>null</code> if the search can not be restricted by the index
+     */
+    private String getPermissionFilterQuery(CmsObject cms) {
+
+        if (!m_permissionFilter
+            || !isCheckingPermissions()
+            || !OpenCms.getSearchManager().getSolrServerConfiguration().getSolrSchema().hasExplicitField(
+                CmsSearchField.FIELD_ACL_READ_ALLOWED)) {
+            return null;
+        }
+        try {
+            CmsUser user = cms.getRequestContext().getCurrentUser();
+            Set<String> principals = new LinkedHashSet<String>();
+            principals.add(user.getId().toString());
+            for (CmsGroup group : cms.getGroupsOfUser(user.getName(), false)) {
+                principals.add(group.getId().toString());
+            }
+            if (!user.isGuestUser()) {
+                for (CmsRole role : OpenCms.getRoleManager().getRolesOfUser(
+                    cms,
+                    user.getName(),
+                    "",
+                    true,
+                    false,
+                    false)) {
+                    if (CmsRole.VFS_MANAGER.getRoleName().equals(role.getRoleName())) {
+                        // VFS managers ignore the permissions, the index fields can not reflect this
+                        return null;
+                    }
+                    principals.add(role.forOrgUnit(null).getId().toString());
+                }
+            }
+            String ids = "(\"" + CmsStringUtil.listAsString(new ArrayList<String>(principals), "\" OR \"") + "\")";
+            String allOthers = "\"" + CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_ID + "\"";
+            StringBuffer result = new StringBuffer(256);
+            result.append("(+").append(CmsSearchField.FIELD_ACL_READ_ALLOWED).append(':').append(ids);
+            result.append(" -").append(CmsSearchField.FIELD_ACL_READ_DENIED).append(':').append(ids);
+            result.append(") OR (+").append(CmsSearchField.FIELD_ACL_READ_ALLOWED).append(':').append(allOthers);
+            result.append(" -").append(CmsSearchField.FIELD_ACL_READ_DENIED).append(':').append(allOthers);
+            result.append(" -").append(CmsSearchField.FIELD_ACL_PRINCIPALS).append(':').append(ids).append(')');
+            return result.toString();
+        } catch (CmsException e) {
+            // fall back to the permission check of the found documents
+            LOG.error(e.getLocalizedMessage(), e);
+            return null;
+        }
+    }
+
     /**
      * Updates the core name to be in sync with the index name.
      */
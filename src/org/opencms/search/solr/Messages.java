@@ -61,6 +61,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_SOLR_ERR_SEARCH_PERMISSION_VIOLATION_2 = "LOG_SOLR_ERR_SEARCH_PERMISSION_VIOLATION_2";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_SOLR_ERR_SEARCH_TIMEOUT_3 = "LOG_SOLR_ERR_SEARCH_TIMEOUT_3";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_SOLR_ERR_SPELL_EXECUTION_FAILD_1 = "LOG_SOLR_ERR_SPELL_EXECUTION_FAILD_1";
 
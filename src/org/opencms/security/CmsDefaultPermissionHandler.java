@@ -45,6 +45,7 @@ import org.opencms.main.CmsLog;
 import org.opencms.main.OpenCms;
 
 import java.util.Iterator;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.logging.Log;
 
@@ -71,11 +72,11 @@ public class CmsDefaultPermissionHandler implements I_CmsPermissionHandler {
      * @see org.opencms.security.I_CmsPermissionHandler#hasPermissions(org.opencms.db.CmsDbContext, org.opencms.file.CmsResource, org.opencms.security.CmsPermissionSet, boolean, org.opencms.file.CmsResourceFilter)
      */
     public CmsPermissionCheckResult hasPermissions(
-        CmsDbContext dbc,
-        CmsResource resource,
-        CmsPermissionSet requiredPermissions,
+        final CmsDbContext dbc,
+        final CmsResource resource,
+        final CmsPermissionSet requiredPermissions,
         boolean checkLock,
-        CmsResourceFilter filter) throws CmsException {
+        final CmsResourceFilter filter) throws CmsException {
 
         // check if the resource is valid according to the current filter
         // if not, throw a CmsResourceNotFoundException
@@ -83,6 +84,18 @@ public class CmsDefaultPermissionHandler implements I_CmsPermissionHandler {
             return I_CmsPermissionHandler.PERM_FILTERED;
         }
 
+        boolean writeRequired = requiredPermissions.requiresWritePermission()
+            || requiredPermissions.requiresControlPermission();
+        if (writeRequired && checkLock) {
+            // check lock state only if required
+            CmsLock lock = m_driverManager.getLock(dbc, resource);
+            // if the resource is not locked by the current user, write and control
+            // access must cause a permission error that must not be cached
+            if (lock.isUnlocked() || !lock.isLockableBy(dbc.currentUser())) {
+                return I_CmsPermissionHandler.PERM_NOTLOCKED;
+            }
+        }
+
         // checking the filter is less cost intensive then checking the cache,
         // this is why basic filter results are not cached
         String cacheKey = m_keyGenerator.getCacheKeyForUserPermissions(
@@ -92,10 +105,67 @@ public class CmsDefaultPermissionHandler implements I_CmsPermissionHandler {
             dbc,
             resource,
             requiredPermissions);
-        CmsPermissionCheckResult cacheResult = OpenCms.getMemoryMonitor().getCachedPermission(cacheKey);
-        if (cacheResult != null) {
-            return cacheResult;
+        if (!dbc.getProjectId().isNullUUID()) {
+            // permissions calculated inside a publish context are not cached
+            CmsPermissionCheckResult cacheResult = OpenCms.getMemoryMonitor().getCachedPermission(cacheKey);
+            if (cacheResult != null) {
+                return cacheResult;
+            }
+            return checkPermissions(dbc, resource, requiredPermissions, filter);
+        }
+        // concurrent cache misses for the same key wait for a single permission check
+        return OpenCms.getMemoryMonitor().getCachedPermission(cacheKey, new Callable<CmsPermissionCheckResult>() {
+
+            public CmsPermissionCheckResult call() throws CmsException {
+
+                return checkPermissions(dbc, resource, requiredPermissions, filter);
+            }
+        });
+    }
+
+    /**
+     * @see org.opencms.security.I_CmsPermissionHandler#init(org.opencms.db.CmsDriverManager, CmsSystemConfiguration)
+     */
+    public void init(CmsDriverManager driverManager, CmsSystemConfiguration systemConfiguration) {
+
+        m_driverManager = driverManager;
+        m_securityManager = driverManager.getSecurityManager();
+
+        CmsCacheSettings settings = systemConfiguration.getCacheSettings();
+
+        String className = settings.getCacheKeyGenerator();
+        try {
+            // initialize the key generator
+            m_keyGenerator = (I_CmsCacheKey)Class.forName(className).newInstance();
+        } catch (Exception e) {
+            throw new CmsInitException(
+                org.opencms.main.Messages.get().container(
+                    org.opencms.main.Messages.ERR_CRITICAL_CLASS_CREATION_1,
+                    className),
+                e);
         }
+    }
+
+    /**
+     * Calculates the permissions of the current user on the given resource, without using the permission cache.<p>
+     *
+     * The lock state of the resource has already been checked by
+     * {@link #hasPermissions(CmsDbContext, CmsResource, CmsPermissionSet, boolean, CmsResourceFilter)}.<p>
+     *
+     * @param dbc the current database context
+     * @param resource the resource on which permissions are required
+     * @param requiredPermissions the set of permissions required for the operation
+     * @param filter the resource filter to use
+     *
+     * @return {@link I_CmsPermissionHandler#PERM_ALLOWED} or {@link I_CmsPermissionHandler#PERM_DENIED}
+     *
+     * @throws CmsException if something goes wrong
+     */
+    protected CmsPermissionCheckResult checkPermissions(
+        CmsDbContext dbc,
+        CmsResource resource,
+        CmsPermissionSet requiredPermissions,
+        CmsResourceFilter filter) throws CmsException {
 
         int denied = 0;
 
@@ -111,7 +181,6 @@ public class CmsDefaultPermissionHandler implements I_CmsPermissionHandler {
             CmsRole.VFS_MANAGER,
             resource);
 
-        // check lock status
         boolean writeRequired = requiredPermissions.requiresWritePermission()
             || requiredPermissions.requiresControlPermission();
 
@@ -124,16 +193,6 @@ public class CmsDefaultPermissionHandler implements I_CmsPermissionHandler {
             }
         }
 
-        if (writeRequired && checkLock) {
-            // check lock state only if required
-            CmsLock lock = m_driverManager.getLock(dbc, resource);
-            // if the resource is not locked by the current user, write and control
-            // access must cause a permission error that must not be cached
-            if (lock.isUnlocked() || !lock.isLockableBy(dbc.currentUser())) {
-                return I_CmsPermissionHandler.PERM_NOTLOCKED;
-            }
-        }
-
         CmsPermissionSetCustom permissions;
         if (canIgnorePermissions) {
             // if the current user is administrator, anything is allowed
@@ -214,33 +273,6 @@ public class CmsDefaultPermissionHandler implements I_CmsPermissionHandler {
                             permissions.getPermissionString()}));
             }
         }
-        if (dbc.getProjectId().isNullUUID()) {
-            OpenCms.getMemoryMonitor().cachePermission(cacheKey, result);
-        }
-
         return result;
     }
-
-    /**
-     * @see org.opencms.security.I_CmsPermissionHandler#init(org.opencms.db.CmsDriverManager, CmsSystemConfiguration)
-     */
-    public void init(CmsDriverManager driverManager, CmsSystemConfiguration systemConfiguration) {
-
-        m_driverManager = driverManager;
-        m_securityManager = driverManager.getSecurityManager();
-
-        CmsCacheSettings settings = systemConfiguration.getCacheSettings();
-
-        String className = settings.getCacheKeyGenerator();
-        try {
-            // initialize the key generator
-            m_keyGenerator = (I_CmsCacheKey)Class.forName(className).newInstance();
-        } catch (Exception e) {
-            throw new CmsInitException(
-                org.opencms.main.Messages.get().container(
-                    org.opencms.main.Messages.ERR_CRITICAL_CLASS_CREATION_1,
-                    className),
-                e);
-        }
-    }
 }
@@ -49,6 +49,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -76,15 +77,6 @@ public final class CmsSiteManagerImpl {
     /** The static log object for this class. */
     private static final Log LOG = CmsLog.getLog(CmsSiteManagerImpl.class);
 
-    /** The path to the "/sites/" folder. */
-    private static final String SITES_FOLDER = "/sites/";
-
-    /** The length of the "/sites/" folder plus 1. */
-    private static final int SITES_FOLDER_POS = SITES_FOLDER.length() + 1;
-
-    /** A list of additional site roots, that is site roots that are not below the "/sites/" folder. */
-    private List<String> m_additionalSiteRoots;
-
     /**
      * The list of aliases for the site that is configured at the moment,
      * needed for the sites added during configuration. */
@@ -102,8 +94,8 @@ public final class CmsSiteManagerImpl {
     /** The shared folder name. */
     private String m_sharedFolder;
 
-    /** Contains all configured site matchers in a list for direct access. */
-    private List<CmsSiteMatcher> m_siteMatchers;
+    /** Maps the configured site matchers, with lower case server names, to the configured site matchers. */
+    private Map<CmsSiteMatcher, CmsSiteMatcher> m_siteMatchers;
 
     /** Maps site matchers to sites. */
     private Map<CmsSiteMatcher, CmsSite> m_siteMatcherSites;
@@ -111,6 +103,9 @@ public final class CmsSiteManagerImpl {
     /** Maps site roots to sites. */
     private Map<String, CmsSite> m_siteRootSites;
 
+    /** The trie to look up sites by root path, lazily created from {@link #m_siteRootSites}. */
+    private volatile CmsSiteRootTrie m_siteRootTrie;
+
     /** The workplace server. */
     private String m_workplaceServer;
 
@@ -126,11 +121,10 @@ public final class CmsSiteManagerImpl {
      */
     public CmsSiteManagerImpl() {
 
-        m_siteMatcherSites = new HashMap<CmsSiteMatcher, CmsSite>();
+        setSiteMatcherSites(new HashMap<CmsSiteMatcher, CmsSite>());
         m_siteRootSites = new HashMap<String, CmsSite>();
         m_aliases = new ArrayList<CmsSiteMatcher>();
         m_siteParams = new TreeMap<String, String>();
-        m_additionalSiteRoots = new ArrayList<String>();
 
         if (CmsLog.INIT.isInfoEnabled()) {
             CmsLog.INIT.info(Messages.get().getBundle().key(Messages.INIT_START_SITE_CONFIG_0));
@@ -300,8 +294,9 @@ public final class CmsSiteManagerImpl {
         m_aliases = new ArrayList<CmsSiteMatcher>();
         site.setParameters(m_siteParams);
         m_siteParams = new TreeMap<String, String>();
-        m_siteRootSites = new HashMap<String, CmsSite>(m_siteRootSites);
-        m_siteRootSites.put(site.getSiteRoot(), site);
+        Map<String, CmsSite> siteRootSites = new HashMap<String, CmsSite>(m_siteRootSites);
+        siteRootSites.put(site.getSiteRoot(), site);
+        setSiteRootSites(siteRootSites);
         if (CmsLog.INIT.isInfoEnabled()) {
             CmsLog.INIT.info(Messages.get().getBundle().key(Messages.INIT_SITE_ROOT_ADDED_1, site.toString()));
         }
@@ -605,17 +600,8 @@ public final class CmsSiteManagerImpl {
      */
     public CmsSite getSiteForRootPath(String rootPath) {
 
-        if ((rootPath.length() > 0) && !rootPath.endsWith("/")) {
-            rootPath = rootPath + "/";
-        }
-        // most sites will be below the "/sites/" folder,
-        CmsSite result = lookupSitesFolder(rootPath);
-        if (result != null) {
-            return result;
-        }
-        // look through all folders that are not below "/sites/"
-        String siteRoot = lookupAdditionalSite(rootPath);
-        return (siteRoot != null) ? getSiteForSiteRoot(siteRoot) : null;
+        // the trie also matches site roots that are equal to the given path, so no trailing slash is required
+        return getSiteRootTrie().getSite(rootPath);
     }
 
     /**
@@ -655,17 +641,8 @@ public final class CmsSiteManagerImpl {
      */
     public String getSiteRoot(String rootPath) {
 
-        // add a trailing slash, because the path may be the path of a site root itself
-        if (!rootPath.endsWith("/")) {
-            rootPath = rootPath + "/";
-        }
-        // most sites will be below the "/sites/" folder,
-        CmsSite site = lookupSitesFolder(rootPath);
-        if (site != null) {
-            return site.getSiteRoot();
-        }
-        // look through all folders that are not below "/sites/"
-        return lookupAdditionalSite(rootPath);
+        CmsSite site = getSiteRootTrie().getSite(rootPath);
+        return (site != null) ? site.getSiteRoot() : null;
     }
 
     /**
@@ -809,12 +786,8 @@ public final class CmsSiteManagerImpl {
             // set site lists to unmodifiable
             setSiteMatcherSites(m_siteMatcherSites);
 
-            // store additional site roots to optimize lookups later
-            for (String root : m_siteRootSites.keySet()) {
-                if (!root.startsWith(SITES_FOLDER)) {
-                    m_additionalSiteRoots.add(root);
-                }
-            }
+            // build the site root trie now, so the first requests don't have to
+            getSiteRootTrie();
 
             // initialization is done, set the frozen flag to true
             m_frozen = true;
@@ -994,7 +967,7 @@ public final class CmsSiteManagerImpl {
         // remove the site from the map holding the site roots as keys and the sites as values
         Map<String, CmsSite> siteRootSites = new HashMap<String, CmsSite>(m_siteRootSites);
         siteRootSites.remove(site.getSiteRoot());
-        m_siteRootSites = Collections.unmodifiableMap(siteRootSites);
+        setSiteRootSites(Collections.unmodifiableMap(siteRootSites));
 
         // re-initialize, will freeze the state when finished
         initialize(cms);
@@ -1171,49 +1144,51 @@ public final class CmsSiteManagerImpl {
 
         CmsSiteMatcher matcher = new CmsSiteMatcher(req.getScheme(), req.getServerName(), req.getServerPort());
         // this is required to get the right configured time offset
-        int index = m_siteMatchers.indexOf(matcher);
-        if (index < 0) {
+        CmsSiteMatcher result = m_siteMatchers.get(getLowerCaseMatcher(matcher));
+        if (result == null) {
             return matcher;
         }
-        return m_siteMatchers.get(index);
+        return result;
     }
 
     /**
-     * Returns <code>true</code> if the given root path matches any of the stored additional sites.<p>
+     * Returns the given site matcher with a lower case server name.<p>
+     *
+     * Site matchers compare server names case insensitive, but the hash code is case sensitive.
+     * This is used to look up site matchers in {@link #m_siteMatchers}.<p>
      *
-     * @param rootPath the root path to check
+     * @param matcher the site matcher
      *
-     * @return <code>true</code> if the given root path matches any of the stored additional sites
+     * @return the site matcher with a lower case server name, or the given matcher if it already is lower case
      */
-    private String lookupAdditionalSite(String rootPath) {
+    private CmsSiteMatcher getLowerCaseMatcher(CmsSiteMatcher matcher) {
 
-        for (int i = 0, size = m_additionalSiteRoots.size(); i < size; i++) {
-            String siteRoot = m_additionalSiteRoots.get(i);
-            if (rootPath.startsWith(siteRoot)) {
-                return siteRoot;
-            }
+        String serverName = matcher.getServerName();
+        String lowerCaseName = serverName.toLowerCase(Locale.ENGLISH);
+        if (serverName.equals(lowerCaseName)) {
+            return matcher;
         }
-        return null;
+        return new CmsSiteMatcher(matcher.getServerProtocol(), lowerCaseName, matcher.getServerPort());
     }
 
     /**
-     * Returns the configured site if the given root path matches site in the "/sites/" folder,
-     * or <code>null</code> otherwise.<p>
+     * Returns the trie to look up sites by root path, creating it if required.<p>
      *
-     * @param rootPath the root path to check
-     *
-     * @return the configured site if the given root path matches site in the "/sites/" folder,
-     *      or <code>null</code> otherwise
+     * @return the trie to look up sites by root path
      */
-    private CmsSite lookupSitesFolder(String rootPath) {
-
-        int pos = rootPath.indexOf('/', SITES_FOLDER_POS);
-        if (pos > 0) {
-            // this assumes that the root path may likely start with something like "/sites/default/"
-            // just cut the first 2 directories from the root path and do a direct lookup in the internal map
-            return m_siteRootSites.get(rootPath.substring(0, pos));
+    private CmsSiteRootTrie getSiteRootTrie() {
+
+        CmsSiteRootTrie trie = m_siteRootTrie;
+        if (trie == null) {
+            synchronized (this) {
+                trie = m_siteRootTrie;
+                if (trie == null) {
+                    trie = new CmsSiteRootTrie(m_siteRootSites.values());
+                    m_siteRootTrie = trie;
+                }
+            }
         }
-        return null;
+        return trie;
     }
 
     /**
@@ -1225,6 +1200,21 @@ public final class CmsSiteManagerImpl {
     private void setSiteMatcherSites(Map<CmsSiteMatcher, CmsSite> siteMatcherSites) {
 
         m_siteMatcherSites = Collections.unmodifiableMap(siteMatcherSites);
-        m_siteMatchers = Collections.unmodifiableList(new ArrayList<CmsSiteMatcher>(m_siteMatcherSites.keySet()));
+        Map<CmsSiteMatcher, CmsSiteMatcher> siteMatchers = new HashMap<CmsSiteMatcher, CmsSiteMatcher>();
+        for (CmsSiteMatcher matcher : m_siteMatcherSites.keySet()) {
+            siteMatchers.put(getLowerCaseMatcher(matcher), matcher);
+        }
+        m_siteMatchers = siteMatchers;
+    }
+
+    /**
+     * Sets the class member variable {@link #m_siteRootSites} and resets the site root trie.<p>
+     *
+     * @param siteRootSites the map of site roots to sites
+     */
+    private synchronized void setSiteRootSites(Map<String, CmsSite> siteRootSites) {
+
+        m_siteRootSites = siteRootSites;
+        m_siteRootTrie = null;
     }
 }
\ No newline at end of file
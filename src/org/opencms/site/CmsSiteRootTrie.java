@@ -0,0 +1,189 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.site;
+
+import org.opencms.util.CmsFileUtil;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable character trie over the site roots of the configured sites,
+ * used to find the site of a resource root path.<p>
+ *
+ * A lookup walks the root path once and needs no object allocation,
+ * so the lookup time only depends on the length of the path, not on the number of configured sites.
+ * A site root only matches complete path segments, and if site roots are nested,
+ * the longest matching site root wins.<p>
+ *
+ * Instances are never changed after creation. To update the configured sites,
+ * create a new instance and replace the old one.<p>
+ *
+ * @since 10.5.0
+ */
+public final class CmsSiteRootTrie {
+
+    /**
+     * A node of the trie.<p>
+     */
+    private static final class CmsTrieNode {
+
+        /** The sorted characters of the child nodes. */
+        char[] m_chars;
+
+        /** The child nodes, in the same order as the characters. */
+        CmsTrieNode[] m_children;
+
+        /** The site with the site root ending in this node, or <code>null</code>. */
+        CmsSite m_site;
+
+        /**
+         * Creates a new trie node.<p>
+         *
+         * @param site the site with the site root ending in this node, or <code>null</code>
+         * @param chars the sorted characters of the child nodes
+         * @param children the child nodes
+         */
+        CmsTrieNode(CmsSite site, char[] chars, CmsTrieNode[] children) {
+
+            m_site = site;
+            m_chars = chars;
+            m_children = children;
+        }
+
+        /**
+         * Returns the child node for the given character, or <code>null</code> if there is none.<p>
+         *
+         * @param c the character
+         *
+         * @return the child node for the given character
+         */
+        CmsTrieNode getChild(char c) {
+
+            int pos = Arrays.binarySearch(m_chars, c);
+            return pos >= 0 ? m_children[pos] : null;
+        }
+    }
+
+    /** The root node of the trie. */
+    private final CmsTrieNode m_root;
+
+    /** The number of sites in the trie. */
+    private final int m_size;
+
+    /**
+     * Creates a new trie for the given sites.<p>
+     *
+     * @param sites the sites
+     */
+    public CmsSiteRootTrie(Collection<CmsSite> sites) {
+
+        TreeMap<String, CmsSite> siteRoots = new TreeMap<String, CmsSite>();
+        for (CmsSite site : sites) {
+            String siteRoot = site.getSiteRoot();
+            if (siteRoot != null) {
+                siteRoots.put(CmsFileUtil.removeTrailingSeparator(siteRoot), site);
+            }
+        }
+        m_size = siteRoots.size();
+        m_root = createNode(siteRoots, "");
+    }
+
+    /**
+     * Returns the site for the given resource root path,
+     * or <code>null</code> if the root path is not below any site root.<p>
+     *
+     * @param rootPath the resource root path
+     *
+     * @return the site for the given resource root path, or <code>null</code>
+     */
+    public CmsSite getSite(String rootPath) {
+
+        CmsSite result = null;
+        CmsTrieNode node = m_root;
+        int length = rootPath.length();
+        for (int i = 0; node != null; i++) {
+            if ((node.m_site != null) && ((i == length) || (rootPath.charAt(i) == '/'))) {
+                // a site root ending at a segment boundary, a longer match may follow
+                result = node.m_site;
+            }
+            if (i == length) {
+                break;
+            }
+            node = node.getChild(rootPath.charAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of sites in this trie.<p>
+     *
+     * @return the number of sites in this trie
+     */
+    public int size() {
+
+        return m_size;
+    }
+
+    /**
+     * Creates the node for the given prefix from the sorted map of site roots starting with this prefix.<p>
+     *
+     * @param siteRoots the sorted site roots starting with the prefix
+     * @param prefix the prefix
+     *
+     * @return the node for the prefix
+     */
+    private CmsTrieNode createNode(TreeMap<String, CmsSite> siteRoots, String prefix) {
+
+        CmsSite site = siteRoots.get(prefix);
+        // group the remaining site roots by their next character
+        TreeMap<Character, TreeMap<String, CmsSite>> groups = new TreeMap<Character, TreeMap<String, CmsSite>>();
+        for (Map.Entry<String, CmsSite> entry : siteRoots.entrySet()) {
+            String siteRoot = entry.getKey();
+            if (siteRoot.length() > prefix.length()) {
+                Character c = Character.valueOf(siteRoot.charAt(prefix.length()));
+                TreeMap<String, CmsSite> group = groups.get(c);
+                if (group == null) {
+                    group = new TreeMap<String, CmsSite>();
+                    groups.put(c, group);
+                }
+                group.put(siteRoot, entry.getValue());
+            }
+        }
+        char[] chars = new char[groups.size()];
+        CmsTrieNode[] children = new CmsTrieNode[groups.size()];
+        int i = 0;
+        for (Map.Entry<Character, TreeMap<String, CmsSite>> group : groups.entrySet()) {
+            chars[i] = group.getKey().charValue();
+            children[i] = createNode(group.getValue(), prefix + chars[i]);
+            i++;
+        }
+        return new CmsTrieNode(site, chars, children);
+    }
+}
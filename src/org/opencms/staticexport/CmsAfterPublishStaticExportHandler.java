@@ -27,16 +27,24 @@
 
 package org.opencms.staticexport;
 
+import org.opencms.ade.configuration.CmsADEManager;
+import org.opencms.ade.configuration.CmsConfigurationCache;
+import org.opencms.ade.configuration.formatters.CmsFormatterConfigurationCache;
 import org.opencms.ade.detailpage.CmsDetailPageUtil;
 import org.opencms.db.CmsPublishedResource;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
 import org.opencms.file.CmsVfsResourceNotFoundException;
+import org.opencms.file.types.CmsResourceTypeXmlContainerPage;
+import org.opencms.i18n.CmsMessageContainer;
+import org.opencms.loader.CmsLoaderException;
 import org.opencms.loader.I_CmsResourceLoader;
 import org.opencms.main.CmsException;
 import org.opencms.main.CmsLog;
 import org.opencms.main.OpenCms;
+import org.opencms.report.CmsLogReport;
+import org.opencms.report.CmsRecordingReport;
 import org.opencms.report.I_CmsReport;
 import org.opencms.util.CmsFileUtil;
 import org.opencms.util.CmsRequestUtil;
@@ -49,14 +57,25 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
@@ -68,12 +87,96 @@ import org.apache.commons.logging.Log;
  *
  * This handler exports all changes immediately after something is published.<p>
  *
+ * If dependency tracking is enabled, template resources whose recorded dependencies are not
+ * affected by the published resources are skipped. If more than one export thread is configured,
+ * the resources are exported by a bounded pool of workers: the non-template resources are
+ * partitioned by site and folder, the template resources are requested in parallel.<p>
+ *
  * @since 6.0.0
  *
  * @see I_CmsStaticExportHandler
  */
 public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler {
 
+    /**
+     * A partition of non-template resources submitted to the export workers.<p>
+     */
+    private class CmsNonTemplateExportJob implements Callable<Void> {
+
+        /** The cms context of the job. */
+        CmsObject m_cms;
+
+        /** The number of the first resource of the partition. */
+        int m_count;
+
+        /** The future of the job. */
+        Future<Void> m_future;
+
+        /** The report recording the output of the job. */
+        CmsRecordingReport m_report;
+
+        /** The export data of the resources of the partition. */
+        List<CmsStaticExportData> m_resources;
+
+        /** The total number of resources to export. */
+        int m_size;
+
+        /**
+         * @see java.util.concurrent.Callable#call()
+         */
+        public Void call() throws Exception {
+
+            int count = m_count;
+            for (CmsStaticExportData exportData : m_resources) {
+                exportNonTemplateResource(m_cms, exportData, count++, m_size, m_report);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A template resource submitted to the export workers.<p>
+     */
+    private class CmsTemplateExportJob implements Runnable {
+
+        /** The cms context of the job. */
+        CmsObject m_cms;
+
+        /** The cookies to keep the session. */
+        StringBuffer m_cookies;
+
+        /** The export data of the template resource. */
+        CmsStaticExportData m_data;
+
+        /** The future of the job. */
+        Future<?> m_future;
+
+        /** The report recording the output of the job. */
+        CmsRecordingReport m_report;
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+
+            exportTemplateResource(m_cms, m_data, m_cookies, m_report);
+        }
+    }
+
+    /** The names of the configuration resource types, publishing these affects all exported files. */
+    private static final Set<String> CONFIGURATION_TYPES = new HashSet<String>(
+        Arrays.asList(
+            CmsADEManager.CONFIG_TYPE,
+            CmsADEManager.MODULE_CONFIG_TYPE,
+            CmsADEManager.ELEMENT_VIEW_TYPE,
+            CmsConfigurationCache.SITEMAP_MASTER_CONFIG,
+            CmsFormatterConfigurationCache.TYPE_FORMATTER_CONFIG,
+            CmsFormatterConfigurationCache.TYPE_MACRO_FORMATTER,
+            CmsResourceTypeXmlContainerPage.INHERIT_CONTAINER_CONFIG_TYPE_NAME));
+
+    /** The maximum number of non-template resources in a partition exported by one worker. */
+    private static final int EXPORT_PARTITION_SIZE = 100;
+
     /** Header field set-cookie constant. */
     private static final String HEADER_FIELD_SET_COOKIE = "Set-Cookie";
 
@@ -120,6 +223,15 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
                 String rfsName = manager.getRfsName(cmsExportObject, pubResource.getRootPath());
                 resourceFilter.add(rfsName.substring(manager.getRfsPrefixForRfsName(rfsName).length()));
             }
+            if ((resources != null) && (manager.getDependencies() != null)) {
+                // only export the template resources affected by the published resources
+                resourceFilter = filterByDependencies(
+                    cmsExportObject,
+                    manager.getDependencies(),
+                    resources,
+                    resourceFilter,
+                    report);
+            }
 
             long timestamp = 0;
             List<String> publishedTemplateResources;
@@ -162,6 +274,7 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
                 }
                 // if no new template links where found we are finished
             } while (newTemplateLinksFound);
+            manager.saveDependencies();
         }
     }
 
@@ -316,49 +429,41 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
             LOG.debug(Messages.get().getBundle().key(Messages.LOG_NUM_EXPORT_1, new Integer(size)));
         }
         // now do the export
-        Iterator<CmsStaticExportData> i = resourcesToExport.iterator();
-        while (i.hasNext()) {
-            CmsStaticExportData exportData = i.next();
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(
-                    Messages.get().getBundle().key(
-                        Messages.LOG_EXPORT_FILE_2,
-                        exportData.getVfsName(),
-                        exportData.getRfsName()));
+        int threads = manager.getExportThreadCount();
+        if (threads <= 1) {
+            Iterator<CmsStaticExportData> i = resourcesToExport.iterator();
+            while (i.hasNext()) {
+                exportNonTemplateResource(cms, i.next(), count++, size, report);
+                //don't lock up the CPU exclusively - allow other Threads to run as well
+                Thread.yield();
             }
-
-            report.print(
-                org.opencms.report.Messages.get().container(
-                    org.opencms.report.Messages.RPT_SUCCESSION_2,
-                    new Integer(count++),
-                    new Integer(size)),
-                I_CmsReport.FORMAT_NOTE);
-            report.print(Messages.get().container(Messages.RPT_EXPORTING_0), I_CmsReport.FORMAT_NOTE);
-            report.print(
-                org.opencms.report.Messages.get().container(
-                    org.opencms.report.Messages.RPT_ARGUMENT_1,
-                    exportData.getVfsName()));
-            report.print(org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_DOTS_0));
-            int status = manager.export(null, null, cms, exportData);
-            if (status == HttpServletResponse.SC_OK) {
-                report.println(
-                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_OK_0),
-                    I_CmsReport.FORMAT_OK);
-            } else {
-                report.println(
-                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_IGNORED_0),
-                    I_CmsReport.FORMAT_NOTE);
-            }
-
-            if (LOG.isInfoEnabled()) {
-                Object[] arguments = new Object[] {
-                    exportData.getVfsName(),
-                    exportData.getRfsName(),
-                    new Integer(status)};
-                LOG.info(Messages.get().getBundle().key(Messages.LOG_EXPORT_FILE_STATUS_3, arguments));
+        } else {
+            ThreadPoolExecutor executor = createExportExecutor(threads);
+            LinkedList<CmsNonTemplateExportJob> pendingJobs = new LinkedList<CmsNonTemplateExportJob>();
+            try {
+                for (List<CmsStaticExportData> partition : partitionResources(resourcesToExport)) {
+                    CmsNonTemplateExportJob job = new CmsNonTemplateExportJob();
+                    job.m_cms = getWorkerCms(cms);
+                    job.m_resources = partition;
+                    job.m_count = count;
+                    job.m_size = size;
+                    job.m_report = new CmsRecordingReport(report);
+                    job.m_future = executor.submit(job);
+                    count += partition.size();
+                    pendingJobs.add(job);
+                    if (pendingJobs.size() >= (2 * threads)) {
+                        finishNonTemplateExportJob(pendingJobs.removeFirst());
+                    }
+                }
+                while (!pendingJobs.isEmpty()) {
+                    finishNonTemplateExportJob(pendingJobs.removeFirst());
+                }
+            } finally {
+                for (CmsNonTemplateExportJob job : pendingJobs) {
+                    job.m_future.cancel(true);
+                }
+                executor.shutdown();
             }
-            //don't lock up the CPU exclusively - allow other Threads to run as well
-            Thread.yield();
         }
 
         resourcesToExport = null;
@@ -602,6 +707,11 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
     /**
      * Exports all template resources found in a list of published resources.<p>
      *
+     * The first template resource is exported by the calling thread to establish the session.
+     * If more than one export thread is configured, the remaining template resources are
+     * exported by a bounded pool of workers, and the report output is written in the order
+     * of the list.<p>
+     *
      * @param cms the cms context, in the root site as Export user
      * @param publishedTemplateResources list of potential candidates to export
      * @param report an I_CmsReport instance to print output message, or null to write messages to the log file
@@ -611,6 +721,7 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
         CmsStaticExportManager manager = OpenCms.getStaticExportManager();
         int size = publishedTemplateResources.size();
         int count = 1;
+        int threads = manager.getExportThreadCount();
 
         if (LOG.isDebugEnabled()) {
             LOG.debug(Messages.get().getBundle().key(Messages.LOG_EXPORT_TEMPLATES_1, new Integer(size)));
@@ -620,97 +731,125 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
             I_CmsReport.FORMAT_HEADLINE);
 
         StringBuffer cookies = new StringBuffer();
-        // now loop through all of them and request them from the server
-        Iterator<String> i = publishedTemplateResources.iterator();
-        while (i.hasNext()) {
-            String rfsName = i.next();
-            CmsStaticExportData data = null;
-            try {
-                data = manager.getVfsNameInternal(cms, rfsName);
-            } catch (CmsVfsResourceNotFoundException e) {
-                String rfsBaseName = rfsName;
-                int pos = rfsName.lastIndexOf('_');
-                if (pos >= 0) {
-                    rfsBaseName = rfsName.substring(0, pos);
-                }
-                try {
-                    data = manager.getVfsNameInternal(cms, rfsBaseName);
-                } catch (CmsVfsResourceNotFoundException e2) {
-                    if (LOG.isInfoEnabled()) {
-                        LOG.info(
-                            Messages.get().getBundle().key(
-                                Messages.LOG_NO_INTERNAL_VFS_RESOURCE_FOUND_1,
-                                new String[] {rfsName}));
-                    }
+        ThreadPoolExecutor executor = null;
+        LinkedList<CmsTemplateExportJob> pendingJobs = new LinkedList<CmsTemplateExportJob>();
+        try {
+            // now loop through all of them and request them from the server
+            Iterator<String> i = publishedTemplateResources.iterator();
+            while (i.hasNext()) {
+                String rfsName = i.next();
+                CmsStaticExportData data = readTemplateExportData(cms, rfsName);
+                if (data == null) {
+                    // no valid resource found for rfs name (already deleted), skip it
+                    continue;
                 }
-            }
-            if (data != null) {
                 data.setRfsName(rfsName);
-                report.print(
-                    org.opencms.report.Messages.get().container(
-                        org.opencms.report.Messages.RPT_SUCCESSION_2,
-                        new Integer(count++),
-                        new Integer(size)),
-                    I_CmsReport.FORMAT_NOTE);
-                report.print(Messages.get().container(Messages.RPT_EXPORTING_0), I_CmsReport.FORMAT_NOTE);
-                report.print(
-                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_ARGUMENT_1, rfsName));
-                report.print(org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_DOTS_0));
-            } else {
-                // no valid resource found for rfs name (already deleted), skip it
-                continue;
-            }
-
-            try {
-                CmsResource resource = data.getResource();
-                try {
-                    Collection<String> detailPages = CmsDetailPageUtil.getAllDetailPagesWithUrlName(cms, resource);
-                    for (String detailPageUri : detailPages) {
-                        String altRfsName = manager.getRfsName(cms, detailPageUri);
-                        CmsStaticExportData detailData = new CmsStaticExportData(
-                            data.getVfsName(),
-                            altRfsName,
-                            data.getResource(),
-                            data.getParameters());
-                        exportTemplateResource(detailData, cookies);
-                    }
-                } catch (CmsException e) {
-                    LOG.error(e.getLocalizedMessage(), e);
+                if ((threads <= 1) || (cookies.length() == 0)) {
+                    // export sequentially, at least until the session cookies are known
+                    reportTemplateExportStart(report, count++, size, rfsName);
+                    exportTemplateResource(cms, data, cookies, report);
+                    //don't lock up the CPU exclusively - allow other Threads to run as well
+                    Thread.yield();
+                    continue;
                 }
-
-                int status = exportTemplateResource(data, cookies);
-
-                // write the report
-                if (status == HttpServletResponse.SC_OK) {
-                    report.println(
-                        org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_OK_0),
-                        I_CmsReport.FORMAT_OK);
-                } else if (status == HttpServletResponse.SC_NOT_MODIFIED) {
-                    report.println(
-                        org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_SKIPPED_0),
-                        I_CmsReport.FORMAT_NOTE);
-                } else if (status == HttpServletResponse.SC_SEE_OTHER) {
-                    report.println(
-                        org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_IGNORED_0),
-                        I_CmsReport.FORMAT_NOTE);
-                } else {
-                    report.println(
-                        org.opencms.report.Messages.get().container(
-                            org.opencms.report.Messages.RPT_ARGUMENT_1,
-                            new Integer(status)),
-                        I_CmsReport.FORMAT_OK);
+                if (executor == null) {
+                    executor = createExportExecutor(threads);
                 }
-            } catch (IOException e) {
-                report.println(e);
+                CmsTemplateExportJob job = new CmsTemplateExportJob();
+                job.m_cms = getWorkerCms(cms);
+                job.m_data = data;
+                job.m_cookies = cookies;
+                job.m_report = new CmsRecordingReport(report);
+                reportTemplateExportStart(job.m_report, count++, size, rfsName);
+                job.m_future = executor.submit(job);
+                pendingJobs.add(job);
+                if (pendingJobs.size() >= (2 * threads)) {
+                    finishTemplateExportJob(pendingJobs.removeFirst());
+                }
+            }
+            while (!pendingJobs.isEmpty()) {
+                finishTemplateExportJob(pendingJobs.removeFirst());
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
             }
-            //don't lock up the CPU exclusively - allow other Threads to run as well
-            Thread.yield();
         }
         report.println(
             Messages.get().container(Messages.RPT_STATICEXPORT_TEMPLATE_RESOURCES_END_0),
             I_CmsReport.FORMAT_HEADLINE);
     }
 
+    /**
+     * Removes the template resources not affected by the published resources from the resource filter.<p>
+     *
+     * A template resource is kept if it is unknown to the dependency graph, if its recorded dependencies
+     * are incomplete, or if it depends on one of the published resources or their siblings.
+     * All exported files depending on the published resources are added, even if the export rules
+     * do not relate them to the published resources.<p>
+     *
+     * Configuration resources like sitemap configurations, formatter configurations, schemas and everything
+     * below <code>/system/</code> are mostly read from caches that are filled once, so the records of the
+     * exported files can not contain them. If one of these has been published, all exported files are affected.<p>
+     *
+     * @param cms the cms context, in the root site as Export user
+     * @param dependencies the dependency graph of the exported files
+     * @param resources the published resources
+     * @param resourceFilter the RFS names of the template resources to export according to the export rules
+     * @param report an I_CmsReport instance to print output message
+     *
+     * @return the RFS names of the template resources to export
+     */
+    protected Set<String> filterByDependencies(
+        CmsObject cms,
+        CmsStaticExportDependencies dependencies,
+        List<CmsPublishedResource> resources,
+        Set<String> resourceFilter,
+        I_CmsReport report) {
+
+        CmsMessageContainer message = null;
+        Set<String> result = null;
+        for (CmsPublishedResource pubResource : resources) {
+            if (isConfigurationResource(pubResource)) {
+                result = new HashSet<String>(resourceFilter);
+                result.addAll(dependencies.getRfsNames());
+                message = Messages.get().container(
+                    Messages.RPT_STATICEXPORT_DEPENDENCIES_GLOBAL_2,
+                    pubResource.getRootPath(),
+                    new Integer(result.size()));
+                break;
+            }
+        }
+        if (result == null) {
+            Set<String> publishedPaths = new HashSet<String>();
+            for (CmsPublishedResource pubResource : resources) {
+                publishedPaths.addAll(getSiblingsList(cms, pubResource.getRootPath()));
+            }
+            Set<String> affected = dependencies.getAffectedRfsNames(publishedPaths);
+            result = new HashSet<String>(affected);
+            int skipped = 0;
+            for (String rfsName : resourceFilter) {
+                if (!dependencies.isKnown(rfsName)
+                    || affected.contains(rfsName)
+                    || affected.contains(CmsFileUtil.removeTrailingSeparator(rfsName))) {
+                    result.add(rfsName);
+                } else {
+                    skipped++;
+                }
+            }
+            message = Messages.get().container(
+                Messages.RPT_STATICEXPORT_DEPENDENCIES_2,
+                new Integer(result.size()),
+                new Integer(skipped));
+        }
+        report.println(message, I_CmsReport.FORMAT_NOTE);
+        if (!(report instanceof CmsLogReport) && LOG.isInfoEnabled()) {
+            // only write to the log if report is not already a log report
+            LOG.info(message.key());
+        }
+        return result;
+    }
+
     /**
      * @see org.opencms.staticexport.A_CmsStaticExportHandler#getRelatedFilesToPurge(java.lang.String, java.lang.String)
      */
@@ -815,6 +954,83 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
         return siblings;
     }
 
+    /**
+     * Checks if the given published resource is a configuration resource, whose changes may affect
+     * all exported files without being recorded in the dependency graph.<p>
+     *
+     * @param pubResource the published resource
+     *
+     * @return <code>true</code> if the published resource is a configuration resource
+     */
+    protected boolean isConfigurationResource(CmsPublishedResource pubResource) {
+
+        String rootPath = pubResource.getRootPath();
+        if (rootPath.startsWith(CmsResource.VFS_FOLDER_SYSTEM + "/")
+            || rootPath.endsWith(CmsADEManager.CONFIG_SUFFIX)
+            || rootPath.endsWith(".xsd")
+            || rootPath.contains("/.content/.formatters/")) {
+            return true;
+        }
+        try {
+            String typeName = OpenCms.getResourceManager().getResourceType(pubResource.getType()).getTypeName();
+            return CONFIGURATION_TYPES.contains(typeName);
+        } catch (CmsLoaderException e) {
+            // unknown resource type, the resource can not be a configuration
+            return false;
+        }
+    }
+
+    /**
+     * Partitions the non-template resources to export by site and folder.<p>
+     *
+     * The resources of a folder are kept together, large folders are split into
+     * several partitions. Siblings share their content, so all siblings of a resource are
+     * kept in the partition of the folder of the first sibling, and are never split.
+     * The partitions are sorted by folder path.<p>
+     *
+     * @param resourcesToExport the export data of the non-template resources
+     *
+     * @return the partitions of the resources
+     */
+    protected List<List<CmsStaticExportData>> partitionResources(List<CmsStaticExportData> resourcesToExport) {
+
+        Map<String, List<List<CmsStaticExportData>>> folders = new TreeMap<String, List<List<CmsStaticExportData>>>();
+        Map<CmsUUID, List<CmsStaticExportData>> siblings = new HashMap<CmsUUID, List<CmsStaticExportData>>();
+        for (CmsStaticExportData exportData : resourcesToExport) {
+            CmsResource resource = exportData.getResource();
+            List<CmsStaticExportData> group = resource != null ? siblings.get(resource.getResourceId()) : null;
+            if (group == null) {
+                group = new ArrayList<CmsStaticExportData>();
+                if (resource != null) {
+                    siblings.put(resource.getResourceId(), group);
+                }
+                String folder = CmsResource.getFolderPath(exportData.getVfsName());
+                List<List<CmsStaticExportData>> folderGroups = folders.get(folder);
+                if (folderGroups == null) {
+                    folderGroups = new ArrayList<List<CmsStaticExportData>>();
+                    folders.put(folder, folderGroups);
+                }
+                folderGroups.add(group);
+            }
+            group.add(exportData);
+        }
+        List<List<CmsStaticExportData>> result = new ArrayList<List<CmsStaticExportData>>();
+        for (List<List<CmsStaticExportData>> folderGroups : folders.values()) {
+            List<CmsStaticExportData> partition = new ArrayList<CmsStaticExportData>();
+            for (List<CmsStaticExportData> group : folderGroups) {
+                if (!partition.isEmpty() && ((partition.size() + group.size()) > EXPORT_PARTITION_SIZE)) {
+                    result.add(partition);
+                    partition = new ArrayList<CmsStaticExportData>();
+                }
+                partition.addAll(group);
+            }
+            if (!partition.isEmpty()) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns all non template resources found in a list of published resources.<p>
      *
@@ -895,4 +1111,279 @@ public class CmsAfterPublishStaticExportHandler extends A_CmsStaticExportHandler
 
         return templatesFound;
     }
+
+    /**
+     * Creates the pool of workers exporting template resources.<p>
+     *
+     * @param threads the number of workers
+     *
+     * @return the pool of workers
+     */
+    private ThreadPoolExecutor createExportExecutor(int threads) {
+
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+
+                    Thread thread = new Thread(r, "OpenCms: Static export worker " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * Exports a single non-template resource and writes the result to the report.<p>
+     *
+     * @param cms the cms context, in the root site as Export user
+     * @param exportData the export data of the resource
+     * @param count the number of the resource
+     * @param size the number of resources to export
+     * @param report the report to write the result to
+     *
+     * @throws CmsException in case of errors accessing the VFS
+     * @throws IOException in case of errors writing to the export output stream
+     * @throws ServletException in case of errors accessing the servlet
+     */
+    private void exportNonTemplateResource(
+        CmsObject cms,
+        CmsStaticExportData exportData,
+        int count,
+        int size,
+        I_CmsReport report) throws CmsException, IOException, ServletException {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(
+                Messages.get().getBundle().key(
+                    Messages.LOG_EXPORT_FILE_2,
+                    exportData.getVfsName(),
+                    exportData.getRfsName()));
+        }
+
+        report.print(
+            org.opencms.report.Messages.get().container(
+                org.opencms.report.Messages.RPT_SUCCESSION_2,
+                new Integer(count),
+                new Integer(size)),
+            I_CmsReport.FORMAT_NOTE);
+        report.print(Messages.get().container(Messages.RPT_EXPORTING_0), I_CmsReport.FORMAT_NOTE);
+        report.print(
+            org.opencms.report.Messages.get().container(
+                org.opencms.report.Messages.RPT_ARGUMENT_1,
+                exportData.getVfsName()));
+        report.print(org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_DOTS_0));
+        int status = OpenCms.getStaticExportManager().export(null, null, cms, exportData);
+        if (status == HttpServletResponse.SC_OK) {
+            report.println(
+                org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_OK_0),
+                I_CmsReport.FORMAT_OK);
+        } else {
+            report.println(
+                org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_IGNORED_0),
+                I_CmsReport.FORMAT_NOTE);
+        }
+
+        if (LOG.isInfoEnabled()) {
+            Object[] arguments = new Object[] {exportData.getVfsName(), exportData.getRfsName(), new Integer(status)};
+            LOG.info(Messages.get().getBundle().key(Messages.LOG_EXPORT_FILE_STATUS_3, arguments));
+        }
+    }
+
+    /**
+     * Exports a single template resource, including its detail pages, and writes the result to the report.<p>
+     *
+     * @param cms the cms context, in the root site as Export user
+     * @param data the export data of the template resource
+     * @param cookies cookies to keep the session
+     * @param report the report to write the result to
+     */
+    private void exportTemplateResource(
+        CmsObject cms,
+        CmsStaticExportData data,
+        StringBuffer cookies,
+        I_CmsReport report) {
+
+        CmsStaticExportManager manager = OpenCms.getStaticExportManager();
+        try {
+            CmsResource resource = data.getResource();
+            try {
+                Collection<String> detailPages = CmsDetailPageUtil.getAllDetailPagesWithUrlName(cms, resource);
+                for (String detailPageUri : detailPages) {
+                    String altRfsName = manager.getRfsName(cms, detailPageUri);
+                    CmsStaticExportData detailData = new CmsStaticExportData(
+                        data.getVfsName(),
+                        altRfsName,
+                        data.getResource(),
+                        data.getParameters());
+                    exportTemplateResource(detailData, cookies);
+                }
+            } catch (CmsException e) {
+                LOG.error(e.getLocalizedMessage(), e);
+            }
+
+            int status = exportTemplateResource(data, cookies);
+
+            // write the report
+            if (status == HttpServletResponse.SC_OK) {
+                report.println(
+                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_OK_0),
+                    I_CmsReport.FORMAT_OK);
+            } else if (status == HttpServletResponse.SC_NOT_MODIFIED) {
+                report.println(
+                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_SKIPPED_0),
+                    I_CmsReport.FORMAT_NOTE);
+            } else if (status == HttpServletResponse.SC_SEE_OTHER) {
+                report.println(
+                    org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_IGNORED_0),
+                    I_CmsReport.FORMAT_NOTE);
+            } else {
+                report.println(
+                    org.opencms.report.Messages.get().container(
+                        org.opencms.report.Messages.RPT_ARGUMENT_1,
+                        new Integer(status)),
+                    I_CmsReport.FORMAT_OK);
+            }
+        } catch (IOException e) {
+            report.println(e);
+        }
+    }
+
+    /**
+     * Waits until a non-template export job is finished and writes its report output.<p>
+     *
+     * Errors of the job are thrown again, as if the partition had been exported by the calling thread.<p>
+     *
+     * @param job the non-template export job
+     *
+     * @throws CmsException in case of errors accessing the VFS
+     * @throws IOException in case of errors writing to the export output stream
+     * @throws ServletException in case of errors accessing the servlet
+     */
+    private void finishNonTemplateExportJob(CmsNonTemplateExportJob job)
+    throws CmsException, IOException, ServletException {
+
+        try {
+            job.m_future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CmsStaticExportException(Messages.get().container(Messages.ERR_EXPORT_INTERRUPTED_0), e);
+        } catch (ExecutionException e) {
+            job.m_report.replay();
+            Throwable cause = e.getCause();
+            if (cause instanceof CmsException) {
+                throw (CmsException)cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof ServletException) {
+                throw (ServletException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new ServletException(cause);
+        }
+        job.m_report.replay();
+    }
+
+    /**
+     * Waits until a template export job is finished and writes its report output.<p>
+     *
+     * @param job the template export job
+     */
+    private void finishTemplateExportJob(CmsTemplateExportJob job) {
+
+        try {
+            job.m_future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error(e.getLocalizedMessage(), e);
+        } catch (ExecutionException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+        job.m_report.replay();
+    }
+
+    /**
+     * Returns a copy of the given OpenCms context for a single template export job.<p>
+     *
+     * The export workers run in parallel, so they must not share the request context.<p>
+     *
+     * @param cms the OpenCms context to copy
+     *
+     * @return the OpenCms context for the template export job
+     */
+    private CmsObject getWorkerCms(CmsObject cms) {
+
+        try {
+            return OpenCms.initCmsObject(cms);
+        } catch (CmsException e) {
+            LOG.error(e.getLocalizedMessage(), e);
+            return cms;
+        }
+    }
+
+    /**
+     * Reads the export data for the RFS name of a template resource.<p>
+     *
+     * If no resource is found for the RFS name, the RFS name without parameters is tried.<p>
+     *
+     * @param cms the cms context, in the root site as Export user
+     * @param rfsName the RFS name
+     *
+     * @return the export data, or <code>null</code> if no resource is found for the RFS name
+     */
+    private CmsStaticExportData readTemplateExportData(CmsObject cms, String rfsName) {
+
+        CmsStaticExportManager manager = OpenCms.getStaticExportManager();
+        CmsStaticExportData data = null;
+        try {
+            data = manager.getVfsNameInternal(cms, rfsName);
+        } catch (CmsVfsResourceNotFoundException e) {
+            String rfsBaseName = rfsName;
+            int pos = rfsName.lastIndexOf('_');
+            if (pos >= 0) {
+                rfsBaseName = rfsName.substring(0, pos);
+            }
+            try {
+                data = manager.getVfsNameInternal(cms, rfsBaseName);
+            } catch (CmsVfsResourceNotFoundException e2) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_NO_INTERNAL_VFS_RESOURCE_FOUND_1,
+                            new String[] {rfsName}));
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Writes the start of the report line for a template resource to export.<p>
+     *
+     * @param report the report to write to
+     * @param count the number of the template resource
+     * @param size the number of template resources
+     * @param rfsName the RFS name of the template resource
+     */
+    private void reportTemplateExportStart(I_CmsReport report, int count, int size, String rfsName) {
+
+        report.print(
+            org.opencms.report.Messages.get().container(
+                org.opencms.report.Messages.RPT_SUCCESSION_2,
+                new Integer(count),
+                new Integer(size)),
+            I_CmsReport.FORMAT_NOTE);
+        report.print(Messages.get().container(Messages.RPT_EXPORTING_0), I_CmsReport.FORMAT_NOTE);
+        report.print(org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_ARGUMENT_1, rfsName));
+        report.print(org.opencms.report.Messages.get().container(org.opencms.report.Messages.RPT_DOTS_0));
+    }
 }
\ No newline at end of file
@@ -31,6 +31,7 @@ import org.opencms.ade.detailpage.I_CmsDetailPageFinder;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsResource;
 import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.CmsResourceReadRecorder;
 import org.opencms.file.CmsVfsException;
 import org.opencms.file.CmsVfsResourceNotFoundException;
 import org.opencms.file.types.CmsResourceTypeImage;
@@ -181,6 +182,8 @@ public class CmsDefaultLinkSubstitutionHandler implements I_CmsLinkSubstitutionH
             } else {
                 rootVfsName = vfsName;
             }
+            // the link depends on its target, also if it is served from the link caches
+            CmsResourceReadRecorder.recordRootPath(cms.getRequestContext(), rootVfsName);
             if (!rootVfsName.startsWith(CmsWorkplace.VFS_PATH_WORKPLACE)) {
                 // never use the ADE manager for workplace links, to be sure the workplace stays usable in case of configuration errors
                 I_CmsDetailPageFinder finder = OpenCms.getADEManager().getDetailPageFinder();
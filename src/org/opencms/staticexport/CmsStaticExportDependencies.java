@@ -0,0 +1,447 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.staticexport;
+
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceReadRecorder;
+import org.opencms.main.CmsLog;
+import org.opencms.util.CmsFileUtil;
+import org.opencms.util.CmsStringUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Persistent dependency graph of the static export.<p>
+ *
+ * For every exported RFS file the graph stores the root paths of the VFS resources and
+ * the folders whose content was read while the file was rendered. After a publish the graph
+ * answers which exported files are affected by the published resources, so that only these
+ * have to be regenerated.<p>
+ *
+ * A record is marked as incomplete if the reads of the rendering could not be fully tracked,
+ * e.g. because a search was executed. Exported files without a complete record are always
+ * handled by the configured export rules.<p>
+ *
+ * The graph is stored as a plain text file with one line per exported RFS file.<p>
+ *
+ * @since 10.5.0
+ */
+public class CmsStaticExportDependencies {
+
+    /** The file name of the dependency graph, relative to the WEB-INF folder. */
+    public static final String FILE_NAME = "staticexport-dependencies.txt";
+
+    /** The encoding of the stored graph. */
+    private static final String ENCODING = "UTF-8";
+
+    /** Prefix for a folder entry in the stored graph. */
+    private static final char ENTRY_FOLDER = 'f';
+
+    /** Prefix for a resource entry in the stored graph. */
+    private static final char ENTRY_RESOURCE = 'r';
+
+    /** Flag for a complete record in the stored graph. */
+    private static final String FLAG_COMPLETE = "c";
+
+    /** Flag for an incomplete record in the stored graph. */
+    private static final String FLAG_INCOMPLETE = "i";
+
+    /** The log object for this class. */
+    private static final Log LOG = CmsLog.getLog(CmsStaticExportDependencies.class);
+
+    /** The separator of the values of a line in the stored graph. */
+    private static final char SEPARATOR = '\t';
+
+    /** Flag indicating the graph was changed since it was loaded or saved. */
+    private boolean m_changed;
+
+    /** The file the graph is stored in. */
+    private File m_file;
+
+    /** The read folders of each exported RFS file. */
+    private Map<String, Set<String>> m_folders;
+
+    /** The RFS names of the exported files with an incomplete record. */
+    private Set<String> m_incomplete;
+
+    /** The read resources of each exported RFS file. */
+    private Map<String, Set<String>> m_resources;
+
+    /** The exported RFS files for each read folder. */
+    private Map<String, Set<String>> m_reverseFolders;
+
+    /** The exported RFS files for each read resource. */
+    private Map<String, Set<String>> m_reverseResources;
+
+    /**
+     * Creates a new, empty dependency graph stored in the given file.<p>
+     *
+     * @param file the file the graph is stored in
+     */
+    public CmsStaticExportDependencies(File file) {
+
+        m_file = file;
+        m_resources = new HashMap<String, Set<String>>();
+        m_folders = new HashMap<String, Set<String>>();
+        m_incomplete = new HashSet<String>();
+        m_reverseResources = new HashMap<String, Set<String>>();
+        m_reverseFolders = new HashMap<String, Set<String>>();
+    }
+
+    /**
+     * Removes all records from the graph.<p>
+     */
+    public synchronized void clear() {
+
+        m_changed = m_changed || !m_resources.isEmpty();
+        m_resources.clear();
+        m_folders.clear();
+        m_incomplete.clear();
+        m_reverseResources.clear();
+        m_reverseFolders.clear();
+    }
+
+    /**
+     * Returns the RFS names of the exported files depending on at least one of the given resources.<p>
+     *
+     * An exported file depends on a resource if it read the resource itself, or if it read
+     * the content of one of the ancestor folders of the resource. Folder contents are always
+     * handled as subtrees, since a listing may have been read recursively.<p>
+     *
+     * @param rootPaths the root paths of the changed resources
+     *
+     * @return the RFS names of the affected exported files
+     */
+    public synchronized Set<String> getAffectedRfsNames(Collection<String> rootPaths) {
+
+        Set<String> result = new HashSet<String>();
+        for (String rootPath : rootPaths) {
+            String path = normalize(rootPath);
+            Set<String> rfsNames = m_reverseResources.get(path);
+            if (rfsNames != null) {
+                result.addAll(rfsNames);
+            }
+            String parent = CmsResource.getParentFolder(path);
+            while (parent != null) {
+                rfsNames = m_reverseFolders.get(normalize(parent));
+                if (rfsNames != null) {
+                    result.addAll(rfsNames);
+                }
+                parent = CmsResource.getParentFolder(parent);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the file the graph is stored in.<p>
+     *
+     * @return the file the graph is stored in
+     */
+    public File getFile() {
+
+        return m_file;
+    }
+
+    /**
+     * Returns the RFS names of all exported files with a record in the graph.<p>
+     *
+     * @return the RFS names of all exported files with a record
+     */
+    public synchronized Set<String> getRfsNames() {
+
+        return new HashSet<String>(m_resources.keySet());
+    }
+
+    /**
+     * Checks if a complete record exists for the exported file with the given RFS name.<p>
+     *
+     * @param rfsName the RFS name of the exported file
+     *
+     * @return <code>true</code> if a complete record exists
+     */
+    public synchronized boolean isKnown(String rfsName) {
+
+        String key = findKey(rfsName);
+        return (key != null) && !m_incomplete.contains(key);
+    }
+
+    /**
+     * Loads the graph from its file, replacing all current records.<p>
+     *
+     * If the file does not exist, the graph is left empty.<p>
+     *
+     * @throws IOException if reading the file fails
+     */
+    public synchronized void load() throws IOException {
+
+        clear();
+        m_changed = false;
+        if (!m_file.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(m_file), ENCODING));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> values = CmsStringUtil.splitAsList(line, SEPARATOR);
+                if (values.size() < 2) {
+                    continue;
+                }
+                String rfsName = values.get(0);
+                Set<String> resources = new HashSet<String>();
+                Set<String> folders = new HashSet<String>();
+                for (String value : values.subList(2, values.size())) {
+                    if (value.length() < 2) {
+                        continue;
+                    }
+                    if (value.charAt(0) == ENTRY_FOLDER) {
+                        folders.add(value.substring(1));
+                    } else if (value.charAt(0) == ENTRY_RESOURCE) {
+                        resources.add(value.substring(1));
+                    }
+                }
+                put(rfsName, resources, folders, !FLAG_INCOMPLETE.equals(values.get(1)));
+            }
+        } finally {
+            reader.close();
+        }
+        m_changed = false;
+    }
+
+    /**
+     * Removes the record of the exported file with the given RFS name.<p>
+     *
+     * @param rfsName the RFS name of the exported file
+     */
+    public synchronized void remove(String rfsName) {
+
+        String key = findKey(rfsName);
+        if (key == null) {
+            return;
+        }
+        removeReverse(m_reverseResources, key, m_resources.remove(key));
+        removeReverse(m_reverseFolders, key, m_folders.remove(key));
+        m_incomplete.remove(key);
+        m_changed = true;
+    }
+
+    /**
+     * Saves the graph to its file, if it was changed since it was loaded or last saved.<p>
+     *
+     * The graph is first written to a temporary file which then replaces the previous file,
+     * so that a failed write never leaves a truncated graph behind.<p>
+     *
+     * @throws IOException if writing the file fails
+     */
+    public synchronized void save() throws IOException {
+
+        if (!m_changed) {
+            return;
+        }
+        File parent = m_file.getParentFile();
+        if ((parent != null) && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = new File(m_file.getPath() + ".tmp");
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), ENCODING));
+        try {
+            for (Map.Entry<String, Set<String>> entry : m_resources.entrySet()) {
+                String rfsName = entry.getKey();
+                writer.write(rfsName);
+                writer.write(SEPARATOR);
+                writer.write(m_incomplete.contains(rfsName) ? FLAG_INCOMPLETE : FLAG_COMPLETE);
+                for (String resource : entry.getValue()) {
+                    writer.write(SEPARATOR);
+                    writer.write(ENTRY_RESOURCE);
+                    writer.write(resource);
+                }
+                Set<String> folders = m_folders.get(rfsName);
+                if (folders != null) {
+                    for (String folder : folders) {
+                        writer.write(SEPARATOR);
+                        writer.write(ENTRY_FOLDER);
+                        writer.write(folder);
+                    }
+                }
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+        if (m_file.exists() && !m_file.delete()) {
+            throw new IOException(m_file.getAbsolutePath());
+        }
+        if (!temp.renameTo(m_file)) {
+            throw new IOException(temp.getAbsolutePath());
+        }
+        m_changed = false;
+    }
+
+    /**
+     * Sets the record of the exported file with the given RFS name from the reads collected by a recorder.<p>
+     *
+     * @param rfsName the RFS name of the exported file
+     * @param recorder the recorder used while the file was rendered
+     */
+    public synchronized void setDependencies(String rfsName, CmsResourceReadRecorder recorder) {
+
+        remove(rfsName);
+        Set<String> resources = new HashSet<String>();
+        for (String resource : recorder.getResources()) {
+            resources.add(normalize(resource));
+        }
+        Set<String> folders = new HashSet<String>();
+        for (String folder : recorder.getFolders()) {
+            folders.add(normalize(folder));
+        }
+        put(rfsName, resources, folders, recorder.isComplete());
+        m_changed = true;
+    }
+
+    /**
+     * Returns the number of exported files with a record in the graph.<p>
+     *
+     * @return the number of exported files with a record
+     */
+    public synchronized int size() {
+
+        return m_resources.size();
+    }
+
+    /**
+     * Adds an exported file to a reverse index.<p>
+     *
+     * @param index the reverse index
+     * @param path the read path
+     * @param rfsName the RFS name of the exported file
+     */
+    private void addReverse(Map<String, Set<String>> index, String path, String rfsName) {
+
+        Set<String> rfsNames = index.get(path);
+        if (rfsNames == null) {
+            rfsNames = new HashSet<String>();
+            index.put(path, rfsNames);
+        }
+        rfsNames.add(rfsName);
+    }
+
+    /**
+     * Returns the key under which the record for the given RFS name is stored.<p>
+     *
+     * Exported folders may be referenced with or without a trailing slash.<p>
+     *
+     * @param rfsName the RFS name
+     *
+     * @return the key of the record, or <code>null</code> if there is no record
+     */
+    private String findKey(String rfsName) {
+
+        if (m_resources.containsKey(rfsName)) {
+            return rfsName;
+        }
+        String alternative = CmsFileUtil.removeTrailingSeparator(rfsName);
+        if (alternative.equals(rfsName)) {
+            alternative = rfsName + "/";
+        }
+        return m_resources.containsKey(alternative) ? alternative : null;
+    }
+
+    /**
+     * Normalizes a root path for the lookup in the graph.<p>
+     *
+     * @param rootPath the root path
+     *
+     * @return the root path without trailing slash
+     */
+    private String normalize(String rootPath) {
+
+        return CmsFileUtil.removeTrailingSeparator(rootPath);
+    }
+
+    /**
+     * Adds a record to the graph and its reverse indexes.<p>
+     *
+     * @param rfsName the RFS name of the exported file
+     * @param resources the read resources
+     * @param folders the read folders
+     * @param complete <code>true</code> if all reads were tracked
+     */
+    private void put(String rfsName, Set<String> resources, Set<String> folders, boolean complete) {
+
+        m_resources.put(rfsName, resources);
+        m_folders.put(rfsName, folders);
+        if (!complete) {
+            m_incomplete.add(rfsName);
+        }
+        for (String resource : resources) {
+            addReverse(m_reverseResources, resource, rfsName);
+        }
+        for (String folder : folders) {
+            addReverse(m_reverseFolders, folder, rfsName);
+        }
+    }
+
+    /**
+     * Removes an exported file from a reverse index.<p>
+     *
+     * @param index the reverse index
+     * @param rfsName the RFS name of the exported file
+     * @param paths the read paths of the exported file, may be <code>null</code>
+     */
+    private void removeReverse(Map<String, Set<String>> index, String rfsName, Set<String> paths) {
+
+        if (paths == null) {
+            return;
+        }
+        for (String path : paths) {
+            Set<String> rfsNames = index.get(path);
+            if (rfsNames != null) {
+                rfsNames.remove(rfsName);
+                if (rfsNames.isEmpty()) {
+                    index.remove(path);
+                }
+            }
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.opencms.file.CmsObject;
 import org.opencms.file.CmsProperty;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceReadRecorder;
 import org.opencms.file.CmsVfsResourceNotFoundException;
 import org.opencms.file.types.CmsResourceTypeJsp;
 import org.opencms.i18n.CmsAcceptLanguageHeaderParser;
@@ -46,6 +47,7 @@ import org.opencms.main.CmsException;
 import org.opencms.main.CmsIllegalArgumentException;
 import org.opencms.main.CmsLog;
 import org.opencms.main.CmsSystemInfo;
+import org.opencms.main.I_CmsAsyncEventListener;
 import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
 import org.opencms.monitor.CmsMemoryMonitor;
@@ -65,6 +67,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -86,7 +91,7 @@ import org.apache.commons.logging.Log;
  *
  * @since 6.0.0
  */
-public class CmsStaticExportManager implements I_CmsEventListener {
+public class CmsStaticExportManager implements I_CmsAsyncEventListener {
 
     /** Name for the default file. */
     public static final String DEFAULT_FILE = "index.html";
@@ -166,6 +171,12 @@ public class CmsStaticExportManager implements I_CmsEventListener {
     /** OpenCms default locale header. */
     private String m_defaultAcceptLanguageHeader;
 
+    /** The dependency graph of the exported files, <code>null</code> if dependency tracking is disabled. */
+    private CmsStaticExportDependencies m_dependencies;
+
+    /** Indicates if the resources read while exporting are tracked. */
+    private boolean m_dependencyTracking;
+
     /** Matcher for  selecting those resources which should be part of the static export. */
     private CmsExportFolderMatcher m_exportFolderMatcher;
 
@@ -190,6 +201,9 @@ public class CmsStaticExportManager implements I_CmsEventListener {
     /** List of export suffixes where the "export" property default is always <code>true</code>. */
     private List<String> m_exportSuffixes;
 
+    /** The number of threads used to export template resources. */
+    private int m_exportThreads = 1;
+
     /** Temporary variable for reading the xml config file. */
     private CmsStaticExportExportRule m_exportTmpRule;
 
@@ -618,6 +632,14 @@ public class CmsStaticExportManager implements I_CmsEventListener {
             exportCms.getRequestContext().setUri(vfsName);
         }
 
+        // record the resources read while exporting, to find the exports affected by later publish operations
+        CmsResourceReadRecorder recorder = null;
+        if ((m_dependencies != null) && loader.isStaticExportProcessable()) {
+            recorder = new CmsResourceReadRecorder();
+            recorder.addResource(file.getRootPath(), true);
+            recorder.attach(exportCms.getRequestContext());
+        }
+
         // do the export
         int status = -1;
         List<Locale> locales = OpenCms.getLocaleManager().getDefaultLocales(exportCms, vfsName);
@@ -642,6 +664,9 @@ public class CmsStaticExportManager implements I_CmsEventListener {
                     CmsContextInfo ctxInfo = new CmsContextInfo(exportCms.getRequestContext());
                     ctxInfo.setLocale(locale);
                     locCms = OpenCms.initCmsObject(exportCms, ctxInfo);
+                    if (recorder != null) {
+                        recorder.attach(locCms.getRequestContext());
+                    }
                 }
                 // read the content in the matching locale
                 byte[] content = loader.export(locCms, file, req, wrapRes);
@@ -667,6 +692,9 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         }
 
         if (exported) {
+            if (recorder != null) {
+                m_dependencies.setDependencies(data.getRfsName(), recorder);
+            }
             // get the wrapper status that was set
             status = (wrapRes != null) ? wrapRes.getStatus() : -1;
             if (status < 0) {
@@ -685,6 +713,9 @@ public class CmsStaticExportManager implements I_CmsEventListener {
     /**
      * Starts a complete static export of all resources.<p>
      *
+     * If more than one export thread is configured, the resources are exported by a pool of workers,
+     * each with its own OpenCms context. The exported files are the same as with a single thread.<p>
+     *
      * @param purgeFirst flag to delete all resources in the export folder of the rfs
      * @param report an I_CmsReport instance to print output message, or null to write messages to the log file
      *
@@ -717,6 +748,15 @@ public class CmsStaticExportManager implements I_CmsEventListener {
             CmsObject cms = OpenCms.initCmsObject(OpenCms.getDefaultUsers().getUserExport());
             cms.deleteAllStaticExportPublishedResources(EXPORT_LINK_WITHOUT_PARAMETER);
             cms.deleteAllStaticExportPublishedResources(EXPORT_LINK_WITH_PARAMETER);
+            if (m_dependencies != null) {
+                m_dependencies.clear();
+            }
+        }
+
+        if (m_exportThreads > 1) {
+            report.println(
+                Messages.get().container(Messages.RPT_STATICEXPORT_THREADS_1, new Integer(m_exportThreads)),
+                I_CmsReport.FORMAT_NOTE);
         }
 
         // do the export
@@ -846,6 +886,26 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         return m_rfsPrefix;
     }
 
+    /**
+     * Returns the dependency graph of the exported files.<p>
+     *
+     * @return the dependency graph, or <code>null</code> if dependency tracking is disabled
+     */
+    public CmsStaticExportDependencies getDependencies() {
+
+        return m_dependencies;
+    }
+
+    /**
+     * Gets the dependency tracking value as a string representation.<p>
+     *
+     * @return <code>"true"</code> or <code>"false"</code>
+     */
+    public String getDependencyTracking() {
+
+        return String.valueOf(m_dependencyTracking);
+    }
+
     /**
      * Returns the number of stored backups.<p>
      *
@@ -1073,6 +1133,26 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         return m_exportSuffixes;
     }
 
+    /**
+     * Returns the number of threads used to export template resources.<p>
+     *
+     * @return the number of threads used to export template resources
+     */
+    public int getExportThreadCount() {
+
+        return m_exportThreads;
+    }
+
+    /**
+     * Gets the number of threads used to export template resources as a string representation.<p>
+     *
+     * @return the number of threads used to export template resources
+     */
+    public String getExportThreads() {
+
+        return String.valueOf(m_exportThreads);
+    }
+
     /**
      * Returns the export URL used for internal requests for exporting resources that require a
      * request / response (like JSP).<p>
@@ -1176,6 +1256,17 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         return String.valueOf(m_quickPlainExport);
     }
 
+    /**
+     * The default priority makes the export wait for the caches to be cleared after a publish,
+     * so no stale content is exported.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#getPriority()
+     */
+    public int getPriority() {
+
+        return PRIORITY_DEFAULT;
+    }
+
     /**
      * Returns true if the quick plain export is enabled.<p>
      *
@@ -1651,6 +1742,22 @@ public class CmsStaticExportManager implements I_CmsEventListener {
 
         m_exportFolderMatcher = new CmsExportFolderMatcher(m_exportFolders, m_testResource);
 
+        if (m_dependencyTracking) {
+            m_dependencies = new CmsStaticExportDependencies(
+                new File(
+                    OpenCms.getSystemInfo().getAbsoluteRfsPathRelativeToWebInf(CmsStaticExportDependencies.FILE_NAME)));
+            try {
+                m_dependencies.load();
+            } catch (IOException e) {
+                LOG.error(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_READ_DEPENDENCIES_FAILED_1,
+                        m_dependencies.getFile().getAbsolutePath()),
+                    e);
+                m_dependencies.clear();
+            }
+        }
+
         // get the default accept-language header value
         m_defaultAcceptLanguageHeader = CmsAcceptLanguageHeaderParser.createLanguageHeader();
 
@@ -1740,6 +1847,26 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         }
     }
 
+    /**
+     * All events are processed asynchronously, so an event clearing the caches is still processed
+     * after a waiting after publish export.<p>
+     *
+     * @see org.opencms.main.I_CmsAsyncEventListener#isAsync(org.opencms.main.CmsEvent)
+     */
+    public boolean isAsync(CmsEvent event) {
+
+        return true;
+    }
+
+    /**
+     * @see org.opencms.main.I_CmsAsyncEventListener#isCoalescing(org.opencms.main.CmsEvent)
+     */
+    public boolean isCoalescing(CmsEvent event) {
+
+        return (event.getType() == I_CmsEventListener.EVENT_CLEAR_CACHES)
+            || (event.getType() == I_CmsEventListener.EVENT_UPDATE_EXPORTS);
+    }
+
     /**
      * Checks if the static export is required for the given VFS resource.<p>
      *
@@ -2054,6 +2181,19 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         m_staticExportBackups = new Integer(backup);
     }
 
+    /**
+     * Sets the dependency tracking value.<p>
+     *
+     * If enabled, the VFS resources read while exporting a template resource are recorded,
+     * and after a publish only the exported files depending on the published resources are regenerated.<p>
+     *
+     * @param value must be <code>true</code> or <code>false</code>
+     */
+    public void setDependencyTracking(String value) {
+
+        m_dependencyTracking = Boolean.valueOf(value).booleanValue();
+    }
+
     /**
      * Sets the export enabled value.<p>
      *
@@ -2151,6 +2291,20 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         }
     }
 
+    /**
+     * Sets the number of threads used to export template resources.<p>
+     *
+     * @param threads the number of threads, values smaller than 1 are ignored
+     */
+    public void setExportThreads(String threads) {
+
+        try {
+            m_exportThreads = Math.max(1, Integer.parseInt(threads.trim()));
+        } catch (NumberFormatException e) {
+            LOG.error(Messages.get().getBundle().key(Messages.LOG_INVALID_EXPORT_THREADS_1, threads), e);
+        }
+    }
+
     /**
      * Sets the static export handler class.<p>
      *
@@ -2253,6 +2407,8 @@ public class CmsStaticExportManager implements I_CmsEventListener {
             }
         }
 
+        saveDependencies();
+
         if (CmsLog.INIT.isInfoEnabled()) {
             CmsLog.INIT.info(Messages.get().getBundle().key(Messages.INIT_SHUTDOWN_1, this.getClass().getName()));
         }
@@ -2697,6 +2853,25 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         return result;
     }
 
+    /**
+     * Saves the dependency graph of the exported files, if dependency tracking is enabled.<p>
+     */
+    protected void saveDependencies() {
+
+        if (m_dependencies == null) {
+            return;
+        }
+        try {
+            m_dependencies.save();
+        } catch (IOException e) {
+            LOG.error(
+                Messages.get().getBundle().key(
+                    Messages.LOG_WRITE_DEPENDENCIES_FAILED_1,
+                    m_dependencies.getFile().getAbsolutePath()),
+                e);
+        }
+    }
+
     /**
      * Scrubs all the "export" folders.<p>
      *
@@ -2787,9 +2962,30 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         }
     }
 
+    /**
+     * Writes the content of an exported resource to the given file.<p>
+     *
+     * @param file the file to write
+     * @param content the content to write
+     *
+     * @throws IOException if writing the file fails
+     */
+    protected void writeExportFile(File file, byte[] content) throws IOException {
+
+        FileOutputStream exportStream = new FileOutputStream(file);
+        try {
+            exportStream.write(content);
+        } finally {
+            exportStream.close();
+        }
+    }
+
     /**
       * Writes a resource to the given export path with the given rfs name and the given content.<p>
       *
+      * The content is written to a temporary file in the target folder first, which then replaces
+      * the exported file, so that concurrent readers and exports never see a partially written file.<p>
+      *
       * @param req the current request
       * @param exportPath the path to export the resource
       * @param rfsName the rfs name
@@ -2812,11 +3008,41 @@ public class CmsStaticExportManager implements I_CmsEventListener {
         createExportFolder(exportPath, rfsName);
         // generate export file instance and output stream
         File exportFile = new File(exportFileName);
+        File tempFile = null;
         // write new exported file content
         try {
-            FileOutputStream exportStream = new FileOutputStream(exportFile);
-            exportStream.write(content);
-            exportStream.close();
+            tempFile = File.createTempFile(exportFile.getName() + ".", ".tmp", exportFile.getParentFile());
+            writeExportFile(tempFile, content);
+
+            // update the file with the modification date from the server
+            if (req != null) {
+                Long dateLastModified = (Long)req.getAttribute(CmsRequestUtil.HEADER_OPENCMS_EXPORT);
+                if ((dateLastModified != null) && (dateLastModified.longValue() != -1)) {
+                    tempFile.setLastModified((dateLastModified.longValue() / 1000) * 1000);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(
+                            Messages.get().getBundle().key(
+                                Messages.LOG_SET_LAST_MODIFIED_2,
+                                exportFile.getName(),
+                                new Long((dateLastModified.longValue() / 1000) * 1000)));
+                    }
+                }
+            } else {
+                // otherwise take the last modification date form the OpenCms resource
+                tempFile.setLastModified((resource.getDateLastModified() / 1000) * 1000);
+            }
+
+            // replace the exported file
+            try {
+                Files.move(
+                    tempFile.toPath(),
+                    exportFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), exportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
 
             // log export success
             if (LOG.isInfoEnabled()) {
@@ -2831,23 +3057,10 @@ public class CmsStaticExportManager implements I_CmsEventListener {
             throw new CmsStaticExportException(
                 Messages.get().container(Messages.ERR_OUTPUT_STREAM_1, exportFileName),
                 t);
-        }
-        // update the file with the modification date from the server
-        if (req != null) {
-            Long dateLastModified = (Long)req.getAttribute(CmsRequestUtil.HEADER_OPENCMS_EXPORT);
-            if ((dateLastModified != null) && (dateLastModified.longValue() != -1)) {
-                exportFile.setLastModified((dateLastModified.longValue() / 1000) * 1000);
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug(
-                        Messages.get().getBundle().key(
-                            Messages.LOG_SET_LAST_MODIFIED_2,
-                            exportFile.getName(),
-                            new Long((dateLastModified.longValue() / 1000) * 1000)));
-                }
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
             }
-        } else {
-            // otherwise take the last modification date form the OpenCms resource
-            exportFile.setLastModified((resource.getDateLastModified() / 1000) * 1000);
         }
     }
 
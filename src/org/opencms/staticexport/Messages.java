@@ -46,6 +46,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String ERR_EXPORT_FILE_FAILED_1 = "ERR_EXPORT_FILE_FAILED_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String ERR_EXPORT_INTERRUPTED_0 = "ERR_EXPORT_INTERRUPTED_0";
+
     /** Message constant for key in the resource bundle. */
     public static final String ERR_EXPORT_NOT_SUCCESSFUL_0 = "ERR_EXPORT_NOT_SUCCESSFUL_0";
 
@@ -208,6 +211,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_INIT_FAILED_0 = "LOG_INIT_FAILED_0";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_INVALID_EXPORT_THREADS_1 = "LOG_INVALID_EXPORT_THREADS_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_INVALID_PARAM_1 = "LOG_INVALID_PARAM_1";
 
@@ -232,6 +238,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_PURGED_DETAILPAGES_0 = "LOG_PURGED_DETAILPAGES_0";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_READ_DEPENDENCIES_FAILED_1 = "LOG_READ_DEPENDENCIES_FAILED_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_READING_CHANGED_RESOURCES_FAILED_1 = "LOG_READING_CHANGED_RESOURCES_FAILED_1";
 
@@ -304,6 +313,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String LOG_WARN_ELEMENT_GROUP_REFERENCES_SELF_1 = "LOG_WARN_ELEMENT_GROUP_REFERENCES_SELF_1";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String LOG_WRITE_DEPENDENCIES_FAILED_1 = "LOG_WRITE_DEPENDENCIES_FAILED_1";
+
     /** Message constant for key in the resource bundle. */
     public static final String LOG_WRITE_FAILED_1 = "LOG_WRITE_FAILED_1";
 
@@ -322,6 +334,12 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String RPT_STATICEXPORT_BEGIN_0 = "RPT_STATICEXPORT_BEGIN_0";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String RPT_STATICEXPORT_DEPENDENCIES_2 = "RPT_STATICEXPORT_DEPENDENCIES_2";
+
+    /** Message constant for key in the resource bundle. */
+    public static final String RPT_STATICEXPORT_DEPENDENCIES_GLOBAL_2 = "RPT_STATICEXPORT_DEPENDENCIES_GLOBAL_2";
+
     /** Message constant for key in the resource bundle. */
     public static final String RPT_STATICEXPORT_END_0 = "RPT_STATICEXPORT_END_0";
 
@@ -337,6 +355,9 @@ public final class Messages extends A_CmsMessageBundle {
     /** Message constant for key in the resource bundle. */
     public static final String RPT_STATICEXPORT_TEMPLATE_RESOURCES_END_0 = "RPT_STATICEXPORT_TEMPLATE_RESOURCES_END_0";
 
+    /** Message constant for key in the resource bundle. */
+    public static final String RPT_STATICEXPORT_THREADS_1 = "RPT_STATICEXPORT_THREADS_1";
+
     /** Name of the used resource bundle. */
     private static final String BUNDLE_NAME = "org.opencms.staticexport.messages";
 
@@ -29,7 +29,6 @@ package org.opencms.xml;
 
 import org.opencms.file.CmsFile;
 import org.opencms.file.CmsObject;
-import org.opencms.file.CmsResource;
 import org.opencms.i18n.CmsLocaleManager;
 import org.opencms.main.CmsIllegalArgumentException;
 import org.opencms.main.CmsRuntimeException;
@@ -49,6 +48,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dom4j.Attribute;
 import org.dom4j.Document;
@@ -87,6 +87,9 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
     /** Reference for named elements in the document. */
     private Map<String, I_CmsXmlContentValue> m_bookmarks;
 
+    /** The value indexes built from the bookmarks, by locale. */
+    private Map<Locale, CmsXmlValueIndex> m_valueIndexes;
+
     /**
      * Default constructor for a XML document
      * that initializes some internal values.<p>
@@ -94,6 +97,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
     protected A_CmsXmlDocument() {
 
         m_bookmarks = new HashMap<String, I_CmsXmlContentValue>();
+        m_valueIndexes = new ConcurrentHashMap<Locale, CmsXmlValueIndex>();
         m_locales = new HashSet<Locale>();
     }
 
@@ -443,7 +447,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
      */
     public String getStringValue(CmsObject cms, String path, Locale locale) {
 
-        I_CmsXmlContentValue value = getValueInternal(CmsXmlUtils.createXpath(path, 1), locale);
+        I_CmsXmlContentValue value = getValue(path, locale);
         if (value != null) {
             return value.getStringValue(cms);
         }
@@ -469,22 +473,14 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
      */
     public List<I_CmsXmlContentValue> getSubValues(String path, Locale locale) {
 
-        List<I_CmsXmlContentValue> result = new ArrayList<I_CmsXmlContentValue>();
-        String bookmark = getBookmarkName(CmsXmlUtils.createXpath(path, 1), locale);
-        I_CmsXmlContentValue value = getBookmark(bookmark);
+        CmsXmlValueIndex index = getValueIndex(locale);
+        String xpath = index.getXpath(path);
+        I_CmsXmlContentValue value = index.getValue(xpath);
         if ((value != null) && !value.isSimpleType()) {
-            // calculate level of current bookmark
-            int depth = CmsResource.getPathLevel(bookmark) + 1;
-            Iterator<String> i = getBookmarks().iterator();
-            while (i.hasNext()) {
-                String bm = i.next();
-                if (bm.startsWith(bookmark) && (CmsResource.getPathLevel(bm) == depth)) {
-                    // add only values directly below the value
-                    result.add(getBookmark(bm));
-                }
-            }
+            // add only values directly below the value
+            return new ArrayList<I_CmsXmlContentValue>(index.getSubValues(xpath));
         }
-        return result;
+        return new ArrayList<I_CmsXmlContentValue>();
     }
 
     /**
@@ -492,7 +488,8 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
      */
     public I_CmsXmlContentValue getValue(String path, Locale locale) {
 
-        return getValueInternal(CmsXmlUtils.createXpath(path, 1), locale);
+        CmsXmlValueIndex index = getValueIndex(locale);
+        return index.getValue(index.getXpath(path));
     }
 
     /**
@@ -508,19 +505,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
      */
     public List<I_CmsXmlContentValue> getValues(Locale locale) {
 
-        List<I_CmsXmlContentValue> result = new ArrayList<I_CmsXmlContentValue>();
-
-        // bookmarks are stored with the locale as first prefix
-        String prefix = '/' + locale.toString() + '/';
-
-        // it's better for performance to iterate through the list of bookmarks directly
-        Iterator<Map.Entry<String, I_CmsXmlContentValue>> i = m_bookmarks.entrySet().iterator();
-        while (i.hasNext()) {
-            Map.Entry<String, I_CmsXmlContentValue> entry = i.next();
-            if (entry.getKey().startsWith(prefix)) {
-                result.add(entry.getValue());
-            }
-        }
+        List<I_CmsXmlContentValue> result = new ArrayList<I_CmsXmlContentValue>(getValueIndex(locale).getValues());
 
         // sort the result
         Collections.sort(result);
@@ -533,34 +518,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
      */
     public List<I_CmsXmlContentValue> getValues(String path, Locale locale) {
 
-        List<I_CmsXmlContentValue> result = new ArrayList<I_CmsXmlContentValue>();
-        String bookmark = getBookmarkName(CmsXmlUtils.createXpath(CmsXmlUtils.removeXpathIndex(path), 1), locale);
-        I_CmsXmlContentValue value = getBookmark(bookmark);
-        if (value != null) {
-            if (value.getContentDefinition().getChoiceMaxOccurs() > 1) {
-                // selected value belongs to a xsd:choice
-                String parent = CmsXmlUtils.removeLastXpathElement(bookmark);
-                int depth = CmsResource.getPathLevel(bookmark);
-                Iterator<String> i = getBookmarks().iterator();
-                while (i.hasNext()) {
-                    String bm = i.next();
-                    if (bm.startsWith(parent) && (CmsResource.getPathLevel(bm) == depth)) {
-                        result.add(getBookmark(bm));
-                    }
-                }
-            } else {
-                // selected value belongs to a xsd:sequence
-                int index = 1;
-                String bm = CmsXmlUtils.removeXpathIndex(bookmark);
-                while (value != null) {
-                    result.add(value);
-                    index++;
-                    String subpath = CmsXmlUtils.createXpathElement(bm, index);
-                    value = getBookmark(subpath);
-                }
-            }
-        }
-        return result;
+        return new ArrayList<I_CmsXmlContentValue>(getValueIndex(locale).getValues(path));
     }
 
     /**
@@ -580,7 +538,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
      */
     public boolean hasValue(String path, Locale locale) {
 
-        return null != getBookmark(CmsXmlUtils.createXpath(path, 1), locale);
+        return null != getValue(path, locale);
     }
 
     /**
@@ -588,7 +546,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
      */
     public boolean hasValue(String path, Locale locale, int index) {
 
-        return null != getBookmark(CmsXmlUtils.createXpath(path, index + 1), locale);
+        return null != getValueInternal(CmsXmlUtils.createXpath(path, index + 1), locale);
     }
 
     /**
@@ -721,6 +679,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
 
         // add a bookmark to the provided value
         m_bookmarks.put(getBookmarkName(path, locale), value);
+        clearValueIndexes();
 
         Set<Locale> sl;
         // update mapping of element name to locale
@@ -761,6 +720,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
     protected void clearBookmarks() {
 
         m_bookmarks.clear();
+        clearValueIndexes();
     }
 
     /**
@@ -813,6 +773,25 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
         return m_bookmarks.keySet();
     }
 
+    /**
+     * Returns the value index for the given locale, which is built from the bookmarks on first access.<p>
+     *
+     * The index is discarded whenever the bookmarks change.<p>
+     *
+     * @param locale the locale to get the value index for
+     *
+     * @return the value index for the given locale
+     */
+    protected CmsXmlValueIndex getValueIndex(Locale locale) {
+
+        CmsXmlValueIndex index = m_valueIndexes.get(locale);
+        if (index == null) {
+            index = new CmsXmlValueIndex(m_bookmarks, locale);
+            m_valueIndexes.put(locale, index);
+        }
+        return index;
+    }
+
     /**
      * Internal method to look up a value, requires that the name already has been
      * "normalized" for the bookmark lookup.
@@ -827,7 +806,7 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
      */
     protected I_CmsXmlContentValue getValueInternal(String path, Locale locale) {
 
-        return getBookmark(path, locale);
+        return getValueIndex(locale).getValue(path);
     }
 
     /**
@@ -884,10 +863,21 @@ public abstract class A_CmsXmlDocument implements I_CmsXmlDocument {
         if (sn != null) {
             sn.remove(path);
         }
+        clearValueIndexes();
         // remove the bookmark and return the removed element
         return m_bookmarks.remove(getBookmarkName(path, locale));
     }
 
+    /**
+     * Discards the value indexes after the bookmarks have been changed.<p>
+     */
+    private void clearValueIndexes() {
+
+        if (!m_valueIndexes.isEmpty()) {
+            m_valueIndexes.clear();
+        }
+    }
+
     /**
      * Removes all nodes that exceed newly defined maxOccurs rules from the list of elements.<p>
      *
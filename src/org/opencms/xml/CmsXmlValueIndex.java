@@ -0,0 +1,217 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.xml;
+
+import org.opencms.xml.types.I_CmsXmlContentValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the values of an XML document in one locale.<p>
+ *
+ * The index is built once from the bookmarks of the document and contains the values by their xpath,
+ * the direct sub values of each value and the values of each element sequence.
+ * The xpaths resolved for the paths used by callers are remembered, so repeated lookups of the same
+ * path do not have to parse the path again.<p>
+ *
+ * The index must be discarded whenever the bookmarks of the document change.<p>
+ *
+ * @since 10.5.0
+ */
+public final class CmsXmlValueIndex {
+
+    /** The xpaths of the element sequences by requested path. */
+    private Map<String, String> m_sequenceXpaths;
+
+    /** The values of the element sequences by xpath without the index of the last element. */
+    private Map<String, List<I_CmsXmlContentValue>> m_sequences;
+
+    /** The direct sub values by xpath of their parent, the top level values are stored with the empty path. */
+    private Map<String, List<I_CmsXmlContentValue>> m_subValues;
+
+    /** The values by xpath. */
+    private Map<String, I_CmsXmlContentValue> m_values;
+
+    /** The xpaths by requested path. */
+    private Map<String, String> m_xpaths;
+
+    /**
+     * Creates the index for the given locale from the given bookmarks.<p>
+     *
+     * @param bookmarks the bookmarks of the XML document
+     * @param locale the locale to create the index for
+     */
+    CmsXmlValueIndex(Map<String, I_CmsXmlContentValue> bookmarks, Locale locale) {
+
+        m_values = new HashMap<String, I_CmsXmlContentValue>();
+        m_subValues = new HashMap<String, List<I_CmsXmlContentValue>>();
+        m_sequences = new HashMap<String, List<I_CmsXmlContentValue>>();
+        m_xpaths = new ConcurrentHashMap<String, String>();
+        m_sequenceXpaths = new ConcurrentHashMap<String, String>();
+
+        // bookmarks are stored with the locale as first prefix
+        String prefix = A_CmsXmlDocument.getBookmarkName("", locale);
+        Map<String, TreeMap<Integer, I_CmsXmlContentValue>> sequences;
+        sequences = new HashMap<String, TreeMap<Integer, I_CmsXmlContentValue>>();
+        for (Map.Entry<String, I_CmsXmlContentValue> entry : bookmarks.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                continue;
+            }
+            String xpath = entry.getKey().substring(prefix.length());
+            I_CmsXmlContentValue value = entry.getValue();
+            m_values.put(xpath, value);
+
+            String parent = CmsXmlUtils.isDeepXpath(xpath) ? CmsXmlUtils.removeLastXpathElement(xpath) : "";
+            List<I_CmsXmlContentValue> subValues = m_subValues.get(parent);
+            if (subValues == null) {
+                subValues = new ArrayList<I_CmsXmlContentValue>();
+                m_subValues.put(parent, subValues);
+            }
+            subValues.add(value);
+
+            String sequenceXpath = CmsXmlUtils.removeXpathIndex(xpath);
+            TreeMap<Integer, I_CmsXmlContentValue> sequence = sequences.get(sequenceXpath);
+            if (sequence == null) {
+                sequence = new TreeMap<Integer, I_CmsXmlContentValue>();
+                sequences.put(sequenceXpath, sequence);
+            }
+            sequence.put(Integer.valueOf(CmsXmlUtils.getXpathIndexInt(xpath)), value);
+        }
+
+        for (Map.Entry<String, TreeMap<Integer, I_CmsXmlContentValue>> entry : sequences.entrySet()) {
+            // a sequence starts with index 1 and ends before the first missing index
+            TreeMap<Integer, I_CmsXmlContentValue> sequence = entry.getValue();
+            List<I_CmsXmlContentValue> values = new ArrayList<I_CmsXmlContentValue>(sequence.size());
+            int index = 1;
+            I_CmsXmlContentValue value = sequence.get(Integer.valueOf(index));
+            while (value != null) {
+                values.add(value);
+                index++;
+                value = sequence.get(Integer.valueOf(index));
+            }
+            m_sequences.put(entry.getKey(), values);
+        }
+    }
+
+    /**
+     * Returns the direct sub values of the value with the given xpath.<p>
+     *
+     * The returned list must not be modified.<p>
+     *
+     * @param xpath the xpath of the parent value as returned by {@link #getXpath(String)}
+     *
+     * @return the direct sub values of the value with the given xpath
+     */
+    public List<I_CmsXmlContentValue> getSubValues(String xpath) {
+
+        List<I_CmsXmlContentValue> result = m_subValues.get(xpath);
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value with the given xpath.<p>
+     *
+     * @param xpath the xpath of the value as returned by {@link #getXpath(String)}
+     *
+     * @return the value with the given xpath, or <code>null</code> if no such value exists
+     */
+    public I_CmsXmlContentValue getValue(String xpath) {
+
+        return m_values.get(xpath);
+    }
+
+    /**
+     * Returns all values of this index.<p>
+     *
+     * @return all values of this index
+     */
+    public Collection<I_CmsXmlContentValue> getValues() {
+
+        return Collections.unmodifiableCollection(m_values.values());
+    }
+
+    /**
+     * Returns the values of the element sequence or choice the given path belongs to.<p>
+     *
+     * The returned list must not be modified.<p>
+     *
+     * @param path the path of a value, with or without xpath indexes
+     *
+     * @return the values of the element sequence or choice the given path belongs to
+     *
+     * @see I_CmsXmlDocument#getValues(String, Locale)
+     */
+    public List<I_CmsXmlContentValue> getValues(String path) {
+
+        String xpath = m_sequenceXpaths.get(path);
+        if (xpath == null) {
+            xpath = CmsXmlUtils.createXpath(CmsXmlUtils.removeXpathIndex(path), 1);
+            m_sequenceXpaths.put(path, xpath);
+        }
+        I_CmsXmlContentValue value = m_values.get(xpath);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (value.getContentDefinition().getChoiceMaxOccurs() > 1) {
+            // selected value belongs to a xsd:choice
+            return getSubValues(CmsXmlUtils.isDeepXpath(xpath) ? CmsXmlUtils.removeLastXpathElement(xpath) : "");
+        }
+        // selected value belongs to a xsd:sequence
+        return m_sequences.get(CmsXmlUtils.removeXpathIndex(xpath));
+    }
+
+    /**
+     * Returns the xpath for the given path, with the index 1 added to all elements without index.<p>
+     *
+     * @param path the path to get the xpath for
+     *
+     * @return the xpath for the given path
+     *
+     * @see CmsXmlUtils#createXpath(String, int)
+     */
+    public String getXpath(String path) {
+
+        String xpath = m_xpaths.get(path);
+        if (xpath == null) {
+            xpath = CmsXmlUtils.createXpath(path, 1);
+            m_xpaths.put(path, xpath);
+        }
+        return xpath;
+    }
+}
@@ -67,6 +67,9 @@ public final class CmsADECache extends CmsVfsCache {
     /** Read-write lock to ensure that the cache maps aren't accessed while we iterate through them to remove invalid entries. */
     private ReadWriteLock m_lock = new ReentrantReadWriteLock(true);
 
+    /** Cache for online XML contents. */
+    private Map<String, CmsXmlContent> m_xmlContentsOnline;
+
     /**
      * Initializes the cache. Only intended to be called during startup.<p>
      *
@@ -119,6 +122,19 @@ public final class CmsADECache extends CmsVfsCache {
         }
     }
 
+    /**
+     * Flushes the online XML contents cache.<p>
+     */
+    public void flushXmlContents() {
+
+        try {
+            m_lock.writeLock().lock();
+            m_xmlContentsOnline.clear();
+        } finally {
+            m_lock.writeLock().unlock();
+        }
+    }
+
     /**
      * Returns the cached container page under the given key and for the given project.<p>
      *
@@ -239,6 +255,56 @@ public final class CmsADECache extends CmsVfsCache {
         return structureId.toString() + "_" + keepEncoding;
     }
 
+    /**
+     * Returns the online XML content cached under the given key.<p>
+     *
+     * The returned content is shared by all requests and must not be handed out or modified,
+     * callers have to work on a copy.<p>
+     *
+     * @param key the cache key
+     *
+     * @return the cached XML content or <code>null</code> if not found
+     *
+     * @see #getXmlContentCacheKey(CmsUUID, long)
+     */
+    public CmsXmlContent getCacheXmlContent(String key) {
+
+        try {
+            m_lock.readLock().lock();
+            CmsXmlContent retValue = m_xmlContentsOnline.get(key);
+            if (LOG.isDebugEnabled()) {
+                if (retValue == null) {
+                    LOG.debug(
+                        Messages.get().getBundle().key(Messages.LOG_DEBUG_CACHE_MISSED_ONLINE_1, new Object[] {key}));
+                } else {
+                    LOG.debug(
+                        Messages.get().getBundle().key(
+                            Messages.LOG_DEBUG_CACHE_MATCHED_ONLINE_2,
+                            new Object[] {key, retValue}));
+                }
+            }
+            return retValue;
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the cache key for an online XML content.<p>
+     *
+     * Since the key contains the date of last modification, a changed content is never
+     * matched by an older cache entry.<p>
+     *
+     * @param structureId the XML content's structure id
+     * @param dateLastModified the XML content's date of last modification
+     *
+     * @return the cache key for the given XML content
+     */
+    public String getXmlContentCacheKey(CmsUUID structureId, long dateLastModified) {
+
+        return structureId.toString() + "_" + dateLastModified;
+    }
+
     /**
      * Caches the given container page under the given key and for the given project.<p>
      *
@@ -307,6 +373,32 @@ public final class CmsADECache extends CmsVfsCache {
         }
     }
 
+    /**
+     * Caches the given online XML content under the given key.<p>
+     *
+     * The content must not be used by a request after it has been cached.<p>
+     *
+     * @param key the cache key
+     * @param xmlContent the object to cache
+     *
+     * @see #getXmlContentCacheKey(CmsUUID, long)
+     */
+    public void setCacheXmlContent(String key, CmsXmlContent xmlContent) {
+
+        try {
+            m_lock.writeLock().lock();
+            m_xmlContentsOnline.put(key, xmlContent);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(
+                    Messages.get().getBundle().key(
+                        Messages.LOG_DEBUG_CACHE_SET_ONLINE_2,
+                        new Object[] {key, xmlContent}));
+            }
+        } finally {
+            m_lock.writeLock().unlock();
+        }
+    }
+
     /**
      * Removes the container page identified by its structure id from the cache.<p>
      *
@@ -361,6 +453,9 @@ public final class CmsADECache extends CmsVfsCache {
             m_lock.writeLock().lock();
             flushContainerPages(online);
             flushGroupContainers(online);
+            if (online) {
+                flushXmlContents();
+            }
         } finally {
             m_lock.writeLock().unlock();
         }
@@ -409,6 +504,10 @@ public final class CmsADECache extends CmsVfsCache {
 
         m_groupContainersOnline = CmsMemoryMonitor.createLRUCacheMap(cacheSettings.getGroupContainerOnlineSize());
         memMonitor.register(CmsADECache.class.getName() + ".groupContainersOnline", m_groupContainersOnline);
+
+        // XML content cache
+        m_xmlContentsOnline = CmsMemoryMonitor.createLRUCacheMap(cacheSettings.getXmlContentOnlineSize());
+        memMonitor.register(CmsADECache.class.getName() + ".xmlContentsOnline", m_xmlContentsOnline);
     }
 
     /**
@@ -51,6 +51,7 @@ import org.opencms.xml.CmsXmlContentDefinition;
 import org.opencms.xml.CmsXmlException;
 import org.opencms.xml.CmsXmlGenericWrapper;
 import org.opencms.xml.CmsXmlUtils;
+import org.opencms.xml.CmsXmlValueIndex;
 import org.opencms.xml.types.CmsXmlNestedContentDefinition;
 import org.opencms.xml.types.I_CmsXmlContentValue;
 import org.opencms.xml.types.I_CmsXmlSchemaType;
@@ -583,16 +584,9 @@ public class CmsXmlContent extends A_CmsXmlDocument {
     @Override
     public List<I_CmsXmlContentValue> getSubValues(String path, Locale locale) {
 
-        List<I_CmsXmlContentValue> result = new ArrayList<I_CmsXmlContentValue>();
-        String bookmark = getBookmarkName(CmsXmlUtils.createXpath(path, 1), locale);
-        int depth = CmsResource.getPathLevel(bookmark) + 1;
-        Iterator<String> i = getBookmarks().iterator();
-        while (i.hasNext()) {
-            String bm = i.next();
-            if (bm.startsWith(bookmark) && (CmsResource.getPathLevel(bm) == depth)) {
-                result.add(getBookmark(bm));
-            }
-        }
+        CmsXmlValueIndex index = getValueIndex(locale);
+        List<I_CmsXmlContentValue> result = new ArrayList<I_CmsXmlContentValue>(
+            index.getSubValues(index.getXpath(path)));
         if (result.size() > 0) {
             Collections.sort(result, COMPARE_INDEX);
         }
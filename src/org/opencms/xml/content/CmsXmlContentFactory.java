@@ -31,6 +31,8 @@ import org.opencms.file.CmsFile;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceReadRecorder;
+import org.opencms.file.history.I_CmsHistoryResource;
 import org.opencms.file.types.CmsResourceTypeXmlContent;
 import org.opencms.i18n.CmsEncoder;
 import org.opencms.loader.CmsLoaderException;
@@ -40,6 +42,7 @@ import org.opencms.xml.CmsXmlContentDefinition;
 import org.opencms.xml.CmsXmlEntityResolver;
 import org.opencms.xml.CmsXmlException;
 import org.opencms.xml.CmsXmlUtils;
+import org.opencms.xml.containerpage.CmsADECache;
 
 import java.io.UnsupportedEncodingException;
 import java.util.Locale;
@@ -262,6 +265,9 @@ public final class CmsXmlContentFactory {
      * Factory method to unmarshal (read) a XML content instance from
      * a resource, using the request attributes as cache.<p>
      *
+     * In the online project, the parsed XML content is also cached across requests.
+     * Every request gets its own copy of the cached content.<p>
+     *
      * @param cms the current OpenCms context object
      * @param resource the resource to unmarshal
      * @param req the current request
@@ -288,9 +294,14 @@ public final class CmsXmlContentFactory {
         CmsXmlContent content = (CmsXmlContent)req.getAttribute(rootPath);
 
         if (content == null) {
-            // unmarshal XML structure from the file content
-            CmsFile file = resource instanceof CmsFile ? (CmsFile)resource : cms.readFile(resource);
-            content = unmarshal(cms, file);
+            // try to get a copy of the content parsed by a previous request
+            content = getCache(cms, resource);
+            if (content == null) {
+                // unmarshal XML structure from the file content
+                CmsFile file = resource instanceof CmsFile ? (CmsFile)resource : cms.readFile(resource);
+                content = unmarshal(cms, file);
+                setCache(cms, resource, content);
+            }
             // store the content as request attribute for future read requests
             req.setAttribute(rootPath, content);
         }
@@ -376,4 +387,83 @@ public final class CmsXmlContentFactory {
 
         return unmarshal(null, xmlData, encoding, resolver);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a copy of the given XML content with its own document and file.<p>
+     *
+     * Reading values may change the XML content, e.g. when links are resolved,
+     * so the cached contents are never handed out and every request works on a copy.<p>
+     *
+     * @param content the XML content to copy
+     *
+     * @return the copy of the XML content
+     */
+    private static CmsXmlContent copy(CmsXmlContent content) {
+
+        CmsXmlContent copy;
+        // dom4j documents are not guaranteed to be thread safe, even if they are only read
+        synchronized (content) {
+            copy = content.clone();
+        }
+        if (copy.getFile() != null) {
+            copy.setFile((CmsFile)copy.getFile().clone());
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the ADE cache from the ADE manager.<p>
+     *
+     * @return the ADE cache, or <code>null</code> if not yet available
+     */
+    private static CmsADECache getCache() {
+
+        return OpenCms.getADEManager() != null ? OpenCms.getADEManager().getCache() : null;
+    }
+
+    /**
+     * Returns a copy of the cached online XML content for the given resource.<p>
+     *
+     * @param cms the current cms context
+     * @param resource the XML content resource
+     *
+     * @return a copy of the cached XML content, or <code>null</code> if not found
+     */
+    private static CmsXmlContent getCache(CmsObject cms, CmsResource resource) {
+
+        CmsADECache cache = getCache();
+        if ((cache == null)
+            || (resource instanceof I_CmsHistoryResource)
+            || !cms.getRequestContext().getCurrentProject().isOnlineProject()) {
+            return null;
+        }
+        CmsXmlContent content = cache.getCacheXmlContent(
+            cache.getXmlContentCacheKey(resource.getStructureId(), resource.getDateLastModified()));
+        if (content == null) {
+            return null;
+        }
+        // the file is not read from the VFS, but the caller depends on it anyway
+        CmsResourceReadRecorder.recordResource(cms.getRequestContext(), resource, false);
+        return copy(content);
+    }
+
+    /**
+     * Stores a copy of the given online XML content in the cache.<p>
+     *
+     * @param cms the current cms context
+     * @param resource the XML content resource
+     * @param content the XML content to cache
+     */
+    private static void setCache(CmsObject cms, CmsResource resource, CmsXmlContent content) {
+
+        CmsADECache cache = getCache();
+        if ((cache == null)
+            || (resource instanceof I_CmsHistoryResource)
+            || !cms.getRequestContext().getCurrentProject().isOnlineProject()) {
+            return;
+        }
+        cache.setCacheXmlContent(
+            cache.getXmlContentCacheKey(resource.getStructureId(), resource.getDateLastModified()),
+            copy(content));
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link CmsConcurrentLruCache}.<p>
+ */
+public class TestCmsConcurrentLruCache extends TestCase {
+
+    /**
+     * Simple cache object for the tests.<p>
+     */
+    private static class CmsTestCacheObject implements I_CmsLruCacheObject {
+
+        /** Indicates if the object is currently cached. */
+        boolean m_cached;
+
+        /** The costs. */
+        private int m_costs;
+
+        /**
+         * Creates a new test cache object.<p>
+         *
+         * @param costs the costs of the object
+         */
+        CmsTestCacheObject(int costs) {
+
+            m_costs = costs;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#addToLruCache()
+         */
+        public void addToLruCache() {
+
+            m_cached = true;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getLruCacheCosts()
+         */
+        public int getLruCacheCosts() {
+
+            return m_costs;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getNextLruObject()
+         */
+        public I_CmsLruCacheObject getNextLruObject() {
+
+            return null;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getPreviousLruObject()
+         */
+        public I_CmsLruCacheObject getPreviousLruObject() {
+
+            return null;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#getValue()
+         */
+        public Object getValue() {
+
+            return this;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#removeFromLruCache()
+         */
+        public void removeFromLruCache() {
+
+            m_cached = false;
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#setNextLruObject(org.opencms.cache.I_CmsLruCacheObject)
+         */
+        public void setNextLruObject(I_CmsLruCacheObject theNextObject) {
+
+            // not used
+        }
+
+        /**
+         * @see org.opencms.cache.I_CmsLruCacheObject#setPreviousLruObject(org.opencms.cache.I_CmsLruCacheObject)
+         */
+        public void setPreviousLruObject(I_CmsLruCacheObject thePreviousObject) {
+
+            // not used
+        }
+    }
+
+    /**
+     * Tests adding, touching and removing objects.<p>
+     */
+    public void testAddTouchRemove() {
+
+        CmsConcurrentLruCache cache = new CmsConcurrentLruCache(1000, 800, 100, 4);
+        assertEquals(4, cache.getSegmentCount());
+        CmsTestCacheObject o1 = new CmsTestCacheObject(10);
+        CmsTestCacheObject o2 = new CmsTestCacheObject(20);
+        assertTrue(cache.add(o1));
+        assertTrue(cache.add(o2));
+        // adding twice only touches the object
+        assertTrue(cache.add(o1));
+        assertEquals(2, cache.size());
+        assertEquals(30, cache.getObjectCosts());
+        assertTrue(o1.m_cached);
+
+        assertTrue(cache.touch(o2));
+        assertSame(o2, cache.remove(o2));
+        assertFalse(o2.m_cached);
+        assertNull(cache.remove(o2));
+        assertFalse(cache.touch(o2));
+        assertEquals(1, cache.size());
+        assertEquals(10, cache.getObjectCosts());
+
+        // objects that are too expensive are not cached
+        assertFalse(cache.add(new CmsTestCacheObject(101)));
+        assertFalse(cache.add(null));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getObjectCosts());
+        assertFalse(o1.m_cached);
+    }
+
+    /**
+     * Tests that the costs stay bounded and the recently touched objects survive.<p>
+     */
+    public void testEviction() {
+
+        CmsConcurrentLruCache cache = new CmsConcurrentLruCache(100, 50, 10, 1);
+        CmsTestCacheObject hot = new CmsTestCacheObject(10);
+        cache.add(hot);
+        for (int i = 0; i < 100; i++) {
+            // accesses are buffered, touch often enough to fill the read buffer
+            for (int j = 0; j < CmsConcurrentLruCache.READ_BUFFER_SIZE; j++) {
+                cache.touch(hot);
+            }
+            cache.add(new CmsTestCacheObject(10));
+            assertTrue(cache.getObjectCosts() <= 100);
+        }
+        assertTrue(hot.m_cached);
+        assertTrue(cache.touch(hot));
+    }
+
+    /**
+     * Tests that the eviction listener is only notified about evicted objects.<p>
+     */
+    public void testEvictionListener() {
+
+        CmsConcurrentLruCache cache = new CmsConcurrentLruCache(100, 50, 10, 1);
+        final List<I_CmsLruCacheObject> evicted = new ArrayList<I_CmsLruCacheObject>();
+        cache.setEvictionListener(new I_CmsLruCacheEvictionListener() {
+
+            public void evictedFromLruCache(I_CmsLruCacheObject theCacheObject) {
+
+                evicted.add(theCacheObject);
+            }
+        });
+        CmsTestCacheObject first = new CmsTestCacheObject(10);
+        cache.add(first);
+        CmsTestCacheObject removed = new CmsTestCacheObject(10);
+        cache.add(removed);
+        cache.remove(removed);
+        for (int i = 0; i < 10; i++) {
+            cache.add(new CmsTestCacheObject(10));
+        }
+        assertFalse(evicted.isEmpty());
+        assertSame(first, evicted.get(0));
+        assertFalse(first.m_cached);
+        assertFalse(evicted.contains(removed));
+
+        int count = evicted.size();
+        cache.clear();
+        assertEquals(count, evicted.size());
+    }
+
+    /**
+     * Tests that the number of segments is reduced for large objects.<p>
+     */
+    public void testSegmentCount() {
+
+        assertEquals(1, new CmsConcurrentLruCache(100, 50, 60, 16).getSegmentCount());
+        assertEquals(4, new CmsConcurrentLruCache(100, 50, 25, 16).getSegmentCount());
+        assertEquals(8, new CmsConcurrentLruCache(100, 50, -1, 12).getSegmentCount());
+    }
+
+    /**
+     * Tests concurrent access to the cache.<p>
+     *
+     * @throws Exception if something goes wrong
+     */
+    public void testConcurrentAccess() throws Exception {
+
+        final CmsConcurrentLruCache cache = new CmsConcurrentLruCache(10000, 8000, 100, 16);
+        final AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 32; t++) {
+            Thread thread = new Thread() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        List<CmsTestCacheObject> objects = new ArrayList<CmsTestCacheObject>();
+                        for (int i = 0; i < 2000; i++) {
+                            CmsTestCacheObject o = new CmsTestCacheObject(1 + (i % 50));
+                            cache.add(o);
+                            objects.add(o);
+                            cache.touch(objects.get(i / 2));
+                            if ((i % 7) == 0) {
+                                cache.remove(objects.get(i / 3));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+        assertTrue(cache.getObjectCosts() <= 10000);
+        assertTrue(cache.size() > 0);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getObjectCosts());
+    }
+}
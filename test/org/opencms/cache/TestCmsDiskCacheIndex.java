@@ -0,0 +1,192 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the size limited disk cache index.<p>
+ */
+public class TestCmsDiskCacheIndex extends TestCase {
+
+    /** The temporary cache repository. */
+    private File m_repository;
+
+    /**
+     * Tests that the least recently used files are removed if the maximum size is exceeded.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testEviction() throws Exception {
+
+        CmsDiskCacheIndex index = new CmsDiskCacheIndex(m_repository.getPath(), 300);
+        File f1 = createFile("a/f1.jpg", 100, 0);
+        index.add(f1.getPath(), 100);
+        File f2 = createFile("a/f2.jpg", 100, 0);
+        index.add(f2.getPath(), 100);
+        File f3 = createFile("b/f3.jpg", 100, 0);
+        index.add(f3.getPath(), 100);
+        assertEquals(300, index.getSize());
+
+        // f1 is used again, so f2 is now the least recently used file
+        index.touch(f1.getPath());
+        File f4 = createFile("b/f4.jpg", 100, 0);
+        index.add(f4.getPath(), 100);
+
+        assertEquals(300, index.getSize());
+        assertEquals(3, index.getCount());
+        assertTrue(f1.exists());
+        assertFalse(f2.exists());
+        assertTrue(f3.exists());
+        assertTrue(f4.exists());
+
+        // a file larger than the maximum size replaces all other files, but is kept itself
+        File f5 = createFile("c/f5.jpg", 500, 0);
+        index.add(f5.getPath(), 500);
+        assertEquals(1, index.getCount());
+        assertTrue(f5.exists());
+        assertFalse(f1.exists());
+    }
+
+    /**
+     * Tests that the index is rebuilt from the files in the repository.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testRebuild() throws Exception {
+
+        long now = System.currentTimeMillis();
+        File old = createFile("a/old.jpg", 100, now - 7200000);
+        File newer = createFile("a/b/newer.jpg", 100, now - 3600000);
+        File newest = createFile("newest.jpg", 100, now);
+
+        CmsDiskCacheIndex index = new CmsDiskCacheIndex(m_repository.getPath(), 250);
+        // the oldest file is removed while rebuilding the index
+        assertEquals(2, index.getCount());
+        assertEquals(200, index.getSize());
+        assertFalse(old.exists());
+        assertTrue(newer.exists());
+        assertTrue(newest.exists());
+
+        index.remove(newer.getPath());
+        assertEquals(1, index.getCount());
+        assertEquals(100, index.getSize());
+    }
+
+    /**
+     * Tests that files deleted without using the index, e.g. by the image cache cleanup,
+     * are no longer counted after the index has been rebuilt.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testRebuildAfterCleanup() throws Exception {
+
+        CmsDiskCacheIndex index = new CmsDiskCacheIndex(m_repository.getPath(), 300);
+        File f1 = createFile("a/f1.jpg", 100, 0);
+        index.add(f1.getPath(), 100);
+        File f2 = createFile("a/f2.jpg", 100, 0);
+        index.add(f2.getPath(), 100);
+        assertTrue(f1.delete());
+
+        index.rebuild();
+        assertEquals(1, index.getCount());
+        assertEquals(100, index.getSize());
+
+        // the space of the deleted file can be used again without evicting other files
+        File f3 = createFile("b/f3.jpg", 200, 0);
+        index.add(f3.getPath(), 200);
+        assertEquals(2, index.getCount());
+        assertTrue(f2.exists());
+    }
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+
+        m_repository = File.createTempFile("opencms-diskcache", "");
+        m_repository.delete();
+        m_repository.mkdirs();
+    }
+
+    /**
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() {
+
+        delete(m_repository);
+    }
+
+    /**
+     * Creates a file in the repository.<p>
+     *
+     * @param name the name of the file relative to the repository
+     * @param size the size of the file
+     * @param lastModified the date of last modification, or 0 to keep the current date
+     *
+     * @return the file
+     *
+     * @throws IOException if the file can not be written
+     */
+    private File createFile(String name, int size, long lastModified) throws IOException {
+
+        File f = new File(m_repository, name);
+        f.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+        if (lastModified > 0) {
+            f.setLastModified(lastModified);
+        }
+        return f;
+    }
+
+    /**
+     * Deletes the given file or folder including all sub folders.<p>
+     *
+     * @param file the file or folder to delete
+     */
+    private void delete(File file) {
+
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
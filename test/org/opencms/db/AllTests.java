@@ -62,6 +62,7 @@ public final class AllTests {
         // $JUnit-BEGIN$
         suite.addTest(TestQueryProperties.suite());
         suite.addTest(TestPublishHistory.suite());
+        suite.addTest(TestPublishBatch.suite());
         suite.addTest(TestSubscriptionManager.suite());
         suite.addTest(TestAliases.suite());
         suite.addTest(TestUrlNameMapping.suite());
@@ -0,0 +1,182 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.db;
+
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProject;
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.types.CmsResourceTypeFolder;
+import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.main.OpenCms;
+import org.opencms.relations.CmsRelation;
+import org.opencms.relations.CmsRelationFilter;
+import org.opencms.relations.CmsRelationType;
+import org.opencms.security.CmsAccessControlEntry;
+import org.opencms.security.I_CmsPrincipal;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests publishing files, where the publish history, the online relations and the
+ * online access control entries are written in JDBC batches.<p>
+ *
+ * The test configuration uses a small statement batch, so the files span several batches.<p>
+ */
+public class TestPublishBatch extends OpenCmsTestCase {
+
+    /** The number of files to publish. */
+    private static final int FILE_COUNT = 300;
+
+    /** The folder containing the generated files. */
+    private static final String FOLDER = "/batchpublish/";
+
+    /** The group used for the access control entries of the generated files. */
+    private static final String GROUP = "Users";
+
+    /** The name of the relation target in the generated folder. */
+    private static final String TARGET = "target.txt";
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestPublishBatch(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestPublishBatch.class.getName());
+
+        suite.addTest(new TestPublishBatch("testPublishWithStatementBatch"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Publishes a folder with generated files, each with a relation and an access control entry,
+     * and checks the publish history, the online relations and the online access control entries.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testPublishWithStatementBatch() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing publish of " + FILE_COUNT + " new files with the statement batch");
+
+        CmsUUID groupId = cms.readGroup(GROUP).getId();
+        cms.createResource(FOLDER, CmsResourceTypeFolder.getStaticTypeId());
+        cms.createResource(FOLDER + TARGET, CmsResourceTypePlain.getStaticTypeId());
+        for (int i = 0; i < FILE_COUNT; i++) {
+            String path = FOLDER + "file" + i + ".txt";
+            cms.createResource(path, CmsResourceTypePlain.getStaticTypeId());
+            cms.addRelationToResource(path, FOLDER + TARGET, CmsRelationType.CATEGORY.getName());
+            cms.chacc(path, I_CmsPrincipal.PRINCIPAL_GROUP, GROUP, "+r");
+        }
+        cms.unlockResource(FOLDER);
+
+        CmsUUID publishId = OpenCms.getPublishManager().publishResource(cms, FOLDER);
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        // the publish history
+        List<CmsPublishedResource> publishedResources = cms.readPublishedResources(publishId);
+        assertEquals(FILE_COUNT + 2, publishedResources.size());
+        Set<String> paths = new HashSet<String>();
+        for (CmsPublishedResource pubRes : publishedResources) {
+            assertEquals(CmsResource.STATE_NEW, pubRes.getState());
+            assertFalse(pubRes.isMoved());
+            paths.add(pubRes.getRootPath());
+        }
+        assertEquals(FILE_COUNT + 2, paths.size());
+        assertTrue(paths.contains("/sites/default" + FOLDER + "file0.txt"));
+        assertTrue(paths.contains("/sites/default" + FOLDER + "file" + (FILE_COUNT - 1) + ".txt"));
+
+        // all files are available in the online project, with their relations and access control entries
+        CmsProject offlineProject = cms.getRequestContext().getCurrentProject();
+        cms.getRequestContext().setCurrentProject(cms.readProject(CmsProject.ONLINE_PROJECT_ID));
+        try {
+            assertEquals(FILE_COUNT + 1, cms.readResources(FOLDER, CmsResourceFilter.ALL, false).size());
+            CmsResource target = cms.readResource(FOLDER + TARGET);
+            List<CmsRelation> sources = cms.getRelationsForResource(
+                target,
+                CmsRelationFilter.SOURCES.filterType(CmsRelationType.CATEGORY));
+            assertEquals(FILE_COUNT, sources.size());
+            for (int i = 0; i < FILE_COUNT; i++) {
+                String path = FOLDER + "file" + i + ".txt";
+                List<CmsRelation> relations = cms.getRelationsForResource(
+                    path,
+                    CmsRelationFilter.TARGETS.filterType(CmsRelationType.CATEGORY));
+                assertEquals(path, 1, relations.size());
+                assertEquals(target.getStructureId(), relations.get(0).getTargetId());
+                List<CmsUUID> principals = new ArrayList<CmsUUID>();
+                for (CmsAccessControlEntry ace : cms.getAccessControlEntries(path, false)) {
+                    principals.add(ace.getPrincipal());
+                }
+                assertTrue(path, principals.contains(groupId));
+            }
+        } finally {
+            cms.getRequestContext().setCurrentProject(offlineProject);
+        }
+    }
+}
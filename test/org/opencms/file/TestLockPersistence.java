@@ -0,0 +1,232 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.file;
+
+import org.opencms.db.CmsDbContext;
+import org.opencms.file.types.CmsResourceTypeFolder;
+import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.lock.CmsLock;
+import org.opencms.lock.CmsLockManager;
+import org.opencms.main.OpenCms;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests writing the cached locks to the database.<p>
+ */
+public class TestLockPersistence extends OpenCmsTestCase {
+
+    /** The number of files used by the test. */
+    private static final int FILE_COUNT = 10;
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestLockPersistence(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestLockPersistence.class.getName());
+
+        suite.addTest(new TestLockPersistence("testIncrementalLockWrites"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that the lock table matches the lock cache after locking, unlocking and moving resources
+     * across many lock writes, including the periodic rewrite of all locks.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testIncrementalLockWrites() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing incremental lock writes");
+
+        // OpenCms does not run in a servlet container here, so the lock writes are forced
+        CmsLockManager lockManager = cms.m_securityManager.getLockManager();
+        CmsDbContext dbc = new CmsDbContext(cms.getRequestContext());
+
+        try {
+            String folder = "/sites/default/lockwrites/";
+            cms.createResource(folder, CmsResourceTypeFolder.RESOURCE_TYPE_ID);
+            List<String> files = new ArrayList<String>();
+            for (int i = 0; i < FILE_COUNT; i++) {
+                String path = folder + "file" + i + ".txt";
+                cms.createResource(path, CmsResourceTypePlain.getStaticTypeId());
+                files.add(path);
+            }
+            cms.createResource(folder + "temp.txt", CmsResourceTypePlain.getStaticTypeId());
+            cms.unlockResource(folder);
+            // temporary locks are not written
+            cms.lockResourceTemporary(folder + "temp.txt");
+
+            // the first write replaces all stored locks
+            lockManager.writeLocks(dbc, true);
+            assertLockTable();
+
+            Set<String> locked = new LinkedHashSet<String>();
+            for (int i = 0; i < 60; i++) {
+                String path = files.get(i % FILE_COUNT);
+                if (!locked.contains(path)) {
+                    cms.lockResource(path);
+                    locked.add(path);
+                }
+                lockManager.writeLocks(dbc, true);
+
+                String destination = folder + "moved" + i + ".txt";
+                cms.moveResource(path, destination);
+                files.set(i % FILE_COUNT, destination);
+                locked.remove(path);
+                locked.add(destination);
+                lockManager.writeLocks(dbc, true);
+
+                if ((i % 2) == 1) {
+                    Iterator<String> itLocked = locked.iterator();
+                    cms.unlockResource(itLocked.next());
+                    itLocked.remove();
+                    lockManager.writeLocks(dbc, true);
+                }
+                if ((i % 10) == 9) {
+                    // nothing changed since the last write
+                    lockManager.writeLocks(dbc, true);
+                    assertLockTable();
+                }
+            }
+            assertLockTable();
+        } finally {
+            dbc.clear();
+        }
+    }
+
+    /**
+     * Asserts that the lock table contains exactly the persistent locks of the lock cache.<p>
+     *
+     * @throws Exception if reading the lock table fails
+     */
+    private void assertLockTable() throws Exception {
+
+        Set<String> expected = new HashSet<String>();
+        for (CmsLock lock : OpenCms.getMemoryMonitor().getAllCachedLocks()) {
+            if (lock.getSystemLock().isPersistent()) {
+                expected.add(getLockKey(lock.getSystemLock()));
+            }
+            if (lock.getEditionLock().isPersistent()) {
+                expected.add(getLockKey(lock.getEditionLock()));
+            }
+        }
+
+        List<String> stored = new ArrayList<String>();
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet res = null;
+        try {
+            conn = OpenCms.getSqlManager().getConnection(OpenCms.getSqlManager().getDefaultDbPoolName());
+            stmt = conn.prepareStatement(
+                "SELECT RESOURCE_PATH, USER_ID, PROJECT_ID, LOCK_TYPE FROM CMS_RESOURCE_LOCKS");
+            res = stmt.executeQuery();
+            while (res.next()) {
+                stored.add(res.getString(1) + "|" + res.getString(2) + "|" + res.getString(3) + "|" + res.getInt(4));
+            }
+        } finally {
+            if (res != null) {
+                res.close();
+            }
+            if (stmt != null) {
+                stmt.close();
+            }
+            if (conn != null) {
+                conn.close();
+            }
+        }
+
+        assertEquals(expected.size(), stored.size());
+        assertEquals(expected, new HashSet<String>(stored));
+    }
+
+    /**
+     * Returns the key of the given lock, with the values of the lock table columns.<p>
+     *
+     * @param lock the lock
+     *
+     * @return the key of the lock
+     */
+    private String getLockKey(CmsLock lock) {
+
+        return lock.getResourceName()
+            + "|"
+            + lock.getUserId()
+            + "|"
+            + lock.getProjectId()
+            + "|"
+            + lock.getType().hashCode();
+    }
+}
@@ -36,6 +36,7 @@ import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
 import org.opencms.test.OpenCmsTestResourceFilter;
 import org.opencms.util.CmsStringUtil;
+import org.opencms.util.CmsUUID;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -224,6 +225,7 @@ public class TestProperty extends OpenCmsTestCase {
         suite.addTest(new TestProperty("testCaseSensitiveProperties"));
         suite.addTest(new TestProperty("testReadResourcesWithProperty"));
         suite.addTest(new TestProperty("testReadLocalizedProperty"));
+        suite.addTest(new TestProperty("testReadPropertyObjectsForResources"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -696,6 +698,46 @@ public class TestProperty extends OpenCmsTestCase {
 
     }
 
+    /**
+     * Tests reading the properties of several resources at once.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testReadPropertyObjectsForResources() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing reading the properties of several resources at once");
+
+        List<CmsResource> resources = new ArrayList<CmsResource>();
+        resources.add(cms.readResource("/folder1/subfolder11/page1.html"));
+        resources.add(cms.readResource("/folder1/subfolder11/"));
+        resources.add(cms.readResource("/folder1/image1.gif"));
+        resources.add(cms.readResource("/index.html"));
+
+        for (boolean search : new boolean[] {false, true}) {
+            Map<CmsUUID, List<CmsProperty>> properties = cms.readPropertyObjects(resources, search);
+            assertEquals(resources.size(), properties.size());
+            for (CmsResource resource : resources) {
+                List<CmsProperty> expected = cms.readPropertyObjects(resource, search);
+                List<CmsProperty> actual = properties.get(resource.getStructureId());
+                assertEquals(CmsProperty.toMap(expected), CmsProperty.toMap(actual));
+                for (CmsProperty property : actual) {
+                    assertTrue(property.isFrozen());
+                }
+            }
+        }
+
+        // after a change, the properties must be read again
+        String path = "/folder1/subfolder11/";
+        cms.lockResource(path);
+        cms.writePropertyObject(path, new CmsProperty("Title", "Batch title", null));
+        cms.unlockResource(path);
+        Map<CmsUUID, List<CmsProperty>> properties = cms.readPropertyObjects(resources, true);
+        assertEquals(
+            "Batch title",
+            CmsProperty.toMap(properties.get(resources.get(1).getStructureId())).get("Title"));
+    }
+
     /**
      * Tests the writePropertyObject method for writing of a property on a folder.<p>
      *
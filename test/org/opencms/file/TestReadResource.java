@@ -33,6 +33,10 @@ import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
 import org.opencms.util.CmsUUID;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import junit.extensions.TestSetup;
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -73,6 +77,8 @@ public class TestReadResource extends OpenCmsTestCase {
         suite.addTest(new TestReadResource("testReadAfterExpirationDateIgnore"));
         suite.addTest(new TestReadResource("testReadWithResourceID"));
         suite.addTest(new TestReadResource("testReadWithWrongResourceID"));
+        suite.addTest(new TestReadResource("testReadResourcesById"));
+        suite.addTest(new TestReadResource("testReadResourcesByPath"));
         suite.addTest(new TestReadResource("testReadFileWithResourceID"));
 
         TestSetup wrapper = new TestSetup(suite) {
@@ -323,6 +329,65 @@ public class TestReadResource extends OpenCmsTestCase {
         assertEquals(resourceByPath.hashCode(), resourceById.hashCode());
     }
 
+    /**
+     * Test readResourcesById with existing and missing structure ids.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testReadResourcesById() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing reading multiple resources by their structure ids");
+
+        CmsResource file = cms.readResource("/folder1/page4.html");
+        CmsResource folder = cms.readResource("/folder1/subfolder12/");
+        CmsUUID wrongId = new CmsUUID("a7b5d298-b3ab-11d8-b3e3-514d35713fed");
+
+        List<CmsResource> resources = cms.readResourcesById(
+            Arrays.asList(folder.getStructureId(), wrongId, file.getStructureId(), folder.getStructureId()));
+
+        // the missing id and the duplicate id are skipped, the order is kept
+        assertEquals(2, resources.size());
+        assertEquals(folder.getRootPath(), resources.get(0).getRootPath());
+        assertEquals(file.getRootPath(), resources.get(1).getRootPath());
+        assertEquals(file.getResourceId(), resources.get(1).getResourceId());
+        assertEquals(file.getDateLastModified(), resources.get(1).getDateLastModified());
+    }
+
+    /**
+     * Test readResourcesByPath with files, folders and missing paths.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testReadResourcesByPath() throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing reading multiple resources by their paths");
+
+        List<String> paths = new ArrayList<String>();
+        paths.add("/folder1/image1.gif");
+        paths.add("/folder1/doesnotexist.html");
+        paths.add("/folder1/subfolder12");
+        paths.add("/folder1/page4.html/");
+        paths.add("/folder1/");
+
+        List<CmsResource> resources = cms.readResourcesByPath(paths);
+
+        // the missing path and the file requested as folder are skipped, the order is kept
+        assertEquals(3, resources.size());
+        assertEquals(cms.readResource("/folder1/image1.gif").getStructureId(), resources.get(0).getStructureId());
+        assertTrue(resources.get(1).isFolder());
+        assertEquals(cms.addSiteRoot("/folder1/subfolder12/"), resources.get(1).getRootPath());
+        assertEquals(cms.addSiteRoot("/folder1/"), resources.get(2).getRootPath());
+
+        // reading the same paths again uses the resource cache and must give the same result
+        List<CmsResource> cached = cms.readResourcesByPath(paths);
+        assertEquals(resources.size(), cached.size());
+        for (int i = 0; i < resources.size(); i++) {
+            assertEquals(resources.get(i).getStructureId(), cached.get(i).getStructureId());
+        }
+    }
+
     /**
      * Test readResource whether an incorrect structureID throws an exception.<p>
      *
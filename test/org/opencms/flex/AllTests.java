@@ -58,7 +58,12 @@ public final class AllTests {
         TestSuite suite = new TestSuite("Tests for package " + AllTests.class.getPackage().getName());
         OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
         //$JUnit-BEGIN$
+        suite.addTest(new TestSuite(TestCmsFlexBuffer.class));
         suite.addTest(new TestSuite(TestCmsFlexCacheEntry.class));
+        suite.addTest(new TestSuite(TestCmsFlexCacheKey.class));
+        suite.addTest(TestCmsFlexCacheOffHeap.suite());
+        suite.addTest(new TestSuite(TestCmsFlexCacheSnapshot.class));
+        suite.addTest(new TestSuite(TestCmsFlexOffHeapCache.class));
         suite.addTest(TestCmsFlexResponse.suite());
         //$JUnit-END$
         return suite;
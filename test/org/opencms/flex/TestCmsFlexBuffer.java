@@ -0,0 +1,259 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the chunked output buffer of the Flex responses.<p>
+ */
+public class TestCmsFlexBuffer extends TestCase {
+
+    /** Number of include calls in the simulated page. */
+    private static final int INCLUDES = 40;
+
+    /** Size of the output of the simulated page, without includes. */
+    private static final int PAGE_SIZE = 512 * 1024;
+
+    /**
+     * Benchmarks the allocations for caching a large page with nested includes,
+     * compared to the previous implementation based on a <code>ByteArrayOutputStream</code>.<p>
+     */
+    public void testAllocationNestedIncludePage() {
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            // allocation counters are not available in this VM
+            return;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)bean;
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        byte[] page = createPage();
+        long threadId = Thread.currentThread().getId();
+
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            cacheWithByteArrayOutputStream(page);
+            cacheWithFlexBuffer(page);
+        }
+
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        List<Object> oldPieces = cacheWithByteArrayOutputStream(page);
+        long oldAllocated = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        start = threadBean.getThreadAllocatedBytes(threadId);
+        List<Object> newPieces = cacheWithFlexBuffer(page);
+        long newAllocated = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        System.out.println(
+            "Caching a page of "
+                + page.length
+                + " bytes with "
+                + INCLUDES
+                + " includes allocated "
+                + oldAllocated
+                + " bytes with ByteArrayOutputStream and "
+                + newAllocated
+                + " bytes with CmsFlexBuffer");
+        assertEquals(oldPieces.size(), newPieces.size());
+        assertTrue(newAllocated < oldAllocated);
+    }
+
+    /**
+     * Tests handing out parts of the buffer.<p>
+     */
+    public void testGetBytes() {
+
+        CmsFlexBuffer buffer = new CmsFlexBuffer();
+        byte[] data = createData(100000);
+        buffer.write(data, 0, data.length);
+        assertEquals(data.length, buffer.size());
+        assertTrue(Arrays.equals(data, buffer.toByteArray()));
+
+        // large part, references the chunks
+        CmsFlexBytes large = buffer.getBytes(1000, 90000);
+        assertEquals(89000, large.length());
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 1000, 90000), large.toByteArray()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            large.writeTo(out);
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 1000, 90000), out.toByteArray()));
+
+        // small part, copied
+        CmsFlexBytes small = buffer.getBytes(50000, 50010);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 50000, 50010), small.toByteArray()));
+
+        // the handed out parts must not change after the buffer is released and reused
+        buffer.release();
+        assertEquals(0, buffer.size());
+        byte[] other = new byte[100000];
+        buffer.write(other, 0, other.length);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 1000, 90000), large.toByteArray()));
+        assertEquals(0, buffer.getBytes(0, 0).length());
+    }
+
+    /**
+     * Tests searching the buffer.<p>
+     */
+    public void testIndexOf() {
+
+        CmsFlexBuffer buffer = new CmsFlexBuffer();
+        byte[] data = createData(20000);
+        data[511] = 0;
+        data[512] = 0;
+        data[15000] = 0;
+        buffer.write(data, 0, data.length);
+        assertEquals(511, buffer.indexOf((byte)0, 0));
+        assertEquals(512, buffer.indexOf((byte)0, 512));
+        assertEquals(15000, buffer.indexOf((byte)0, 513));
+        assertEquals(-1, buffer.indexOf((byte)0, 15001));
+    }
+
+    /**
+     * Tests writing single bytes.<p>
+     */
+    public void testWriteSingleBytes() {
+
+        CmsFlexBuffer buffer = new CmsFlexBuffer();
+        byte[] data = createData(30000);
+        for (byte b : data) {
+            buffer.write(b);
+        }
+        assertTrue(Arrays.equals(data, buffer.toByteArray()));
+        assertTrue(Arrays.equals(data, buffer.getBytes().toByteArray()));
+    }
+
+    /**
+     * Caches the page as the previous implementation did.<p>
+     *
+     * @param page the page output
+     *
+     * @return the pieces of the cache entry
+     */
+    private List<Object> cacheWithByteArrayOutputStream(byte[] page) {
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(1024);
+        writeInParts(page, stream);
+        byte[] result = stream.toByteArray();
+        List<Object> pieces = new ArrayList<Object>();
+        int last = 0;
+        for (int pos = 0; pos < result.length; pos++) {
+            if (result[pos] == CmsFlexResponse.FLEX_CACHE_DELIMITER) {
+                byte[] piece = new byte[pos - last];
+                System.arraycopy(result, last, piece, 0, pos - last);
+                pieces.add(piece);
+                last = pos + 1;
+            }
+        }
+        byte[] piece = new byte[result.length - last];
+        System.arraycopy(result, last, piece, 0, result.length - last);
+        pieces.add(piece);
+        return pieces;
+    }
+
+    /**
+     * Caches the page with the chunked buffer.<p>
+     *
+     * @param page the page output
+     *
+     * @return the pieces of the cache entry
+     */
+    private List<Object> cacheWithFlexBuffer(byte[] page) {
+
+        CmsFlexBuffer buffer = new CmsFlexBuffer();
+        writeInParts(page, buffer);
+        List<Object> pieces = new ArrayList<Object>();
+        int last = 0;
+        int pos;
+        while ((pos = buffer.indexOf((byte)CmsFlexResponse.FLEX_CACHE_DELIMITER, last)) >= 0) {
+            pieces.add(buffer.getBytes(last, pos));
+            last = pos + 1;
+        }
+        pieces.add(buffer.getBytes(last, buffer.size()));
+        return pieces;
+    }
+
+    /**
+     * Creates test data without delimiter chars.<p>
+     *
+     * @param size the size of the data
+     *
+     * @return the test data
+     */
+    private byte[] createData(int size) {
+
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte)('a' + (i % 26));
+        }
+        return data;
+    }
+
+    /**
+     * Creates the output of a page with include calls.<p>
+     *
+     * @return the output of the page
+     */
+    private byte[] createPage() {
+
+        byte[] page = createData(PAGE_SIZE);
+        for (int i = 1; i <= INCLUDES; i++) {
+            page[(i * PAGE_SIZE) / (INCLUDES + 1)] = CmsFlexResponse.FLEX_CACHE_DELIMITER;
+        }
+        return page;
+    }
+
+    /**
+     * Writes the page in small parts, like a JSP writer does.<p>
+     *
+     * @param page the page output
+     * @param out the stream to write to
+     */
+    private void writeInParts(byte[] page, java.io.OutputStream out) {
+
+        try {
+            for (int pos = 0; pos < page.length; pos += 1024) {
+                out.write(page, pos, Math.min(1024, page.length - pos));
+            }
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests matching request keys with the compiled cache directives of a FlexCache key.<p>
+ */
+public class TestCmsFlexCacheKey extends TestCase {
+
+    /**
+     * Request key with fixed values.<p>
+     */
+    private static class CmsTestRequestKey extends CmsFlexRequestKey {
+
+        /** The request parameters. */
+        Map<String, String[]> m_params = new HashMap<String, String[]>();
+
+        /** The port. */
+        int m_port = 80;
+
+        /** The scheme. */
+        String m_scheme = "http";
+
+        /**
+         * Creates a new request key.<p>
+         */
+        CmsTestRequestKey() {
+
+            super(CmsFlexCacheKey.getKeyName("/sites/default/index.html", true));
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getAttributes()
+         */
+        @Override
+        public Map<String, Object> getAttributes() {
+
+            return null;
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getContainerElement()
+         */
+        @Override
+        public String getContainerElement() {
+
+            return "1234567890_tc_";
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getDevice()
+         */
+        @Override
+        public String getDevice() {
+
+            return "desktop";
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getElement()
+         */
+        @Override
+        public String getElement() {
+
+            return null;
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getEncoding()
+         */
+        @Override
+        public String getEncoding() {
+
+            return "UTF-8";
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getIp()
+         */
+        @Override
+        public String getIp() {
+
+            return "127.0.0.1";
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getLocale()
+         */
+        @Override
+        public String getLocale() {
+
+            return "en";
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getParams()
+         */
+        @Override
+        public Map<String, String[]> getParams() {
+
+            return m_params.isEmpty() ? null : m_params;
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getPort()
+         */
+        @Override
+        public Integer getPort() {
+
+            return Integer.valueOf(m_port);
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getScheme()
+         */
+        @Override
+        public String getScheme() {
+
+            return m_scheme;
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getSession()
+         */
+        @Override
+        public HttpSession getSession() {
+
+            return null;
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getSite()
+         */
+        @Override
+        public String getSite() {
+
+            return "/sites/default";
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getUri()
+         */
+        @Override
+        public String getUri() {
+
+            return "/sites/default/news/2017/some-rather-long-article-name/index.html";
+        }
+
+        /**
+         * @see org.opencms.flex.CmsFlexRequestKey#getUser()
+         */
+        @Override
+        public String getUser() {
+
+            return "Guest";
+        }
+    }
+
+    /** Typical values of the "cache" property used for the benchmark. */
+    private static final String[] BENCHMARK_DIRECTIVES = {
+        "always",
+        "timeout=60",
+        "uri;user",
+        "uri;site;locale",
+        "uri;params;timeout=60",
+        "container-element;locale;device",
+        "uri;site;device;container-element;locale;params=(id,page);timeout=60",
+        "uri;no-params;schemes=(http,https);ports=(80,443)"};
+
+    /** Number of matches in the benchmark. */
+    private static final int MATCHES = 20000;
+
+    /**
+     * Benchmarks the allocations and the time for matching typical cache directives,
+     * compared to the FlexCache key before the directives were compiled.<p>
+     *
+     * The numbers are only reported, since they depend on the JVM.
+     * The variations of both keys must be equal.<p>
+     */
+    public void testMatchBenchmark() {
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean threadBean = null;
+        if ((bean instanceof com.sun.management.ThreadMXBean)
+            && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()
+            && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemoryEnabled()) {
+            threadBean = (com.sun.management.ThreadMXBean)bean;
+        }
+        long threadId = Thread.currentThread().getId();
+
+        CmsTestRequestKey requestKey = new CmsTestRequestKey();
+        requestKey.m_params.put("id", new String[] {"42"});
+        requestKey.m_params.put("page", new String[] {"2"});
+
+        for (String directives : BENCHMARK_DIRECTIVES) {
+            CmsFlexCacheKeyBaseline baselineKey = new CmsFlexCacheKeyBaseline(
+                "/sites/default/index.html",
+                directives,
+                true);
+            CmsFlexCacheKey key = new CmsFlexCacheKey("/sites/default/index.html", directives, true);
+            assertEquals(directives, baselineKey.matchRequestKey(requestKey), key.matchRequestKey(requestKey));
+
+            // warm up
+            for (int i = 0; i < MATCHES; i++) {
+                baselineKey.matchRequestKey(requestKey);
+                key.matchRequestKey(requestKey);
+            }
+
+            long time = System.nanoTime();
+            long start = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) : 0;
+            for (int i = 0; i < MATCHES; i++) {
+                baselineKey.matchRequestKey(requestKey);
+            }
+            long baselineAllocated = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) - start : -1;
+            long baselineTime = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            start = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) : 0;
+            for (int i = 0; i < MATCHES; i++) {
+                key.matchRequestKey(requestKey);
+            }
+            long allocated = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) - start : -1;
+            long compiledTime = System.nanoTime() - time;
+
+            System.out.println(
+                "Matching \""
+                    + directives
+                    + "\" "
+                    + MATCHES
+                    + " times allocated "
+                    + baselineAllocated
+                    + " bytes in "
+                    + (baselineTime / 1000000)
+                    + " ms before and "
+                    + allocated
+                    + " bytes in "
+                    + (compiledTime / 1000000)
+                    + " ms compiled");
+        }
+    }
+
+    /**
+     * Tests the variations built for common combinations of directives.<p>
+     */
+    public void testMatchVariations() {
+
+        CmsTestRequestKey requestKey = new CmsTestRequestKey();
+        assertEquals("always", match("always", requestKey));
+        assertNull(match("never", requestKey));
+        assertNull(match("false", requestKey));
+        assertNull(match("unknown-directive", requestKey));
+        assertEquals("uri=(" + requestKey.getUri() + ");user=(Guest);", match("user;uri", requestKey));
+        assertEquals(
+            "device=(desktop);container-element=(1234567890_tc_);locale=(en);",
+            match("locale;container-element;device", requestKey));
+        assertEquals("site=(/sites/default);encoding=(UTF-8);ip=(127.0.0.1);", match("ip;encoding;site", requestKey));
+
+        // timeout only, the variation does not depend on the request
+        CmsFlexCacheKey timeout = new CmsFlexCacheKey("/sites/default/index.html", "timeout=30", true);
+        assertEquals("timeout=(30);", timeout.matchRequestKey(requestKey));
+        assertSame(timeout.matchRequestKey(requestKey), timeout.matchRequestKey(requestKey));
+
+        // parameters
+        assertEquals("params=();", match("params", requestKey));
+        requestKey.m_params.put("id", new String[] {"5", "6"});
+        requestKey.m_params.put("x", new String[] {"1"});
+        assertEquals("params=(id=5);", match("params=(id)", requestKey));
+        assertNull(match("uri;no-params", requestKey));
+        assertNull(match("uri;no-params=(x)", requestKey));
+        assertEquals("uri=(" + requestKey.getUri() + ");", match("uri;no-params=(y)", requestKey));
+        assertEquals("always", match("no-params=(y);always", requestKey));
+        assertNull(match("no-params=(x);always", requestKey));
+
+        // schemes and ports
+        assertNull(match("uri;schemes=(https)", requestKey));
+        requestKey.m_scheme = "https";
+        assertEquals("uri=(" + requestKey.getUri() + ");schemes=(https);", match("uri;schemes=(https)", requestKey));
+        assertNull(match("ports=(8080)", requestKey));
+        requestKey.m_port = 8080;
+        assertEquals("ports=(8080);", match("ports=(8080,8081)", requestKey));
+
+        // no session, so nothing varies
+        assertNull(match("session=(a)", requestKey));
+    }
+
+    /**
+     * Matches the given request key with a key for the given directives.<p>
+     *
+     * @param directives the cache directives
+     * @param requestKey the request key
+     *
+     * @return the variation
+     */
+    private String match(String directives, CmsFlexRequestKey requestKey) {
+
+        return new CmsFlexCacheKey("/sites/default/index.html", directives, true).matchRequestKey(requestKey);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import org.opencms.cache.I_CmsLruCacheObject;
+import org.opencms.flex.CmsFlexCache.CmsFlexCacheVariation;
+import org.opencms.flex.CmsFlexOffHeapCache.CmsOffHeapEntry;
+import org.opencms.main.CmsEvent;
+import org.opencms.main.I_CmsEventListener;
+import org.opencms.main.OpenCms;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the off-heap tier of the FlexCache through the {@link CmsFlexCache}.<p>
+ *
+ * The heap tier of the tested caches only holds a single entry, so every added entry
+ * moves the previously added one to the off-heap tier.<p>
+ */
+public class TestCmsFlexCacheOffHeap extends OpenCmsTestCase {
+
+    /** The size of the output of the cached entries. */
+    private static final int OUTPUT_SIZE = 4000;
+
+    /** The variation used for all cached entries. */
+    private static final String VARIATION = "always";
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsFlexCacheOffHeap(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsFlexCacheOffHeap.class.getName());
+
+        suite.addTest(new TestCmsFlexCacheOffHeap("testEvictionAndPromotion"));
+        suite.addTest(new TestCmsFlexCacheOffHeap("testInvalidation"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that entries evicted from the heap move to the off-heap tier,
+     * and that a cache hit promotes them back to the heap.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testEvictionAndPromotion() throws Exception {
+
+        echo("Testing eviction of FlexCache entries to the off-heap tier and promotion on a hit");
+
+        CmsFlexCache cache = createCache();
+        try {
+            for (int i = 0; i < 4; i++) {
+                putEntry(cache, "/offheap/entry" + i + ".jsp", true, i);
+            }
+            CmsFlexOffHeapCache offHeap = cache.getOffHeapCache();
+            assertEquals(4, cache.size());
+            assertEquals(1, cache.getEntryLruCache().size());
+            assertEquals(3, offHeap.size());
+            assertEquals(3, offHeap.getDemotionCount());
+            for (int i = 0; i < 3; i++) {
+                assertTrue(getCached(cache, "/offheap/entry" + i + ".jsp") instanceof CmsOffHeapEntry);
+            }
+            assertTrue(getCached(cache, "/offheap/entry3.jsp") instanceof CmsFlexCacheEntry);
+
+            // the hit promotes the entry, which moves the last added entry to the off-heap tier
+            CmsFlexCacheEntry entry = cache.get(createRequestKey("/offheap/entry0.jsp", true));
+            assertNotNull(entry);
+            assertTrue(Arrays.equals(createData(0), entry.getOutput().get(0).toByteArray()));
+            assertEquals(1, offHeap.getPromotionCount());
+            assertSame(entry, getCached(cache, "/offheap/entry0.jsp"));
+            assertTrue(getCached(cache, "/offheap/entry3.jsp") instanceof CmsOffHeapEntry);
+            assertEquals(4, cache.size());
+            assertEquals(3, offHeap.size());
+
+            // the promoted entry is now served from the heap
+            assertSame(entry, cache.get(createRequestKey("/offheap/entry0.jsp", true)));
+            assertEquals(1, offHeap.getPromotionCount());
+        } finally {
+            OpenCms.removeCmsEventListener(cache);
+        }
+    }
+
+    /**
+     * Tests that the events clearing the FlexCache remove exactly the matching entries of the off-heap tier.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testInvalidation() throws Exception {
+
+        echo("Testing that clearing the FlexCache removes the matching entries of the off-heap tier");
+
+        CmsFlexCache cache = createCache();
+        try {
+            for (int i = 0; i < 3; i++) {
+                putEntry(cache, "/offheap/offline" + i + ".jsp", false, i);
+            }
+            for (int i = 0; i < 3; i++) {
+                putEntry(cache, "/offheap/online" + i + ".jsp", true, 10 + i);
+            }
+            CmsFlexOffHeapCache offHeap = cache.getOffHeapCache();
+            assertEquals(5, offHeap.size());
+            assertEquals(6, cache.size());
+
+            // clearing the offline entries only removes the offline entries of the off-heap tier
+            cache.cmsEvent(createClearEvent(CmsFlexCache.CLEAR_OFFLINE_ENTRIES));
+            assertEquals(2, offHeap.size());
+            assertEquals(3, cache.size());
+            assertEquals(6, cache.keySize());
+            for (int i = 0; i < 3; i++) {
+                assertNull(cache.get(createRequestKey("/offheap/offline" + i + ".jsp", false)));
+            }
+            assertTrue(getCached(cache, "/offheap/online0.jsp") instanceof CmsOffHeapEntry);
+            assertTrue(getCached(cache, "/offheap/online1.jsp") instanceof CmsOffHeapEntry);
+            CmsFlexCacheEntry entry = cache.get(createRequestKey("/offheap/online0.jsp", true));
+            assertNotNull(entry);
+            assertTrue(Arrays.equals(createData(10), entry.getOutput().get(0).toByteArray()));
+
+            // clearing the online entries removes the remaining entries of the off-heap tier
+            putEntry(cache, "/offheap/offline0.jsp", false, 0);
+            assertEquals(3, offHeap.size());
+            cache.cmsEvent(createClearEvent(CmsFlexCache.CLEAR_ONLINE_ENTRIES));
+            assertEquals(0, offHeap.size());
+            assertEquals(1, cache.size());
+            assertNull(cache.get(createRequestKey("/offheap/online1.jsp", true)));
+
+            // publishing clears both tiers completely
+            for (int i = 0; i < 3; i++) {
+                putEntry(cache, "/offheap/online" + i + ".jsp", true, 10 + i);
+            }
+            assertEquals(3, offHeap.size());
+            cache.cmsEvent(new CmsEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT, new HashMap<String, Object>()));
+            assertEquals(0, offHeap.size());
+            assertEquals(0, offHeap.getUsedBytes());
+            assertEquals(0, cache.size());
+        } finally {
+            OpenCms.removeCmsEventListener(cache);
+        }
+    }
+
+    /**
+     * Creates a FlexCache with an off-heap tier and a heap tier that only holds a single entry.<p>
+     *
+     * @return the FlexCache
+     */
+    private CmsFlexCache createCache() {
+
+        CmsFlexCacheConfiguration configuration = new CmsFlexCacheConfiguration();
+        configuration.initialize("true", "true", "8000", "6000", "7000", "100");
+        configuration.setMaxOffHeapBytes(String.valueOf(CmsFlexOffHeapCache.SLAB_SIZE));
+        CmsFlexCache cache = new CmsFlexCache(configuration);
+        assertNotNull(cache.getOffHeapCache());
+        return cache;
+    }
+
+    /**
+     * Creates an event clearing parts of the FlexCache.<p>
+     *
+     * @param action the clear action
+     *
+     * @return the event
+     */
+    private CmsEvent createClearEvent(int action) {
+
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("action", new Integer(action));
+        return new CmsEvent(I_CmsEventListener.EVENT_FLEX_CACHE_CLEAR, data);
+    }
+
+    /**
+     * Creates the output of a cached entry.<p>
+     *
+     * @param seed the seed for the output
+     *
+     * @return the output
+     */
+    private byte[] createData(int seed) {
+
+        byte[] data = new byte[OUTPUT_SIZE];
+        for (int i = 0; i < OUTPUT_SIZE; i++) {
+            data[i] = (byte)(i + seed);
+        }
+        return data;
+    }
+
+    /**
+     * Creates a request key for the given resource.<p>
+     *
+     * @param resourcename the resource name
+     * @param online if the request is for the online project
+     *
+     * @return the request key
+     */
+    private CmsFlexRequestKey createRequestKey(String resourcename, boolean online) {
+
+        return new CmsFlexRequestKey(CmsFlexCacheKey.getKeyName(resourcename, online)) {
+
+            @Override
+            public Map<String, Object> getAttributes() {
+
+                return null;
+            }
+
+            @Override
+            public Map<String, String[]> getParams() {
+
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Returns the object cached for an online resource, without touching the cache.<p>
+     *
+     * @param cache the FlexCache
+     * @param resourcename the resource name
+     *
+     * @return the cached object, or <code>null</code> if there is none
+     */
+    private I_CmsLruCacheObject getCached(CmsFlexCache cache, String resourcename) {
+
+        String keyName = CmsFlexCacheKey.getKeyName(resourcename, true);
+        for (CmsFlexCacheVariation variation : cache.getOnlineVariations()) {
+            if (keyName.equals(variation.m_key.getResource())) {
+                return variation.m_map.get(VARIATION);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds an entry for the given resource to the cache.<p>
+     *
+     * @param cache the FlexCache
+     * @param resourcename the resource name
+     * @param online if the entry is for the online project
+     * @param seed the seed for the output of the entry
+     */
+    private void putEntry(CmsFlexCache cache, String resourcename, boolean online, int seed) {
+
+        CmsFlexCacheKey key = new CmsFlexCacheKey(resourcename, VARIATION, online);
+        cache.putKey(key);
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        entry.add(createData(seed));
+        entry.setDateExpires(Long.MAX_VALUE);
+        entry.complete();
+        assertTrue(cache.put(cache.getKey(key.getResource()), entry, VARIATION));
+    }
+}
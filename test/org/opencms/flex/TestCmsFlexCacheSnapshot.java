@@ -0,0 +1,145 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the storage format of the FlexCache snapshot.<p>
+ */
+public class TestCmsFlexCacheSnapshot extends TestCase {
+
+    /**
+     * Tests writing and reading an entry with output, include calls and headers.<p>
+     *
+     * @throws IOException in case the test fails
+     */
+    public void testEntry() throws IOException {
+
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put("Content-Type", Collections.singletonList("text/html; charset=UTF-8"));
+        headers.put("X-Test", Arrays.asList("a", "\u00e4\u00f6\u00fc"));
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("p", new String[] {"1", "2"});
+
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        entry.addHeaders(headers);
+        entry.add("<html>".getBytes("UTF-8"));
+        entry.add("/system/include.jsp", parameters, null);
+        entry.add(new byte[70000]);
+        entry.setDateExpires(123456789L);
+        entry.setDateLastModified(12345L);
+        entry.complete();
+        assertTrue(CmsFlexCacheSnapshot.isStorable(entry));
+
+        CmsFlexCacheEntry read = writeAndRead(entry);
+        assertEquals(123456789L, read.getDateExpires());
+        assertEquals(12345L, read.getDateLastModified());
+        assertNull(read.getRedirectTarget());
+        assertEquals(headers, read.getHeaders());
+        List<Object> elements = read.elements();
+        assertEquals(5, elements.size());
+        assertEquals("<html>", new String(((CmsFlexBytes)elements.get(0)).toByteArray(), "UTF-8"));
+        assertEquals("/system/include.jsp", elements.get(1));
+        @SuppressWarnings("unchecked")
+        Map<String, String[]> readParameters = (Map<String, String[]>)elements.get(2);
+        assertTrue(Arrays.equals(parameters.get("p"), readParameters.get("p")));
+        assertTrue(((Map<?, ?>)elements.get(3)).isEmpty());
+        assertEquals(70000, ((CmsFlexBytes)elements.get(4)).length());
+        assertEquals(entry.getLruCacheCosts(), read.getLruCacheCosts());
+    }
+
+    /**
+     * Tests writing and reading a redirect entry.<p>
+     *
+     * @throws IOException in case the test fails
+     */
+    public void testRedirect() throws IOException {
+
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        entry.setRedirect("/other.html");
+        entry.setDateExpires(Long.MAX_VALUE);
+        entry.complete();
+        assertTrue(CmsFlexCacheSnapshot.isStorable(entry));
+
+        CmsFlexCacheEntry read = writeAndRead(entry);
+        assertEquals("/other.html", read.getRedirectTarget());
+        assertNull(read.elements());
+        assertNull(read.getHeaders());
+        assertEquals(Long.MAX_VALUE, read.getDateExpires());
+    }
+
+    /**
+     * Tests that entries passing request attributes to their include calls are not stored.<p>
+     */
+    public void testStorable() {
+
+        Map<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put("bean", new ArrayList<String>());
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        entry.add(new byte[10]);
+        entry.add("/system/include.jsp", null, attrs);
+        entry.complete();
+        assertFalse(CmsFlexCacheSnapshot.isStorable(entry));
+    }
+
+    /**
+     * Writes the given entry and reads it back.<p>
+     *
+     * @param entry the entry to write
+     *
+     * @return the entry read back
+     *
+     * @throws IOException in case writing or reading fails
+     */
+    private CmsFlexCacheEntry writeAndRead(CmsFlexCacheEntry entry) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        CmsFlexCacheSnapshot.writeEntry(out, entry);
+        out.writeInt(42);
+        out.close();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        CmsFlexCacheEntry result = CmsFlexCacheSnapshot.readEntry(in);
+        // the whole entry was read
+        assertEquals(42, in.readInt());
+        return result;
+    }
+}
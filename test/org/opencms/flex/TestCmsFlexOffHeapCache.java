@@ -0,0 +1,187 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.flex;
+
+import org.opencms.cache.I_CmsLruCacheObject;
+import org.opencms.flex.CmsFlexOffHeapCache.CmsOffHeapEntry;
+
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the off-heap tier of the FlexCache.<p>
+ */
+public class TestCmsFlexOffHeapCache extends TestCase {
+
+    /**
+     * Tests that entries are dropped in the order they were demoted when the tier is full.<p>
+     */
+    public void testEviction() {
+
+        CmsFlexOffHeapCache cache = new CmsFlexOffHeapCache(8 * CmsFlexOffHeapCache.BLOCK_SIZE);
+        Map<String, I_CmsLruCacheObject> variations = new Hashtable<String, I_CmsLruCacheObject>();
+        CmsOffHeapEntry[] entries = new CmsOffHeapEntry[4];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = cache.demote(createEntry(createData(2 * CmsFlexOffHeapCache.BLOCK_SIZE, i)));
+            entries[i].setVariationData("v" + i, variations);
+            variations.put("v" + i, entries[i]);
+        }
+        assertEquals(4, cache.size());
+        assertEquals(8 * CmsFlexOffHeapCache.BLOCK_SIZE, cache.getObjectCosts());
+
+        CmsOffHeapEntry next = cache.demote(createEntry(createData(CmsFlexOffHeapCache.BLOCK_SIZE, 9)));
+        assertNotNull(next);
+        assertEquals(1, cache.getEvictionCount());
+        assertFalse(variations.containsKey("v0"));
+        assertTrue(variations.containsKey("v1"));
+        assertNull(cache.promote(entries[0]));
+
+        // the remaining entries are not affected by the reused blocks
+        for (int i = 1; i < entries.length; i++) {
+            CmsFlexCacheEntry entry = cache.promote(entries[i]);
+            assertTrue(
+                Arrays.equals(
+                    createData(2 * CmsFlexOffHeapCache.BLOCK_SIZE, i),
+                    entry.getOutput().get(0).toByteArray()));
+        }
+
+        // entries larger than half of the tier are not demoted
+        assertNull(cache.demote(createEntry(createData(5 * CmsFlexOffHeapCache.BLOCK_SIZE, 0))));
+    }
+
+    /**
+     * Tests moving entries to the off-heap tier and back.<p>
+     */
+    public void testPromoteAndDemote() {
+
+        CmsFlexOffHeapCache cache = new CmsFlexOffHeapCache(1024 * 1024);
+        byte[] part1 = createData(10000, 1);
+        byte[] part2 = createData(5, 2);
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        entry.add(part1);
+        entry.add("/include.jsp", null, null);
+        entry.add(part2);
+        entry.setDateExpires(Long.MAX_VALUE);
+        entry.complete();
+
+        CmsOffHeapEntry offHeapEntry = cache.demote(entry);
+        assertNotNull(offHeapEntry);
+        assertEquals(1, cache.size());
+        assertEquals(10005, cache.getUsedBytes());
+        assertEquals(3 * CmsFlexOffHeapCache.BLOCK_SIZE, cache.getObjectCosts());
+        assertTrue(cache.getAllocatedBytes() > 0);
+        // the demoted entry is not changed
+        assertEquals(2, entry.getOutput().size());
+        assertTrue(Arrays.equals(part1, entry.getOutput().get(0).toByteArray()));
+
+        CmsFlexCacheEntry promoted = cache.promote(offHeapEntry);
+        assertNotNull(promoted);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getObjectCosts());
+        assertEquals(Long.MAX_VALUE, promoted.getDateExpires());
+        assertEquals(entry.getLruCacheCosts(), promoted.getLruCacheCosts());
+        List<Object> elements = promoted.elements();
+        assertEquals(entry.elements().size(), elements.size());
+        assertEquals("/include.jsp", elements.get(1));
+        List<CmsFlexBytes> output = promoted.getOutput();
+        assertTrue(Arrays.equals(part1, output.get(0).toByteArray()));
+        assertTrue(Arrays.equals(part2, output.get(1).toByteArray()));
+
+        // an entry can only be promoted once
+        assertNull(cache.promote(offHeapEntry));
+    }
+
+    /**
+     * Tests removing entries and clearing the tier.<p>
+     */
+    public void testRemoveAndClear() {
+
+        CmsFlexOffHeapCache cache = new CmsFlexOffHeapCache(1024 * 1024);
+        Map<String, I_CmsLruCacheObject> variations = new Hashtable<String, I_CmsLruCacheObject>();
+        CmsOffHeapEntry e1 = cache.demote(createEntry(createData(100, 1)));
+        e1.setVariationData("v1", variations);
+        variations.put("v1", e1);
+        CmsOffHeapEntry e2 = cache.demote(createEntry(createData(100, 2)));
+        e2.setVariationData("v2", variations);
+        variations.put("v2", e2);
+
+        cache.remove(e1);
+        assertFalse(variations.containsKey("v1"));
+        assertEquals(1, cache.size());
+        assertNull(cache.promote(e1));
+
+        cache.clear();
+        assertTrue(variations.isEmpty());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedBytes());
+        assertNull(cache.promote(e2));
+
+        // redirects are not demoted
+        CmsFlexCacheEntry redirect = new CmsFlexCacheEntry();
+        redirect.setRedirect("/target.html");
+        redirect.complete();
+        assertNull(cache.demote(redirect));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Creates test data.<p>
+     *
+     * @param size the size of the data
+     * @param seed the value added to every byte
+     *
+     * @return the test data
+     */
+    private byte[] createData(int size, int seed) {
+
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte)(i + seed);
+        }
+        return data;
+    }
+
+    /**
+     * Creates a completed cache entry with the given output.<p>
+     *
+     * @param output the output of the entry
+     *
+     * @return the cache entry
+     */
+    private CmsFlexCacheEntry createEntry(byte[] output) {
+
+        CmsFlexCacheEntry entry = new CmsFlexCacheEntry();
+        entry.add(output);
+        entry.complete();
+        return entry;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.loader;
+
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProperty;
+import org.opencms.file.CmsResource;
+import org.opencms.file.types.CmsResourceTypeImage;
+import org.opencms.main.OpenCms;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.test.OpenCmsTestServletRequest;
+import org.opencms.test.OpenCmsTestServletResponse;
+import org.opencms.util.CmsFileUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the static export of scaled images with the image loader.<p>
+ */
+public class TestCmsImageLoaderExport extends OpenCmsTestCase {
+
+    /**
+     * Response that collects the written content.<p>
+     */
+    protected static class CmsExportTestResponse extends OpenCmsTestServletResponse {
+
+        /** The written content. */
+        protected ByteArrayOutputStream m_content = new ByteArrayOutputStream();
+
+        /**
+         * @see org.opencms.test.OpenCmsTestServletResponse#containsHeader(java.lang.String)
+         */
+        @Override
+        public boolean containsHeader(String name) {
+
+            return false;
+        }
+
+        /**
+         * @see org.opencms.test.OpenCmsTestServletResponse#getOutputStream()
+         */
+        @Override
+        public ServletOutputStream getOutputStream() {
+
+            return new ServletOutputStream() {
+
+                @Override
+                public void write(int b) {
+
+                    m_content.write(b);
+                }
+            };
+        }
+
+        /**
+         * @see org.opencms.test.OpenCmsTestServletResponse#setContentLength(int)
+         */
+        @Override
+        public void setContentLength(int length) {
+
+            // ignore
+        }
+
+        /**
+         * @see org.opencms.test.OpenCmsTestServletResponse#setDateHeader(java.lang.String, long)
+         */
+        @Override
+        public void setDateHeader(String name, long value) {
+
+            // ignore
+        }
+
+        /**
+         * @see org.opencms.test.OpenCmsTestServletResponse#setHeader(java.lang.String, java.lang.String)
+         */
+        @Override
+        public void setHeader(String name, String value) {
+
+            // ignore
+        }
+
+        /**
+         * @see org.opencms.test.OpenCmsTestServletResponse#setStatus(int)
+         */
+        @Override
+        public void setStatus(int status) {
+
+            // ignore
+        }
+    }
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsImageLoaderExport(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsImageLoaderExport.class.getName());
+
+        suite.addTest(new TestCmsImageLoaderExport("testExportScaledImage"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that the static export of a scaled image returns the scaled content,
+     * also if the scaled version is already in the image cache.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testExportScaledImage() throws Exception {
+
+        echo("Testing the export of a scaled image from the image cache");
+
+        CmsObject cms = getCmsObject();
+        byte[] original = CmsFileUtil.readFile("org/opencms/loader/img_01.jpg");
+        String path = "/export_scaled.jpg";
+        cms.createResource(path, CmsResourceTypeImage.getStaticTypeId(), original, new ArrayList<CmsProperty>());
+        CmsResource resource = cms.readResource(path);
+        I_CmsResourceLoader loader = OpenCms.getResourceManager().getLoader(resource);
+        assertTrue(loader instanceof CmsImageLoader);
+
+        // the first export creates the scaled version, the second one reads it from the image cache
+        CmsExportTestResponse firstResponse = new CmsExportTestResponse();
+        byte[] first = loader.export(cms, resource, createRequest("w:100,h:75"), firstResponse);
+        CmsExportTestResponse secondResponse = new CmsExportTestResponse();
+        byte[] second = loader.export(cms, resource, createRequest("w:100,h:75"), secondResponse);
+
+        CmsImageScaler scaled = new CmsImageScaler(first, path);
+        assertEquals(100, scaled.getWidth());
+        assertEquals(75, scaled.getHeight());
+        assertFalse(Arrays.equals(original, second));
+        assertTrue(Arrays.equals(first, second));
+        // the exported content is the same as the content sent to the client
+        assertTrue(Arrays.equals(first, firstResponse.m_content.toByteArray()));
+        assertTrue(Arrays.equals(second, secondResponse.m_content.toByteArray()));
+    }
+
+    /**
+     * Creates a request with the given scale parameters.<p>
+     *
+     * @param scaleParams the scale parameters
+     *
+     * @return the request
+     */
+    private HttpServletRequest createRequest(final String scaleParams) {
+
+        return new OpenCmsTestServletRequest() {
+
+            @Override
+            public Object getAttribute(String name) {
+
+                return null;
+            }
+
+            @Override
+            public long getDateHeader(String name) {
+
+                return -1;
+            }
+
+            @Override
+            public String getParameter(String name) {
+
+                return CmsImageScaler.PARAM_SCALE.equals(name) ? scaleParams : null;
+            }
+
+            @Override
+            public HttpSession getSession(boolean create) {
+
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the image scaling executor.<p>
+ */
+public class TestCmsImageScalingExecutor extends TestCase {
+
+    /**
+     * Tests that concurrent operations with the same key are only executed once.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testCoalescing() throws Exception {
+
+        final CmsImageScalingExecutor executor = new CmsImageScalingExecutor(2);
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<byte[]> operation = new Callable<byte[]>() {
+
+            public byte[] call() throws Exception {
+
+                executions.incrementAndGet();
+                started.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return new byte[] {1, 2, 3};
+            }
+        };
+        final List<byte[]> results = new ArrayList<byte[]>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i++) {
+            Thread thread = new Thread() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        byte[] result = executor.execute("key", operation);
+                        synchronized (results) {
+                            results.add(result);
+                        }
+                    } catch (Exception e) {
+                        // result is missing, which fails the test
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+            if (i == 0) {
+                // make sure the first operation is running before the others are started
+                assertTrue(started.await(10, TimeUnit.SECONDS));
+            }
+        }
+        // wait until all other threads wait for the running operation
+        long timeout = System.currentTimeMillis() + 10000;
+        while ((executor.getCoalescedCount() < 4) && (System.currentTimeMillis() < timeout)) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+        executor.shutDown();
+
+        assertEquals(1, executions.get());
+        assertEquals(5, results.size());
+        for (byte[] result : results) {
+            assertEquals(3, result.length);
+        }
+        assertEquals(1, executor.getScaleCount());
+        assertEquals(4, executor.getCoalescedCount());
+    }
+
+    /**
+     * Tests that exceptions of the operation are passed to the caller.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testException() throws Exception {
+
+        CmsImageScalingExecutor executor = new CmsImageScalingExecutor(1);
+        try {
+            executor.execute("key", new Callable<byte[]>() {
+
+                public byte[] call() throws Exception {
+
+                    throw new IllegalStateException("test");
+                }
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("test", e.getMessage());
+        }
+        // the failed operation must not block further operations with the same key
+        byte[] result = executor.execute("key", new Callable<byte[]>() {
+
+            public byte[] call() {
+
+                return new byte[] {1};
+            }
+        });
+        assertEquals(1, result.length);
+        executor.shutDown();
+    }
+
+    /**
+     * Tests that operations are rejected after the executor has been shut down, instead of waiting forever.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testShutDown() throws Exception {
+
+        CmsImageScalingExecutor executor = new CmsImageScalingExecutor(1);
+        executor.shutDown();
+        final AtomicInteger executions = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        try {
+            executor.execute("key", new Callable<byte[]>() {
+
+                public byte[] call() {
+
+                    executions.incrementAndGet();
+                    return new byte[] {1};
+                }
+            });
+            fail("RejectedExecutionException expected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertTrue((System.currentTimeMillis() - start) < 5000);
+        assertEquals(0, executions.get());
+    }
+
+    /**
+     * Tests executing the operations in the calling thread.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testWithoutThreads() throws Exception {
+
+        CmsImageScalingExecutor executor = new CmsImageScalingExecutor(0);
+        final Thread caller = Thread.currentThread();
+        byte[] result = executor.execute("key", new Callable<byte[]>() {
+
+            public byte[] call() {
+
+                return new byte[] {(byte)(Thread.currentThread() == caller ? 1 : 0)};
+            }
+        });
+        assertEquals(1, result[0]);
+        assertEquals(0, executor.getThreads());
+        executor.shutDown();
+    }
+}
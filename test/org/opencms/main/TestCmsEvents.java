@@ -27,11 +27,23 @@
 
 package org.opencms.main;
 
+import org.opencms.ade.configuration.CmsGlobalConfigurationCacheEventHandler;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsProject;
+import org.opencms.flex.CmsFlexCache;
+import org.opencms.flex.CmsFlexCacheConfiguration;
 import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import junit.extensions.TestSetup;
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +53,137 @@ import junit.framework.TestSuite;
  */
 public class TestCmsEvents extends OpenCmsTestCase {
 
+    /**
+     * Asynchronous test listener that blocks until released.<p>
+     */
+    protected static class CmsBlockingAsyncListener implements I_CmsAsyncEventListener {
+
+        /** The events received. */
+        protected List<CmsEvent> m_events = Collections.synchronizedList(new ArrayList<CmsEvent>());
+
+        /** Released when the listener may process events. */
+        protected CountDownLatch m_release = new CountDownLatch(1);
+
+        /** The threads that processed the events, by event type. */
+        protected Map<Integer, Thread> m_threads = new ConcurrentHashMap<Integer, Thread>();
+
+        /**
+         * @see org.opencms.main.I_CmsEventListener#cmsEvent(org.opencms.main.CmsEvent)
+         */
+        public void cmsEvent(CmsEvent event) {
+
+            try {
+                m_release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            m_threads.put(event.getTypeInteger(), Thread.currentThread());
+            m_events.add(event);
+        }
+
+        /**
+         * @see org.opencms.main.I_CmsAsyncEventListener#getPriority()
+         */
+        public int getPriority() {
+
+            return PRIORITY_DEFAULT;
+        }
+
+        /**
+         * @see org.opencms.main.I_CmsAsyncEventListener#isAsync(org.opencms.main.CmsEvent)
+         */
+        public boolean isAsync(CmsEvent event) {
+
+            return event.getType() != I_CmsEventListener.EVENT_LOGIN_USER;
+        }
+
+        /**
+         * @see org.opencms.main.I_CmsAsyncEventListener#isCoalescing(org.opencms.main.CmsEvent)
+         */
+        public boolean isCoalescing(CmsEvent event) {
+
+            return (event.getType() == I_CmsEventListener.EVENT_CLEAR_CACHES)
+                || (event.getType() == I_CmsEventListener.EVENT_FLEX_CACHE_CLEAR);
+        }
+    }
+
+    /**
+     * Asynchronous test listener that takes some time to process an event and records
+     * when it starts and finishes processing.<p>
+     */
+    protected static class CmsSlowAsyncListener implements I_CmsAsyncEventListener {
+
+        /** The time in milliseconds it takes to process an event. */
+        protected long m_delay;
+
+        /** Set when the listener has finished processing an event. */
+        protected volatile boolean m_finished;
+
+        /** The shared log of started and finished events. */
+        protected List<String> m_log;
+
+        /** The name of the listener in the log. */
+        protected String m_name;
+
+        /** The priority of the listener. */
+        protected int m_priority;
+
+        /**
+         * Creates a new listener.<p>
+         *
+         * @param name the name of the listener in the log
+         * @param priority the priority of the listener
+         * @param delay the time in milliseconds it takes to process an event
+         * @param log the shared log of started and finished events
+         */
+        protected CmsSlowAsyncListener(String name, int priority, long delay, List<String> log) {
+
+            m_name = name;
+            m_priority = priority;
+            m_delay = delay;
+            m_log = log;
+        }
+
+        /**
+         * @see org.opencms.main.I_CmsEventListener#cmsEvent(org.opencms.main.CmsEvent)
+         */
+        public void cmsEvent(CmsEvent event) {
+
+            m_log.add(m_name + ":start");
+            try {
+                Thread.sleep(m_delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            m_log.add(m_name + ":end");
+            m_finished = true;
+        }
+
+        /**
+         * @see org.opencms.main.I_CmsAsyncEventListener#getPriority()
+         */
+        public int getPriority() {
+
+            return m_priority;
+        }
+
+        /**
+         * @see org.opencms.main.I_CmsAsyncEventListener#isAsync(org.opencms.main.CmsEvent)
+         */
+        public boolean isAsync(CmsEvent event) {
+
+            return true;
+        }
+
+        /**
+         * @see org.opencms.main.I_CmsAsyncEventListener#isCoalescing(org.opencms.main.CmsEvent)
+         */
+        public boolean isCoalescing(CmsEvent event) {
+
+            return false;
+        }
+    }
+
     /**
      * Default JUnit constructor.<p>
      *
@@ -64,6 +207,13 @@ public class TestCmsEvents extends OpenCmsTestCase {
         suite.setName(TestCmsEvents.class.getName());
 
         suite.addTest(new TestCmsEvents("testBeforeAfterPublishEvent"));
+        suite.addTest(new TestCmsEvents("testAsyncEventManager"));
+        suite.addTest(new TestCmsEvents("testAsyncEventCoalescing"));
+        suite.addTest(new TestCmsEvents("testAsyncEventBackPressure"));
+        suite.addTest(new TestCmsEvents("testAsyncSlowListener"));
+        suite.addTest(new TestCmsEvents("testAsyncListenerPriorities"));
+        suite.addTest(new TestCmsEvents("testAsyncDuplicateCoalescing"));
+        suite.addTest(new TestCmsEvents("testAsyncHeavyListeners"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -83,6 +233,280 @@ public class TestCmsEvents extends OpenCmsTestCase {
         return wrapper;
     }
 
+    /**
+     * Tests that a full listener queue makes the firing thread wait, instead of calling the listener
+     * in the firing thread while the worker is still busy.<p>
+     *
+     * @throws Throwable if the test fails
+     */
+    public void testAsyncEventBackPressure() throws Throwable {
+
+        echo("Testing back pressure of a full asynchronous event queue");
+
+        final CmsAsyncEventManager eventManager = new CmsAsyncEventManager(1);
+        CmsBlockingAsyncListener listener = new CmsBlockingAsyncListener();
+        eventManager.addCmsEventListener(listener);
+        Thread firingThread = new Thread() {
+
+            @Override
+            public void run() {
+
+                eventManager.fireEvent(I_CmsEventListener.EVENT_CLEAR_OFFLINE_CACHES);
+            }
+        };
+        try {
+            // the first event blocks the worker thread, the second one fills the queue
+            eventManager.fireEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT);
+            eventManager.fireEvent(I_CmsEventListener.EVENT_CLEAR_CACHES);
+            firingThread.start();
+            firingThread.join(500);
+            // the third event has to wait for space in the queue
+            assertTrue(firingThread.isAlive());
+            assertTrue(listener.m_events.isEmpty());
+            listener.m_release.countDown();
+            firingThread.join(10000);
+            assertFalse(firingThread.isAlive());
+        } finally {
+            eventManager.shutDown();
+        }
+
+        assertEquals(3, listener.m_events.size());
+        assertEquals(I_CmsEventListener.EVENT_PUBLISH_PROJECT, listener.m_events.get(0).getType());
+        assertEquals(I_CmsEventListener.EVENT_CLEAR_CACHES, listener.m_events.get(1).getType());
+        assertEquals(I_CmsEventListener.EVENT_CLEAR_OFFLINE_CACHES, listener.m_events.get(2).getType());
+        // all events have been processed by the worker thread
+        Thread workerThread = listener.m_threads.get(new Integer(I_CmsEventListener.EVENT_PUBLISH_PROJECT));
+        assertTrue(workerThread != firingThread);
+        assertTrue(workerThread != Thread.currentThread());
+        assertEquals(workerThread, listener.m_threads.get(new Integer(I_CmsEventListener.EVENT_CLEAR_CACHES)));
+        assertEquals(workerThread, listener.m_threads.get(new Integer(I_CmsEventListener.EVENT_CLEAR_OFFLINE_CACHES)));
+    }
+
+    /**
+     * Tests that only identical events, i.e. events of the same type with equal data, are coalesced.<p>
+     *
+     * @throws Throwable if the test fails
+     */
+    public void testAsyncDuplicateCoalescing() throws Throwable {
+
+        echo("Testing coalescing of identical asynchronous events");
+
+        CmsAsyncEventManager eventManager = new CmsAsyncEventManager();
+        CmsBlockingAsyncListener listener = new CmsBlockingAsyncListener();
+        eventManager.addCmsEventListener(listener);
+        try {
+            // the first event blocks the worker thread, so the others have to wait in the queue
+            eventManager.fireEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT);
+            eventManager.fireEvent(createFlexCacheClearEvent(1));
+            eventManager.fireEvent(createFlexCacheClearEvent(2));
+            eventManager.fireEvent(createFlexCacheClearEvent(1));
+            eventManager.fireEvent(createFlexCacheClearEvent(2));
+            listener.m_release.countDown();
+        } finally {
+            eventManager.shutDown();
+        }
+
+        // the clear events with different actions are all processed, in the order they were fired
+        assertEquals(3, listener.m_events.size());
+        assertEquals(I_CmsEventListener.EVENT_PUBLISH_PROJECT, listener.m_events.get(0).getType());
+        assertEquals(new Integer(1), listener.m_events.get(1).getData().get("action"));
+        assertEquals(new Integer(2), listener.m_events.get(2).getData().get("action"));
+        assertEquals(2, eventManager.getListenerStatistics().get(0).getCoalescedCount());
+    }
+
+    /**
+     * Tests that waiting events of a coalescing type are only processed once.<p>
+     *
+     * @throws Throwable if the test fails
+     */
+    public void testAsyncEventCoalescing() throws Throwable {
+
+        echo("Testing coalescing of asynchronous events");
+
+        CmsAsyncEventManager eventManager = new CmsAsyncEventManager();
+        CmsBlockingAsyncListener listener = new CmsBlockingAsyncListener();
+        eventManager.addCmsEventListener(listener);
+        try {
+            // the first event blocks the worker thread, so the others have to wait in the queue
+            eventManager.fireEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT);
+            for (int i = 0; i < 5; i++) {
+                eventManager.fireEvent(I_CmsEventListener.EVENT_CLEAR_CACHES);
+            }
+            eventManager.fireEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT);
+            listener.m_release.countDown();
+        } finally {
+            eventManager.shutDown();
+        }
+
+        assertEquals(3, listener.m_events.size());
+        assertEquals(I_CmsEventListener.EVENT_PUBLISH_PROJECT, listener.m_events.get(0).getType());
+        assertEquals(I_CmsEventListener.EVENT_CLEAR_CACHES, listener.m_events.get(1).getType());
+        assertEquals(I_CmsEventListener.EVENT_PUBLISH_PROJECT, listener.m_events.get(2).getType());
+
+        CmsEventListenerStatistics stats = eventManager.getListenerStatistics().get(0);
+        assertEquals(3, stats.getCount());
+        assertEquals(4, stats.getCoalescedCount());
+        assertEquals(0, stats.getQueueSize());
+    }
+
+    /**
+     * Tests how the listeners of the search, the static export, the FlexCache and the ADE caches
+     * process their events with the asynchronous event manager.<p>
+     *
+     * @throws Throwable if the test fails
+     */
+    public void testAsyncHeavyListeners() throws Throwable {
+
+        echo("Testing the asynchronous processing of the heavy event listeners");
+
+        CmsEvent publish = new CmsEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT, null);
+        CmsEvent modified = new CmsEvent(I_CmsEventListener.EVENT_RESOURCE_MODIFIED, null);
+        CmsEvent clear = new CmsEvent(I_CmsEventListener.EVENT_CLEAR_CACHES, null);
+
+        I_CmsAsyncEventListener search = OpenCms.getSearchManager();
+        assertTrue(search.isAsync(publish));
+        assertTrue(search.isAsync(new CmsEvent(I_CmsEventListener.EVENT_REBUILD_SEARCHINDEXES, null)));
+        // changed permissions must be recorded before the folder is published
+        assertFalse(search.isAsync(modified));
+
+        I_CmsAsyncEventListener export = OpenCms.getStaticExportManager();
+        assertTrue(export.isAsync(publish));
+        assertTrue(export.isCoalescing(clear));
+        assertFalse(export.isCoalescing(publish));
+
+        I_CmsAsyncEventListener flexCache = new CmsFlexCache(new CmsFlexCacheConfiguration());
+        assertTrue(flexCache.isAsync(publish));
+        assertTrue(flexCache.isCoalescing(clear));
+
+        I_CmsAsyncEventListener adeCaches = new CmsGlobalConfigurationCacheEventHandler(getCmsObject());
+        assertTrue(adeCaches.isAsync(publish));
+        assertTrue(adeCaches.isCoalescing(clear));
+        // the offline caches must be up to date when the editing thread continues
+        assertFalse(adeCaches.isAsync(modified));
+
+        // the caches are updated before the search index and the static export process a publish event
+        assertTrue(flexCache.getPriority() < export.getPriority());
+        assertTrue(adeCaches.getPriority() < export.getPriority());
+        assertTrue(flexCache.getPriority() < search.getPriority());
+    }
+
+    /**
+     * Tests that an asynchronous listener only processes an event after the listeners
+     * with a lower priority value have processed it.<p>
+     *
+     * @throws Throwable if the test fails
+     */
+    public void testAsyncListenerPriorities() throws Throwable {
+
+        echo("Testing the priorities of asynchronous event listeners");
+
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        CmsAsyncEventManager eventManager = new CmsAsyncEventManager();
+        // the listeners are added in the opposite order of their priorities
+        CmsSlowAsyncListener export = new CmsSlowAsyncListener(
+            "export",
+            I_CmsAsyncEventListener.PRIORITY_DEFAULT,
+            100,
+            log);
+        CmsSlowAsyncListener search = new CmsSlowAsyncListener(
+            "search",
+            I_CmsAsyncEventListener.PRIORITY_DEFAULT,
+            100,
+            log);
+        CmsSlowAsyncListener cache = new CmsSlowAsyncListener("cache", I_CmsAsyncEventListener.PRIORITY_CACHE, 500, log);
+        eventManager.addCmsEventListener(export);
+        eventManager.addCmsEventListener(search, new int[] {I_CmsEventListener.EVENT_PUBLISH_PROJECT});
+        eventManager.addCmsEventListener(cache, new int[] {I_CmsEventListener.EVENT_PUBLISH_PROJECT});
+        try {
+            long start = System.currentTimeMillis();
+            eventManager.fireEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT);
+            // the firing thread does not wait for the ordered processing
+            assertTrue((System.currentTimeMillis() - start) < 500);
+        } finally {
+            eventManager.shutDown();
+        }
+
+        assertEquals(6, log.size());
+        assertEquals("cache:start", log.get(0));
+        assertEquals("cache:end", log.get(1));
+        // the listeners with the same priority process the event at the same time
+        assertTrue(log.indexOf("export:start") < log.indexOf("search:end"));
+        assertTrue(log.indexOf("search:start") < log.indexOf("export:end"));
+    }
+
+    /**
+     * Tests that the asynchronous event manager does not block the firing thread.<p>
+     *
+     * @throws Throwable if the test fails
+     */
+    public void testAsyncEventManager() throws Throwable {
+
+        echo("Testing the asynchronous event manager");
+
+        CmsAsyncEventManager eventManager = new CmsAsyncEventManager();
+        CmsBlockingAsyncListener asyncListener = new CmsBlockingAsyncListener();
+        CmsTestEventListener syncListener = new CmsTestEventListener();
+        eventManager.addCmsEventListener(asyncListener);
+        eventManager.addCmsEventListener(syncListener);
+        try {
+            // would block for 10 seconds if the listener was called synchronously
+            long start = System.currentTimeMillis();
+            eventManager.fireEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT);
+            assertTrue((System.currentTimeMillis() - start) < 5000);
+            // the synchronous listener has been called immediately
+            assertTrue(syncListener.hasRecievedEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT));
+            assertTrue(asyncListener.m_events.isEmpty());
+            asyncListener.m_release.countDown();
+            // login events are not processed asynchronously by the listener
+            eventManager.fireEvent(I_CmsEventListener.EVENT_LOGIN_USER);
+        } finally {
+            eventManager.shutDown();
+        }
+
+        assertEquals(2, asyncListener.m_events.size());
+        Thread publishThread = asyncListener.m_threads.get(new Integer(I_CmsEventListener.EVENT_PUBLISH_PROJECT));
+        Thread loginThread = asyncListener.m_threads.get(new Integer(I_CmsEventListener.EVENT_LOGIN_USER));
+        assertTrue(publishThread != Thread.currentThread());
+        assertTrue(loginThread == Thread.currentThread());
+        assertEquals(2, eventManager.getListenerStatistics().size());
+    }
+
+    /**
+     * Tests that firing an event returns before a slow asynchronous listener has finished processing it,
+     * while the synchronous listeners have already been called in the firing thread.<p>
+     *
+     * @throws Throwable if the test fails
+     */
+    public void testAsyncSlowListener() throws Throwable {
+
+        echo("Testing that firing an event does not wait for a slow asynchronous listener");
+
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        CmsAsyncEventManager eventManager = new CmsAsyncEventManager();
+        CmsSlowAsyncListener slowListener = new CmsSlowAsyncListener(
+            "slow",
+            I_CmsAsyncEventListener.PRIORITY_DEFAULT,
+            2000,
+            log);
+        CmsTestEventListener syncListener = new CmsTestEventListener();
+        eventManager.addCmsEventListener(slowListener);
+        eventManager.addCmsEventListener(syncListener);
+        try {
+            long start = System.currentTimeMillis();
+            eventManager.fireEvent(new CmsEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT, null));
+            assertTrue((System.currentTimeMillis() - start) < 1000);
+            // the synchronous listener has been called before the firing thread continued
+            assertTrue(syncListener.hasRecievedEvent(I_CmsEventListener.EVENT_PUBLISH_PROJECT));
+            assertFalse(slowListener.m_finished);
+        } finally {
+            eventManager.shutDown();
+        }
+
+        // shutting down waits for the queued event
+        assertTrue(slowListener.m_finished);
+        assertEquals(2, log.size());
+    }
+
     /**
      * Test the before and after publish event.<p>
      *
@@ -128,4 +552,18 @@ public class TestCmsEvents extends OpenCmsTestCase {
         // only 2 events should be been recieved
         assertEquals(2, handler.getEvents().size());
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates an event clearing parts of the FlexCache.<p>
+     *
+     * @param action the clear action
+     *
+     * @return the event
+     */
+    private CmsEvent createFlexCacheClearEvent(int action) {
+
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("action", new Integer(action));
+        return new CmsEvent(I_CmsEventListener.EVENT_FLEX_CACHE_CLEAR, data);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.monitor;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the statistics recording cache map.<p>
+ *
+ * @since 10.5.0
+ */
+public class TestCmsCacheMap extends TestCase {
+
+    /**
+     * Tests that the cache maps created by the memory monitor record statistics.<p>
+     */
+    public void testCreateLRUCacheMap() {
+
+        Map<String, String> map = CmsMemoryMonitor.createLRUCacheMap(10);
+        assertTrue(map instanceof CmsCacheMap);
+        map.put("a", "A");
+        assertEquals("A", map.get("a"));
+        assertNull(map.get("b"));
+        CmsCacheStatistics stats = ((CmsCacheMap<?, ?>)map).getStatistics("test");
+        assertEquals("test", stats.getName());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(10, stats.getMaxSize());
+    }
+
+    /**
+     * Tests that evictions are counted.<p>
+     */
+    public void testEvictionCount() {
+
+        CmsCacheMap<Integer, Integer> map = new CmsCacheMap<Integer, Integer>(10, 1);
+        for (int i = 0; i < 100; i++) {
+            map.put(new Integer(i), new Integer(i));
+        }
+        CmsCacheStatistics stats = map.getStatistics("test");
+        assertEquals(10, stats.getSize());
+        assertEquals(90, stats.getEvictionCount());
+    }
+
+    /**
+     * Tests that exceptions thrown by a loader are passed on unwrapped and nothing is cached.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testFailedLoad() throws Exception {
+
+        CmsCacheMap<String, String> map = new CmsCacheMap<String, String>(100, 4);
+        final IllegalStateException error = new IllegalStateException("load failed");
+        try {
+            map.get("a", new Callable<String>() {
+
+                public String call() {
+
+                    throw error;
+                }
+            });
+            fail("Exception of the loader was not thrown");
+        } catch (IllegalStateException e) {
+            assertSame(error, e);
+        }
+        assertFalse(map.containsKey("a"));
+    }
+
+    /**
+     * Tests the hit and miss statistics.<p>
+     */
+    public void testHitAndMissCount() {
+
+        CmsCacheMap<String, String> map = new CmsCacheMap<String, String>(100, 4);
+        CmsCacheStatistics stats = map.getStatistics("test");
+        assertEquals(0, stats.getRequestCount());
+        assertEquals(1.0, stats.getHitRate(), 0.0);
+        assertEquals(0.0, stats.getMissRate(), 0.0);
+
+        map.put("a", "A");
+        map.put("b", "B");
+        map.get("a");
+        map.get("a");
+        map.get("b");
+        map.get("c");
+        assertNull(map.get(null));
+
+        stats = map.getStatistics("test");
+        assertEquals(2, stats.getSize());
+        assertEquals(3, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0.75, stats.getHitRate(), 0.0001);
+        assertEquals(0.25, stats.getMissRate(), 0.0001);
+        assertEquals(0, stats.getEvictionCount());
+    }
+
+    /**
+     * Tests that a value loaded while the map is cleared is not kept in the cache.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testInvalidationDuringLoad() throws Exception {
+
+        final CmsCacheMap<String, String> map = new CmsCacheMap<String, String>(100, 4);
+        String value = map.get("a", new Callable<String>() {
+
+            public String call() {
+
+                // simulates a flush event arriving while the value is read from the database
+                map.clear();
+                return "stale";
+            }
+        });
+        assertEquals("stale", value);
+        assertFalse(map.containsKey("a"));
+
+        value = map.get("a", new Callable<String>() {
+
+            public String call() {
+
+                return "fresh";
+            }
+        });
+        assertEquals("fresh", value);
+        assertEquals("fresh", map.get("a"));
+    }
+
+    /**
+     * Tests that values are loaded only once and then served from the cache.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testLoad() throws Exception {
+
+        CmsCacheMap<String, String> map = new CmsCacheMap<String, String>(100, 4);
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<String> loader = new Callable<String>() {
+
+            public String call() {
+
+                loads.incrementAndGet();
+                return "A";
+            }
+        };
+        assertEquals("A", map.get("a", loader));
+        assertEquals("A", map.get("a", loader));
+        assertEquals("A", map.get("a"));
+        assertEquals(1, loads.get());
+
+        CmsCacheStatistics stats = map.getStatistics("test");
+        assertEquals(1, stats.getLoadCount());
+        assertEquals(2, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+    }
+
+    /**
+     * Tests that the map view operations are still supported.<p>
+     */
+    public void testMapOperations() {
+
+        CmsCacheMap<String, String> map = new CmsCacheMap<String, String>(100, 4);
+        map.put("a", "A");
+        assertNull(map.putIfAbsent("b", "B"));
+        assertEquals("B", map.putIfAbsent("b", "X"));
+        assertTrue(map.containsKey("a"));
+        assertEquals(2, map.size());
+        assertEquals("A", map.remove("a"));
+        assertFalse(map.containsKey("a"));
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    /**
+     * Tests that concurrent misses for the same key wait for a single load.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testSingleFlightLoad() throws Exception {
+
+        final CmsCacheMap<String, String> map = new CmsCacheMap<String, String>(100, 4);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final Callable<String> loader = new Callable<String>() {
+
+            public String call() throws Exception {
+
+                loads.incrementAndGet();
+                loadStarted.countDown();
+                releaseLoad.await(10, TimeUnit.SECONDS);
+                return "A";
+            }
+        };
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] results = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                results[i] = executor.submit(new Callable<String>() {
+
+                    public String call() throws Exception {
+
+                        return map.get("a", loader);
+                    }
+                });
+            }
+            assertTrue(loadStarted.await(10, TimeUnit.SECONDS));
+            // give the other threads time to run into the pending load
+            Thread.sleep(100);
+            releaseLoad.countDown();
+            for (int i = 0; i < threads; i++) {
+                assertEquals("A", results[i].get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+}
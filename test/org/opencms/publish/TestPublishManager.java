@@ -28,8 +28,11 @@
 package org.opencms.publish;
 
 import org.opencms.db.CmsLoginMessage;
+import org.opencms.db.CmsPublishedResource;
 import org.opencms.file.CmsObject;
 import org.opencms.file.CmsResource;
+import org.opencms.file.types.CmsResourceTypeFolder;
+import org.opencms.file.types.CmsResourceTypePlain;
 import org.opencms.lock.CmsLockException;
 import org.opencms.lock.CmsLockType;
 import org.opencms.main.CmsContextInfo;
@@ -39,7 +42,9 @@ import org.opencms.security.CmsSecurityException;
 import org.opencms.security.I_CmsPrincipal;
 import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsUUID;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -81,6 +86,8 @@ public class TestPublishManager extends OpenCmsTestCase {
         suite.addTest(new TestPublishManager("testListener"));
         suite.addTest(new TestPublishManager("testInitialization1"));
         suite.addTest(new TestPublishManager("testInitialization2"));
+        suite.addTest(new TestPublishManager("testPublishJobPartition"));
+        suite.addTest(new TestPublishManager("testParallelPublishJobs"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -439,6 +446,138 @@ public class TestPublishManager extends OpenCmsTestCase {
         OpenCms.getPublishManager().waitWhileRunning();
     }
 
+    /**
+     * Tests running two publish jobs for different sites in parallel.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testParallelPublishJobs() throws Throwable {
+
+        CmsObject cms = OpenCms.initCmsObject(getCmsObject());
+        cms.getRequestContext().setSiteRoot("");
+        echo("Testing two publish jobs for different sites running in parallel");
+
+        CmsPublishManager publishManager = OpenCms.getPublishManager();
+        CmsPublishEngine publishEngine = publishManager.getEngine();
+        assertFalse(publishManager.isRunning());
+
+        // allow two publish jobs at the same time
+        publishManager.stopPublishing();
+        publishEngine.initialize(
+            cms,
+            publishManager.isPublishQueuePersistanceEnabled(),
+            publishManager.getPublishQueueShutdowntime(),
+            2);
+
+        int max = 100;
+        String[] folders = new String[] {"/sites/default/parallel/", "/sites/testsite/"};
+        if (!cms.existsResource(folders[1])) {
+            cms.createResource(folders[1], CmsResourceTypeFolder.getStaticTypeId());
+        } else if (cms.getLock(folders[1]).isUnlocked()) {
+            // created by the partition test
+            cms.lockResource(folders[1]);
+        }
+        cms.createResource(folders[0], CmsResourceTypeFolder.getStaticTypeId());
+        TestPublishEventListener[] listeners = new TestPublishEventListener[folders.length];
+        for (int j = 0; j < folders.length; j++) {
+            for (int i = 0; i < max; i++) {
+                cms.createResource(folders[j] + "parallel" + i + ".txt", CmsResourceTypePlain.getStaticTypeId());
+            }
+            cms.unlockResource(folders[j]);
+            listeners[j] = new TestPublishEventListener(cms.readResource(folders[j] + "parallel0.txt"));
+            publishManager.addPublishListener(listeners[j]);
+        }
+
+        try {
+            // enqueue both jobs before starting, so they are started together
+            CmsUUID[] publishIds = new CmsUUID[folders.length];
+            for (int j = 0; j < folders.length; j++) {
+                publishIds[j] = publishManager.publishResource(cms, folders[j]);
+            }
+            publishManager.startPublishing();
+            publishManager.waitWhileRunning();
+            assertTrue(publishManager.getRunningPublishJobs().isEmpty());
+
+            // both jobs were started and finished, and they were running at the same time
+            for (int j = 0; j < folders.length; j++) {
+                assertEquals(0, listeners[j].getAborted());
+                assertTrue(listeners[j].getEnqueued() <= listeners[j].getStarted());
+                assertTrue(listeners[j].getStarted() <= listeners[j].getFinished());
+            }
+            assertTrue(listeners[0].getStarted() < listeners[1].getFinished());
+            assertTrue(listeners[1].getStarted() < listeners[0].getFinished());
+
+            // both jobs are in the publish history, with different publish tags
+            int[] publishTags = new int[folders.length];
+            for (int j = 0; j < folders.length; j++) {
+                boolean found = false;
+                for (CmsPublishJobFinished finishedJob : publishManager.getPublishHistory()) {
+                    found |= finishedJob.getPublishHistoryId().equals(publishIds[j]);
+                }
+                assertTrue(found);
+
+                List<CmsPublishedResource> publishedResources = cms.readPublishedResources(publishIds[j]);
+                assertTrue(publishedResources.size() >= (max + 1));
+                publishTags[j] = publishedResources.get(0).getPublishTag();
+                for (CmsPublishedResource pubRes : publishedResources) {
+                    assertEquals(publishTags[j], pubRes.getPublishTag());
+                    assertTrue(pubRes.getRootPath().startsWith(folders[j]));
+                }
+            }
+            assertFalse(publishTags[0] == publishTags[1]);
+        } finally {
+            for (int j = 0; j < folders.length; j++) {
+                publishManager.removePublishListener(listeners[j]);
+            }
+            // back to the configured number of parallel publish jobs
+            publishManager.stopPublishing();
+            publishEngine.initialize(
+                cms,
+                publishManager.isPublishQueuePersistanceEnabled(),
+                publishManager.getPublishQueueShutdowntime(),
+                publishManager.getParallelJobs());
+            publishManager.startPublishing();
+        }
+    }
+
+    /**
+     * Tests the partitions deciding which publish jobs may run in parallel.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testPublishJobPartition() throws Throwable {
+
+        CmsObject cms = OpenCms.initCmsObject(getCmsObject());
+        cms.getRequestContext().setSiteRoot("");
+        echo("Testing the partitions deciding which publish jobs may run in parallel");
+
+        CmsResource page = cms.readResource("/sites/default/index.html");
+        CmsResource nestedPage = cms.readResource("/sites/default/folder1/page1.html");
+        CmsResource systemFolder = cms.readResource("/system/");
+        cms.createResource("/sites/testsite/", CmsResourceTypeFolder.getStaticTypeId());
+        CmsResource otherPage = cms.createResource(
+            "/sites/testsite/partition.txt",
+            CmsResourceTypePlain.getStaticTypeId());
+        CmsResource sibling = cms.createSibling("/sites/default/index.html", "/sites/testsite/index.html", null);
+
+        CmsPublishJobPartition partition = new CmsPublishJobPartition(Collections.singletonList(page));
+        assertFalse(partition.isGlobal());
+        assertEquals(Collections.singleton("/sites/default/"), partition.getSiteRoots());
+
+        // resources of different sites
+        assertFalse(partition.conflictsWith(new CmsPublishJobPartition(Collections.singletonList(otherPage))));
+        // resources of nested sites
+        assertTrue(partition.conflictsWith(new CmsPublishJobPartition(Collections.singletonList(nestedPage))));
+        // siblings in different sites share the resource
+        assertTrue(partition.conflictsWith(new CmsPublishJobPartition(Collections.singletonList(sibling))));
+
+        // resources outside of all sites conflict with every other resource
+        CmsPublishJobPartition global = new CmsPublishJobPartition(Collections.singletonList(systemFolder));
+        assertTrue(global.isGlobal());
+        assertTrue(global.conflictsWith(new CmsPublishJobPartition(Collections.singletonList(otherPage))));
+        assertTrue(partition.conflictsWith(global));
+    }
+
     /**
      * Tests the publish report stored in the database.<p>
      *
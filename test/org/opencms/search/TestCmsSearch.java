@@ -159,6 +159,7 @@ public class TestCmsSearch extends OpenCmsTestCase {
         suite.addTest(new TestCmsSearch("testCmsSearchDocumentTypes"));
         suite.addTest(new TestCmsSearch("testCmsSearchXmlContent"));
         suite.addTest(new TestCmsSearch("testIndexGeneration"));
+        suite.addTest(new TestCmsSearch("testParallelIndexing"));
         suite.addTest(new TestCmsSearch("testQueryEncoding"));
         suite.addTest(new TestCmsSearch("testSearchIssueWithSpecialFoldernames"));
         suite.addTest(new TestCmsSearch("testShutdownWhileIndexing"));
@@ -488,6 +489,48 @@ public class TestCmsSearch extends OpenCmsTestCase {
         assertEquals(0, searchResult.size());
     }
 
+    /**
+     * Tests rebuilding an index with several indexing threads.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testParallelIndexing() throws Throwable {
+
+        echo("Testing index rebuild with several indexing threads");
+
+        CmsSearch searchBean = new CmsSearch();
+        searchBean.init(getCmsObject());
+        searchBean.setIndex(INDEX_TEST);
+        searchBean.setQuery(">>SearchEgg1<<");
+        searchBean.setMatchesPerPage(1000);
+        List<CmsSearchResult> expected = searchBean.getSearchResult();
+        searchBean.setQuery("OpenCms");
+        searchBean.getSearchResult();
+        int expectedCount = searchBean.getSearchResultCount();
+        assertTrue(expectedCount > 1);
+
+        OpenCms.getSearchManager().setIndexingThreads(4);
+        try {
+            I_CmsReport report = new CmsShellReport(Locale.ENGLISH);
+            OpenCms.getSearchManager().rebuildIndex(INDEX_TEST, report);
+        } finally {
+            OpenCms.getSearchManager().setIndexingThreads(CmsSearchManager.DEFAULT_INDEXING_THREADS);
+        }
+
+        // the parallel rebuild must result in the same index
+        searchBean = new CmsSearch();
+        searchBean.init(getCmsObject());
+        searchBean.setIndex(INDEX_TEST);
+        searchBean.setQuery(">>SearchEgg1<<");
+        searchBean.setMatchesPerPage(1000);
+        List<CmsSearchResult> searchResult = searchBean.getSearchResult();
+        assertEquals(expected.size(), searchResult.size());
+        assertEquals(expected.get(0).getPath(), searchResult.get(0).getPath());
+        searchBean.setQuery("OpenCms");
+        searchBean.getSearchResult();
+        assertEquals(expectedCount, searchBean.getSearchResultCount());
+    }
+
     /**
      * Tests if <code>{@link CmsSearch#setQuery(String)}</code> modifies
      * the query in an undesireable way (changes url encoded Strings). <p>
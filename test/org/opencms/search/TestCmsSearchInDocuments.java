@@ -40,11 +40,18 @@ import org.opencms.main.OpenCms;
 import org.opencms.report.CmsLogReport;
 import org.opencms.report.CmsShellReport;
 import org.opencms.report.I_CmsReport;
+import org.opencms.search.documents.CmsExtractionResultCache;
 import org.opencms.search.fields.CmsSearchField;
 import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsFileUtil;
 import org.opencms.util.CmsStringUtil;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -96,6 +103,7 @@ public class TestCmsSearchInDocuments extends OpenCmsTestCase {
         suite.addTest(new TestCmsSearchInDocuments("testExceptGeneration"));
         suite.addTest(new TestCmsSearchInDocuments("testExceptHighlighting"));
         suite.addTest(new TestCmsSearchInDocuments("testExceptEscaping"));
+        suite.addTest(new TestCmsSearchInDocuments("testExtractionCache"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -312,6 +320,56 @@ public class TestCmsSearchInDocuments extends OpenCmsTestCase {
         }
     }
 
+    /**
+     * Tests the text extraction cache that is keyed by the content of the documents.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testExtractionCache() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the export, import and size limit of the text extraction cache");
+
+        CmsResource pdf = cms.readResource("/search/test1.pdf");
+        CmsExtractionResultCache cache = OpenCms.getSearchManager().getDocumentFactory(pdf).getCache();
+        assertNotNull(cache);
+        // the documents have no siblings, so they are only cached because the cache is keyed by the content
+        long size = cache.getSize();
+        assertTrue(size > 0);
+
+        File zipFile = File.createTempFile("extractCache", ".zip");
+        File importFolder = new File(zipFile.getParentFile(), zipFile.getName() + "_import");
+        try {
+            OutputStream out = new FileOutputStream(zipFile);
+            int exported;
+            try {
+                exported = cache.exportCache(out);
+            } finally {
+                out.close();
+            }
+            assertTrue(exported > 0);
+
+            CmsExtractionResultCache importCache = new CmsExtractionResultCache(
+                importFolder.getAbsolutePath(),
+                "/extractCache");
+            InputStream in = new FileInputStream(zipFile);
+            try {
+                assertEquals(exported, importCache.importCache(in));
+            } finally {
+                in.close();
+            }
+            assertEquals(size, importCache.getSize());
+
+            // reducing the size limit removes the least recently used entries
+            importCache.setMaxSize(size / 2);
+            assertTrue(importCache.getSize() <= (size / 2));
+            assertTrue(importCache.getSize() < size);
+        } finally {
+            zipFile.delete();
+            CmsFileUtil.purgeDirectory(importFolder);
+        }
+    }
+
     /**
      * Tests search boosting.<p>
      *
@@ -38,9 +38,11 @@ import org.opencms.file.types.CmsResourceTypePlain;
 import org.opencms.main.OpenCms;
 import org.opencms.report.CmsShellReport;
 import org.opencms.report.I_CmsReport;
+import org.opencms.search.CmsSearchException;
 import org.opencms.search.CmsSearchIndex;
 import org.opencms.search.CmsSearchResource;
 import org.opencms.search.fields.CmsSearchField;
+import org.opencms.security.I_CmsPrincipal;
 import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
 import org.opencms.util.CmsRequestUtil;
@@ -49,6 +51,7 @@ import org.opencms.xml.content.CmsXmlContentFactory;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
@@ -56,9 +59,18 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrQuery.ORDER;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.util.DateUtil;
 
 import junit.extensions.TestSetup;
@@ -72,6 +84,40 @@ import junit.framework.TestSuite;
  */
 public class TestSolrSearch extends OpenCmsTestCase {
 
+    /**
+     * Post processor that blocks a search until it is released.<p>
+     */
+    public static class BlockingPostProcessor implements I_CmsSolrPostSearchProcessor {
+
+        /** Released to let the blocked searches continue. */
+        static CountDownLatch m_release = new CountDownLatch(1);
+
+        /** Counted down as soon as a search is blocked. */
+        static CountDownLatch m_started = new CountDownLatch(1);
+
+        /**
+         * @see org.opencms.search.solr.I_CmsSolrPostSearchProcessor#init()
+         */
+        public void init() {
+
+            // nothing to initialize
+        }
+
+        /**
+         * @see org.opencms.search.solr.I_CmsSolrPostSearchProcessor#process(org.opencms.file.CmsObject, org.opencms.file.CmsResource, org.apache.solr.common.SolrInputDocument)
+         */
+        public SolrDocument process(CmsObject searchCms, CmsResource resource, SolrInputDocument document) {
+
+            m_started.countDown();
+            try {
+                m_release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ClientUtils.toSolrDocument(document);
+        }
+    }
+
     /**
      * Default JUnit constructor.<p>
      *
@@ -110,6 +156,10 @@ public class TestSolrSearch extends OpenCmsTestCase {
         suite.addTest(new TestSolrSearch("testDocumentBoost"));
         suite.addTest(new TestSolrSearch("testAdvancedFacetting"));
         suite.addTest(new TestSolrSearch("testAdvancedHighlighting"));
+        suite.addTest(new TestSolrSearch("testConcurrentSearch"));
+        suite.addTest(new TestSolrSearch("testSearchTimeout"));
+        suite.addTest(new TestSolrSearch("testPermissionFilter"));
+        suite.addTest(new TestSolrSearch("testPermissionFilterAfterFolderChange"));
 
         // suite.addTest(new TestSolrSearch("testAdvancedMoreLikeThis"));
         // suite.addTest(new TestSolrSearch("testAdvancedPaging"));
@@ -297,6 +347,68 @@ public class TestSolrSearch extends OpenCmsTestCase {
         // TODO: implement
     }
 
+    /**
+     * Load test running many searches concurrently against the embedded core.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testConcurrentSearch() throws Throwable {
+
+        echo("Testing concurrent searches on the embedded core");
+
+        final CmsObject cms = getCmsObject();
+        final CmsSolrIndex index = OpenCms.getSearchManager().getIndexSolr(AllTests.SOLR_ONLINE);
+        final String queryString = "q=*:*&rows=5";
+        final long expected = index.search(
+            cms,
+            new CmsSolrQuery(cms, CmsRequestUtil.createParameterMap(queryString))).getNumFound();
+        assertTrue(expected > 0);
+
+        int threads = 20;
+        final int searchesPerThread = 10;
+        index.setMaxConcurrentSearches(4);
+        index.setSearchTimeout(60000);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.currentTimeMillis();
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+
+                    public Integer call() throws Exception {
+
+                        CmsObject threadCms = OpenCms.initCmsObject(cms);
+                        int mismatches = 0;
+                        for (int j = 0; j < searchesPerThread; j++) {
+                            CmsSolrResultList result = index.search(
+                                threadCms,
+                                new CmsSolrQuery(threadCms, CmsRequestUtil.createParameterMap(queryString)));
+                            if (result.getNumFound() != expected) {
+                                mismatches++;
+                            }
+                        }
+                        return new Integer(mismatches);
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(0, future.get(120, TimeUnit.SECONDS).intValue());
+            }
+            echo(
+                "Performed "
+                    + (threads * searchesPerThread)
+                    + " searches in "
+                    + threads
+                    + " threads in "
+                    + (System.currentTimeMillis() - start)
+                    + " ms");
+        } finally {
+            executor.shutdownNow();
+            index.setMaxConcurrentSearches(0);
+            index.setSearchTimeout(CmsSolrIndex.SEARCH_TIMEOUT_DEFAULT);
+        }
+    }
+
     /**
      * @throws Throwable if something goes wrong
      */
@@ -850,6 +962,113 @@ public class TestSolrSearch extends OpenCmsTestCase {
         }
     }
 
+    /**
+     * Tests that the permission filter returns complete pages of readable documents only.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testPermissionFilter() throws Exception {
+
+        echo("Testing paging with the index based permission filter");
+
+        CmsObject cms = getCmsObject();
+        String guests = OpenCms.getDefaultUsers().getGroupGuests();
+        String folder = "/permfilter/";
+        cms.createResource(folder, CmsResourceTypeFolder.getStaticTypeId());
+        cms.chacc(folder, I_CmsPrincipal.PRINCIPAL_GROUP, guests, "+r+v+i");
+        for (int i = 0; i < 10; i++) {
+            String resName = folder + "perm_" + i + ".txt";
+            cms.createResource(resName, CmsResourceTypePlain.getStaticTypeId(), "Permfilter".getBytes(), null);
+            if ((i % 2) == 0) {
+                // hide every second resource from the guest user
+                cms.chacc(resName, I_CmsPrincipal.PRINCIPAL_GROUP, guests, "-r");
+            }
+        }
+        I_CmsReport report = new CmsShellReport(cms.getRequestContext().getLocale());
+        OpenCms.getPublishManager().publishProject(cms, report);
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        CmsObject guestCms = OpenCms.initCmsObject(OpenCms.getDefaultUsers().getUserGuest());
+        guestCms.getRequestContext().setSiteRoot(cms.getRequestContext().getSiteRoot());
+        CmsSolrIndex index = OpenCms.getSearchManager().getIndexSolr(AllTests.SOLR_ONLINE);
+        String query = "q=*:*&fq=parent-folders:\""
+            + cms.getRequestContext().addSiteRoot(folder)
+            + "\"&fq=type:plain&sort=path asc&rows=2&start=";
+
+        index.setPermissionFilter(true);
+        try {
+            List<String> found = new ArrayList<String>();
+            for (int start = 0; start < 6; start += 2) {
+                CmsSolrResultList results = index.search(guestCms, query + start);
+                assertEquals(5, results.getNumFound());
+                assertEquals(start < 4 ? 2 : 1, results.size());
+                for (CmsSearchResource res : results) {
+                    found.add(res.getName());
+                }
+            }
+            assertEquals(5, found.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals("perm_" + ((2 * i) + 1) + ".txt", found.get(i));
+            }
+
+            // the administrator is not restricted by the permission filter
+            assertEquals(10, index.search(cms, query.replace("rows=2", "rows=20") + 0).size());
+        } finally {
+            index.setPermissionFilter(false);
+        }
+
+        // without the filter the guest user finds the same resources
+        assertEquals(5, index.search(guestCms, query.replace("rows=2", "rows=20") + 0).size());
+    }
+
+    /**
+     * Tests that the permission filter reflects changed permissions of a parent folder after publishing the folder.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testPermissionFilterAfterFolderChange() throws Exception {
+
+        echo("Testing the index based permission filter after changing the permissions of a folder");
+
+        CmsObject cms = getCmsObject();
+        String guests = OpenCms.getDefaultUsers().getGroupGuests();
+        String folder = "/permfolder/";
+        cms.createResource(folder, CmsResourceTypeFolder.getStaticTypeId());
+        cms.chacc(folder, I_CmsPrincipal.PRINCIPAL_GROUP, guests, "-r+i");
+        for (int i = 0; i < 4; i++) {
+            String resName = folder + "perm_" + i + ".txt";
+            cms.createResource(resName, CmsResourceTypePlain.getStaticTypeId(), "Permfolder".getBytes(), null);
+        }
+        I_CmsReport report = new CmsShellReport(cms.getRequestContext().getLocale());
+        OpenCms.getPublishManager().publishProject(cms, report);
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        CmsObject guestCms = OpenCms.initCmsObject(OpenCms.getDefaultUsers().getUserGuest());
+        guestCms.getRequestContext().setSiteRoot(cms.getRequestContext().getSiteRoot());
+        CmsSolrIndex index = OpenCms.getSearchManager().getIndexSolr(AllTests.SOLR_ONLINE);
+        String query = "q=*:*&fq=parent-folders:\""
+            + cms.getRequestContext().addSiteRoot(folder)
+            + "\"&fq=type:plain&rows=10";
+
+        index.setPermissionFilter(true);
+        try {
+            assertEquals(0, index.search(guestCms, query).getNumFound());
+
+            // only the folder is changed and published, the files below it must be reindexed
+            cms.lockResource(folder);
+            cms.chacc(folder, I_CmsPrincipal.PRINCIPAL_GROUP, guests, "+r+v+i");
+            cms.unlockResource(folder);
+            OpenCms.getPublishManager().publishResource(cms, folder);
+            OpenCms.getPublishManager().waitWhileRunning();
+
+            CmsSolrResultList results = index.search(guestCms, query);
+            assertEquals(4, results.getNumFound());
+            assertEquals(4, results.size());
+        } finally {
+            index.setPermissionFilter(false);
+        }
+    }
+
     /**
      * @throws Throwable
      */
@@ -923,6 +1142,54 @@ public class TestSolrSearch extends OpenCmsTestCase {
 
     }
 
+    /**
+     * Tests that a search waiting for a free slot fails after the search timeout.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testSearchTimeout() throws Throwable {
+
+        echo("Testing the search timeout with a limited number of concurrent searches");
+
+        final CmsObject cms = getCmsObject();
+        final CmsSolrIndex index = OpenCms.getSearchManager().getIndexSolr(AllTests.SOLR_ONLINE);
+        I_CmsSolrPostSearchProcessor postProcessor = index.getPostProcessor();
+        index.setPostProcessor(new BlockingPostProcessor());
+        index.setMaxConcurrentSearches(1);
+        index.setSearchTimeout(500);
+        Thread blocked = new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+                    index.search(cms, new CmsSolrQuery(cms, CmsRequestUtil.createParameterMap("q=*:*")));
+                } catch (CmsSearchException e) {
+                    // the result of this search does not matter
+                }
+            }
+        };
+        try {
+            blocked.start();
+            assertTrue(BlockingPostProcessor.m_started.await(30, TimeUnit.SECONDS));
+            try {
+                index.search(cms, new CmsSolrQuery(cms, CmsRequestUtil.createParameterMap("q=*:*")));
+                fail("Search did not time out while the only search slot was taken");
+            } catch (CmsSearchException e) {
+                // expected
+            }
+        } finally {
+            BlockingPostProcessor.m_release.countDown();
+            blocked.join();
+            index.setPostProcessor(postProcessor);
+            index.setMaxConcurrentSearches(0);
+            index.setSearchTimeout(CmsSolrIndex.SEARCH_TIMEOUT_DEFAULT);
+        }
+
+        // the slot is free again
+        assertTrue(index.search(cms, new CmsSolrQuery(cms, CmsRequestUtil.createParameterMap("q=*:*"))).size() > 0);
+    }
+
     /**
      * Tests sorting of search results.<p>
      *
@@ -0,0 +1,151 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.site;
+
+import org.opencms.test.OpenCmsTestServletRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the site root trie used to find sites by root path.<p>
+ */
+public class TestCmsSiteRootTrie extends TestCase {
+
+    /**
+     * Tests that nested site roots use the longest match.<p>
+     */
+    public void testNestedSiteRoots() {
+
+        CmsSite outer = new CmsSite("/sites/outer", "http://outer.com");
+        CmsSite inner = new CmsSite("/sites/outer/inner", "http://inner.com");
+        List<CmsSite> sites = new ArrayList<CmsSite>();
+        sites.add(outer);
+        sites.add(inner);
+        CmsSiteRootTrie trie = new CmsSiteRootTrie(sites);
+
+        assertSame(outer, trie.getSite("/sites/outer/index.html"));
+        assertSame(outer, trie.getSite("/sites/outer/innerfolder/"));
+        assertSame(inner, trie.getSite("/sites/outer/inner/"));
+        assertSame(inner, trie.getSite("/sites/outer/inner/folder/index.html"));
+    }
+
+    /**
+     * Tests looking up sites by root path.<p>
+     */
+    public void testSiteLookup() {
+
+        CmsSite def = new CmsSite("/sites/default", "http://localhost:8080");
+        CmsSite other = new CmsSite("/sites/default2", "http://other.com");
+        CmsSite additional = new CmsSite("/shared/site", "http://shared.com");
+        List<CmsSite> sites = new ArrayList<CmsSite>();
+        sites.add(def);
+        sites.add(other);
+        sites.add(additional);
+        CmsSiteRootTrie trie = new CmsSiteRootTrie(sites);
+
+        assertEquals(3, trie.size());
+        assertSame(def, trie.getSite("/sites/default/"));
+        assertSame(def, trie.getSite("/sites/default"));
+        assertSame(def, trie.getSite("/sites/default/folder/index.html"));
+        assertSame(other, trie.getSite("/sites/default2/index.html"));
+        assertSame(additional, trie.getSite("/shared/site/a/b/c.html"));
+        // only complete path segments match
+        assertNull(trie.getSite("/sites/defaul/"));
+        assertNull(trie.getSite("/sites/default3/"));
+        assertNull(trie.getSite("/shared/sites/"));
+        assertNull(trie.getSite("/sites/"));
+        assertNull(trie.getSite("/"));
+        assertNull(trie.getSite(""));
+    }
+
+    /**
+     * Tests the lookup of sites and requests with the site manager.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testSiteManagerLookup() throws Exception {
+
+        CmsSiteManagerImpl siteManager = new CmsSiteManagerImpl();
+        siteManager.addSite(
+            "http://www.example.com",
+            "/sites/example",
+            "Example",
+            "1",
+            null,
+            "false",
+            null,
+            "false",
+            "false",
+            "false");
+        assertEquals("/sites/example", siteManager.getSiteRoot("/sites/example/index.html"));
+        assertNull(siteManager.getSiteRoot("/sites/other/index.html"));
+
+        siteManager.addSite(
+            "http://www.other.com",
+            "/other",
+            "Other",
+            "2",
+            null,
+            "false",
+            null,
+            "false",
+            "false",
+            "false");
+        // adding a site must update the lookup
+        assertEquals("/other", siteManager.getSiteRoot("/other/index.html"));
+        assertEquals("/other", siteManager.getSiteForRootPath("/other").getSiteRoot());
+        assertEquals("/sites/example", siteManager.getSiteForRootPath("/sites/example/a/").getSiteRoot());
+        assertNull(siteManager.getSiteForRootPath("/otherfolder/index.html"));
+
+        // server names of requests are case insensitive
+        CmsSite site = siteManager.matchRequest(new OpenCmsTestServletRequest() {
+
+            @Override
+            public String getScheme() {
+
+                return "http";
+            }
+
+            @Override
+            public String getServerName() {
+
+                return "WWW.Example.com";
+            }
+
+            @Override
+            public int getServerPort() {
+
+                return 80;
+            }
+        });
+        assertEquals("/sites/example", site.getSiteRoot());
+        assertTrue(siteManager.isMatching(new CmsSiteMatcher("http://www.other.com")));
+    }
+}
@@ -59,7 +59,9 @@ public final class AllTests {
         OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
         //$JUnit-BEGIN$
         suite.addTest(TestCmsLinkManager.suite());
+        suite.addTestSuite(TestCmsStaticExportDependencies.class);
         suite.addTest(TestCmsStaticExportManager.suite());
+        suite.addTest(TestCmsStaticExportParallel.suite());
         suite.addTest(TestExportFile.suite());
         suite.addTest(TestSecure.suite());
         suite.addTest(TestCmsExternalLinksValidator.suite());
@@ -0,0 +1,163 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.staticexport;
+
+import org.opencms.db.CmsPublishedResource;
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceReadRecorder;
+import org.opencms.report.CmsLogReport;
+import org.opencms.util.CmsUUID;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the dependency graph of the static export.<p>
+ */
+public class TestCmsStaticExportDependencies extends TestCase {
+
+    /**
+     * Tests which exported files are affected by changed resources.<p>
+     */
+    public void testAffectedRfsNames() {
+
+        CmsStaticExportDependencies dependencies = new CmsStaticExportDependencies(new File("unused"));
+        CmsResourceReadRecorder recorder = new CmsResourceReadRecorder();
+        recorder.addResource("/sites/default/index.html", false);
+        recorder.addResource("/sites/default/news/article.html", false);
+        dependencies.setDependencies("/index.html", recorder);
+
+        recorder = new CmsResourceReadRecorder();
+        recorder.addResource("/sites/default/news/index.html", false);
+        recorder.addFolder("/sites/default/news/");
+        dependencies.setDependencies("/news/index.html", recorder);
+
+        recorder = new CmsResourceReadRecorder();
+        recorder.addResource("/sites/default/search.html", false);
+        recorder.setIncomplete();
+        dependencies.setDependencies("/search.html", recorder);
+
+        assertEquals(
+            new HashSet<String>(Arrays.asList("/index.html", "/news/index.html")),
+            dependencies.getAffectedRfsNames(Collections.singletonList("/sites/default/news/article.html")));
+        assertEquals(
+            Collections.singleton("/news/index.html"),
+            dependencies.getAffectedRfsNames(Collections.singletonList("/sites/default/news/2017/new.html")));
+        assertTrue(dependencies.getAffectedRfsNames(Collections.singletonList("/sites/default/other.html")).isEmpty());
+
+        assertTrue(dependencies.isKnown("/index.html"));
+        assertFalse(dependencies.isKnown("/search.html"));
+        assertFalse(dependencies.isKnown("/unknown.html"));
+
+        dependencies.remove("/index.html");
+        assertFalse(dependencies.isKnown("/index.html"));
+        assertEquals(
+            Collections.singleton("/news/index.html"),
+            dependencies.getAffectedRfsNames(Collections.singletonList("/sites/default/news/article.html")));
+    }
+
+    /**
+     * Tests that publishing a configuration resource affects all exported files,
+     * since the records can not contain reads served from the configuration caches.<p>
+     */
+    public void testConfigurationAffectsAll() {
+
+        CmsStaticExportDependencies dependencies = new CmsStaticExportDependencies(new File("unused"));
+        CmsResourceReadRecorder recorder = new CmsResourceReadRecorder();
+        recorder.addResource("/sites/default/index.html", false);
+        dependencies.setDependencies("/index.html", recorder);
+        recorder = new CmsResourceReadRecorder();
+        recorder.addResource("/sites/default/news/index.html", false);
+        dependencies.setDependencies("/news/index.html", recorder);
+
+        CmsAfterPublishStaticExportHandler handler = new CmsAfterPublishStaticExportHandler();
+        for (String path : Arrays.asList(
+            "/sites/default/.content/.config",
+            "/sites/default/.content/.formatters/teaser.xml",
+            "/system/modules/org.opencms.test/schemas/article.xsd")) {
+            CmsPublishedResource published = new CmsPublishedResource(
+                new CmsUUID(),
+                new CmsUUID(),
+                1,
+                path,
+                1,
+                false,
+                CmsResource.STATE_CHANGED,
+                1);
+            assertTrue(path, handler.isConfigurationResource(published));
+            Set<String> result = handler.filterByDependencies(
+                null,
+                dependencies,
+                Collections.singletonList(published),
+                Collections.singleton("/other.html"),
+                new CmsLogReport(Locale.ENGLISH, getClass()));
+            assertEquals(
+                new HashSet<String>(Arrays.asList("/index.html", "/news/index.html", "/other.html")),
+                result);
+        }
+    }
+
+    /**
+     * Tests storing and loading the graph.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testSaveAndLoad() throws Exception {
+
+        File file = File.createTempFile("staticexport-dependencies", ".txt");
+        try {
+            CmsStaticExportDependencies dependencies = new CmsStaticExportDependencies(file);
+            CmsResourceReadRecorder recorder = new CmsResourceReadRecorder();
+            recorder.addResource("/sites/default/index.html", false);
+            recorder.addFolder("/sites/default/news/");
+            dependencies.setDependencies("/index.html", recorder);
+            recorder = new CmsResourceReadRecorder();
+            recorder.addResource("/sites/default/search.html", false);
+            recorder.setIncomplete();
+            dependencies.setDependencies("/search.html", recorder);
+            dependencies.save();
+
+            CmsStaticExportDependencies loaded = new CmsStaticExportDependencies(file);
+            loaded.load();
+            assertEquals(2, loaded.size());
+            assertTrue(loaded.isKnown("/index.html"));
+            assertFalse(loaded.isKnown("/search.html"));
+            assertEquals(
+                Collections.singleton("/index.html"),
+                loaded.getAffectedRfsNames(Collections.singletonList("/sites/default/news/article.html")));
+        } finally {
+            file.delete();
+        }
+    }
+}
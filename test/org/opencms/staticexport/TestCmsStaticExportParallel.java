@@ -0,0 +1,346 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.staticexport;
+
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.types.CmsResourceTypeFolder;
+import org.opencms.file.types.CmsResourceTypePlain;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+import org.opencms.report.CmsShellReport;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.util.CmsFileUtil;
+import org.opencms.util.CmsUUID;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the full static export with a pool of export workers.<p>
+ */
+public class TestCmsStaticExportParallel extends OpenCmsTestCase {
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestCmsStaticExportParallel(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestCmsStaticExportParallel.class.getName());
+
+        suite.addTest(new TestCmsStaticExportParallel("testPartitionKeepsSiblingsTogether"));
+        suite.addTest(new TestCmsStaticExportParallel("testFullExportWithThreads"));
+        suite.addTest(new TestCmsStaticExportParallel("testInterruptedWrite"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Tests that a full static export with several threads writes the same files
+     * with the same contents and dates as the export with a single thread.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testFullExportWithThreads() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the full static export with several threads");
+
+        createResources(cms, "/parallel/");
+        OpenCms.getPublishManager().publishProject(cms);
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        CmsStaticExportManager manager = OpenCms.getStaticExportManager();
+        String threads = manager.getExportThreads();
+        try {
+            manager.setExportThreads("1");
+            Map<String, byte[]> sequentialContents = new TreeMap<String, byte[]>();
+            Map<String, Long> sequentialDates = new TreeMap<String, Long>();
+            exportFullStaticRender(manager, sequentialContents, sequentialDates);
+
+            manager.setExportThreads("4");
+            Map<String, byte[]> parallelContents = new TreeMap<String, byte[]>();
+            Map<String, Long> parallelDates = new TreeMap<String, Long>();
+            exportFullStaticRender(manager, parallelContents, parallelDates);
+
+            // make sure the test resources were exported at all
+            int exported = 0;
+            for (String path : sequentialContents.keySet()) {
+                if (path.contains("/parallel/")) {
+                    exported++;
+                }
+            }
+            assertEquals(cms.readResources("/parallel/", CmsResourceFilter.DEFAULT_FILES, true).size(), exported);
+
+            assertEquals(sequentialContents.keySet(), parallelContents.keySet());
+            for (String path : sequentialContents.keySet()) {
+                assertTrue(
+                    "Different content of " + path,
+                    Arrays.equals(sequentialContents.get(path), parallelContents.get(path)));
+                assertEquals("Different date of " + path, sequentialDates.get(path), parallelDates.get(path));
+            }
+        } finally {
+            manager.setExportThreads(threads);
+        }
+    }
+
+    /**
+     * Tests that a failed write of an exported file leaves no partial file under the name of the exported file.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testInterruptedWrite() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing that an interrupted write of an exported file leaves no partial file");
+
+        CmsResource resource = cms.readResource("/folder1/image1.gif");
+        File exportFolder = new File(
+            OpenCms.getSystemInfo().getAbsoluteRfsPathRelativeToWebInf("export-interrupted" + File.separator));
+        String exportPath = exportFolder.getAbsolutePath();
+        byte[] oldContent = "the previously exported content".getBytes();
+        byte[] newContent = "the content of the interrupted export, which must never be visible".getBytes();
+
+        // the write stops after half of the content was written
+        CmsStaticExportManager manager = new CmsStaticExportManager() {
+
+            @Override
+            protected void writeExportFile(File file, byte[] content) throws IOException {
+
+                FileOutputStream stream = new FileOutputStream(file);
+                try {
+                    stream.write(content, 0, content.length / 2);
+                } finally {
+                    stream.close();
+                }
+                throw new IOException("Export interrupted");
+            }
+        };
+
+        try {
+            // the write of a new file leaves no file at all
+            try {
+                manager.writeResource(null, exportPath, "/new/image1.gif", resource, newContent);
+                fail("Interrupted write did not fail");
+            } catch (CmsException e) {
+                // expected
+            }
+            File newFolder = new File(exportFolder, "new");
+            assertEquals(0, newFolder.list().length);
+
+            // the write of an existing file keeps the previously exported file
+            OpenCms.getStaticExportManager().writeResource(null, exportPath, "/old/image1.gif", resource, oldContent);
+            try {
+                manager.writeResource(null, exportPath, "/old/image1.gif", resource, newContent);
+                fail("Interrupted write did not fail");
+            } catch (CmsException e) {
+                // expected
+            }
+            File oldFolder = new File(exportFolder, "old");
+            assertEquals(1, oldFolder.list().length);
+            File oldFile = new File(oldFolder, "image1.gif");
+            assertTrue(Arrays.equals(oldContent, CmsFileUtil.readFile(oldFile)));
+            assertEquals((resource.getDateLastModified() / 1000) * 1000, oldFile.lastModified());
+        } finally {
+            CmsFileUtil.purgeDirectory(exportFolder);
+        }
+    }
+
+    /**
+     * Tests that the partitions of the parallel export keep all siblings of a resource together.<p>
+     *
+     * @throws Exception if the test fails
+     */
+    public void testPartitionKeepsSiblingsTogether() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing that the partitions of the parallel export keep siblings together");
+
+        createResources(cms, "/partition/");
+        List<CmsStaticExportData> resourcesToExport = new ArrayList<CmsStaticExportData>();
+        for (CmsResource resource : cms.readResources("/partition/", CmsResourceFilter.DEFAULT_FILES, true)) {
+            resourcesToExport.add(
+                new CmsStaticExportData(resource.getRootPath(), resource.getRootPath(), resource, null));
+        }
+
+        List<List<CmsStaticExportData>> partitions = new CmsAfterPublishStaticExportHandler().partitionResources(
+            resourcesToExport);
+
+        Set<String> partitioned = new HashSet<String>();
+        Map<CmsUUID, Integer> siblingPartitions = new HashMap<CmsUUID, Integer>();
+        int largeFolderPartitions = 0;
+        for (int i = 0; i < partitions.size(); i++) {
+            List<CmsStaticExportData> partition = partitions.get(i);
+            assertFalse(partition.isEmpty());
+            assertTrue(partition.size() <= 100);
+            boolean largeFolder = false;
+            for (CmsStaticExportData exportData : partition) {
+                assertTrue(partitioned.add(exportData.getVfsName()));
+                Integer previous = siblingPartitions.put(exportData.getResource().getResourceId(), new Integer(i));
+                if (previous != null) {
+                    assertEquals(
+                        "Siblings of " + exportData.getVfsName() + " in different partitions",
+                        previous.intValue(),
+                        i);
+                }
+                largeFolder |= exportData.getVfsName().contains("/partition/a/");
+            }
+            if (largeFolder) {
+                largeFolderPartitions++;
+            }
+        }
+        assertEquals(resourcesToExport.size(), partitioned.size());
+        // the large folder is split into several partitions
+        assertTrue(largeFolderPartitions > 1);
+    }
+
+    /**
+     * Creates the test resources in the given folder.<p>
+     *
+     * A large folder with siblings in the folder itself and in a second folder is created.<p>
+     *
+     * @param cms the cms context
+     * @param folder the folder to create the resources in
+     *
+     * @throws CmsException if something goes wrong
+     */
+    private void createResources(CmsObject cms, String folder) throws CmsException {
+
+        cms.createResource(folder, CmsResourceTypeFolder.getStaticTypeId());
+        cms.createResource(folder + "a/", CmsResourceTypeFolder.getStaticTypeId());
+        cms.createResource(folder + "b/", CmsResourceTypeFolder.getStaticTypeId());
+        for (int i = 0; i < 150; i++) {
+            String resourcename = folder + "a/file" + i + ".txt";
+            cms.createResource(
+                resourcename,
+                CmsResourceTypePlain.getStaticTypeId(),
+                ("content of file " + i).getBytes(),
+                null);
+            if ((i % 10) == 0) {
+                // siblings in the same folder and in another folder
+                cms.createSibling(resourcename, folder + "a/sibling" + i + ".txt", null);
+                cms.createSibling(resourcename, folder + "b/sibling" + i + ".txt", null);
+            }
+        }
+        cms.unlockResource(folder);
+    }
+
+    /**
+     * Runs a full static export and reads the contents and dates of all exported files.<p>
+     *
+     * @param manager the static export manager
+     * @param contents the map to store the contents of the exported files in, by path
+     * @param dates the map to store the modification dates of the exported files in, by path
+     *
+     * @throws Exception if something goes wrong
+     */
+    private void exportFullStaticRender(
+        CmsStaticExportManager manager,
+        Map<String, byte[]> contents,
+        Map<String, Long> dates) throws Exception {
+
+        CmsShellReport report = new CmsShellReport(getCmsObject().getRequestContext().getLocale());
+        manager.exportFullStaticRender(true, report);
+        assertFalse(report.hasError());
+        readExportedFiles(new File(manager.getExportPath(null)), "", contents, dates);
+        assertFalse(contents.isEmpty());
+    }
+
+    /**
+     * Reads the contents and dates of all files in the given folder and its sub folders.<p>
+     *
+     * @param folder the folder to read
+     * @param path the path of the folder relative to the export folder
+     * @param contents the map to store the contents of the files in, by path
+     * @param dates the map to store the modification dates of the files in, by path
+     *
+     * @throws IOException if reading a file fails
+     */
+    private void readExportedFiles(File folder, String path, Map<String, byte[]> contents, Map<String, Long> dates)
+    throws IOException {
+
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String filePath = path + "/" + file.getName();
+            if (file.isDirectory()) {
+                readExportedFiles(file, filePath, contents, dates);
+            } else {
+                contents.put(filePath, CmsFileUtil.readFile(file));
+                dates.put(filePath, new Long(file.lastModified()));
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.opencms.test.performance;
+
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.lock.CmsLock;
+import org.opencms.lock.CmsLockFilter;
+import org.opencms.lock.CmsLockType;
+import org.opencms.main.OpenCms;
+import org.opencms.test.OpenCmsTestCase;
+import org.opencms.test.OpenCmsTestProperties;
+
+import java.util.Iterator;
+import java.util.List;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Performance tests for the lock lookups with a large number of cached locks.<p>
+ */
+public class TestLockPerformance extends OpenCmsTestCase {
+
+    /** The number of lookups to measure. */
+    private static final int LOOKUPS = 1000;
+
+    /**
+     * Default JUnit constructor.<p>
+     *
+     * @param arg0 JUnit parameters
+     */
+    public TestLockPerformance(String arg0) {
+
+        super(arg0);
+    }
+
+    /**
+     * Test suite for this test class.<p>
+     *
+     * @return the test suite
+     */
+    public static Test suite() {
+
+        OpenCmsTestProperties.initialize(org.opencms.test.AllTests.TEST_PROPERTIES_PATH);
+
+        TestSuite suite = new TestSuite();
+        suite.setName(TestLockPerformance.class.getName());
+
+        suite.addTest(new TestLockPerformance("testLockLookup10k"));
+        suite.addTest(new TestLockPerformance("testLockLookup100k"));
+
+        TestSetup wrapper = new TestSetup(suite) {
+
+            @Override
+            protected void setUp() {
+
+                setupOpenCms("simpletest", "/");
+            }
+
+            @Override
+            protected void tearDown() {
+
+                removeOpenCms();
+            }
+        };
+
+        return wrapper;
+    }
+
+    /**
+     * Measures the lock lookups with 10,000 cached locks.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testLockLookup10k() throws Throwable {
+
+        measureLockLookup(10000);
+    }
+
+    /**
+     * Measures the lock lookups with 100,000 cached locks.<p>
+     *
+     * @throws Throwable if something goes wrong
+     */
+    public void testLockLookup100k() throws Throwable {
+
+        measureLockLookup(100000);
+    }
+
+    /**
+     * Fills the lock cache with the given number of locks and compares the lookup of inherited locks
+     * with a linear scan over all cached locks, which was used before the lock cache was sorted by path.<p>
+     *
+     * @param count the number of locks to create
+     *
+     * @throws Throwable if something goes wrong
+     */
+    private void measureLockLookup(int count) throws Throwable {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing lock lookups with " + count + " cached locks");
+
+        String folder = "/folder1/subfolder11/";
+        String file = folder + "page1.html";
+        CmsResource resource = cms.readResource(file);
+        String rootPath = resource.getRootPath();
+
+        // create some locks on non existing resources, they are never read during lock lookups
+        String base = cms.getRequestContext().addSiteRoot("/perf/");
+        for (int i = 0; i < count; i++) {
+            String path = base + "f" + (i % 100) + "/" + i + ".html";
+            OpenCms.getMemoryMonitor().cacheLock(
+                new CmsLock(path, cms.getRequestContext().getCurrentUser().getId(), null, CmsLockType.EXCLUSIVE));
+        }
+        cms.lockResource(folder);
+        try {
+            assertLock(cms, file, CmsLockType.INHERITED);
+
+            // the linear scan used before
+            long t = System.currentTimeMillis();
+            for (int i = 0; i < LOOKUPS; i++) {
+                Iterator<CmsLock> itLocks = OpenCms.getMemoryMonitor().getAllCachedLocks().iterator();
+                while (itLocks.hasNext()) {
+                    CmsLock lock = itLocks.next();
+                    if (lock.getResourceName().endsWith("/")
+                        && rootPath.startsWith(lock.getResourceName())
+                        && !rootPath.equals(lock.getResourceName())) {
+                        break;
+                    }
+                }
+            }
+            t = System.currentTimeMillis() - t;
+            echo(LOOKUPS + " linear parent lock lookups took " + t + " msecs");
+
+            t = System.currentTimeMillis();
+            for (int i = 0; i < LOOKUPS; i++) {
+                cms.getLock(resource);
+            }
+            t = System.currentTimeMillis() - t;
+            echo(LOOKUPS + " lock lookups took " + t + " msecs");
+
+            t = System.currentTimeMillis();
+            List<CmsResource> locked = null;
+            for (int i = 0; i < LOOKUPS; i++) {
+                locked = cms.getLockedResources(cms.readResource(folder), CmsLockFilter.FILTER_ALL);
+            }
+            t = System.currentTimeMillis() - t;
+            echo(LOOKUPS + " locked resources lookups took " + t + " msecs");
+            assertEquals(1, locked.size());
+        } finally {
+            cms.unlockResource(folder);
+            for (int i = 0; i < count; i++) {
+                OpenCms.getMemoryMonitor().uncacheLock(base + "f" + (i % 100) + "/" + i + ".html");
+            }
+        }
+    }
+}
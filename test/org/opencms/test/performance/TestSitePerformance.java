@@ -0,0 +1,187 @@
+/*
+ * This library is part of OpenCms -
+ * the Open Source Content Management System
+ *
+ * Copyright (c) Alkacon Software GmbH & Co. KG (http://www.alkacon.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * For further information about Alkacon Software GmbH & Co. KG, please see the
+ * company website: http://www.alkacon.com
+ *
+ * For further information about OpenCms, please see the
+ * project website: http://www.opencms.org
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.opencms.test.performance;
+
+import org.opencms.site.CmsSite;
+import org.opencms.site.CmsSiteManagerImpl;
+import org.opencms.site.CmsSiteMatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Performance tests for the site lookups with a large number of configured sites.<p>
+ */
+public class TestSitePerformance extends TestCase {
+
+    /** The number of lookups to measure. */
+    private static final int LOOKUPS = 1000000;
+
+    /** The number of sites to configure. */
+    private static final int SITES = 1000;
+
+    /**
+     * Compares the site lookup by root path with the lookup used before the site root trie,
+     * that is a direct lookup below "/sites/" followed by a linear scan over all other site roots.<p>
+     *
+     * @throws Exception if something goes wrong
+     */
+    public void testSiteForRootPath() throws Exception {
+
+        CmsSiteManagerImpl siteManager = createSiteManager();
+        List<String> additionalSiteRoots = new ArrayList<String>();
+        for (String siteRoot : siteManager.getSiteRoots()) {
+            if (!siteRoot.startsWith("/sites/")) {
+                additionalSiteRoots.add(siteRoot);
+            }
+        }
+        String[] paths = new String[SITES];
+        for (int i = 0; i < SITES; i++) {
+            paths[i] = getSiteRoot(i) + "/folder/subfolder/index.html";
+        }
+
+        long t = System.currentTimeMillis();
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            String rootPath = paths[i % SITES];
+            int pos = rootPath.indexOf('/', "/sites/".length() + 1);
+            CmsSite site = (pos > 0) ? siteManager.getSiteForSiteRoot(rootPath.substring(0, pos)) : null;
+            if (site == null) {
+                for (int j = 0, size = additionalSiteRoots.size(); j < size; j++) {
+                    if (rootPath.startsWith(additionalSiteRoots.get(j))) {
+                        site = siteManager.getSiteForSiteRoot(additionalSiteRoots.get(j));
+                        break;
+                    }
+                }
+            }
+            if (site != null) {
+                found++;
+            }
+        }
+        t = System.currentTimeMillis() - t;
+        System.out.println(LOOKUPS + " site lookups with linear scan took " + t + " msecs");
+        assertEquals(LOOKUPS, found);
+
+        t = System.currentTimeMillis();
+        found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (siteManager.getSiteForRootPath(paths[i % SITES]) != null) {
+                found++;
+            }
+        }
+        t = System.currentTimeMillis() - t;
+        System.out.println(LOOKUPS + " site lookups with site root trie took " + t + " msecs");
+        assertEquals(LOOKUPS, found);
+    }
+
+    /**
+     * Compares the lookup of the configured site matcher for a request with a linear scan
+     * over all configured site matchers, which was used before.<p>
+     *
+     * @throws Exception if something goes wrong
+     */
+    public void testSiteMatcherLookup() throws Exception {
+
+        CmsSiteManagerImpl siteManager = createSiteManager();
+        List<CmsSiteMatcher> matchers = new ArrayList<CmsSiteMatcher>(siteManager.getSites().keySet());
+        Map<CmsSiteMatcher, CmsSiteMatcher> index = new HashMap<CmsSiteMatcher, CmsSiteMatcher>();
+        for (CmsSiteMatcher matcher : matchers) {
+            index.put(matcher, matcher);
+        }
+
+        long t = System.currentTimeMillis();
+        for (int i = 0; i < LOOKUPS; i++) {
+            CmsSiteMatcher matcher = new CmsSiteMatcher("http", getServerName(i % SITES), 80);
+            assertTrue(matchers.indexOf(matcher) >= 0);
+        }
+        t = System.currentTimeMillis() - t;
+        System.out.println(LOOKUPS + " site matcher lookups with linear scan took " + t + " msecs");
+
+        t = System.currentTimeMillis();
+        for (int i = 0; i < LOOKUPS; i++) {
+            CmsSiteMatcher matcher = new CmsSiteMatcher("http", getServerName(i % SITES), 80);
+            assertNotNull(index.get(matcher));
+        }
+        t = System.currentTimeMillis() - t;
+        System.out.println(LOOKUPS + " site matcher lookups with hash index took " + t + " msecs");
+    }
+
+    /**
+     * Creates a site manager with a synthetic configuration of {@link #SITES} sites.<p>
+     *
+     * @return the site manager
+     *
+     * @throws Exception if something goes wrong
+     */
+    private CmsSiteManagerImpl createSiteManager() throws Exception {
+
+        CmsSiteManagerImpl siteManager = new CmsSiteManagerImpl();
+        for (int i = 0; i < SITES; i++) {
+            siteManager.addSite(
+                "http://" + getServerName(i),
+                getSiteRoot(i),
+                "Site " + i,
+                String.valueOf(i),
+                null,
+                "false",
+                null,
+                "false",
+                "false",
+                "false");
+        }
+        return siteManager;
+    }
+
+    /**
+     * Returns the server name of the synthetic site with the given index.<p>
+     *
+     * @param i the index
+     *
+     * @return the server name
+     */
+    private String getServerName(int i) {
+
+        return "www.site" + i + ".example.com";
+    }
+
+    /**
+     * Returns the site root of the synthetic site with the given index,
+     * every 10th site is not below the "/sites/" folder.<p>
+     *
+     * @param i the index
+     *
+     * @return the site root
+     */
+    private String getSiteRoot(int i) {
+
+        return ((i % 10) == 0) ? "/customers/c" + i + "/site" : "/sites/site" + i;
+    }
+}
@@ -29,6 +29,7 @@ package org.opencms.xml.content;
 
 import org.opencms.file.CmsFile;
 import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProject;
 import org.opencms.file.CmsProperty;
 import org.opencms.file.CmsPropertyDefinition;
 import org.opencms.file.CmsResource;
@@ -46,6 +47,7 @@ import org.opencms.relations.CmsRelationType;
 import org.opencms.staticexport.CmsLinkTable;
 import org.opencms.test.OpenCmsTestCase;
 import org.opencms.test.OpenCmsTestProperties;
+import org.opencms.test.OpenCmsTestServletRequest;
 import org.opencms.util.CmsFileUtil;
 import org.opencms.widgets.CmsCheckboxWidget;
 import org.opencms.widgets.CmsHtmlWidget;
@@ -53,6 +55,7 @@ import org.opencms.widgets.I_CmsWidget;
 import org.opencms.xml.CmsXmlContentDefinition;
 import org.opencms.xml.CmsXmlEntityResolver;
 import org.opencms.xml.CmsXmlUtils;
+import org.opencms.xml.containerpage.CmsADECache;
 import org.opencms.xml.types.CmsXmlHtmlValue;
 import org.opencms.xml.types.CmsXmlNestedContentDefinition;
 import org.opencms.xml.types.CmsXmlStringValue;
@@ -62,9 +65,13 @@ import org.opencms.xml.types.I_CmsXmlContentValue;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletRequest;
 
 import junit.extensions.TestSetup;
 import junit.framework.Test;
@@ -150,6 +157,7 @@ public class TestCmsXmlContentWithVfs extends OpenCmsTestCase {
         suite.addTest(new TestCmsXmlContentWithVfs("testAddRemoveNestedElements"));
         suite.addTest(new TestCmsXmlContentWithVfs("testAccessNestedElements"));
         suite.addTest(new TestCmsXmlContentWithVfs("testValueIndex"));
+        suite.addTest(new TestCmsXmlContentWithVfs("testValueLookupAfterChange"));
         suite.addTest(new TestCmsXmlContentWithVfs("testLayoutWidgetMapping"));
         suite.addTest(new TestCmsXmlContentWithVfs("testLinkResolver"));
         suite.addTest(new TestCmsXmlContentWithVfs("testVarLinkResolver"));
@@ -169,6 +177,8 @@ public class TestCmsXmlContentWithVfs extends OpenCmsTestCase {
         suite.addTest(new TestCmsXmlContentWithVfs("testMacros"));
         suite.addTest(new TestCmsXmlContentWithVfs("testAddFileReference"));
         suite.addTest(new TestCmsXmlContentWithVfs("testXmlContentCreate"));
+        suite.addTest(new TestCmsXmlContentWithVfs("testOnlineContentCache"));
+        suite.addTest(new TestCmsXmlContentWithVfs("testOnlineContentCacheConcurrentReads"));
 
         TestSetup wrapper = new TestSetup(suite) {
 
@@ -1667,6 +1677,144 @@ public class TestCmsXmlContentWithVfs extends OpenCmsTestCase {
         assertSame(definition.getContentHandler().getClass().getName(), TestXmlContentHandler.class.getName());
     }
 
+    /**
+     * Tests that parsed online XML contents are cached across requests until the content is published again.<p>
+     *
+     * @throws Exception in case something goes wrong
+     */
+    public void testOnlineContentCache() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing the cache for parsed online XML contents");
+
+        String filename = "/xmlcontent-cache.html";
+        cms.createResource(filename, OpenCmsTestCase.ARTICLE_TYPEID);
+        OpenCms.getPublishManager().publishResource(cms, filename);
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        // offline contents are not shared between requests
+        CmsResource res = cms.readResource(filename);
+        CmsXmlContent offlineContent = CmsXmlContentFactory.unmarshal(cms, res, createRequest());
+        assertNotSame(offlineContent, CmsXmlContentFactory.unmarshal(cms, res, createRequest()));
+
+        // online contents are parsed only once, but every request gets its own copy
+        CmsADECache cache = OpenCms.getADEManager().getCache();
+        CmsObject onlineCms = OpenCms.initCmsObject(cms);
+        onlineCms.getRequestContext().setCurrentProject(onlineCms.readProject(CmsProject.ONLINE_PROJECT_ID));
+        CmsResource onlineRes = onlineCms.readResource(filename);
+        CmsXmlContent onlineContent = CmsXmlContentFactory.unmarshal(onlineCms, onlineRes, createRequest());
+        CmsXmlContent cachedContent = cache.getCacheXmlContent(
+            cache.getXmlContentCacheKey(onlineRes.getStructureId(), onlineRes.getDateLastModified()));
+        assertNotNull(cachedContent);
+        assertNotSame(cachedContent, onlineContent);
+        CmsXmlContent secondContent = CmsXmlContentFactory.unmarshal(onlineCms, onlineRes, createRequest());
+        assertNotSame(onlineContent, secondContent);
+        assertEquals(
+            onlineContent.getStringValue(onlineCms, "Author", Locale.ENGLISH),
+            secondContent.getStringValue(onlineCms, "Author", Locale.ENGLISH));
+        assertSame(
+            cachedContent,
+            cache.getCacheXmlContent(
+                cache.getXmlContentCacheKey(onlineRes.getStructureId(), onlineRes.getDateLastModified())));
+
+        // change and publish the content
+        CmsFile file = cms.readFile(res);
+        CmsXmlContent xmlcontent = CmsXmlContentFactory.unmarshal(cms, file);
+        xmlcontent.getValue("Author", Locale.ENGLISH).setStringValue(cms, "Cached Author");
+        file.setContents(xmlcontent.marshal());
+        cms.lockResource(filename);
+        cms.writeFile(file);
+        OpenCms.getPublishManager().publishResource(cms, filename);
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        // the published content must be parsed again
+        onlineRes = onlineCms.readResource(filename);
+        CmsXmlContent publishedContent = CmsXmlContentFactory.unmarshal(onlineCms, onlineRes, createRequest());
+        assertEquals("Cached Author", publishedContent.getStringValue(onlineCms, "Author", Locale.ENGLISH));
+        assertNotSame(
+            cachedContent,
+            cache.getCacheXmlContent(
+                cache.getXmlContentCacheKey(onlineRes.getStructureId(), onlineRes.getDateLastModified())));
+    }
+
+    /**
+     * Tests that requests reading and changing a cached online XML content at the same time
+     * do not see the changes of each other.<p>
+     *
+     * @throws Exception in case something goes wrong
+     */
+    public void testOnlineContentCacheConcurrentReads() throws Exception {
+
+        final CmsObject cms = getCmsObject();
+        echo("Testing concurrent reads of a cached online XML content");
+
+        final String filename = "/xmlcontent-cache-concurrent.html";
+        final String homepage = "/sites/default/index.html";
+        cms.createResource(filename, OpenCmsTestCase.ARTICLE_TYPEID);
+        CmsFile file = cms.readFile(filename);
+        CmsXmlContent xmlcontent = CmsXmlContentFactory.unmarshal(cms, file);
+        xmlcontent.addValue(cms, "Homepage", Locale.ENGLISH, 0).setStringValue(cms, homepage);
+        xmlcontent.getValue("Author", Locale.ENGLISH).setStringValue(cms, "Shared Author");
+        file.setContents(xmlcontent.marshal());
+        cms.writeFile(file);
+        OpenCms.getPublishManager().publishResource(cms, filename);
+        OpenCms.getPublishManager().waitWhileRunning();
+
+        final CmsObject onlineCms = OpenCms.initCmsObject(cms);
+        onlineCms.getRequestContext().setCurrentProject(onlineCms.readProject(CmsProject.ONLINE_PROJECT_ID));
+        final CmsResource onlineRes = onlineCms.readResource(filename);
+        // fill the cache
+        CmsXmlContentFactory.unmarshal(onlineCms, onlineRes, createRequest());
+
+        int threadCount = 8;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            final String author = "Author " + i;
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        CmsObject threadCms = OpenCms.initCmsObject(onlineCms);
+                        for (int j = 0; j < 50; j++) {
+                            CmsXmlContent content = CmsXmlContentFactory.unmarshal(
+                                threadCms,
+                                onlineRes,
+                                createRequest());
+                            assertEquals(
+                                "Shared Author",
+                                content.getStringValue(threadCms, "Author", Locale.ENGLISH));
+                            // resolving the link updates the link element of the document
+                            CmsXmlVfsFileValue value = (CmsXmlVfsFileValue)content.getValue(
+                                "Homepage",
+                                Locale.ENGLISH);
+                            assertEquals(homepage, value.getLink(threadCms).getTarget());
+                            content.getValue("Author", Locale.ENGLISH).setStringValue(threadCms, author);
+                            assertEquals(author, content.getStringValue(threadCms, "Author", Locale.ENGLISH));
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!errors.isEmpty()) {
+            throw new Exception(errors.get(0));
+        }
+
+        // the changes of the requests did not reach the cache
+        CmsXmlContent content = CmsXmlContentFactory.unmarshal(onlineCms, onlineRes, createRequest());
+        assertEquals("Shared Author", content.getStringValue(onlineCms, "Author", Locale.ENGLISH));
+    }
+
     /**
      * Test if the resource bundle in the schema definition is properly initialized.<p>
      *
@@ -2339,6 +2487,54 @@ public class TestCmsXmlContentWithVfs extends OpenCmsTestCase {
             value1.getContentDefinition().getContentHandler().getClass().getName());
     }
 
+    /**
+     * Tests that value lookups reflect the changes of the XML content.<p>
+     *
+     * @throws Exception in case something goes wrong
+     */
+    public void testValueLookupAfterChange() throws Exception {
+
+        CmsObject cms = getCmsObject();
+        echo("Testing value lookups after changing the XML content");
+
+        CmsXmlEntityResolver resolver = new CmsXmlEntityResolver(cms);
+
+        String content;
+        CmsXmlContent xmlcontent;
+
+        // unmarshal content definition
+        content = CmsFileUtil.readFile(
+            "org/opencms/xml/content/xmlcontent-definition-7.xsd",
+            CmsEncoder.ENCODING_UTF_8);
+        // store content definition in entitiy resolver
+        CmsXmlEntityResolver.cacheSystemId(SCHEMA_SYSTEM_ID_7, content.getBytes(CmsEncoder.ENCODING_UTF_8));
+
+        // now read the XML content
+        content = CmsFileUtil.readFile("org/opencms/xml/content/xmlcontent-7.xml", CmsEncoder.ENCODING_UTF_8);
+        xmlcontent = CmsXmlContentFactory.unmarshal(content, CmsEncoder.ENCODING_UTF_8, resolver);
+
+        assertEquals(1, xmlcontent.getValues("Toast", Locale.ENGLISH).size());
+        assertEquals(3, xmlcontent.getSubValues("Cascade", Locale.ENGLISH).size());
+        assertEquals("Toast", xmlcontent.getStringValue(cms, "Cascade/Toast", Locale.ENGLISH));
+        assertFalse(xmlcontent.hasValue("Toast[2]", Locale.ENGLISH));
+        int count = xmlcontent.getValues(Locale.ENGLISH).size();
+
+        // add a value, the lookups must find it
+        CmsXmlContentValueSequence toastSequence = xmlcontent.getValueSequence("Toast", Locale.ENGLISH);
+        toastSequence.addValue(cms, 1).setStringValue(cms, "Added toast");
+        assertEquals(2, xmlcontent.getValues("Toast", Locale.ENGLISH).size());
+        assertTrue(xmlcontent.hasValue("Toast[2]", Locale.ENGLISH));
+        assertEquals("Added toast", xmlcontent.getStringValue(cms, "Toast", Locale.ENGLISH, 1));
+        assertEquals(count + 1, xmlcontent.getValues(Locale.ENGLISH).size());
+
+        // remove the first value, the lookups must no longer find the second value
+        xmlcontent.removeValue("Toast", Locale.ENGLISH, 0);
+        assertEquals(1, xmlcontent.getValues("Toast", Locale.ENGLISH).size());
+        assertFalse(xmlcontent.hasValue("Toast[2]", Locale.ENGLISH));
+        assertEquals("Added toast", xmlcontent.getStringValue(cms, "Toast", Locale.ENGLISH));
+        assertEquals(count, xmlcontent.getValues(Locale.ENGLISH).size());
+    }
+
     /**
      * Test resolving a {@link CmsXmlVarLinkValue} in an XML content.<p>
      *
@@ -2485,6 +2681,30 @@ public class TestCmsXmlContentWithVfs extends OpenCmsTestCase {
         cms.writeFile(file);
     }
 
+    /**
+     * Creates a new request which only supports attributes.<p>
+     *
+     * @return the new request
+     */
+    protected ServletRequest createRequest() {
+
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        return new OpenCmsTestServletRequest() {
+
+            @Override
+            public Object getAttribute(String name) {
+
+                return attributes.get(name);
+            }
+
+            @Override
+            public void setAttribute(String name, Object value) {
+
+                attributes.put(name, value);
+            }
+        };
+    }
+
     /**
      * Initializes m_vfsPrefix lazily, otherwise it does not work.
      * @return the VFS prefix as added to internal links